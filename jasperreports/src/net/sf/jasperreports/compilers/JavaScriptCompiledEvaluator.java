@@ -27,6 +27,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRPropertiesUtil;
 import net.sf.jasperreports.engine.JasperReportsContext;
 import net.sf.jasperreports.engine.fill.JREvaluator;
 import net.sf.jasperreports.engine.fill.JRFillField;
@@ -83,6 +84,8 @@ public class JavaScriptCompiledEvaluator extends JREvaluator implements JasperRe
 	private FunctionsUtil functionsUtil;
 	private JavaScriptEvaluatorScope evaluatorScope;
 	
+	private JavaScriptSharedScope sharedScope;
+	
 	private final Map<Integer, Script> scripts = new HashMap<Integer, Script>();
 
 
@@ -113,7 +116,11 @@ public class JavaScriptCompiledEvaluator extends JREvaluator implements JasperRe
 			Map<String, JRFillVariable> variablesMap
 			) throws JRException
 	{
-		evaluatorScope = new JavaScriptEvaluatorScope(jasperReportsContext, this, functionsUtil);
+		if (JRPropertiesUtil.getInstance(jasperReportsContext).getBooleanProperty(JavaScriptEvaluator.PROPERTY_SHARED_SCOPE))
+		{
+			sharedScope = JavaScriptSharedScope.getInstance(compiledData);
+		}
+		evaluatorScope = new JavaScriptEvaluatorScope(jasperReportsContext, this, functionsUtil, sharedScope);
 		evaluatorScope.init(parametersMap, fieldsMap, variablesMap);
 	}
 	
@@ -155,8 +162,16 @@ public class JavaScriptCompiledEvaluator extends JREvaluator implements JasperRe
 						+ ", script index " + scriptIndex);
 			}
 			
-			JavaScriptClassLoader scriptClassLoader = getScriptClassLoader(unitName);
-			script = scriptClassLoader.createScript(scriptIndex, compiledData);
+			script = sharedScope == null ? null : sharedScope.getScript(scriptIndex);
+			if (script == null)
+			{
+				JavaScriptClassLoader scriptClassLoader = getScriptClassLoader(unitName);
+				script = scriptClassLoader.createScript(scriptIndex, compiledData);
+				if (sharedScope != null)
+				{
+					script = sharedScope.putScript(scriptIndex, script);
+				}
+			}
 			scripts.put(scriptIndex, script);
 		}
 		
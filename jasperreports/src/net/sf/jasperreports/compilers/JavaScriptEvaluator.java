@@ -61,6 +61,34 @@ public class JavaScriptEvaluator extends JREvaluator implements JasperReportsCon
 	public static final String PROPERTY_OPTIMIZATION_LEVEL = JRPropertiesUtil.PROPERTY_PREFIX 
 			+ "javascript.evaluator.optimization.level";
 	
+	/**
+	 * Property that determines whether the JavaScript evaluators created for a report share a sealed scope
+	 * containing the JavaScript standard objects and the scripts compiled for the report expressions.
+	 * 
+	 * <p>
+	 * When enabled, the standard objects are not created for each fill and expressions are only compiled once for a
+	 * report, which speeds up fills of small reports.
+	 * </p>
+	 * <p>
+	 * The standard objects are sealed because they are shared by all the fills of the report.
+	 * Expressions that add, change or delete properties of the standard objects or of their prototypes,
+	 * for instance by assigning <code>Math.round</code> or <code>String.prototype.format</code>,
+	 * fail with an evaluation error when the shared scope is used.
+	 * For this reason the property is not enabled by default.
+	 * </p>
+	 * 
+	 * @see JavaScriptSharedScope
+	 */
+	@Property(
+			category = PropertyConstants.CATEGORY_FILL,
+			defaultValue = PropertyConstants.BOOLEAN_FALSE,
+			scopes = {PropertyScope.CONTEXT},
+			sinceVersion = PropertyConstants.VERSION_6_8_0,
+			valueType = Boolean.class
+			)
+	public static final String PROPERTY_SHARED_SCOPE = JRPropertiesUtil.PROPERTY_PREFIX 
+			+ "javascript.evaluator.shared.scope";
+	
 	public static final String EXCEPTION_MESSAGE_KEY_EVALUATOR_LOAD_ERROR = "compilers.javascript.evaluator.load.error";
 	
 	private final JasperReportsContext jrContext;
@@ -92,7 +120,9 @@ public class JavaScriptEvaluator extends JREvaluator implements JasperReportsCon
 			Map<String, JRFillVariable> variablesMap
 			) throws JRException
 	{
-		evaluatorScope = new JavaScriptEvaluatorScope(jrContext, this, functionsUtil);
+		JavaScriptSharedScope sharedScope = JRPropertiesUtil.getInstance(jrContext).getBooleanProperty(PROPERTY_SHARED_SCOPE)
+				? JavaScriptSharedScope.getInstance(compileData) : null;
+		evaluatorScope = new JavaScriptEvaluatorScope(jrContext, this, functionsUtil, sharedScope);
 		evaluatorScope.init(parametersMap, fieldsMap, variablesMap);
 	}
 	
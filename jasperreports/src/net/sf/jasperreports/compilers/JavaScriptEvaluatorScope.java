@@ -152,12 +152,31 @@ public class JavaScriptEvaluatorScope
 	private ScriptableObject scope;
 	private volatile ProtectionDomain protectionDomain;
 	private Map<String, Script> compiledExpressions = new HashMap<String, Script>();
+	private final JavaScriptSharedScope sharedScope;
+	private int optimizationLevel;
 
 	public JavaScriptEvaluatorScope(JasperReportsContext jrContext, JREvaluator evaluator, FunctionsUtil functionsUtil)
 	{
+		this(jrContext, evaluator, functionsUtil, null);
+	}
+
+	/**
+	 * Creates an evaluator scope.
+	 * 
+	 * @param jrContext the JasperReports context
+	 * @param evaluator the expression evaluator
+	 * @param functionsUtil the functions utility
+	 * @param sharedScope the report level shared state, if not <code>null</code> the scope uses its sealed standard objects
+	 * and compiled expressions instead of creating its own
+	 */
+	public JavaScriptEvaluatorScope(JasperReportsContext jrContext, JREvaluator evaluator, FunctionsUtil functionsUtil,
+			JavaScriptSharedScope sharedScope)
+	{
+		this.sharedScope = sharedScope;
+		
 		context = enter(null);
 		
-		int optimizationLevel = JRPropertiesUtil.getInstance(jrContext).getIntegerProperty(JavaScriptEvaluator.PROPERTY_OPTIMIZATION_LEVEL);
+		optimizationLevel = JRPropertiesUtil.getInstance(jrContext).getIntegerProperty(JavaScriptEvaluator.PROPERTY_OPTIMIZATION_LEVEL);
 		if (log.isDebugEnabled())
 		{
 			log.debug("optimization level " + optimizationLevel);
@@ -170,10 +189,22 @@ public class JavaScriptEvaluatorScope
 		context.setSecurityController(new JavaPolicySecurity());
 		
 		JavaScriptFunctionsObject functionsObject = new JavaScriptFunctionsObject(context, functionsUtil, evaluator);
-		this.scope = context.initStandardObjects();
-		// is this OK?  the original prototype set by initStandardObjects is lost, and functionsObject has no prototype.
-		// seems to be fine for now, if not we could try setting the Object prototype to functionsObject.
-		this.scope.setPrototype(functionsObject);
+		if (sharedScope == null)
+		{
+			this.scope = context.initStandardObjects();
+			// is this OK?  the original prototype set by initStandardObjects is lost, and functionsObject has no prototype.
+			// seems to be fine for now, if not we could try setting the Object prototype to functionsObject.
+			this.scope.setPrototype(functionsObject);
+		}
+		else
+		{
+			// a top level scope that looks up functions and then the shared standard objects
+			ScriptableObject standardObjects = sharedScope.getStandardObjects(context);
+			this.scope = (ScriptableObject) context.newObject(standardObjects);
+			this.scope.setParentScope(null);
+			functionsObject.setPrototype(standardObjects);
+			this.scope.setPrototype(functionsObject);
+		}
 		
 		this.scope.put(EVALUATOR_VAR, this.scope, evaluator);
 		
@@ -266,19 +297,36 @@ public class JavaScriptEvaluatorScope
 		Script compiledExpression = compiledExpressions.get(expression);
 		if (compiledExpression == null)
 		{
-			if (log.isTraceEnabled())
+			if (sharedScope == null)
 			{
-				log.trace("compiling expression " + expression);
+				compiledExpression = compileExpression(expression);
+			}
+			else
+			{
+				String sharedKey = optimizationLevel + ":" + expression;
+				compiledExpression = sharedScope.getCompiledExpression(sharedKey);
+				if (compiledExpression == null)
+				{
+					compiledExpression = sharedScope.putCompiledExpression(sharedKey, compileExpression(expression));
+				}
 			}
-			
-			ensureContext();
-			
-			compiledExpression = context.compileString(expression, "expression", 0, getProtectionDomain());
 			compiledExpressions.put(expression, compiledExpression);
 		}
 		return compiledExpression;
 	}
 	
+	protected Script compileExpression(String expression)
+	{
+		if (log.isTraceEnabled())
+		{
+			log.trace("compiling expression " + expression);
+		}
+		
+		ensureContext();
+		
+		return context.compileString(expression, "expression", 0, getProtectionDomain());
+	}
+	
 	protected ProtectionDomain getProtectionDomain()
 	{
 		ProtectionDomain domain = protectionDomain;
@@ -0,0 +1,161 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.compilers;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.collections4.map.ReferenceMap;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.ScriptableObject;
+
+/**
+ * State shared by the JavaScript evaluators created for a compiled report.
+ * 
+ * <p>
+ * Instances are kept for as long as the report compile data ({@link JavaScriptCompileData} or
+ * {@link JavaScriptCompiledData}) is referenced, and contain a sealed scope with the JavaScript standard objects
+ * that is used as prototype for the evaluator scopes, and the scripts created for the report expressions.
+ * Scripts do not keep state between executions, so they can be executed concurrently by evaluators of different fills.
+ * </p>
+ * 
+ * @see JavaScriptEvaluator#PROPERTY_SHARED_SCOPE
+ */
+public class JavaScriptSharedScope
+{
+	private static final Log log = LogFactory.getLog(JavaScriptSharedScope.class);
+	
+	private static final Map<Object, JavaScriptSharedScope> sharedScopes =
+			new ReferenceMap<Object, JavaScriptSharedScope>(ReferenceMap.ReferenceStrength.WEAK, ReferenceMap.ReferenceStrength.HARD);
+	
+	/**
+	 * Returns the shared state for a report compile data object.
+	 * 
+	 * @param compileData the compile data of a report dataset or crosstab
+	 * @return the shared state
+	 */
+	public static JavaScriptSharedScope getInstance(Object compileData)
+	{
+		synchronized (sharedScopes)
+		{
+			JavaScriptSharedScope sharedScope = sharedScopes.get(compileData);
+			if (sharedScope == null)
+			{
+				sharedScope = new JavaScriptSharedScope();
+				sharedScopes.put(compileData, sharedScope);
+			}
+			return sharedScope;
+		}
+	}
+	
+	private volatile ScriptableObject standardObjects;
+	private final ConcurrentMap<String, Script> compiledExpressions = new ConcurrentHashMap<String, Script>();
+	private final ConcurrentMap<Integer, Script> scripts = new ConcurrentHashMap<Integer, Script>();
+	
+	protected JavaScriptSharedScope()
+	{
+	}
+	
+	/**
+	 * Returns the sealed scope that contains the JavaScript standard objects, creating it if necessary.
+	 * 
+	 * @param context the current JavaScript context
+	 * @return the standard objects scope
+	 */
+	public ScriptableObject getStandardObjects(Context context)
+	{
+		ScriptableObject objects = standardObjects;
+		if (objects == null)
+		{
+			synchronized (this)
+			{
+				objects = standardObjects;
+				if (objects == null)
+				{
+					objects = context.initStandardObjects(null, true);
+					standardObjects = objects;
+					
+					if (log.isDebugEnabled())
+					{
+						log.debug("created shared standard objects " + objects);
+					}
+				}
+			}
+		}
+		return objects;
+	}
+	
+	/**
+	 * Returns a script compiled from an expression source.
+	 * 
+	 * @param key the key that identifies the expression source and the compilation options
+	 * @return the compiled script, <code>null</code> if not found
+	 */
+	public Script getCompiledExpression(String key)
+	{
+		return compiledExpressions.get(key);
+	}
+	
+	/**
+	 * Adds a script compiled from an expression source.
+	 * 
+	 * @param key the key that identifies the expression source and the compilation options
+	 * @param script the compiled script
+	 * @return the script that should be used, which is the previous one if another thread has added a script for the key
+	 */
+	public Script putCompiledExpression(String key, Script script)
+	{
+		Script existing = compiledExpressions.putIfAbsent(key, script);
+		return existing == null ? script : existing;
+	}
+	
+	/**
+	 * Returns a script instantiated from a class compiled for the report.
+	 * 
+	 * @param scriptIndex the script index
+	 * @return the script, <code>null</code> if not found
+	 * @see JavaScriptCompiledData
+	 */
+	public Script getScript(int scriptIndex)
+	{
+		return scripts.get(scriptIndex);
+	}
+	
+	/**
+	 * Adds a script instantiated from a class compiled for the report.
+	 * 
+	 * @param scriptIndex the script index
+	 * @param script the script
+	 * @return the script that should be used, which is the previous one if another thread has added a script for the index
+	 */
+	public Script putScript(int scriptIndex, Script script)
+	{
+		Script existing = scripts.putIfAbsent(scriptIndex, script);
+		return existing == null ? script : existing;
+	}
+}
@@ -62,6 +62,7 @@ public class FillDatasetRun extends JRFillDatasetRun
 	private JRDataSource dataSource;
 	private Connection connection;
 	private boolean first;
+	private boolean prefetched;
 	
 	public FillDatasetRun(JRDatasetRun datasetRun,
 			JRFillObjectFactory factory) throws JRException
@@ -99,6 +100,12 @@ public class FillDatasetRun extends JRFillDatasetRun
 			log.debug("Evaluating list dataset run parameters");
 		}
 		
+		if (prefetched)
+		{
+			// the previous evaluation has not been filled
+			end();
+		}
+		
 		saveReturnVariables();
 		
 		parameterValues = JRFillSubreport.getParameterValues(
@@ -137,6 +144,30 @@ public class FillDatasetRun extends JRFillDatasetRun
 			connection = (Connection) expressionEvaluator.evaluate(
 					connectionExpression, evaluation);
 		}
+		
+		if (isQueryPrefetch())
+		{
+			if (log.isDebugEnabled())
+			{
+				log.debug("Prefetching list dataset query");
+			}
+			
+			initDataset(true);
+			prefetched = true;
+		}
+	}
+	
+	protected boolean isQueryPrefetch()
+	{
+		// only when the data source is produced by the dataset query
+		if (dataSourceExpression != null || dataset.getQuery() == null
+				|| filler.getFillContext().hasDataSnapshot())
+		{
+			return false;
+		}
+		
+		return JRPropertiesUtil.asBoolean(filler.getPropertiesUtil().getProperty(
+				JRFillDataset.PROPERTY_QUERY_PREFETCH, this, dataset));
 	}
 	
 	public void start() throws JRException
@@ -146,6 +177,22 @@ public class FillDatasetRun extends JRFillDatasetRun
 			log.debug("Starting list dataset iteration");
 		}
 		
+		if (prefetched)
+		{
+			// the dataset has been initialized when evaluated
+			prefetched = false;
+		}
+		else
+		{
+			initDataset(false);
+		}
+		
+		dataset.start();
+		first = true;
+	}
+	
+	protected void initDataset(boolean prefetchQuery) throws JRException
+	{
 		if (dataSourceExpression != null)
 		{
 			dataset.setDatasourceParameterValue(parameterValues, dataSource);
@@ -163,10 +210,7 @@ public class FillDatasetRun extends JRFillDatasetRun
 		dataset.initCalculator();
 		dataset.setParameterValues(parameterValues);
 		dataset.evaluateFieldProperties();
-		dataset.initDatasource();
-		
-		dataset.start();
-		first = true;
+		dataset.initDatasource(prefetchQuery);
 	}
 	
 	public boolean next() throws JRException
@@ -207,6 +251,7 @@ public class FillDatasetRun extends JRFillDatasetRun
 			log.debug("Closing the data source");
 		}
 		
+		prefetched = false;
 		dataset.closeDatasource();
 		dataset.disposeParameterContributors();
 	}
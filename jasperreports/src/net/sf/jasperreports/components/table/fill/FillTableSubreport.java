@@ -121,6 +121,13 @@ public class FillTableSubreport extends JRFillSubreport
 	{
 		return true;
 	}
+
+	@Override
+	protected boolean isParallelPrefillSupported()
+	{
+		// the table is filled as part of the component
+		return false;
+	}
 	
 	protected void copyConnectionParameter(Map<String, Object> parameterValues)
 	{
@@ -74,6 +74,7 @@ public class BucketDefinition
 	protected final Bucket VALUE_NULL = new Bucket(VALUE_TYPE_NULL);
 	
 	protected final Comparator<Object> bucketValueComparator;
+	private final boolean naturalComparator;
 
 	protected final BucketOrderer orderer;
 	//FIXME totalPosition and mergeHeaderCells only apply to crosstabs
@@ -108,12 +109,14 @@ public class BucketDefinition
 			{
 				// no ordering, values are inserted in the order in which they come
 				this.bucketValueComparator = null;
+				this.naturalComparator = true;
 			}
 			else
 			{
 				// the buckets are ordered using the bucket values
 				// if there's no comparator, we're assuming that the values are Comparable
 				this.bucketValueComparator = createOrderComparator(comparator, order);
+				this.naturalComparator = comparator == null;
 			}
 		}
 		else
@@ -124,6 +127,7 @@ public class BucketDefinition
 			{
 				// using natural order
 				this.bucketValueComparator = ComparableComparator.INSTANCE;
+				this.naturalComparator = true;
 			}
 			else
 			{
@@ -135,6 +139,7 @@ public class BucketDefinition
 				}
 				
 				this.bucketValueComparator = new ArbitraryRankComparator();
+				this.naturalComparator = false;
 			}
 		}
 		
@@ -187,6 +192,19 @@ public class BucketDefinition
 		return bucketValueComparator != null;
 	}
 	
+	/**
+	 * Determines whether the bucket values are either not sorted or sorted in their natural order.
+	 * <p>
+	 * Such buckets do not use comparators that could keep state, and can be compared 
+	 * concurrently from several threads.
+	 * 
+	 * @return whether the bucket values are not sorted or sorted in their natural order
+	 */
+	public boolean hasNaturalComparator()
+	{
+		return naturalComparator;
+	}
+	
 	/**
 	 * Whether this bucket needs total calculation.
 	 * 
@@ -24,13 +24,19 @@
 package net.sf.jasperreports.crosstabs.fill.calculation;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.sf.jasperreports.annotations.properties.Property;
 import net.sf.jasperreports.annotations.properties.PropertyScope;
@@ -53,6 +59,7 @@ public abstract class BucketingService
 	
 	public static final String EXCEPTION_MESSAGE_KEY_BUCKET_MEASURE_LIMIT = "crosstabs.bucket.measure.limit";
 	public static final String EXCEPTION_MESSAGE_KEY_BUCKET_DATA_PROCESSED = "crosstabs.bucket.data.processed";
+	public static final String EXCEPTION_MESSAGE_KEY_BUCKETING_INTERRUPTED = "crosstabs.bucketing.interrupted";
 	
 	@Property(
 			category = PropertyConstants.CATEGORY_CROSSTAB,
@@ -63,6 +70,39 @@ public abstract class BucketingService
 			)
 	public static final String PROPERTY_BUCKET_MEASURE_LIMIT = JRPropertiesUtil.PROPERTY_PREFIX + "crosstab.bucket.measure.limit";
 	
+	/**
+	 * Property that specifies the number of crosstab data rows after which the rows are accumulated in parallel.
+	 * 
+	 * <p>
+	 * When parallel bucketing is used, the rows are partitioned by the value of the first row group,
+	 * and the partitions are accumulated on the threads of the common fork/join pool while the
+	 * crosstab dataset is iterated.
+	 * All the rows of a data cell are accumulated by the same partition in the order in which they come,
+	 * and the totals are computed after all the partitions have been accumulated, 
+	 * therefore the crosstab is the same as when the rows are accumulated serially.
+	 * </p>
+	 * <p>
+	 * Parallel bucketing is only used when the crosstab measures use the built-in incrementers
+	 * and the groups other than the first row group are not sorted using custom comparators.
+	 * Parallel bucketing is disabled by default, it is enabled by setting the property to a positive value.
+	 * </p>
+	 */
+	@Property(
+			category = PropertyConstants.CATEGORY_CROSSTAB,
+			valueType = Integer.class,
+			defaultValue = "0",
+			scopes = {PropertyScope.CONTEXT},
+			sinceVersion = PropertyConstants.VERSION_6_8_0
+			)
+	public static final String PROPERTY_PARALLEL_THRESHOLD = JRPropertiesUtil.PROPERTY_PREFIX + "crosstab.bucketing.parallel.threshold";
+	
+	protected static final int DEFAULT_PARALLEL_THRESHOLD = 0;
+	
+	private static final int PARTITION_BATCH_SIZE = 512;
+	private static final int PARTITION_MAX_PENDING_BATCHES = 8;
+	
+	private static final int SORT_INSERTION_THRESHOLD = 8;
+	
 	protected static final byte DIMENSION_ROW = 0;
 
 	protected static final byte DIMENSION_COLUMN = 1;
@@ -96,9 +136,15 @@ public abstract class BucketingService
 
 	protected final MeasureValue[] zeroMeasureValues;
 	protected final MeasureValue[] zeroUserMeasureValues;
+	
+	protected final ColumnarBucketStore columnarStore;
+	private final MeasureValue[] columnarValues;
 
 	private final int bucketMeasureLimit;
-	private int runningBucketMeasureCount;
+	private final AtomicInteger runningBucketMeasureCount;
+	
+	private final int parallelThreshold;
+	private final BucketingPartition[] partitions;
 	
 	/**
 	 * Creates a crosstab bucketing engine.
@@ -118,6 +164,31 @@ public abstract class BucketingService
 			boolean sorted, 
 			boolean[][] retrieveTotal
 			)
+	{
+		this(serviceContext, rowBuckets, columnBuckets, measures, sorted, retrieveTotal, false);
+	}
+	
+	/**
+	 * Creates a crosstab bucketing engine.
+	 * 
+	 * @param serviceContext 
+	 * @param rowBuckets the row bucket definitions
+	 * @param columnBuckets the column bucket definitions
+	 * @param measures the measure definitions
+	 * @param sorted whether the data is presorted
+	 * @param retrieveTotal totals to retrieve along with the cell values
+	 * @param columnar whether to keep the data cells in a {@link ColumnarBucketStore columnar store}
+	 * when the measures allow it
+	 */
+	protected BucketingService(
+			BucketingServiceContext serviceContext, 
+			List<BucketDefinition> rowBuckets, 
+			List<BucketDefinition> columnBuckets, 
+			List<MeasureDefinition> measures, 
+			boolean sorted, 
+			boolean[][] retrieveTotal,
+			boolean columnar
+			)
 	{
 		this.serviceContext = serviceContext;
 		
@@ -156,13 +227,73 @@ public abstract class BucketingService
 		this.retrieveTotal = retrieveTotal;
 		checkTotals();
 		
+		if (columnar && ColumnarBucketStore.isSupported(measures))
+		{
+			columnarStore = createColumnarStore();
+			columnarValues = initMeasureValues();
+		}
+		else
+		{
+			columnarStore = null;
+			columnarValues = null;
+		}
+		
 		bucketValueMap = createBucketMap(0);
 		columnBucketMap = createBucketMapMap(rowBucketCount);
 		
 		zeroMeasureValues = initMeasureValues();
 		zeroUserMeasureValues = initUserMeasureValues();
 		
-		bucketMeasureLimit = JRPropertiesUtil.getInstance(serviceContext.getJasperReportsContext()).getIntegerProperty(PROPERTY_BUCKET_MEASURE_LIMIT, 0);
+		JRPropertiesUtil propertiesUtil = JRPropertiesUtil.getInstance(serviceContext.getJasperReportsContext());
+		bucketMeasureLimit = propertiesUtil.getIntegerProperty(PROPERTY_BUCKET_MEASURE_LIMIT, 0);
+		runningBucketMeasureCount = new AtomicInteger();
+		
+		parallelThreshold = propertiesUtil.getIntegerProperty(PROPERTY_PARALLEL_THRESHOLD, DEFAULT_PARALLEL_THRESHOLD);
+		if (parallelThreshold > 0 && isParallelSupported(measures))
+		{
+			partitions = new BucketingPartition[ForkJoinPool.getCommonPoolParallelism()];
+			for (int i = 0; i < partitions.length; i++)
+			{
+				partitions[i] = new BucketingPartition();
+			}
+		}
+		else
+		{
+			partitions = null;
+		}
+	}
+	
+	protected ColumnarBucketStore createColumnarStore()
+	{
+		int lastLevel = allBuckets.length - 1;
+		return new ColumnarBucketStore(measures, !sorted && allBuckets[lastLevel].isSorted());
+	}
+	
+	protected boolean isParallelSupported(List<MeasureDefinition> measures)
+	{
+		if (allBuckets.length < 2
+				|| ForkJoinPool.getCommonPoolParallelism() < 2
+				// not blocking pool threads while waiting for the partitions
+				|| Thread.currentThread() instanceof ForkJoinWorkerThread)
+		{
+			return false;
+		}
+		
+		// the built-in incrementers do not share state between measure values
+		if (!ColumnarBucketStore.isSupported(measures))
+		{
+			return false;
+		}
+		
+		// the buckets after the first one are compared concurrently by the partitions
+		for (int i = 1; i < allBuckets.length; i++)
+		{
+			if (!allBuckets[i].hasNaturalComparator())
+			{
+				return false;
+			}
+		}
+		return true;
 	}
 
 
@@ -243,17 +374,49 @@ public abstract class BucketingService
 	 */
 	public void clear()
 	{
+		if (partitions != null)
+		{
+			for (BucketingPartition partition : partitions)
+			{
+				partition.clear();
+			}
+		}
+		
 		bucketValueMap.clear();
 		columnBucketMap.clear();
+		if (columnarStore != null)
+		{
+			columnarStore.clear();
+		}
 		processed = false;
 		dataCount = 0;
-		runningBucketMeasureCount = 0;
+		runningBucketMeasureCount.set(0);
+	}
+	
+	/**
+	 * Discards the queued rows of all the partitions and waits for the running partition tasks to finish.
+	 */
+	protected void cancelPartitions()
+	{
+		for (BucketingPartition partition : partitions)
+		{
+			partition.cancel();
+		}
 	}
 	
 	protected BucketMap createBucketMap(int level)
+	{
+		return createBucketMap(level, columnarStore);
+	}
+	
+	protected BucketMap createBucketMap(int level, ColumnarBucketStore store)
 	{
 		BucketMap map;
-		if (sorted)
+		if (store != null && level == allBuckets.length - 1)
+		{
+			map = new ColumnarBucketMap(level, store);
+		}
+		else if (sorted)
 		{
 			map = new BucketListMap(level);
 		}
@@ -336,22 +499,66 @@ public abstract class BucketingService
 		
 		Bucket[] bucketVals = getBucketValues(bucketValues);
 
-		MeasureValue[] values = bucketValueMap.insertMeasureValues(bucketVals, true, 0);
+		if (partitions == null)
+		{
+			addCellData(bucketValueMap, 0, columnarStore, columnarValues, bucketVals, measureValues);
+		}
+		else
+		{
+			// all the rows for an entry of the first bucket go to the same partition
+			BucketingPartition partition = partitions[(bucketVals[0].hashCode() & Integer.MAX_VALUE) % partitions.length];
+			BucketMap rowMap = ((EntryBucketMap) bucketValueMap).insertNextMap(bucketVals[0], partition.store);
+			if (dataCount < parallelThreshold)
+			{
+				partition.addData(rowMap, bucketVals, measureValues);
+			}
+			else
+			{
+				// the measure values array is reused by the caller
+				partition.queueData(rowMap, bucketVals, measureValues.clone());
+			}
+		}
+		
+		// collect column bucket values
+		((EntryBucketMap) columnBucketMap).insertMeasureValues(bucketVals, false, rowBucketCount);
+	}
+	
+	private void addCellData(BucketMap bucketMap, int offset, 
+			ColumnarBucketStore store, MeasureValue[] storeValues,
+			Bucket[] bucketVals, Object[] measureValues) throws JRException
+	{
+		if (store == null)
+		{
+			MeasureValue[] values = ((EntryBucketMap) bucketMap).insertMeasureValues(bucketVals, true, offset);
+			addMeasureValues(values, measureValues);
+		}
+		else
+		{
+			// the map is already on the last level when the partitions start from the second level
+			ColumnarBucketMap leafMap = offset == allBuckets.length - 1 
+					? (ColumnarBucketMap) bucketMap
+					: ((EntryBucketMap) bucketMap).insertLeafMap(bucketVals, offset, store);
+			int cell = leafMap.insertCell(bucketVals[allBuckets.length - 1]);
+			
+			// the cell values are incremented in place of the actual cell measure values
+			store.loadValues(cell, storeValues);
+			addMeasureValues(storeValues, measureValues);
+			store.storeValues(cell, storeValues);
+		}
+	}
+	
+	protected void addMeasureValues(MeasureValue[] values, Object[] measureValues) throws JRException
+	{
 		for (int i = 0; i < measures.length; ++i)
 		{
 			Object measureValue = measureValues[measureIndexes[i]];
 			values[i].addValue(measureValue);
 		}
-		
-		// collect column bucket values
-		columnBucketMap.insertMeasureValues(bucketVals, false, rowBucketCount);
 	}
 	
 	protected void bucketMeasuresCreated()
 	{
-		runningBucketMeasureCount += origMeasureCount;
-		
-		checkBucketMeasureCount(runningBucketMeasureCount);
+		checkBucketMeasureCount(runningBucketMeasureCount.addAndGet(origMeasureCount));
 	}
 
 	protected Bucket[] getBucketValues(Object[] bucketValues)
@@ -429,6 +636,15 @@ public abstract class BucketingService
 	{
 		if (!processed)
 		{
+			if (partitions != null)
+			{
+				// waiting for all the rows to be accumulated
+				for (BucketingPartition partition : partitions)
+				{
+					partition.finish();
+				}
+			}
+			
 			if (dataCount > 0)
 			{
 				if (allBuckets[rowBucketCount - 1].computeTotal() || allBuckets[allBuckets.length - 1].computeTotal())
@@ -673,8 +889,6 @@ public abstract class BucketingService
 		public abstract Iterator<Map.Entry<Bucket, Object>> entryIterator();
 
 		public abstract Object get(Bucket key);
-		
-		abstract MeasureValue[] insertMeasureValues(Bucket[] bucketValues, boolean createValues, int offset);
 
 /*		abstract void fillKeys(Collection collectedKeys);*/
 
@@ -687,7 +901,31 @@ public abstract class BucketingService
 		public abstract MapEntry getTotalEntry();
 	}
 	
-	protected class BucketMapMap extends BucketMap
+	/**
+	 * Bucket map that keeps its entries as objects, and in which the data cells are inserted.
+	 */
+	protected abstract class EntryBucketMap extends BucketMap
+	{
+		EntryBucketMap(int level)
+		{
+			super(level);
+		}
+		
+		abstract MeasureValue[] insertMeasureValues(Bucket[] bucketValues, boolean createValues, int offset);
+		
+		/**
+		 * Returns the columnar map on the last bucket level for a set of bucket values, creating the maps 
+		 * on the intermediate levels if needed.
+		 */
+		abstract ColumnarBucketMap insertLeafMap(Bucket[] bucketValues, int offset, ColumnarBucketStore store);
+		
+		/**
+		 * Returns the map on the next bucket level for a bucket value, creating it if needed.
+		 */
+		abstract BucketMap insertNextMap(Bucket key, ColumnarBucketStore store);
+	}
+	
+	protected class BucketMapMap extends EntryBucketMap
 	{
 		Map<Bucket, Object> map;
 		
@@ -751,6 +989,44 @@ public abstract class BucketingService
 			return values;
 		}
 
+		@Override
+		ColumnarBucketMap insertLeafMap(Bucket[] bucketValues, int offset, ColumnarBucketStore store)
+		{
+			BucketMapMap levelMap = this;
+			for (int i = offset; i < bucketValues.length - 2; i++)
+			{
+				BucketMapMap nextMap = (BucketMapMap) levelMap.get(bucketValues[i]);
+				if (nextMap == null)
+				{
+					nextMap = createBucketMapMap(i + 1);
+					levelMap.map.put(bucketValues[i], nextMap);
+				}
+
+				levelMap = nextMap;
+			}
+			
+			Bucket leafKey = bucketValues[bucketValues.length - 2];
+			ColumnarBucketMap leafMap = (ColumnarBucketMap) levelMap.get(leafKey);
+			if (leafMap == null)
+			{
+				leafMap = (ColumnarBucketMap) createBucketMap(bucketValues.length - 1, store);
+				levelMap.map.put(leafKey, leafMap);
+			}
+			return leafMap;
+		}
+
+		@Override
+		BucketMap insertNextMap(Bucket key, ColumnarBucketStore store)
+		{
+			BucketMap nextMap = (BucketMap) map.get(key);
+			if (nextMap == null)
+			{
+				nextMap = createBucketMap(level + 1, store);
+				map.put(key, nextMap);
+			}
+			return nextMap;
+		}
+
 		@Override
 		public int size()
 		{
@@ -830,7 +1106,7 @@ public abstract class BucketingService
 		}
 	}
 
-	protected class BucketListMap extends BucketMap
+	protected class BucketListMap extends EntryBucketMap
 	{
 		List<Map.Entry<Bucket, Object>> entries;
 		// we maintain a map as well in order to have fast search by key
@@ -923,6 +1199,65 @@ public abstract class BucketingService
 			return values;
 		}
 
+		@Override
+		ColumnarBucketMap insertLeafMap(Bucket[] bucketValues, int offset, ColumnarBucketStore store)
+		{
+			int lastLevel = allBuckets.length - 1;
+			int i = offset;
+			BucketListMap map = this;
+			while (i < lastLevel)
+			{
+				int size = map.entries.size();
+				if (size == 0)
+				{
+					break;
+				}
+
+				MapEntry lastEntry = (MapEntry)map.entries.get(size - 1);
+				if (!lastEntry.key.equals(bucketValues[i]))
+				{
+					break;
+				}
+				
+				++i;
+				if (i == lastLevel)
+				{
+					return (ColumnarBucketMap) lastEntry.value;
+				}
+				map = (BucketListMap) lastEntry.value;
+			}
+
+			while (i < lastLevel - 1)
+			{
+				BucketListMap nextMap = new BucketListMap(i + 1);
+				map.add(bucketValues[i], nextMap);
+				map = nextMap;
+				++i;
+			}
+			
+			ColumnarBucketMap leafMap = (ColumnarBucketMap) createBucketMap(lastLevel, store);
+			map.add(bucketValues[i], leafMap);
+			return leafMap;
+		}
+
+		@Override
+		BucketMap insertNextMap(Bucket key, ColumnarBucketStore store)
+		{
+			int size = entries.size();
+			if (size > 0)
+			{
+				MapEntry lastEntry = (MapEntry) entries.get(size - 1);
+				if (lastEntry.key.equals(key))
+				{
+					return (BucketMap) lastEntry.value;
+				}
+			}
+			
+			BucketMap nextMap = createBucketMap(level + 1, store);
+			add(key, nextMap);
+			return nextMap;
+		}
+
 		@Override
 		public int size()
 		{
@@ -973,6 +1308,534 @@ public abstract class BucketingService
 		}
 	}
 
+
+	/**
+	 * Bucket map on the last bucket level that keeps the data cells in the {@link ColumnarBucketStore columnar store}.
+	 * 
+	 * <p>
+	 * The measure values of a cell are created when the cell is first accessed and then
+	 * kept by the store until the cell values change, while the total entry is kept as is.
+	 * </p>
+	 */
+	protected class ColumnarBucketMap extends BucketMap
+	{
+		final ColumnarBucketStore store;
+		final int mapId;
+		final boolean sortedMap;
+		int[] bucketIds;
+		int[] cells;
+		int cellCount;
+		boolean ordered;
+		Object total;
+
+		ColumnarBucketMap(int level, ColumnarBucketStore store)
+		{
+			super(level);
+			
+			this.store = store;
+			this.mapId = store.nextMapId();
+			this.sortedMap = !sorted && allBuckets[level].isSorted();
+			this.bucketIds = new int[4];
+			this.cells = new int[4];
+			this.cellCount = 0;
+			this.ordered = true;
+		}
+
+		@Override
+		void clear()
+		{
+			cellCount = 0;
+			ordered = true;
+			total = null;
+		}
+
+		/**
+		 * Returns the cell for a bucket, creating it if needed.
+		 */
+		int insertCell(Bucket bucket)
+		{
+			int bucketId = store.getBucketId(bucket, true);
+			if (sorted)
+			{
+				// presorted data, only checking the last entry
+				if (cellCount > 0 && bucketIds[cellCount - 1] == bucketId)
+				{
+					return cells[cellCount - 1];
+				}
+			}
+			else
+			{
+				int cell = store.findCell(mapId, bucketId);
+				if (cell >= 0)
+				{
+					return cell;
+				}
+			}
+			
+			int cell = store.addCell(zeroMeasureValues);
+			bucketMeasuresCreated();
+			
+			if (cellCount == cells.length)
+			{
+				bucketIds = Arrays.copyOf(bucketIds, cellCount << 1);
+				cells = Arrays.copyOf(cells, cellCount << 1);
+			}
+			
+			if (sortedMap && ordered && cellCount > 0 
+					&& bucket.compareTo(store.getBucket(bucketIds[cellCount - 1])) < 0)
+			{
+				ordered = false;
+			}
+			
+			bucketIds[cellCount] = bucketId;
+			cells[cellCount] = cell;
+			++cellCount;
+			store.putCell(mapId, bucketId, cell);
+			return cell;
+		}
+		
+		MeasureValue[] cellValues(int cell)
+		{
+			MeasureValue[] values = store.getLoadedValues(cell);
+			if (values == null)
+			{
+				values = initMeasureValues();
+				store.loadValues(cell, values);
+				store.setLoadedValues(cell, values);
+			}
+			return values;
+		}
+		
+		void sortCells()
+		{
+			int[] positions = new int[cellCount];
+			for (int i = 0; i < cellCount; i++)
+			{
+				positions[i] = i;
+			}
+			sortPositions(positions, new int[cellCount], 0, cellCount);
+			
+			int[] sortedBucketIds = new int[bucketIds.length];
+			int[] sortedCells = new int[cells.length];
+			for (int i = 0; i < cellCount; i++)
+			{
+				sortedBucketIds[i] = bucketIds[positions[i]];
+				sortedCells[i] = cells[positions[i]];
+			}
+			bucketIds = sortedBucketIds;
+			cells = sortedCells;
+			ordered = true;
+		}
+		
+		/**
+		 * Stable merge sort of cell positions by bucket.
+		 */
+		private void sortPositions(int[] positions, int[] work, int from, int to)
+		{
+			if (to - from <= SORT_INSERTION_THRESHOLD)
+			{
+				for (int i = from + 1; i < to; i++)
+				{
+					int position = positions[i];
+					int j = i;
+					for (; j > from && comparePositions(positions[j - 1], position) > 0; j--)
+					{
+						positions[j] = positions[j - 1];
+					}
+					positions[j] = position;
+				}
+				return;
+			}
+			
+			int middle = (from + to) >>> 1;
+			sortPositions(positions, work, from, middle);
+			sortPositions(positions, work, middle, to);
+			if (comparePositions(positions[middle - 1], positions[middle]) <= 0)
+			{
+				return;
+			}
+			
+			System.arraycopy(positions, from, work, from, to - from);
+			int left = from;
+			int right = middle;
+			for (int i = from; i < to; i++)
+			{
+				if (right >= to || (left < middle && comparePositions(work[left], work[right]) <= 0))
+				{
+					positions[i] = work[left++];
+				}
+				else
+				{
+					positions[i] = work[right++];
+				}
+			}
+		}
+		
+		private int comparePositions(int pos1, int pos2)
+		{
+			return store.getBucket(bucketIds[pos1]).compareTo(store.getBucket(bucketIds[pos2]));
+		}
+
+		@Override
+		public Iterator<Map.Entry<Bucket, Object>> entryIterator()
+		{
+			if (!ordered)
+			{
+				sortCells();
+			}
+			
+			return new Iterator<Map.Entry<Bucket, Object>>()
+			{
+				int position = 0;
+				
+				@Override
+				public boolean hasNext()
+				{
+					return position < cellCount || (position == cellCount && total != null);
+				}
+
+				@Override
+				public Map.Entry<Bucket, Object> next()
+				{
+					if (!hasNext())
+					{
+						throw new NoSuchElementException();
+					}
+					
+					Map.Entry<Bucket, Object> entry;
+					if (position < cellCount)
+					{
+						entry = new MapEntry(store.getBucket(bucketIds[position]), cellValues(cells[position]));
+					}
+					else
+					{
+						entry = new MapEntry(totalKey, total);
+					}
+					++position;
+					return entry;
+				}
+
+				@Override
+				public void remove()
+				{
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+
+		@Override
+		public Object get(Bucket key)
+		{
+			if (key.isTotal())
+			{
+				return total;
+			}
+			
+			int bucketId = store.getBucketId(key, false);
+			int cell = bucketId < 0 ? -1 : store.findCell(mapId, bucketId);
+			return cell < 0 ? null : cellValues(cell);
+		}
+
+		@Override
+		void addTotalEntry(Object val)
+		{
+			total = val;
+		}
+
+		@Override
+		public int size()
+		{
+			return total == null ? cellCount : cellCount + 1;
+		}
+
+		@Override
+		public Object getTotal()
+		{
+			return total;
+		}
+
+		@Override
+		public MapEntry getTotalEntry()
+		{
+			return total == null ? null : new MapEntry(totalKey, total);
+		}
+		
+		@Override
+		public String toString()
+		{
+			StringBuilder sb = new StringBuilder();
+			sb.append('{');
+			for (Iterator<Map.Entry<Bucket, Object>> it = entryIterator(); it.hasNext();)
+			{
+				Map.Entry<Bucket, Object> entry = it.next();
+				sb.append(entry);
+				if (it.hasNext())
+				{
+					sb.append(", ");
+				}
+			}
+			sb.append('}');
+			return sb.toString();
+		}
+	}
+	
+	/**
+	 * A partition of the crosstab data rows, accumulated by a single thread at a time.
+	 * 
+	 * <p>
+	 * Rows are first accumulated on the calling thread, and after the parallel threshold is reached
+	 * they are collected in batches that are accumulated on the common fork/join pool.
+	 * The batches of a partition are processed sequentially in the order in which they were queued.
+	 * </p>
+	 */
+	protected class BucketingPartition implements Runnable
+	{
+		final ColumnarBucketStore store;
+		final MeasureValue[] storeValues;
+		
+		private final LinkedList<DataBatch> pendingBatches;
+		private DataBatch currentBatch;
+		private boolean running;
+		private Throwable error;
+		
+		BucketingPartition()
+		{
+			if (columnarStore == null)
+			{
+				store = null;
+				storeValues = null;
+			}
+			else
+			{
+				store = createColumnarStore();
+				storeValues = initMeasureValues();
+			}
+			
+			pendingBatches = new LinkedList<DataBatch>();
+		}
+		
+		void addData(BucketMap rowMap, Bucket[] bucketVals, Object[] measureValues) throws JRException
+		{
+			addCellData(rowMap, 1, store, storeValues, bucketVals, measureValues);
+		}
+		
+		void queueData(BucketMap rowMap, Bucket[] bucketVals, Object[] measureValues) throws JRException
+		{
+			if (currentBatch == null)
+			{
+				currentBatch = new DataBatch();
+			}
+			
+			currentBatch.add(rowMap, bucketVals, measureValues);
+			if (currentBatch.size == PARTITION_BATCH_SIZE)
+			{
+				submitBatch();
+			}
+		}
+		
+		private void submitBatch() throws JRException
+		{
+			DataBatch batch = currentBatch;
+			currentBatch = null;
+			
+			synchronized (this)
+			{
+				while (error == null && pendingBatches.size() >= PARTITION_MAX_PENDING_BATCHES)
+				{
+					waitForPartition();
+				}
+				
+				checkError();
+				
+				pendingBatches.add(batch);
+				if (!running)
+				{
+					running = true;
+					ForkJoinPool.commonPool().execute(this);
+				}
+			}
+		}
+
+		@Override
+		public void run()
+		{
+			while (true)
+			{
+				DataBatch batch;
+				synchronized (this)
+				{
+					batch = pendingBatches.poll();
+					if (batch == null)
+					{
+						running = false;
+						notifyAll();
+						return;
+					}
+					
+					// notify the thread waiting to queue a batch
+					notifyAll();
+				}
+				
+				try
+				{
+					batch.process(this);
+				}
+				catch (Throwable e)
+				{
+					synchronized (this)
+					{
+						error = e;
+						pendingBatches.clear();
+						running = false;
+						notifyAll();
+					}
+					return;
+				}
+			}
+		}
+		
+		/**
+		 * Waits for all the queued rows to be accumulated.
+		 */
+		void finish() throws JRException
+		{
+			if (currentBatch != null)
+			{
+				submitBatch();
+			}
+			
+			synchronized (this)
+			{
+				while (running)
+				{
+					waitForPartition();
+				}
+				
+				checkError();
+			}
+		}
+		
+		void clear()
+		{
+			currentBatch = null;
+			
+			synchronized (this)
+			{
+				pendingBatches.clear();
+				while (running)
+				{
+					waitForPartition();
+				}
+				
+				error = null;
+			}
+			
+			if (store != null)
+			{
+				store.clear();
+			}
+		}
+		
+		/**
+		 * Discards the queued batches and waits for the running task to finish.
+		 */
+		void cancel()
+		{
+			currentBatch = null;
+			
+			boolean interrupted = false;
+			synchronized (this)
+			{
+				pendingBatches.clear();
+				while (running)
+				{
+					try
+					{
+						wait();
+					}
+					catch (InterruptedException e)
+					{
+						interrupted = true;
+					}
+				}
+			}
+			
+			if (interrupted)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+		
+		private void waitForPartition()
+		{
+			try
+			{
+				wait();
+			}
+			catch (InterruptedException e)
+			{
+				// not leaving tasks that use the bucket maps running after the fill has been interrupted
+				cancelPartitions();
+				Thread.currentThread().interrupt();
+				
+				throw 
+					new JRRuntimeException(
+						EXCEPTION_MESSAGE_KEY_BUCKETING_INTERRUPTED,
+						(Object[])null,
+						e);
+			}
+		}
+		
+		private void checkError() throws JRException
+		{
+			if (error != null)
+			{
+				if (error instanceof JRException)
+				{
+					throw (JRException) error;
+				}
+				if (error instanceof RuntimeException)
+				{
+					throw (RuntimeException) error;
+				}
+				throw new JRRuntimeException(error);
+			}
+		}
+	}
+	
+	/**
+	 * A batch of data rows queued for a partition.
+	 */
+	protected static class DataBatch
+	{
+		final BucketMap[] rowMaps;
+		final Bucket[][] bucketValues;
+		final Object[][] measureValues;
+		int size;
+		
+		DataBatch()
+		{
+			rowMaps = new BucketMap[PARTITION_BATCH_SIZE];
+			bucketValues = new Bucket[PARTITION_BATCH_SIZE][];
+			measureValues = new Object[PARTITION_BATCH_SIZE][];
+		}
+		
+		void add(BucketMap rowMap, Bucket[] bucketVals, Object[] measureVals)
+		{
+			rowMaps[size] = rowMap;
+			bucketValues[size] = bucketVals;
+			measureValues[size] = measureVals;
+			++size;
+		}
+		
+		void process(BucketingPartition partition) throws JRException
+		{
+			for (int i = 0; i < size; i++)
+			{
+				partition.addData(rowMaps[i], bucketValues[i], measureValues[i]);
+			}
+		}
+	}
 	
 	protected void checkBucketMeasureCount(int bucketMeasureCount)
 	{
@@ -0,0 +1,641 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.crosstabs.fill.calculation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import net.sf.jasperreports.crosstabs.fill.calculation.BucketDefinition.Bucket;
+import net.sf.jasperreports.crosstabs.fill.calculation.MeasureDefinition.MeasureValue;
+import net.sf.jasperreports.engine.fill.JRDefaultIncrementerFactory;
+import net.sf.jasperreports.engine.fill.JRDistinctCountExtendedIncrementerFactory;
+
+/**
+ * Columnar store for the measure values of crosstab data cells.
+ * 
+ * <p>
+ * The values of the last bucket level are encoded as integer ids in a dictionary,
+ * and the cells are identified by the id of the map that contains them and the bucket id.
+ * The accumulated measure values are kept in one column per measure, using primitive
+ * arrays for the integer and floating point values of built-in sum, count and average calculations.
+ * </p>
+ * <p>
+ * Measure values are accumulated by loading the cell values into {@link MeasureValue} 
+ * objects, incrementing them and storing them back, therefore the incrementers
+ * produce the same results as for measure values that are kept in bucket maps.
+ * </p>
+ */
+public class ColumnarBucketStore
+{
+	private static final int INITIAL_CAPACITY = 64;
+	private static final float TABLE_LOAD_FACTOR = 0.6f;
+	
+	private final boolean sortedBuckets;
+	private final int measureCount;
+	private final Column[] columns;
+	private final Column[] initialColumns;
+	
+	private Map<Bucket, Integer> bucketIds;
+	private List<Bucket> buckets;
+	
+	private int cellCount;
+	private int cellCapacity;
+	private BitSet initializedFlags;
+	private MeasureValue[][] loadedValues;
+	
+	private int mapCount;
+	private long[] tableKeys;
+	private int[] tableCells;
+	private int tableSize;
+	private int tableThreshold;
+
+	/**
+	 * Creates a store.
+	 * 
+	 * @param measures the measures, including the helper measures
+	 * @param sortedBuckets whether the buckets are compared using their sort order rather than value equality
+	 */
+	public ColumnarBucketStore(MeasureDefinition[] measures, boolean sortedBuckets)
+	{
+		this.sortedBuckets = sortedBuckets;
+		this.measureCount = measures.length;
+		
+		this.initialColumns = new Column[measureCount];
+		for (int i = 0; i < measureCount; i++)
+		{
+			initialColumns[i] = createColumn(measures[i]);
+		}
+		this.columns = new Column[measureCount];
+		
+		clear();
+	}
+
+	/**
+	 * Decides whether the measure values can be kept in a columnar store.
+	 * 
+	 * <p>
+	 * This is the case when all measures use the built-in incrementers.
+	 * </p>
+	 * 
+	 * @param measures the measures
+	 * @return whether the columnar store can be used for the measures
+	 */
+	public static boolean isSupported(List<MeasureDefinition> measures)
+	{
+		for (MeasureDefinition measure : measures)
+		{
+			if (!isBuiltInIncrementer(measure))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	protected static boolean isBuiltInIncrementer(MeasureDefinition measure)
+	{
+		return measure.getIncrementerFactory() == JRDefaultIncrementerFactory.getFactory(measure.getValueClass())
+				|| measure.getIncrementerFactory() == JRDistinctCountExtendedIncrementerFactory.getInstance();
+	}
+	
+	protected static Column createColumn(MeasureDefinition measure)
+	{
+		Class<?> valueClass = measure.getValueClass();
+		boolean primitive = isBuiltInIncrementer(measure);
+		if (primitive)
+		{
+			switch (measure.getCalculation())
+			{
+				case SUM:
+				case COUNT:
+				case AVERAGE:
+					break;
+				default:
+					primitive = false;
+					break;
+			}
+		}
+		
+		Column column;
+		if (primitive 
+				&& (Integer.class.equals(valueClass) || Long.class.equals(valueClass)
+				|| Short.class.equals(valueClass) || Byte.class.equals(valueClass)))
+		{
+			column = new LongColumn(valueClass);
+		}
+		else if (primitive 
+				&& (Double.class.equals(valueClass) || Float.class.equals(valueClass)))
+		{
+			column = new DoubleColumn(valueClass);
+		}
+		else
+		{
+			column = new ObjectColumn();
+		}
+		return column;
+	}
+
+	/**
+	 * Removes all the cells and buckets from the store.
+	 */
+	public void clear()
+	{
+		bucketIds = sortedBuckets ? new TreeMap<Bucket, Integer>() : new HashMap<Bucket, Integer>();
+		buckets = new ArrayList<Bucket>();
+		
+		cellCount = 0;
+		cellCapacity = INITIAL_CAPACITY;
+		initializedFlags = new BitSet();
+		loadedValues = null;
+		for (int i = 0; i < measureCount; i++)
+		{
+			columns[i] = initialColumns[i].create(cellCapacity);
+		}
+		
+		mapCount = 0;
+		tableKeys = new long[INITIAL_CAPACITY];
+		tableCells = new int[INITIAL_CAPACITY];
+		tableSize = 0;
+		tableThreshold = (int) (INITIAL_CAPACITY * TABLE_LOAD_FACTOR);
+	}
+
+	/**
+	 * Returns a new id for a map that contains cells.
+	 */
+	public int nextMapId()
+	{
+		// starting from 1 so that table keys are never 0
+		return ++mapCount;
+	}
+
+	/**
+	 * Returns the id of a bucket.
+	 * 
+	 * @param bucket the bucket
+	 * @param create whether to assign an id if the bucket is not already in the dictionary
+	 * @return the bucket id, or -1 if the bucket is not found and <code>create</code> is not set
+	 */
+	public int getBucketId(Bucket bucket, boolean create)
+	{
+		Integer id = bucketIds.get(bucket);
+		if (id == null)
+		{
+			if (!create)
+			{
+				return -1;
+			}
+			
+			id = buckets.size();
+			buckets.add(bucket);
+			bucketIds.put(bucket, id);
+		}
+		return id;
+	}
+	
+	/**
+	 * Returns the bucket for an id.
+	 */
+	public Bucket getBucket(int id)
+	{
+		return buckets.get(id);
+	}
+
+	/**
+	 * Creates a new cell.
+	 * 
+	 * @param initialValues the initial measure values of the cell
+	 * @return the index of the cell
+	 */
+	public int addCell(MeasureValue[] initialValues)
+	{
+		if (cellCount == cellCapacity)
+		{
+			cellCapacity = cellCapacity << 1;
+			for (int i = 0; i < measureCount; i++)
+			{
+				columns[i].grow(cellCapacity);
+			}
+		}
+		
+		int cell = cellCount++;
+		storeValues(cell, initialValues);
+		return cell;
+	}
+	
+	/**
+	 * Returns the number of cells in the store.
+	 */
+	public int getCellCount()
+	{
+		return cellCount;
+	}
+	
+	/**
+	 * Loads the values of a cell into measure values.
+	 * 
+	 * @param cell the cell index
+	 * @param values the measure values to load the cell values into
+	 */
+	public void loadValues(int cell, MeasureValue[] values)
+	{
+		int flagIndex = cell * measureCount;
+		for (int i = 0; i < measureCount; i++)
+		{
+			values[i].restoreValue(columns[i].get(cell), initializedFlags.get(flagIndex + i));
+		}
+	}
+	
+	/**
+	 * Stores measure values as the values of a cell.
+	 * 
+	 * @param cell the cell index
+	 * @param values the measure values
+	 */
+	public void storeValues(int cell, MeasureValue[] values)
+	{
+		int flagIndex = cell * measureCount;
+		for (int i = 0; i < measureCount; i++)
+		{
+			MeasureValue value = values[i];
+			Column column = columns[i];
+			if (!column.set(cell, value.getValue()))
+			{
+				// the value does not fit the column, switching to an object column
+				Column objectColumn = new ObjectColumn(column, cellCount, cellCapacity);
+				objectColumn.set(cell, value.getValue());
+				columns[i] = objectColumn;
+			}
+			initializedFlags.set(flagIndex + i, value.isInitialized());
+		}
+		
+		if (loadedValues != null && cell < loadedValues.length)
+		{
+			loadedValues[cell] = null;
+		}
+	}
+	
+	/**
+	 * Returns the measure values previously loaded for a cell, if the cell values have not changed since.
+	 * 
+	 * @param cell the cell index
+	 * @return the loaded measure values, or <code>null</code> if there are none
+	 * @see #setLoadedValues(int, MeasureValue[])
+	 */
+	public MeasureValue[] getLoadedValues(int cell)
+	{
+		return loadedValues == null || cell >= loadedValues.length ? null : loadedValues[cell];
+	}
+	
+	/**
+	 * Keeps the measure values loaded for a cell so that they can be reused on subsequent accesses.
+	 * 
+	 * <p>
+	 * The values are discarded when new values are stored for the cell.
+	 * </p>
+	 * 
+	 * @param cell the cell index
+	 * @param values the loaded measure values
+	 */
+	public void setLoadedValues(int cell, MeasureValue[] values)
+	{
+		if (loadedValues == null || loadedValues.length < cellCount)
+		{
+			loadedValues = loadedValues == null ? new MeasureValue[cellCapacity][] 
+					: Arrays.copyOf(loadedValues, cellCapacity);
+		}
+		loadedValues[cell] = values;
+	}
+	
+	/**
+	 * Finds a cell in a map.
+	 * 
+	 * @param mapId the map id
+	 * @param bucketId the id of the cell bucket
+	 * @return the cell index, or -1 if the cell is not found
+	 */
+	public int findCell(int mapId, int bucketId)
+	{
+		long key = cellKey(mapId, bucketId);
+		int mask = tableKeys.length - 1;
+		for (int idx = hash(key) & mask; ; idx = (idx + 1) & mask)
+		{
+			long tableKey = tableKeys[idx];
+			if (tableKey == key)
+			{
+				return tableCells[idx];
+			}
+			if (tableKey == 0)
+			{
+				return -1;
+			}
+		}
+	}
+	
+	/**
+	 * Associates a cell with a map and bucket.
+	 * 
+	 * @param mapId the map id
+	 * @param bucketId the id of the cell bucket
+	 * @param cell the cell index
+	 */
+	public void putCell(int mapId, int bucketId, int cell)
+	{
+		if (tableSize >= tableThreshold)
+		{
+			growTable();
+		}
+		
+		if (putTableEntry(cellKey(mapId, bucketId), cell))
+		{
+			++tableSize;
+		}
+	}
+	
+	private boolean putTableEntry(long key, int cell)
+	{
+		int mask = tableKeys.length - 1;
+		for (int idx = hash(key) & mask; ; idx = (idx + 1) & mask)
+		{
+			long tableKey = tableKeys[idx];
+			if (tableKey == key)
+			{
+				tableCells[idx] = cell;
+				return false;
+			}
+			if (tableKey == 0)
+			{
+				tableKeys[idx] = key;
+				tableCells[idx] = cell;
+				return true;
+			}
+		}
+	}
+	
+	private void growTable()
+	{
+		long[] oldKeys = tableKeys;
+		int[] oldCells = tableCells;
+		
+		tableKeys = new long[oldKeys.length << 1];
+		tableCells = new int[oldKeys.length << 1];
+		tableThreshold = (int) (tableKeys.length * TABLE_LOAD_FACTOR);
+		for (int i = 0; i < oldKeys.length; i++)
+		{
+			if (oldKeys[i] != 0)
+			{
+				putTableEntry(oldKeys[i], oldCells[i]);
+			}
+		}
+	}
+	
+	private static long cellKey(int mapId, int bucketId)
+	{
+		return ((long) mapId << 32) | (bucketId & 0xFFFFFFFFL);
+	}
+	
+	private static int hash(long key)
+	{
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32));
+	}
+	
+	/**
+	 * A column of measure values.
+	 */
+	protected static abstract class Column
+	{
+		/**
+		 * Creates an empty column of the same type.
+		 */
+		abstract Column create(int capacity);
+		
+		abstract void grow(int capacity);
+		
+		abstract Object get(int cell);
+		
+		/**
+		 * Sets the value of a cell.
+		 * 
+		 * @return <code>false</code> if the value cannot be stored in the column
+		 */
+		abstract boolean set(int cell, Object value);
+	}
+	
+	protected static class ObjectColumn extends Column
+	{
+		private Object[] values;
+		
+		ObjectColumn()
+		{
+			this.values = new Object[0];
+		}
+		
+		ObjectColumn(int capacity)
+		{
+			this.values = new Object[capacity];
+		}
+		
+		ObjectColumn(Column column, int cellCount, int capacity)
+		{
+			this(capacity);
+			
+			for (int i = 0; i < cellCount; i++)
+			{
+				values[i] = column.get(i);
+			}
+		}
+
+		@Override
+		Column create(int capacity)
+		{
+			return new ObjectColumn(capacity);
+		}
+
+		@Override
+		void grow(int capacity)
+		{
+			values = Arrays.copyOf(values, capacity);
+		}
+
+		@Override
+		Object get(int cell)
+		{
+			return values[cell];
+		}
+
+		@Override
+		boolean set(int cell, Object value)
+		{
+			values[cell] = value;
+			return true;
+		}
+	}
+	
+	protected static class LongColumn extends Column
+	{
+		private final Class<?> valueClass;
+		private long[] values;
+		private final BitSet nullFlags;
+		
+		LongColumn(Class<?> valueClass)
+		{
+			this(valueClass, 0);
+		}
+		
+		LongColumn(Class<?> valueClass, int capacity)
+		{
+			this.valueClass = valueClass;
+			this.values = new long[capacity];
+			this.nullFlags = new BitSet();
+		}
+
+		@Override
+		Column create(int capacity)
+		{
+			return new LongColumn(valueClass, capacity);
+		}
+
+		@Override
+		void grow(int capacity)
+		{
+			values = Arrays.copyOf(values, capacity);
+		}
+
+		@Override
+		Object get(int cell)
+		{
+			if (nullFlags.get(cell))
+			{
+				return null;
+			}
+			
+			long value = values[cell];
+			Object boxed;
+			if (valueClass == Integer.class)
+			{
+				boxed = (int) value;
+			}
+			else if (valueClass == Long.class)
+			{
+				boxed = value;
+			}
+			else if (valueClass == Short.class)
+			{
+				boxed = (short) value;
+			}
+			else
+			{
+				boxed = (byte) value;
+			}
+			return boxed;
+		}
+
+		@Override
+		boolean set(int cell, Object value)
+		{
+			if (value == null)
+			{
+				nullFlags.set(cell);
+				return true;
+			}
+			
+			if (value.getClass() != valueClass)
+			{
+				return false;
+			}
+			
+			values[cell] = ((Number) value).longValue();
+			nullFlags.clear(cell);
+			return true;
+		}
+	}
+	
+	protected static class DoubleColumn extends Column
+	{
+		private final Class<?> valueClass;
+		private double[] values;
+		private final BitSet nullFlags;
+		
+		DoubleColumn(Class<?> valueClass)
+		{
+			this(valueClass, 0);
+		}
+		
+		DoubleColumn(Class<?> valueClass, int capacity)
+		{
+			this.valueClass = valueClass;
+			this.values = new double[capacity];
+			this.nullFlags = new BitSet();
+		}
+
+		@Override
+		Column create(int capacity)
+		{
+			return new DoubleColumn(valueClass, capacity);
+		}
+
+		@Override
+		void grow(int capacity)
+		{
+			values = Arrays.copyOf(values, capacity);
+		}
+
+		@Override
+		Object get(int cell)
+		{
+			if (nullFlags.get(cell))
+			{
+				return null;
+			}
+			
+			double value = values[cell];
+			// float values are exactly representable as doubles
+			return valueClass == Float.class ? (Object) (float) value : (Object) value;
+		}
+
+		@Override
+		boolean set(int cell, Object value)
+		{
+			if (value == null)
+			{
+				nullFlags.set(cell);
+				return true;
+			}
+			
+			if (value.getClass() != valueClass)
+			{
+				return false;
+			}
+			
+			values[cell] = ((Number) value).doubleValue();
+			nullFlags.clear(cell);
+			return true;
+		}
+	}
+}
@@ -31,13 +31,17 @@ import java.util.List;
 import java.util.Map;
 import java.util.TreeSet;
 
+import net.sf.jasperreports.annotations.properties.Property;
+import net.sf.jasperreports.annotations.properties.PropertyScope;
 import net.sf.jasperreports.crosstabs.fill.BucketOrderer;
 import net.sf.jasperreports.crosstabs.fill.calculation.BucketDefinition.Bucket;
 import net.sf.jasperreports.crosstabs.fill.calculation.BucketValueOrderDecorator.OrderPosition;
 import net.sf.jasperreports.crosstabs.fill.calculation.MeasureDefinition.MeasureValue;
 import net.sf.jasperreports.crosstabs.type.CrosstabTotalPositionEnum;
 import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRPropertiesUtil;
 import net.sf.jasperreports.engine.JRRuntimeException;
+import net.sf.jasperreports.properties.PropertyConstants;
 
 /**
  * @author Lucian Chirita (lucianc@users.sourceforge.net)
@@ -46,6 +50,27 @@ public class CrosstabBucketingService extends BucketingService implements Bucket
 {
 	public static final String EXCEPTION_MESSAGE_KEY_DATA_NOT_PROCESSED = "crosstabs.calculation.data.not.processed";
 	
+	/**
+	 * Property that determines whether the crosstab data cells are kept in a columnar store.
+	 * 
+	 * <p>
+	 * The columnar store encodes the values of the last crosstab group as integer ids
+	 * and keeps the accumulated measure values in arrays, using primitive arrays for numeric
+	 * sum, count and average calculations.
+	 * The store is only used when all the crosstab measures use the built-in incrementers.
+	 * </p>
+	 * 
+	 * @see ColumnarBucketStore
+	 */
+	@Property(
+			category = PropertyConstants.CATEGORY_CROSSTAB,
+			valueType = Boolean.class,
+			defaultValue = PropertyConstants.BOOLEAN_FALSE,
+			scopes = {PropertyScope.CONTEXT},
+			sinceVersion = PropertyConstants.VERSION_6_8_0
+			)
+	public static final String PROPERTY_COLUMNAR_STORE = JRPropertiesUtil.PROPERTY_PREFIX + "crosstab.columnar.store";
+	
 	protected HeaderCell[][] colHeaders;
 	protected HeaderCell[][] rowHeaders;
 	protected CrosstabCell[][] cells;
@@ -57,7 +82,8 @@ public class CrosstabBucketingService extends BucketingService implements Bucket
 			boolean sorted, boolean[][] retrieveTotal)
 	{
 		super(serviceContext, rowBuckets, columnBuckets, measures, 
-				sorted, retrieveTotal);
+				sorted, retrieveTotal, 
+				JRPropertiesUtil.getInstance(serviceContext.getJasperReportsContext()).getBooleanProperty(PROPERTY_COLUMNAR_STORE));
 	}
 	
 	public void createCrosstab() throws JRException
@@ -230,6 +230,19 @@ public class MeasureDefinition
 			return value;
 		}
 		
+		/**
+		 * Restores a previously accumulated value.
+		 * 
+		 * @param value the accumulated value
+		 * @param initialized whether the value is the initial value of the measure
+		 * @see ColumnarBucketStore
+		 */
+		protected void restoreValue(Object value, boolean initialized)
+		{
+			this.value = value;
+			setInitialized(initialized);
+		}
+		
 		@Override
 		public String toString()
 		{
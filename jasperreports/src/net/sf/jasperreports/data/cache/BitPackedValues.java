@@ -0,0 +1,172 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.data.cache;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+import net.sf.jasperreports.engine.JRConstants;
+
+
+/**
+ * Integral values packed using a fixed number of bits per value.
+ * <p>
+ * The values are stored as offsets from a frame of reference, which are
+ * multiplied by a linear factor and added to the linear offset when read.
+ * </p>
+ */
+public class BitPackedValues implements ColumnValues, Serializable
+{
+
+	private static final long serialVersionUID = JRConstants.SERIAL_VERSION_UID;
+
+	private int size;
+	private int bitWidth;
+	private long[] words;
+	private long linearFactor;
+	private long linearOffset;
+	
+	public BitPackedValues(int size, long[] values, int bitWidth, long linearFactor, long linearOffset)
+	{
+		this.size = size;
+		this.bitWidth = bitWidth;
+		this.words = pack(size, values, bitWidth);
+		this.linearFactor = linearFactor;
+		this.linearOffset = linearOffset;
+	}
+	
+	/**
+	 * Returns the number of bits needed to store a non negative value.
+	 * 
+	 * @param maxValue the maximum value to store
+	 * @return the number of bits, at least 1
+	 */
+	public static int bitWidth(long maxValue)
+	{
+		return Math.max(1, Long.SIZE - Long.numberOfLeadingZeros(maxValue));
+	}
+	
+	/**
+	 * Packs non negative values into an array of words.
+	 * 
+	 * @param count the number of values to pack
+	 * @param values the values
+	 * @param bitWidth the number of bits used for each value
+	 * @return the packed words
+	 */
+	public static long[] pack(int count, long[] values, int bitWidth)
+	{
+		long[] words = new long[(int) (((long) count * bitWidth + Long.SIZE - 1) >>> 6)];
+		for (int i = 0; i < count; i++)
+		{
+			long bitIndex = (long) i * bitWidth;
+			int word = (int) (bitIndex >>> 6);
+			int shift = (int) (bitIndex & 63);
+			words[word] |= values[i] << shift;
+			if (shift + bitWidth > Long.SIZE)
+			{
+				words[word + 1] |= values[i] >>> (Long.SIZE - shift);
+			}
+		}
+		return words;
+	}
+	
+	/**
+	 * Reads a value from packed words.
+	 * 
+	 * @param words the packed words
+	 * @param bitWidth the number of bits used for each value
+	 * @param index the value index
+	 * @return the value
+	 */
+	public static long unpack(long[] words, int bitWidth, int index)
+	{
+		long bitIndex = (long) index * bitWidth;
+		int word = (int) (bitIndex >>> 6);
+		int shift = (int) (bitIndex & 63);
+		long value = words[word] >>> shift;
+		if (shift + bitWidth > Long.SIZE)
+		{
+			value |= words[word + 1] << (Long.SIZE - shift);
+		}
+		return bitWidth == Long.SIZE ? value : value & ((1L << bitWidth) - 1);
+	}
+	
+	private void writeObject(java.io.ObjectOutputStream out) throws IOException
+	{
+		out.writeInt(size);
+		out.writeInt(bitWidth);
+		out.writeLong(linearFactor);
+		out.writeLong(linearOffset);
+		
+		out.writeInt(words.length);
+		for (int i = 0; i < words.length; i++)
+		{
+			out.writeLong(words[i]);
+		}
+	}
+	
+	private void readObject(java.io.ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		size = in.readInt();
+		bitWidth = in.readInt();
+		linearFactor = in.readLong();
+		linearOffset = in.readLong();
+		
+		int wordCount = in.readInt();
+		words = new long[wordCount];
+		for (int i = 0; i < wordCount; i++)
+		{
+			words[i] = in.readLong();
+		}
+	}
+	
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public ColumnValuesIterator iterator()
+	{
+		return new ValuesIterator();
+	}
+
+	protected class ValuesIterator extends IndexColumnValueIterator
+	{
+
+		public ValuesIterator()
+		{
+			super(size);
+		}
+
+		@Override
+		public Object get()
+		{
+			return unpack(words, bitWidth, currentIndex) * linearFactor + linearOffset;
+		}
+		
+	}
+}
@@ -46,11 +46,13 @@ public class ColumnDataCacheHandler implements DataCacheHandler
 	private static final Log log = LogFactory.getLog(ColumnDataCacheHandler.class);
 
 	private final static int DEFAULT_BUFFER_STORE_SIZE = 4096;
+	private final static int DEFAULT_DICTIONARY_SIZE = 4096;
 	
 	private boolean recordingEnabled;
 
 	private volatile DataSnapshot snapshot;
 	private int bufferStoreSize = DEFAULT_BUFFER_STORE_SIZE;
+	private int dictionarySize = DEFAULT_DICTIONARY_SIZE;
 	
 	public ColumnDataCacheHandler()
 	{
@@ -139,7 +141,8 @@ public class ColumnDataCacheHandler implements DataCacheHandler
 		}
 		else if (String.class.equals(type))
 		{
-			bufferStore = new ObjectArrayStore<String>(String.class, bufferStoreSize); 
+			// low cardinality string columns are common, using a column dictionary
+			bufferStore = new DictionaryStore<String>(String.class, bufferStoreSize, dictionarySize); 
 		}
 		else if (java.sql.Date.class.isAssignableFrom(type))//allow subclasses
 		{
@@ -27,6 +27,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 
 import net.sf.jasperreports.engine.JRConstants;
 import net.sf.jasperreports.engine.JRRuntimeException;
@@ -113,6 +114,16 @@ public class ColumnDataSnapshot implements DataSnapshot, Serializable
 		cachedData.put(key, data);
 	}
 
+	public Set<Object> getCachedDataKeys()
+	{
+		return cachedData.keySet();
+	}
+
+	public ColumnCacheData getColumnCacheData(Object key)
+	{
+		return cachedData.get(key);
+	}
+
 	@Override
 	public boolean isPersistable()
 	{
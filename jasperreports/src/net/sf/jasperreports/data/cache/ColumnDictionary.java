@@ -0,0 +1,144 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.data.cache;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.sf.jasperreports.engine.JRConstants;
+
+
+/**
+ * Dictionary of distinct column values, shared by the blocks of a column.
+ * <p>
+ * Codes are assigned to values in the order in which they are first added,
+ * until the dictionary reaches its maximum size.
+ * </p>
+ * 
+ * @see DictionaryStore
+ */
+public class ColumnDictionary implements Serializable
+{
+
+	private static final long serialVersionUID = JRConstants.SERIAL_VERSION_UID;
+	
+	private static final int INITIAL_SIZE = 16;
+	
+	private Object[] values;
+	private int size;
+	
+	private transient int maxSize;
+	private transient Map<Object, Integer> codes;
+	
+	public ColumnDictionary(int maxSize)
+	{
+		this.values = new Object[Math.min(INITIAL_SIZE, maxSize)];
+		this.size = 0;
+		this.maxSize = maxSize;
+		this.codes = new HashMap<Object, Integer>();
+	}
+	
+	private void writeObject(java.io.ObjectOutputStream out) throws IOException
+	{
+		out.writeInt(size);
+		for (int i = 0; i < size; i++)
+		{
+			out.writeObject(values[i]);
+		}
+	}
+	
+	private void readObject(java.io.ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		size = in.readInt();
+		values = new Object[size];
+		for (int i = 0; i < size; i++)
+		{
+			values[i] = in.readObject();
+		}
+	}
+
+	/**
+	 * Returns the code of a value, adding the value to the dictionary if needed.
+	 * 
+	 * @param value the value
+	 * @return the value code, or <code>-1</code> if the value is not in the dictionary
+	 * and the dictionary is full
+	 */
+	public int code(Object value)
+	{
+		if (codes == null)
+		{
+			return -1;
+		}
+		
+		Integer code = codes.get(value);
+		if (code != null)
+		{
+			return code;
+		}
+		
+		if (size >= maxSize)
+		{
+			return -1;
+		}
+		
+		if (size == values.length)
+		{
+			values = Arrays.copyOf(values, Math.min(maxSize, values.length * 2));
+		}
+		
+		values[size] = value;
+		codes.put(value, size);
+		return size++;
+	}
+	
+	/**
+	 * Returns the value for a code.
+	 * 
+	 * @param code the value code
+	 * @return the value
+	 */
+	public Object get(int code)
+	{
+		return values[code];
+	}
+	
+	public int size()
+	{
+		return size;
+	}
+	
+	/**
+	 * Releases the structures used to add values to the dictionary.
+	 * No values can be added after the dictionary is closed.
+	 */
+	public void close()
+	{
+		codes = null;
+	}
+	
+}
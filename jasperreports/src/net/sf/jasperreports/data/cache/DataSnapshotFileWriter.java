@@ -0,0 +1,537 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.data.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Writes column data snapshots to files that can be memory mapped by {@link MappedDataSnapshot}.
+ * <p>
+ * Field values are written column by column in fixed width or offset indexed sections,
+ * so that they can be read directly from the mapped file when the snapshot is replayed.
+ * Integral and date values are stored as offsets from the column minimum, using the
+ * narrowest width that fits the column range.
+ * Dataset keys, parameter values and the column layout are serialized at the end of the file.
+ * </p>
+ * 
+ * @see MappedDataSnapshot
+ */
+public class DataSnapshotFileWriter
+{
+	
+	private static final Log log = LogFactory.getLog(DataSnapshotFileWriter.class);
+	
+	public static final String EXCEPTION_MESSAGE_KEY_UNSUPPORTED_CACHE_DATA = "data.cache.unsupported.cache.data";
+	
+	private static final int ALIGNMENT = 8;
+
+	/**
+	 * Writes a data snapshot to a file.
+	 * 
+	 * @param snapshot the data snapshot
+	 * @param file the destination file
+	 * @throws DataSnapshotException
+	 */
+	public void write(ColumnDataSnapshot snapshot, File file) throws DataSnapshotException
+	{
+		OutputStream fileOut = null;
+		try
+		{
+			fileOut = new FileOutputStream(file);
+			write(snapshot, fileOut);
+			fileOut.close();
+			fileOut = null;
+		}
+		catch (IOException e)
+		{
+			throw new DataSnapshotException(e);
+		}
+		finally
+		{
+			if (fileOut != null)
+			{
+				try
+				{
+					fileOut.close();
+				}
+				catch (IOException e)
+				{
+					// ignore
+				}
+			}
+		}
+		
+		if (log.isDebugEnabled())
+		{
+			log.debug("wrote data snapshot of " + file.length() + " bytes to " + file);
+		}
+	}
+
+	/**
+	 * Writes a data snapshot to a stream.
+	 * 
+	 * @param snapshot the data snapshot
+	 * @param output the destination stream, not closed by this method
+	 * @throws DataSnapshotException
+	 */
+	public void write(ColumnDataSnapshot snapshot, OutputStream output) throws DataSnapshotException
+	{
+		if (!snapshot.isPersistable())
+		{
+			throw 
+				new DataSnapshotException(
+					ColumnDataSnapshot.EXCEPTION_MESSAGE_KEY_SNAPSHOT_CANNOT_BE_PERSISTED,
+					(Object[])null);
+		}
+		
+		try
+		{
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+			out.writeInt(MappedDataSnapshot.FILE_MAGIC);
+			out.writeInt(MappedDataSnapshot.FILE_VERSION);
+			
+			ByteArrayOutputStream layoutBytes = new ByteArrayOutputStream();
+			ObjectOutputStream layout = new ObjectOutputStream(layoutBytes);
+			layout.writeInt(snapshot.getCachedDataKeys().size());
+			for (Object key : snapshot.getCachedDataKeys())
+			{
+				ColumnCacheData data = snapshot.getColumnCacheData(key);
+				if (!(data instanceof StandardColumnCacheData))
+				{
+					throw 
+						new DataSnapshotException(
+							EXCEPTION_MESSAGE_KEY_UNSUPPORTED_CACHE_DATA,
+							new Object[]{data == null ? null : data.getClass().getName()});
+				}
+				
+				writeCacheData(key, (StandardColumnCacheData) data, out, layout);
+			}
+			layout.close();
+			
+			align(out);
+			int layoutOffset = checkedOffset(out);
+			layoutBytes.writeTo(out);
+			
+			out.writeInt(layoutOffset);
+			out.writeInt(layoutBytes.size());
+			out.writeInt(MappedDataSnapshot.FILE_MAGIC);
+			checkedOffset(out);
+			out.flush();
+		}
+		catch (IOException e)
+		{
+			throw new DataSnapshotException(e);
+		}
+	}
+
+	protected void writeCacheData(Object key, StandardColumnCacheData data, 
+			DataOutputStream out, ObjectOutputStream layout) throws IOException, DataSnapshotException
+	{
+		Map<String, Object> parameters = data.getParameters();
+		String[] fieldNames = data.getFieldNames();
+		ColumnValues[] values = data.getValues();
+		
+		layout.writeObject(key);
+		layout.writeObject(parameters);
+		layout.writeInt(data.size());
+		layout.writeObject(fieldNames);
+		for (int i = 0; i < values.length; i++)
+		{
+			writeColumn(values[i], out, layout);
+		}
+	}
+
+	protected void writeColumn(ColumnValues values, DataOutputStream out, ObjectOutputStream layout) throws IOException, DataSnapshotException
+	{
+		ColumnLayout column = analyze(values);
+		
+		if (column.hasNulls)
+		{
+			align(out);
+			column.nullsOffset = checkedOffset(out);
+			writeNulls(values, out);
+		}
+		
+		switch (column.type)
+		{
+		case MappedDataSnapshot.COLUMN_TYPE_NULL:
+			break;
+		case MappedDataSnapshot.COLUMN_TYPE_LONG:
+			align(out);
+			column.dataOffset = checkedOffset(out);
+			writeLongs(values, column, out);
+			break;
+		case MappedDataSnapshot.COLUMN_TYPE_TIMESTAMP:
+			align(out);
+			column.dataOffset = checkedOffset(out);
+			writeLongs(values, column, out);
+			align(out);
+			column.extraOffset = checkedOffset(out);
+			writeNanos(values, out);
+			break;
+		case MappedDataSnapshot.COLUMN_TYPE_DOUBLE:
+		case MappedDataSnapshot.COLUMN_TYPE_FLOAT:
+		case MappedDataSnapshot.COLUMN_TYPE_BOOLEAN:
+			align(out);
+			column.dataOffset = checkedOffset(out);
+			writeFixed(values, column, out);
+			break;
+		default:
+			writeVariable(values, column, out);
+			break;
+		}
+		
+		layout.writeByte(column.type);
+		layout.writeObject(column.valueClassName);
+		layout.writeInt(column.nullsOffset);
+		layout.writeInt(column.dataOffset);
+		layout.writeInt(column.extraOffset);
+		layout.writeLong(column.base);
+		layout.writeByte(column.width);
+	}
+	
+	protected ColumnLayout analyze(ColumnValues values)
+	{
+		ColumnLayout column = new ColumnLayout();
+		Class<?> valueClass = null;
+		boolean mixed = false;
+		long min = Long.MAX_VALUE;
+		long max = Long.MIN_VALUE;
+		
+		ColumnValuesIterator iterator = values.iterator();
+		while (iterator.next())
+		{
+			Object value = iterator.get();
+			if (value == null)
+			{
+				column.hasNulls = true;
+				continue;
+			}
+			
+			if (valueClass == null)
+			{
+				valueClass = value.getClass();
+			}
+			else if (valueClass != value.getClass())
+			{
+				mixed = true;
+			}
+			
+			if (!mixed)
+			{
+				Long longValue = toLong(value);
+				if (longValue != null)
+				{
+					min = Math.min(min, longValue);
+					max = Math.max(max, longValue);
+				}
+			}
+		}
+		
+		if (valueClass == null)
+		{
+			column.type = MappedDataSnapshot.COLUMN_TYPE_NULL;
+			return column;
+		}
+		
+		column.valueClassName = valueClass.getName();
+		column.type = mixed ? MappedDataSnapshot.COLUMN_TYPE_OBJECT : columnType(valueClass);
+		if (column.type == MappedDataSnapshot.COLUMN_TYPE_LONG
+				|| column.type == MappedDataSnapshot.COLUMN_TYPE_TIMESTAMP)
+		{
+			long range = max - min;
+			if (range < 0)
+			{
+				// overflow, storing the raw values
+				column.base = 0;
+				column.width = 8;
+			}
+			else
+			{
+				column.base = min;
+				column.width = (byte) (range <= 0xFFL ? 1 : (range <= 0xFFFFL ? 2 : (range <= 0xFFFFFFFFL ? 4 : 8)));
+			}
+		}
+		return column;
+	}
+
+	protected byte columnType(Class<?> valueClass)
+	{
+		if (valueClass == Integer.class || valueClass == Long.class 
+				|| valueClass == Short.class || valueClass == Byte.class 
+				|| valueClass == Character.class
+				|| valueClass == Date.class || valueClass == java.sql.Date.class 
+				|| valueClass == Time.class)
+		{
+			return MappedDataSnapshot.COLUMN_TYPE_LONG;
+		}
+		if (valueClass == Timestamp.class)
+		{
+			return MappedDataSnapshot.COLUMN_TYPE_TIMESTAMP;
+		}
+		if (valueClass == Double.class)
+		{
+			return MappedDataSnapshot.COLUMN_TYPE_DOUBLE;
+		}
+		if (valueClass == Float.class)
+		{
+			return MappedDataSnapshot.COLUMN_TYPE_FLOAT;
+		}
+		if (valueClass == Boolean.class)
+		{
+			return MappedDataSnapshot.COLUMN_TYPE_BOOLEAN;
+		}
+		if (valueClass == String.class)
+		{
+			return MappedDataSnapshot.COLUMN_TYPE_STRING;
+		}
+		if (valueClass == BigInteger.class)
+		{
+			return MappedDataSnapshot.COLUMN_TYPE_BIG_INTEGER;
+		}
+		if (valueClass == BigDecimal.class)
+		{
+			return MappedDataSnapshot.COLUMN_TYPE_BIG_DECIMAL;
+		}
+		return MappedDataSnapshot.COLUMN_TYPE_OBJECT;
+	}
+	
+	protected static Long toLong(Object value)
+	{
+		if (value instanceof Integer || value instanceof Long
+				|| value instanceof Short || value instanceof Byte)
+		{
+			return ((Number) value).longValue();
+		}
+		if (value instanceof Character)
+		{
+			return (long) ((Character) value).charValue();
+		}
+		if (value instanceof Date)
+		{
+			return ((Date) value).getTime();
+		}
+		return null;
+	}
+	
+	protected void writeNulls(ColumnValues values, DataOutputStream out) throws IOException
+	{
+		int bits = 0;
+		int count = 0;
+		ColumnValuesIterator iterator = values.iterator();
+		while (iterator.next())
+		{
+			if (iterator.get() == null)
+			{
+				bits |= 1 << (count & 7);
+			}
+			
+			++count;
+			if ((count & 7) == 0)
+			{
+				out.writeByte(bits);
+				bits = 0;
+			}
+		}
+		
+		if ((count & 7) != 0)
+		{
+			out.writeByte(bits);
+		}
+	}
+	
+	protected void writeLongs(ColumnValues values, ColumnLayout column, DataOutputStream out) throws IOException
+	{
+		ColumnValuesIterator iterator = values.iterator();
+		while (iterator.next())
+		{
+			Object value = iterator.get();
+			long stored = value == null ? 0 : toLong(value) - column.base;
+			switch (column.width)
+			{
+			case 1:
+				out.writeByte((int) stored);
+				break;
+			case 2:
+				out.writeShort((int) stored);
+				break;
+			case 4:
+				out.writeInt((int) stored);
+				break;
+			default:
+				out.writeLong(stored);
+				break;
+			}
+		}
+	}
+	
+	protected void writeNanos(ColumnValues values, DataOutputStream out) throws IOException
+	{
+		ColumnValuesIterator iterator = values.iterator();
+		while (iterator.next())
+		{
+			Timestamp value = (Timestamp) iterator.get();
+			out.writeInt(value == null ? 0 : value.getNanos());
+		}
+	}
+	
+	protected void writeFixed(ColumnValues values, ColumnLayout column, DataOutputStream out) throws IOException
+	{
+		int bits = 0;
+		int count = 0;
+		ColumnValuesIterator iterator = values.iterator();
+		while (iterator.next())
+		{
+			Object value = iterator.get();
+			switch (column.type)
+			{
+			case MappedDataSnapshot.COLUMN_TYPE_DOUBLE:
+				out.writeDouble(value == null ? 0d : (Double) value);
+				break;
+			case MappedDataSnapshot.COLUMN_TYPE_FLOAT:
+				out.writeFloat(value == null ? 0f : (Float) value);
+				break;
+			default:
+				if (value != null && (Boolean) value)
+				{
+					bits |= 1 << (count & 7);
+				}
+				
+				++count;
+				if ((count & 7) == 0)
+				{
+					out.writeByte(bits);
+					bits = 0;
+				}
+				break;
+			}
+		}
+		
+		if ((count & 7) != 0)
+		{
+			out.writeByte(bits);
+		}
+	}
+	
+	protected void writeVariable(ColumnValues values, ColumnLayout column, DataOutputStream out) throws IOException, DataSnapshotException
+	{
+		int[] offsets = new int[values.size() + 1];
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream bytesOut = new DataOutputStream(bytes);
+		
+		int index = 0;
+		ColumnValuesIterator iterator = values.iterator();
+		while (iterator.next())
+		{
+			Object value = iterator.get();
+			if (value != null)
+			{
+				switch (column.type)
+				{
+				case MappedDataSnapshot.COLUMN_TYPE_STRING:
+					bytesOut.write(((String) value).getBytes(StandardCharsets.UTF_8));
+					break;
+				case MappedDataSnapshot.COLUMN_TYPE_BIG_INTEGER:
+					bytesOut.write(((BigInteger) value).toByteArray());
+					break;
+				case MappedDataSnapshot.COLUMN_TYPE_BIG_DECIMAL:
+					BigDecimal decimal = (BigDecimal) value;
+					bytesOut.writeInt(decimal.scale());
+					bytesOut.write(decimal.unscaledValue().toByteArray());
+					break;
+				default:
+					ObjectOutputStream objectOut = new ObjectOutputStream(bytesOut);
+					objectOut.writeObject(value);
+					objectOut.flush();
+					break;
+				}
+			}
+			
+			++index;
+			offsets[index] = bytesOut.size();
+		}
+		
+		align(out);
+		column.dataOffset = checkedOffset(out);
+		for (int i = 0; i < offsets.length; i++)
+		{
+			out.writeInt(offsets[i]);
+		}
+		
+		column.extraOffset = checkedOffset(out);
+		bytes.writeTo(out);
+	}
+	
+	protected void align(DataOutputStream out) throws IOException
+	{
+		while (out.size() % ALIGNMENT != 0)
+		{
+			out.writeByte(0);
+		}
+	}
+	
+	protected int checkedOffset(DataOutputStream out) throws DataSnapshotException
+	{
+		// DataOutputStream.size() stops at Integer.MAX_VALUE
+		int offset = out.size();
+		if (offset == Integer.MAX_VALUE)
+		{
+			throw 
+				new DataSnapshotException(
+					MappedDataSnapshot.EXCEPTION_MESSAGE_KEY_SNAPSHOT_FILE_TOO_LARGE,
+					(Object[])null);
+		}
+		return offset;
+	}
+	
+	protected static class ColumnLayout
+	{
+		byte type;
+		String valueClassName;
+		boolean hasNulls;
+		int nullsOffset = -1;
+		int dataOffset = -1;
+		int extraOffset = -1;
+		long base;
+		byte width;
+	}
+	
+}
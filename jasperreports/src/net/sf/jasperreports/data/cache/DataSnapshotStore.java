@@ -0,0 +1,63 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.data.cache;
+
+/**
+ * Storage of recorded data snapshots that can be replayed by later fills.
+ * <p>
+ * Snapshots are identified by keys chosen by the caller, which would typically
+ * combine the report identity with the values of the parameters used to fill it.
+ * </p>
+ * 
+ * @see StoredDataSnapshotCacheHandler
+ */
+public interface DataSnapshotStore
+{
+
+	/**
+	 * Returns a stored data snapshot.
+	 * 
+	 * @param key the snapshot key
+	 * @return the stored snapshot, or <code>null</code> if no snapshot is stored for the key
+	 * @throws DataSnapshotException
+	 */
+	DataSnapshot getSnapshot(String key) throws DataSnapshotException;
+
+	/**
+	 * Stores a data snapshot, replacing any existing snapshot for the key.
+	 * 
+	 * @param key the snapshot key
+	 * @param snapshot the recorded snapshot
+	 * @throws DataSnapshotException
+	 */
+	void putSnapshot(String key, ColumnDataSnapshot snapshot) throws DataSnapshotException;
+
+	/**
+	 * Removes a stored data snapshot.
+	 * 
+	 * @param key the snapshot key
+	 */
+	void removeSnapshot(String key);
+	
+}
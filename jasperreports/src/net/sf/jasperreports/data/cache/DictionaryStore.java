@@ -0,0 +1,237 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.data.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+
+/**
+ * Buffer store that encodes values as codes in a dictionary shared by all the blocks of a column.
+ * <p>
+ * Blocks in which all values are found in the dictionary are stored as bit packed codes,
+ * blocks that contain values added after the dictionary has reached its maximum size 
+ * are stored as object arrays.
+ * </p>
+ * 
+ * @see ColumnDictionary
+ * @see DictionaryValues
+ */
+public class DictionaryStore<T> implements BufferColumnStore, ArrayStore
+{
+	
+	private static final Log log = LogFactory.getLog(DictionaryStore.class);
+	
+	private final Class<T> valuesType;
+	private final ColumnDictionary dictionary;
+	
+	private final Object[] values;
+	private final long[] codes;
+	private int count;
+	private boolean encoded;
+	private long maxCode;
+	
+	private RunLengthStore runLengthStore;
+	
+	public DictionaryStore(Class<T> valuesType, int size, int maxDictionarySize)
+	{
+		this.valuesType = valuesType;
+		this.dictionary = new ColumnDictionary(maxDictionarySize);
+		this.values = new Object[size];
+		this.codes = new long[size];
+		this.runLengthStore = new RunLengthStore(this);
+		reset();
+	}
+	
+	private void reset()
+	{
+		this.count = 0;
+		this.encoded = true;
+		this.maxCode = 0;
+		this.runLengthStore.reset();
+	}
+
+	@Override
+	public Class<?> getBaseValuesType()
+	{
+		return valuesType;
+	}
+
+	@Override
+	public int count()
+	{
+		return count;
+	}
+
+	@Override
+	public boolean valuesEqual(int idx1, int idx2)
+	{
+		if (codes[idx1] >= 0 && codes[idx2] >= 0)
+		{
+			return codes[idx1] == codes[idx2];
+		}
+		return values[idx1].equals(values[idx2]);
+	}
+
+	@Override
+	public void copyValue(int destIdx, int sourceIdx)
+	{
+		values[destIdx] = values[sourceIdx];
+		codes[destIdx] = codes[sourceIdx];
+	}
+
+	@Override
+	public void updateCount(int count)
+	{
+		this.count = count;
+	}
+
+	@Override
+	public void addValue(Object object)
+	{
+		int code = dictionary.code(object);
+		if (code < 0)
+		{
+			if (encoded && log.isDebugEnabled())
+			{
+				log.debug(this + ": dictionary full at " + dictionary.size() + " values");
+			}
+			
+			// the dictionary is full, no need to keep the lookup structures
+			dictionary.close();
+			encoded = false;
+			
+			values[count] = object;
+			codes[count] = -1;
+		}
+		else
+		{
+			// keeping the dictionary instance so that equal values share the same object
+			values[count] = dictionary.get(code);
+			codes[count] = code;
+			if (code > maxCode)
+			{
+				maxCode = code;
+			}
+		}
+		++count;
+		
+		runLengthStore.valueAdded();
+	}
+
+	@Override
+	public boolean full()
+	{
+		return count >= values.length;
+	}
+	
+	@Override
+	public void resetValues()
+	{
+		reset();
+	}
+	
+	@Override
+	public ColumnValues createValues()
+	{
+		if (count == 0)
+		{
+			// no values
+			if (log.isDebugEnabled())
+			{
+				log.debug(this + ": no values");
+			}
+			
+			return EmptyColumnValues.instance();
+		}
+		
+		if (count == 1)
+		{
+			if (log.isDebugEnabled())
+			{
+				log.debug(this + ": single value");
+			}
+			
+			return new SingleObjectValue(values[0]);
+		}
+		
+		if (runLengthStore.getRunCount() == 1)
+		{
+			if (log.isDebugEnabled())
+			{
+				log.debug(this + ": constant value of size " + count);
+			}
+			
+			return new ConstantColumnValue(count, values[0]);
+		}
+		
+		int originalCount = count;
+		ColumnValues colValues;
+		ColumnValues runLengthValues;
+		if (encoded)
+		{
+			runLengthValues = runLengthStore.applyRunLengths(ValueLength.getNumberLength(maxCode));
+			int bitWidth = BitPackedValues.bitWidth(maxCode);
+			
+			if (log.isDebugEnabled())
+			{
+				log.debug(this + ": creating dictionary values of size " + count 
+						+ ", code bits " + bitWidth + ", dictionary size " + dictionary.size());
+			}
+			
+			colValues = new DictionaryValues(count, codes, bitWidth, dictionary);
+		}
+		else
+		{
+			runLengthValues = runLengthStore.applyRunLengths(ValueLength.REFERENCE);
+			
+			if (log.isDebugEnabled())
+			{
+				log.debug(this + ": creating values of size " + count);
+			}
+			
+			Object[] objectValues = new Object[count];
+			System.arraycopy(values, 0, objectValues, 0, count);
+			colValues = new ObjectArrayValues(objectValues);
+		}
+		
+		ColumnValues finalValues;
+		if (runLengthValues == null)
+		{
+			finalValues = colValues;
+		}
+		else
+		{
+			finalValues = new RunLengthColumnValues(originalCount, colValues, runLengthValues);
+		}
+		return finalValues;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "DictionaryStore@" + hashCode();
+	}
+
+}
@@ -0,0 +1,109 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.data.cache;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+import net.sf.jasperreports.engine.JRConstants;
+
+
+/**
+ * Column values stored as bit packed dictionary codes.
+ * 
+ * @see DictionaryStore
+ */
+public class DictionaryValues implements ColumnValues, Serializable
+{
+
+	private static final long serialVersionUID = JRConstants.SERIAL_VERSION_UID;
+	
+	private int size;
+	private int bitWidth;
+	private long[] codes;
+	private ColumnDictionary dictionary;
+	
+	public DictionaryValues(int size, long[] codes, int bitWidth, ColumnDictionary dictionary)
+	{
+		this.size = size;
+		this.bitWidth = bitWidth;
+		this.codes = BitPackedValues.pack(size, codes, bitWidth);
+		this.dictionary = dictionary;
+	}
+	
+	private void writeObject(java.io.ObjectOutputStream out) throws IOException
+	{
+		out.writeInt(size);
+		out.writeInt(bitWidth);
+		out.writeInt(codes.length);
+		for (int i = 0; i < codes.length; i++)
+		{
+			out.writeLong(codes[i]);
+		}
+		// the dictionary is shared by the column blocks and written once
+		out.writeObject(dictionary);
+	}
+	
+	private void readObject(java.io.ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		size = in.readInt();
+		bitWidth = in.readInt();
+		int wordCount = in.readInt();
+		codes = new long[wordCount];
+		for (int i = 0; i < wordCount; i++)
+		{
+			codes[i] = in.readLong();
+		}
+		dictionary = (ColumnDictionary) in.readObject();
+	}
+	
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public ColumnValuesIterator iterator()
+	{
+		return new ValuesIterator();
+	}
+
+	protected class ValuesIterator extends IndexColumnValueIterator
+	{
+
+		public ValuesIterator()
+		{
+			super(size);
+		}
+
+		@Override
+		public Object get()
+		{
+			int code = (int) BitPackedValues.unpack(codes, bitWidth, currentIndex);
+			return dictionary.get(code);
+		}
+		
+	}
+}
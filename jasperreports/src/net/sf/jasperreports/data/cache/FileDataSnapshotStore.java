@@ -0,0 +1,379 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.data.cache;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import net.sf.jasperreports.annotations.properties.Property;
+import net.sf.jasperreports.annotations.properties.PropertyScope;
+import net.sf.jasperreports.engine.JRPropertiesUtil;
+import net.sf.jasperreports.engine.JasperReportsContext;
+import net.sf.jasperreports.engine.util.DigestUtils;
+import net.sf.jasperreports.properties.PropertyConstants;
+
+/**
+ * Data snapshot store that writes snapshots as files in a directory and maps them on retrieval.
+ * <p>
+ * The least recently used snapshots are evicted when the number of stored snapshots
+ * or their total size exceeds the configured limits.
+ * Snapshot files already present in the directory are picked up when the store is created,
+ * so that the store survives restarts.
+ * The access order is persisted as strictly increasing file modification times, 
+ * files having the same modification time (on file systems with coarse time resolution)
+ * are ordered by name.
+ * </p>
+ * 
+ * @see DataSnapshotFileWriter
+ * @see MappedDataSnapshot
+ */
+public class FileDataSnapshotStore implements DataSnapshotStore
+{
+	
+	private static final Log log = LogFactory.getLog(FileDataSnapshotStore.class);
+
+	/**
+	 * Property that specifies the maximum number of data snapshots kept by a file snapshot store.
+	 */
+	@Property(
+			category = PropertyConstants.CATEGORY_DATA_CACHE,
+			defaultValue = "100",
+			scopes = {PropertyScope.CONTEXT},
+			sinceVersion = PropertyConstants.VERSION_6_8_0,
+			valueType = Integer.class
+			)
+	public static final String PROPERTY_MAX_ENTRIES = JRPropertiesUtil.PROPERTY_PREFIX + "data.cache.snapshot.store.max.entries";
+
+	/**
+	 * Property that specifies the maximum total size in bytes of the data snapshot files
+	 * kept by a file snapshot store.
+	 * Zero or negative values mean that the size is not limited.
+	 */
+	@Property(
+			category = PropertyConstants.CATEGORY_DATA_CACHE,
+			defaultValue = "0",
+			scopes = {PropertyScope.CONTEXT},
+			sinceVersion = PropertyConstants.VERSION_6_8_0,
+			valueType = Long.class
+			)
+	public static final String PROPERTY_MAX_SIZE = JRPropertiesUtil.PROPERTY_PREFIX + "data.cache.snapshot.store.max.size";
+	
+	protected static final String FILE_SUFFIX = ".jrds";
+	private static final String TEMP_FILE_PREFIX = "snapshot";
+	private static final String TEMP_FILE_SUFFIX = ".tmp";
+	
+	private final JasperReportsContext jasperReportsContext;
+	private final File directory;
+	private final int maxEntries;
+	private final long maxSize;
+	
+	// file name to size, in access order
+	private final LinkedHashMap<String, Long> entries;
+	private long totalSize;
+	private long lastAccessTime;
+
+	/**
+	 * Creates a store having the limits specified by {@link #PROPERTY_MAX_ENTRIES} and {@link #PROPERTY_MAX_SIZE}.
+	 * 
+	 * @param jasperReportsContext the context
+	 * @param directory the directory where snapshot files are written
+	 */
+	public FileDataSnapshotStore(JasperReportsContext jasperReportsContext, File directory)
+	{
+		this(jasperReportsContext, directory, 
+				JRPropertiesUtil.getInstance(jasperReportsContext).getIntegerProperty(PROPERTY_MAX_ENTRIES),
+				JRPropertiesUtil.getInstance(jasperReportsContext).getLongProperty(PROPERTY_MAX_SIZE));
+	}
+
+	/**
+	 * Creates a store having explicit limits.
+	 * 
+	 * @param jasperReportsContext the context
+	 * @param directory the directory where snapshot files are written
+	 * @param maxEntries the maximum number of stored snapshots
+	 * @param maxSize the maximum total size of the snapshot files, zero or negative for no limit
+	 */
+	public FileDataSnapshotStore(JasperReportsContext jasperReportsContext, File directory, 
+			int maxEntries, long maxSize)
+	{
+		this.jasperReportsContext = jasperReportsContext;
+		this.directory = directory;
+		this.maxEntries = maxEntries;
+		this.maxSize = maxSize;
+		
+		this.entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+		this.totalSize = 0;
+		
+		directory.mkdirs();
+		loadEntries();
+	}
+	
+	protected void loadEntries()
+	{
+		File[] files = directory.listFiles(new FileFilter()
+		{
+			@Override
+			public boolean accept(File file)
+			{
+				return file.isFile() && file.getName().endsWith(FILE_SUFFIX);
+			}
+		});
+		
+		if (files == null)
+		{
+			return;
+		}
+		
+		// reading the times once, the files can be accessed by other stores while sorting
+		final Map<File, Long> modifiedTimes = new HashMap<File, Long>();
+		for (File file : files)
+		{
+			modifiedTimes.put(file, file.lastModified());
+		}
+		
+		// least recently used first, in the order in which the files were accessed
+		Arrays.sort(files, new Comparator<File>()
+		{
+			@Override
+			public int compare(File file1, File file2)
+			{
+				int order = Long.compare(modifiedTimes.get(file1), modifiedTimes.get(file2));
+				return order != 0 ? order : file1.getName().compareTo(file2.getName());
+			}
+		});
+		
+		synchronized (this)
+		{
+			for (File file : files)
+			{
+				long size = file.length();
+				entries.put(file.getName(), size);
+				totalSize += size;
+				lastAccessTime = Math.max(lastAccessTime, modifiedTimes.get(file));
+			}
+			
+			if (log.isDebugEnabled())
+			{
+				log.debug("found " + entries.size() + " data snapshots of " + totalSize + " bytes in " + directory);
+			}
+			
+			evict();
+		}
+	}
+	
+	protected void touch(File file)
+	{
+		// strictly increasing so that files accessed in the same millisecond keep their order
+		lastAccessTime = Math.max(System.currentTimeMillis(), lastAccessTime + 1);
+		if (!file.setLastModified(lastAccessTime) && log.isDebugEnabled())
+		{
+			log.debug("could not set the modification time of " + file);
+		}
+	}
+	
+	protected String fileName(String key)
+	{
+		return DigestUtils.instance().md5(key).toString() + FILE_SUFFIX;
+	}
+
+	@Override
+	public DataSnapshot getSnapshot(String key) throws DataSnapshotException
+	{
+		String fileName = fileName(key);
+		File file = new File(directory, fileName);
+		synchronized (this)
+		{
+			if (entries.get(fileName) == null)
+			{
+				if (log.isDebugEnabled())
+				{
+					log.debug("no data snapshot stored for " + key);
+				}
+				
+				return null;
+			}
+			
+			// updating the time so that the usage order is kept after restarts
+			touch(file);
+		}
+		
+		try
+		{
+			return MappedDataSnapshot.load(jasperReportsContext, file);
+		}
+		catch (DataSnapshotException e)
+		{
+			if (!file.exists())
+			{
+				// removed by another store instance or by an eviction
+				synchronized (this)
+				{
+					removeEntry(fileName);
+				}
+				return null;
+			}
+			
+			throw e;
+		}
+	}
+
+	@Override
+	public void putSnapshot(String key, ColumnDataSnapshot snapshot) throws DataSnapshotException
+	{
+		String fileName = fileName(key);
+		File tempFile;
+		try
+		{
+			tempFile = File.createTempFile(TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX, directory);
+		}
+		catch (IOException e)
+		{
+			throw new DataSnapshotException(e);
+		}
+		
+		try
+		{
+			new DataSnapshotFileWriter().write(snapshot, tempFile);
+			
+			synchronized (this)
+			{
+				Files.move(tempFile.toPath(), new File(directory, fileName).toPath(), 
+						StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				tempFile = null;
+				
+				removeEntry(fileName);
+				File file = new File(directory, fileName);
+				touch(file);
+				long size = file.length();
+				entries.put(fileName, size);
+				totalSize += size;
+				
+				if (log.isDebugEnabled())
+				{
+					log.debug("stored data snapshot of " + size + " bytes for " + key);
+				}
+				
+				evict();
+			}
+		}
+		catch (IOException e)
+		{
+			throw new DataSnapshotException(e);
+		}
+		finally
+		{
+			if (tempFile != null)
+			{
+				tempFile.delete();
+			}
+		}
+	}
+
+	@Override
+	public void removeSnapshot(String key)
+	{
+		String fileName = fileName(key);
+		synchronized (this)
+		{
+			if (removeEntry(fileName))
+			{
+				deleteFile(fileName);
+			}
+		}
+	}
+	
+	protected boolean removeEntry(String fileName)
+	{
+		Long size = entries.remove(fileName);
+		if (size == null)
+		{
+			return false;
+		}
+		
+		totalSize -= size;
+		return true;
+	}
+	
+	protected void evict()
+	{
+		Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+		while (it.hasNext() 
+				&& (entries.size() > maxEntries || (maxSize > 0 && totalSize > maxSize)))
+		{
+			Map.Entry<String, Long> entry = it.next();
+			it.remove();
+			totalSize -= entry.getValue();
+			
+			if (log.isDebugEnabled())
+			{
+				log.debug("evicting data snapshot " + entry.getKey());
+			}
+			
+			deleteFile(entry.getKey());
+		}
+	}
+	
+	protected void deleteFile(String fileName)
+	{
+		File file = new File(directory, fileName);
+		// already mapped snapshots remain readable after the file is deleted on most platforms
+		if (!file.delete() && file.exists())
+		{
+			log.warn("Could not delete data snapshot file " + file);
+		}
+	}
+	
+	/**
+	 * Returns the number of stored snapshots.
+	 * 
+	 * @return the number of stored snapshots
+	 */
+	public synchronized int size()
+	{
+		return entries.size();
+	}
+	
+	/**
+	 * Returns the total size of the stored snapshot files.
+	 * 
+	 * @return the total size in bytes
+	 */
+	public synchronized long getTotalSize()
+	{
+		return totalSize;
+	}
+
+}
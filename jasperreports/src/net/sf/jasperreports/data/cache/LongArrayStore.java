@@ -239,7 +239,7 @@ public class LongArrayStore implements BufferColumnStore, ArrayStore
 			log.debug(this + ": creating values of count " + count + ", value length " + valueLength);
 		}
 		
-		ColumnValues colValues = NumberValuesUtils.instance().toValues(count, values, valueLength, linearFactor, linearOffset);
+		ColumnValues colValues = NumberValuesUtils.instance().toValues(count, values, max, linearFactor, linearOffset);
 		if (valueTransformer != null)
 		{
 			colValues = new TransformedColumnValues(colValues, valueTransformer);
@@ -0,0 +1,382 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.data.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Date;
+
+import net.sf.jasperreports.engine.JRRuntimeException;
+import net.sf.jasperreports.engine.JasperReportsContext;
+import net.sf.jasperreports.engine.util.ContextClassLoaderObjectInputStream;
+
+/**
+ * Column values read from a section of a mapped data snapshot file.
+ * <p>
+ * Values are decoded using absolute reads on the buffer, so the same instance
+ * can be iterated concurrently.
+ * </p>
+ * 
+ * @see MappedDataSnapshot
+ */
+public abstract class MappedColumnValues implements ColumnValues
+{
+	
+	public static final String EXCEPTION_MESSAGE_KEY_SNAPSHOT_VALUE_READ_ERROR = "data.cache.snapshot.value.read.error";
+
+	private final int size;
+	private final ByteBuffer nulls;
+	
+	protected MappedColumnValues(int size, ByteBuffer nulls)
+	{
+		this.size = size;
+		this.nulls = nulls;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public ColumnValuesIterator iterator()
+	{
+		return new ValuesIterator();
+	}
+	
+	protected boolean isNull(int index)
+	{
+		return nulls != null && bit(nulls, index);
+	}
+	
+	protected static boolean bit(ByteBuffer bits, int index)
+	{
+		return (bits.get(index >>> 3) & (1 << (index & 7))) != 0;
+	}
+	
+	protected abstract Object value(int index);
+
+	protected class ValuesIterator extends IndexColumnValueIterator
+	{
+
+		public ValuesIterator()
+		{
+			super(size);
+		}
+
+		@Override
+		public Object get()
+		{
+			return isNull(currentIndex) ? null : value(currentIndex);
+		}
+		
+	}
+	
+	protected static class NullValues extends MappedColumnValues
+	{
+		public NullValues(int size)
+		{
+			super(size, null);
+		}
+
+		@Override
+		protected Object value(int index)
+		{
+			return null;
+		}
+	}
+	
+	protected static class LongValues extends MappedColumnValues
+	{
+		private static final byte TYPE_INTEGER = 0;
+		private static final byte TYPE_LONG = 1;
+		private static final byte TYPE_SHORT = 2;
+		private static final byte TYPE_BYTE = 3;
+		private static final byte TYPE_CHARACTER = 4;
+		private static final byte TYPE_DATE = 5;
+		private static final byte TYPE_SQL_DATE = 6;
+		private static final byte TYPE_TIME = 7;
+		
+		private final ByteBuffer values;
+		private final byte width;
+		private final long base;
+		private final byte valueType;
+		
+		public LongValues(int size, ByteBuffer nulls, ByteBuffer values, byte width, long base, 
+				String valueClassName) throws DataSnapshotException
+		{
+			super(size, nulls);
+			
+			this.values = values;
+			this.width = width;
+			this.base = base;
+			this.valueType = valueType(valueClassName);
+		}
+		
+		private static byte valueType(String valueClassName) throws DataSnapshotException
+		{
+			if (Integer.class.getName().equals(valueClassName))
+			{
+				return TYPE_INTEGER;
+			}
+			if (Long.class.getName().equals(valueClassName))
+			{
+				return TYPE_LONG;
+			}
+			if (Short.class.getName().equals(valueClassName))
+			{
+				return TYPE_SHORT;
+			}
+			if (Byte.class.getName().equals(valueClassName))
+			{
+				return TYPE_BYTE;
+			}
+			if (Character.class.getName().equals(valueClassName))
+			{
+				return TYPE_CHARACTER;
+			}
+			if (Date.class.getName().equals(valueClassName))
+			{
+				return TYPE_DATE;
+			}
+			if (java.sql.Date.class.getName().equals(valueClassName))
+			{
+				return TYPE_SQL_DATE;
+			}
+			if (Time.class.getName().equals(valueClassName))
+			{
+				return TYPE_TIME;
+			}
+			throw 
+				new DataSnapshotException(
+					MappedDataSnapshot.EXCEPTION_MESSAGE_KEY_INVALID_SNAPSHOT_FILE,
+					new Object[]{valueClassName});
+		}
+
+		protected long longValue(int index)
+		{
+			return longValue(values, width, base, index);
+		}
+		
+		protected static long longValue(ByteBuffer values, byte width, long base, int index)
+		{
+			long stored;
+			switch (width)
+			{
+			case 1:
+				stored = values.get(index) & 0xFFL;
+				break;
+			case 2:
+				stored = values.getShort(index << 1) & 0xFFFFL;
+				break;
+			case 4:
+				stored = values.getInt(index << 2) & 0xFFFFFFFFL;
+				break;
+			default:
+				stored = values.getLong(index << 3);
+				break;
+			}
+			return base + stored;
+		}
+
+		@Override
+		protected Object value(int index)
+		{
+			long value = longValue(index);
+			switch (valueType)
+			{
+			case TYPE_INTEGER:
+				return (int) value;
+			case TYPE_LONG:
+				return value;
+			case TYPE_SHORT:
+				return (short) value;
+			case TYPE_BYTE:
+				return (byte) value;
+			case TYPE_CHARACTER:
+				return (char) value;
+			case TYPE_DATE:
+				return new Date(value);
+			case TYPE_SQL_DATE:
+				return new java.sql.Date(value);
+			default:
+				return new Time(value);
+			}
+		}
+	}
+	
+	protected static class TimestampValues extends MappedColumnValues
+	{
+		private final ByteBuffer values;
+		private final byte width;
+		private final long base;
+		private final ByteBuffer nanos;
+		
+		public TimestampValues(int size, ByteBuffer nulls, ByteBuffer values, byte width, long base, 
+				ByteBuffer nanos)
+		{
+			super(size, nulls);
+			
+			this.values = values;
+			this.width = width;
+			this.base = base;
+			this.nanos = nanos;
+		}
+
+		@Override
+		protected Object value(int index)
+		{
+			Timestamp value = new Timestamp(LongValues.longValue(values, width, base, index));
+			value.setNanos(nanos.getInt(index << 2));
+			return value;
+		}
+	}
+	
+	protected static class DoubleValues extends MappedColumnValues
+	{
+		private final ByteBuffer values;
+		
+		public DoubleValues(int size, ByteBuffer nulls, ByteBuffer values)
+		{
+			super(size, nulls);
+			
+			this.values = values;
+		}
+
+		@Override
+		protected Object value(int index)
+		{
+			return values.getDouble(index << 3);
+		}
+	}
+	
+	protected static class FloatValues extends MappedColumnValues
+	{
+		private final ByteBuffer values;
+		
+		public FloatValues(int size, ByteBuffer nulls, ByteBuffer values)
+		{
+			super(size, nulls);
+			
+			this.values = values;
+		}
+
+		@Override
+		protected Object value(int index)
+		{
+			return values.getFloat(index << 2);
+		}
+	}
+	
+	protected static class BooleanValues extends MappedColumnValues
+	{
+		private final ByteBuffer values;
+		
+		public BooleanValues(int size, ByteBuffer nulls, ByteBuffer values)
+		{
+			super(size, nulls);
+			
+			this.values = values;
+		}
+
+		@Override
+		protected Object value(int index)
+		{
+			return bit(values, index) ? Boolean.TRUE : Boolean.FALSE;
+		}
+	}
+	
+	protected static class BytesValues extends MappedColumnValues
+	{
+		private final ByteBuffer offsets;
+		private final ByteBuffer bytes;
+		private final byte type;
+		private final JasperReportsContext jasperReportsContext;
+		
+		public BytesValues(int size, ByteBuffer nulls, ByteBuffer offsets, ByteBuffer bytes, byte type,
+				JasperReportsContext jasperReportsContext)
+		{
+			super(size, nulls);
+			
+			this.offsets = offsets;
+			this.bytes = bytes;
+			this.type = type;
+			this.jasperReportsContext = jasperReportsContext;
+		}
+
+		@Override
+		protected Object value(int index)
+		{
+			int start = offsets.getInt(index << 2);
+			int end = offsets.getInt((index + 1) << 2);
+			byte[] valueBytes = new byte[end - start];
+			// reading from a duplicate so that the shared buffer position is not changed
+			ByteBuffer valueBuffer = bytes.duplicate();
+			valueBuffer.position(start);
+			valueBuffer.get(valueBytes);
+			
+			switch (type)
+			{
+			case MappedDataSnapshot.COLUMN_TYPE_STRING:
+				return new String(valueBytes, StandardCharsets.UTF_8);
+			case MappedDataSnapshot.COLUMN_TYPE_BIG_INTEGER:
+				return new BigInteger(valueBytes);
+			case MappedDataSnapshot.COLUMN_TYPE_BIG_DECIMAL:
+				int scale = valueBuffer.getInt(start);
+				byte[] unscaled = new byte[valueBytes.length - 4];
+				System.arraycopy(valueBytes, 4, unscaled, 0, unscaled.length);
+				return new BigDecimal(new BigInteger(unscaled), scale);
+			default:
+				return readObject(valueBytes);
+			}
+		}
+		
+		protected Object readObject(byte[] valueBytes)
+		{
+			try
+			{
+				ObjectInputStream in = new ContextClassLoaderObjectInputStream(jasperReportsContext, 
+						new ByteArrayInputStream(valueBytes));
+				return in.readObject();
+			}
+			catch (IOException | ClassNotFoundException e)
+			{
+				throw 
+					new JRRuntimeException(
+						EXCEPTION_MESSAGE_KEY_SNAPSHOT_VALUE_READ_ERROR,
+						null,
+						e);
+			}
+		}
+	}
+	
+}
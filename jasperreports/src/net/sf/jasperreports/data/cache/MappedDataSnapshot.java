@@ -0,0 +1,286 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.data.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import net.sf.jasperreports.engine.JasperReportsContext;
+import net.sf.jasperreports.engine.data.IndexedDataSource;
+import net.sf.jasperreports.engine.util.ContextClassLoaderObjectInputStream;
+
+/**
+ * Data snapshot that reads field values directly from a memory mapped file
+ * written by {@link DataSnapshotFileWriter}.
+ * <p>
+ * Only the dataset keys, parameter values and column layout are deserialized when the
+ * file is loaded, field values are decoded from the mapped buffer as records are iterated.
+ * The file can be deleted or replaced after it has been loaded without affecting the snapshot.
+ * </p>
+ * 
+ * @see DataSnapshotFileWriter
+ */
+public class MappedDataSnapshot implements DataSnapshot
+{
+	
+	private static final Log log = LogFactory.getLog(MappedDataSnapshot.class);
+	
+	public static final String EXCEPTION_MESSAGE_KEY_INVALID_SNAPSHOT_FILE = "data.cache.invalid.snapshot.file";
+	public static final String EXCEPTION_MESSAGE_KEY_SNAPSHOT_FILE_TOO_LARGE = "data.cache.snapshot.file.too.large";
+
+	protected static final int FILE_MAGIC = 0x4A524453;
+	protected static final int FILE_VERSION = 1;
+	private static final int TRAILER_SIZE = 12;
+	
+	protected static final byte COLUMN_TYPE_NULL = 0;
+	protected static final byte COLUMN_TYPE_LONG = 1;
+	protected static final byte COLUMN_TYPE_TIMESTAMP = 2;
+	protected static final byte COLUMN_TYPE_DOUBLE = 3;
+	protected static final byte COLUMN_TYPE_FLOAT = 4;
+	protected static final byte COLUMN_TYPE_BOOLEAN = 5;
+	protected static final byte COLUMN_TYPE_STRING = 6;
+	protected static final byte COLUMN_TYPE_BIG_INTEGER = 7;
+	protected static final byte COLUMN_TYPE_BIG_DECIMAL = 8;
+	protected static final byte COLUMN_TYPE_OBJECT = 9;
+	
+	private final JasperReportsContext jasperReportsContext;
+	private final Map<Object, ColumnCacheData> cachedData;
+
+	protected MappedDataSnapshot(JasperReportsContext jasperReportsContext)
+	{
+		this.jasperReportsContext = jasperReportsContext;
+		this.cachedData = new LinkedHashMap<Object, ColumnCacheData>();
+	}
+	
+	/**
+	 * Maps a data snapshot file.
+	 * 
+	 * @param jasperReportsContext the context used to resolve classes of serialized values
+	 * @param file the data snapshot file
+	 * @return the mapped data snapshot
+	 * @throws DataSnapshotException if the file could not be read or does not contain a data snapshot
+	 */
+	public static MappedDataSnapshot load(JasperReportsContext jasperReportsContext, File file) throws DataSnapshotException
+	{
+		MappedByteBuffer buffer;
+		try
+		{
+			RandomAccessFile randomFile = new RandomAccessFile(file, "r");
+			try
+			{
+				FileChannel channel = randomFile.getChannel();
+				long size = channel.size();
+				if (size > Integer.MAX_VALUE)
+				{
+					throw 
+						new DataSnapshotException(
+							EXCEPTION_MESSAGE_KEY_SNAPSHOT_FILE_TOO_LARGE,
+							(Object[])null);
+				}
+				
+				// the mapping stays valid after the channel is closed
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			}
+			finally
+			{
+				randomFile.close();
+			}
+		}
+		catch (IOException e)
+		{
+			throw new DataSnapshotException(e);
+		}
+		
+		MappedDataSnapshot snapshot = new MappedDataSnapshot(jasperReportsContext);
+		snapshot.read(buffer, file);
+		
+		if (log.isDebugEnabled())
+		{
+			log.debug("mapped data snapshot of " + buffer.capacity() + " bytes from " + file);
+		}
+		
+		return snapshot;
+	}
+	
+	protected void read(ByteBuffer buffer, Object source) throws DataSnapshotException
+	{
+		int size = buffer.capacity();
+		if (size < 8 + TRAILER_SIZE 
+				|| buffer.getInt(0) != FILE_MAGIC 
+				|| buffer.getInt(4) != FILE_VERSION
+				|| buffer.getInt(size - 4) != FILE_MAGIC)
+		{
+			throw invalidFile(source, null);
+		}
+		
+		int layoutOffset = buffer.getInt(size - TRAILER_SIZE);
+		int layoutLength = buffer.getInt(size - TRAILER_SIZE + 4);
+		if (layoutOffset < 8 || layoutLength < 0 || layoutOffset + layoutLength > size - TRAILER_SIZE)
+		{
+			throw invalidFile(source, null);
+		}
+		
+		byte[] layoutBytes = new byte[layoutLength];
+		ByteBuffer layoutBuffer = buffer.duplicate();
+		layoutBuffer.position(layoutOffset);
+		layoutBuffer.get(layoutBytes);
+		
+		try
+		{
+			ObjectInputStream layout = new ContextClassLoaderObjectInputStream(jasperReportsContext, 
+					new ByteArrayInputStream(layoutBytes));
+			int datasetCount = layout.readInt();
+			for (int i = 0; i < datasetCount; i++)
+			{
+				readCacheData(buffer, layout);
+			}
+		}
+		catch (IOException | ClassNotFoundException | ClassCastException
+				| IllegalArgumentException | IndexOutOfBoundsException e)
+		{
+			throw invalidFile(source, e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	protected void readCacheData(ByteBuffer buffer, ObjectInputStream layout) 
+			throws IOException, ClassNotFoundException, DataSnapshotException
+	{
+		Object key = layout.readObject();
+		LinkedHashMap<String, Object> parameters = (LinkedHashMap<String, Object>) layout.readObject();
+		int size = layout.readInt();
+		String[] fieldNames = (String[]) layout.readObject();
+		
+		ColumnValues[] values = new ColumnValues[fieldNames.length];
+		for (int i = 0; i < fieldNames.length; i++)
+		{
+			values[i] = readColumn(buffer, size, layout);
+		}
+		
+		cachedData.put(key, new StandardColumnCacheData(fieldNames, size, values, parameters));
+	}
+	
+	protected ColumnValues readColumn(ByteBuffer buffer, int size, ObjectInputStream layout) 
+			throws IOException, ClassNotFoundException, DataSnapshotException
+	{
+		byte type = layout.readByte();
+		String valueClassName = (String) layout.readObject();
+		int nullsOffset = layout.readInt();
+		int dataOffset = layout.readInt();
+		int extraOffset = layout.readInt();
+		long base = layout.readLong();
+		byte width = layout.readByte();
+		
+		ByteBuffer nulls = nullsOffset < 0 ? null : slice(buffer, nullsOffset, (size + 7) / 8);
+		switch (type)
+		{
+		case COLUMN_TYPE_NULL:
+			return new MappedColumnValues.NullValues(size);
+		case COLUMN_TYPE_LONG:
+			return new MappedColumnValues.LongValues(size, nulls, 
+					slice(buffer, dataOffset, size * width), width, base, valueClassName);
+		case COLUMN_TYPE_TIMESTAMP:
+			return new MappedColumnValues.TimestampValues(size, nulls, 
+					slice(buffer, dataOffset, size * width), width, base,
+					slice(buffer, extraOffset, size * 4));
+		case COLUMN_TYPE_DOUBLE:
+			return new MappedColumnValues.DoubleValues(size, nulls, slice(buffer, dataOffset, size * 8));
+		case COLUMN_TYPE_FLOAT:
+			return new MappedColumnValues.FloatValues(size, nulls, slice(buffer, dataOffset, size * 4));
+		case COLUMN_TYPE_BOOLEAN:
+			return new MappedColumnValues.BooleanValues(size, nulls, slice(buffer, dataOffset, (size + 7) / 8));
+		case COLUMN_TYPE_STRING:
+		case COLUMN_TYPE_BIG_INTEGER:
+		case COLUMN_TYPE_BIG_DECIMAL:
+		case COLUMN_TYPE_OBJECT:
+			ByteBuffer offsets = slice(buffer, dataOffset, (size + 1) * 4);
+			ByteBuffer bytes = slice(buffer, extraOffset, offsets.getInt(size * 4));
+			return new MappedColumnValues.BytesValues(size, nulls, offsets, bytes, type, jasperReportsContext);
+		default:
+			throw new IOException("Unknown column type " + type);
+		}
+	}
+	
+	protected static ByteBuffer slice(ByteBuffer buffer, int offset, int length)
+	{
+		ByteBuffer slice = buffer.duplicate();
+		slice.position(offset);
+		slice.limit(offset + length);
+		return slice.slice();
+	}
+	
+	protected DataSnapshotException invalidFile(Object source, Throwable cause)
+	{
+		return 
+			new DataSnapshotException(
+				EXCEPTION_MESSAGE_KEY_INVALID_SNAPSHOT_FILE,
+				new Object[]{source}, 
+				cause);
+	}
+	
+	@Override
+	public boolean hasCachedData(Object key)
+	{
+		return cachedData.containsKey(key);
+	}
+
+	@Override
+	public CachedDataset getCachedData(Object key) throws DataSnapshotException
+	{
+		ColumnCacheData data = cachedData.get(key);
+		if (data == null)
+		{
+			if (log.isDebugEnabled())
+			{
+				log.debug("No mapped data exists for " + key);
+			}
+			
+			return null;
+		}
+		
+		IndexedDataSource dataSource = data.createDataSource();
+		return new StandardCachedDataset(dataSource, data.getParameters());
+	}
+
+	/**
+	 * Returns <code>false</code> as the snapshot is backed by a mapped file.
+	 */
+	@Override
+	public boolean isPersistable()
+	{
+		return false;
+	}
+
+}
@@ -31,6 +31,8 @@ public class NumberValuesUtils
 	
 	private static final NumberValuesUtils INSTANCE = new NumberValuesUtils();
 	
+	private static final int BIT_PACKING_PENALTY = 32;// 32 bytes
+	
 	public static NumberValuesUtils instance()
 	{
 		return INSTANCE;
@@ -41,6 +43,38 @@ public class NumberValuesUtils
 	{		
 	}
 	
+	/**
+	 * Creates values for non negative numbers, choosing between bit packing
+	 * and byte aligned arrays based on the storage size.
+	 * 
+	 * @param count the number of values
+	 * @param values the values
+	 * @param maxValue the maximum of the values
+	 * @param linearFactor the factor to apply to the stored values
+	 * @param linearOffset the offset to add to the stored values
+	 * @return the column values
+	 */
+	public ColumnValues toValues(int count, long[] values, long maxValue, 
+			long linearFactor, long linearOffset)
+	{
+		ValueLength valueLength = ValueLength.getNumberLength(maxValue);
+		int bitWidth = BitPackedValues.bitWidth(maxValue);
+		if (useBitPacking(count, bitWidth, valueLength))
+		{
+			return new BitPackedValues(count, values, bitWidth, linearFactor, linearOffset);
+		}
+		
+		return toValues(count, values, valueLength, linearFactor, linearOffset);
+	}
+	
+	protected boolean useBitPacking(int count, int bitWidth, ValueLength valueLength)
+	{
+		long packedLength = (((long) count * bitWidth + Long.SIZE - 1) >>> 6) * 8;
+		long alignedLength = (long) count * valueLength.byteLength();
+		// packing needs to save at least a quarter to make up for the unpacking cost
+		return packedLength + BIT_PACKING_PENALTY <= alignedLength - alignedLength / 4;
+	}
+	
 	public ColumnValues toValues(int count, long[] values, ValueLength valueLength, 
 			long linearFactor, long linearOffset)
 	{
@@ -121,7 +121,7 @@ public class RunLengthStore
 			}
 			
 			runLengthValues = NumberValuesUtils.instance().toValues(runCount, 
-					runLengths, runLength, 1, 1);
+					runLengths, maxRunLength - 1, 1, 1);
 		}
 		return runLengthValues;
 	}
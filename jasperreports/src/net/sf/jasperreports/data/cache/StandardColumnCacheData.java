@@ -165,4 +165,14 @@ public class StandardColumnCacheData implements Serializable, ColumnCacheData
 	{
 		return parameters;
 	}
+
+	public String[] getFieldNames()
+	{
+		return fieldNames;
+	}
+
+	public ColumnValues[] getValues()
+	{
+		return values;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,104 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.data.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Data cache handler that replays a snapshot from a {@link DataSnapshotStore} when one exists
+ * for the key, and otherwise records the data and saves the snapshot to the store after the fill.
+ */
+public class StoredDataSnapshotCacheHandler extends ColumnDataCacheHandler
+{
+	
+	private static final Log log = LogFactory.getLog(StoredDataSnapshotCacheHandler.class);
+
+	private final DataSnapshotStore store;
+	private final String key;
+	
+	private boolean storeChecked;
+	private DataSnapshot storedSnapshot;
+	
+	public StoredDataSnapshotCacheHandler(DataSnapshotStore store, String key)
+	{
+		this.store = store;
+		this.key = key;
+	}
+	
+	protected synchronized DataSnapshot getStoredSnapshot()
+	{
+		if (!storeChecked)
+		{
+			storeChecked = true;
+			try
+			{
+				storedSnapshot = store.getSnapshot(key);
+			}
+			catch (DataSnapshotException e)
+			{
+				log.warn("Failed to load stored data snapshot for " + key, e);
+				store.removeSnapshot(key);
+			}
+		}
+		return storedSnapshot;
+	}
+
+	@Override
+	public boolean isSnapshotPopulated()
+	{
+		return super.isSnapshotPopulated() || getStoredSnapshot() != null;
+	}
+
+	@Override
+	public DataSnapshot getDataSnapshot()
+	{
+		DataSnapshot snapshot = super.getDataSnapshot();
+		return snapshot == null ? getStoredSnapshot() : snapshot;
+	}
+
+	@Override
+	protected void setDataSnapshot(DataSnapshot snapshot)
+	{
+		super.setDataSnapshot(snapshot);
+		
+		if (snapshot instanceof ColumnDataSnapshot && snapshot.isPersistable())
+		{
+			try
+			{
+				store.putSnapshot(key, (ColumnDataSnapshot) snapshot);
+			}
+			catch (DataSnapshotException e)
+			{
+				// the fill has completed, only the stored copy is lost
+				log.warn("Failed to store data snapshot for " + key, e);
+			}
+		}
+		else if (log.isDebugEnabled())
+		{
+			log.debug("data snapshot for " + key + " not persistable");
+		}
+	}
+	
+}
@@ -32,6 +32,7 @@ import java.text.ParseException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
@@ -50,6 +51,8 @@ import net.sf.jasperreports.engine.export.data.DateTextValue;
 import net.sf.jasperreports.engine.export.data.NumberTextValue;
 import net.sf.jasperreports.engine.export.data.StringTextValue;
 import net.sf.jasperreports.engine.export.data.TextValue;
+import net.sf.jasperreports.engine.fill.JRVirtualizationContext;
+import net.sf.jasperreports.engine.fill.PagePrefetcher;
 import net.sf.jasperreports.engine.fonts.FontUtil;
 import net.sf.jasperreports.engine.util.DefaultFormatFactory;
 import net.sf.jasperreports.engine.util.FormatFactory;
@@ -778,6 +781,34 @@ public abstract class JRAbstractExporter<RC extends ReportExportConfiguration, C
 	}
 	
 
+	/**
+	 * Creates an object that loads the pages of a virtualized report ahead of the pages being exported.
+	 * 
+	 * @param pages the report pages
+	 * @param endPageIndex the index of the last page that is exported
+	 * @return a page prefetcher, or <code>null</code> if the report is not virtualized
+	 * or prefetching is not enabled
+	 * @see JRVirtualizationContext#PROPERTY_EXPORT_PREFETCH_PAGES
+	 */
+	protected PagePrefetcher createPagePrefetcher(List<JRPrintPage> pages, int endPageIndex)
+	{
+		JRVirtualizationContext virtualizationContext = JRVirtualizationContext.getRegistered(jasperPrint);
+		if (virtualizationContext == null)
+		{
+			return null;
+		}
+		
+		int prefetchCount = propertiesUtil.getIntegerProperty(jasperPrint, 
+				JRVirtualizationContext.PROPERTY_EXPORT_PREFETCH_PAGES, 0);
+		if (prefetchCount <= 0)
+		{
+			return null;
+		}
+		
+		return virtualizationContext.sequentialPageAccess(pages, endPageIndex, prefetchCount);
+	}
+	
+
 	/**
 	 *
 	 */
@@ -42,13 +42,13 @@ public interface JRVirtualizer
 	 * All virtualizable object must register with their virtualizer
 	 * upon construction.
 	 */
- 	void registerObject(JRVirtualizable o);
+ 	void registerObject(JRVirtualizable<?> o);
 
 	/**
 	 * Lets this virtualizer know that it no longer must track the
 	 * object.
 	 */
- 	void deregisterObject(JRVirtualizable o);
+ 	void deregisterObject(JRVirtualizable<?> o);
 
 	/**
 	 * Lets the virtualizer know that this object is still being used.
@@ -59,7 +59,7 @@ public interface JRVirtualizer
 	 * The virtualizer gets to decide what type of caching strategy
 	 * it will use.
 	 */
-	void touch(JRVirtualizable o);
+	void touch(JRVirtualizable<?> o);
 
 	/**
 	 * Called when the virtual object must be paged-in.
@@ -67,7 +67,7 @@ public interface JRVirtualizer
 	 * If the object's virtual data is not paged-out, the object will only be
 	 * {@link #touch(JRVirtualizable) touched}.
 	 */
-	void requestData(JRVirtualizable o);
+	void requestData(JRVirtualizable<?> o);
 
 	/**
 	 * Called when the virtual object paged-out data should be freed.
@@ -75,12 +75,12 @@ public interface JRVirtualizer
 	 * If the object's virtual data is not paged-out, the object will only be
 	 * {@link #touch(JRVirtualizable) touched}.
 	 */
-	void clearData(JRVirtualizable o);
+	void clearData(JRVirtualizable<?> o);
 
 	/**
 	 * Called when the virtual object should be paged-out.
 	 */
-	void virtualizeData(JRVirtualizable o);
+	void virtualizeData(JRVirtualizable<?> o);
 	
 	/**
 	 * Called when we are done with the virtualizer and wish to
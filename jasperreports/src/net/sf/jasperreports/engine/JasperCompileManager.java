@@ -28,9 +28,17 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
 
 import net.sf.jasperreports.crosstabs.JRCrosstab;
+import net.sf.jasperreports.engine.design.JRAbstractCompiler;
 import net.sf.jasperreports.engine.design.JRCompiler;
 import net.sf.jasperreports.engine.design.JRJavacCompiler;
 import net.sf.jasperreports.engine.design.JRJdk13Compiler;
@@ -38,6 +46,7 @@ import net.sf.jasperreports.engine.design.JRJdtCompiler;
 import net.sf.jasperreports.engine.design.JRValidationFault;
 import net.sf.jasperreports.engine.design.JRVerifier;
 import net.sf.jasperreports.engine.design.JasperDesign;
+import net.sf.jasperreports.engine.design.ReportCompileResult;
 import net.sf.jasperreports.engine.fill.JREvaluator;
 import net.sf.jasperreports.engine.fill.JasperReportsContextAware;
 import net.sf.jasperreports.engine.util.JRClassLoader;
@@ -359,6 +368,73 @@ public final class JasperCompileManager
 	}
 
 
+	/**
+	 * Compiles several report design objects, returning a result for each design.
+	 * <p>
+	 * Report designs that use the same report compiler are compiled together by the compiler
+	 * if it supports {@link JRAbstractCompiler#compileReports(List) batch compilation},
+	 * which is considerably faster than compiling the designs one by one.
+	 * A report design that fails to compile does not prevent the other designs from being compiled,
+	 * the failure being reported by the corresponding result.
+	 *
+	 * @param jasperDesigns source report design objects
+	 * @return the compile results, in the order of the report designs
+	 * @see JRAbstractCompiler#compileReports(List)
+	 */
+	public List<ReportCompileResult> compile(List<JasperDesign> jasperDesigns)
+	{
+		ReportCompileResult[] results = new ReportCompileResult[jasperDesigns.size()];
+		
+		Map<Class<?>, JRAbstractCompiler> batchCompilers = new LinkedHashMap<Class<?>, JRAbstractCompiler>();
+		Map<Class<?>, List<Integer>> batchIndexes = new HashMap<Class<?>, List<Integer>>();
+		for (ListIterator<JasperDesign> it = jasperDesigns.listIterator(); it.hasNext();)
+		{
+			int index = it.nextIndex();
+			JasperDesign jasperDesign = it.next();
+			try
+			{
+				JRCompiler compiler = getCompiler(jasperDesign);
+				if (compiler instanceof JRAbstractCompiler)
+				{
+					Class<?> compilerClass = compiler.getClass();
+					if (!batchCompilers.containsKey(compilerClass))
+					{
+						batchCompilers.put(compilerClass, (JRAbstractCompiler) compiler);
+						batchIndexes.put(compilerClass, new ArrayList<Integer>());
+					}
+					batchIndexes.get(compilerClass).add(index);
+				}
+				else
+				{
+					results[index] = ReportCompileResult.success(jasperDesign, compiler.compileReport(jasperDesign));
+				}
+			}
+			catch (JRException e)
+			{
+				results[index] = ReportCompileResult.failure(jasperDesign, e);
+			}
+		}
+		
+		for (Map.Entry<Class<?>, JRAbstractCompiler> entry : batchCompilers.entrySet())
+		{
+			List<Integer> indexes = batchIndexes.get(entry.getKey());
+			List<JasperDesign> batchDesigns = new ArrayList<JasperDesign>(indexes.size());
+			for (Integer index : indexes)
+			{
+				batchDesigns.add(jasperDesigns.get(index));
+			}
+			
+			List<ReportCompileResult> batchResults = entry.getValue().compileReports(batchDesigns);
+			for (int i = 0; i < indexes.size(); i++)
+			{
+				results[indexes.get(i)] = batchResults.get(i);
+			}
+		}
+		
+		return Arrays.asList(results);
+	}
+
+
 	/**
 	 * Verifies the validity and consistency of the report design object.
 	 * Returns a collection of {@link JRValidationFault errors}, if problems are found in the report design.
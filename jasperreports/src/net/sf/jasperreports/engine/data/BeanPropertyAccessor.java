@@ -0,0 +1,281 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.engine.data;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.beanutils.DynaBean;
+import org.apache.commons.beanutils.NestedNullException;
+import org.apache.commons.beanutils.PropertyUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import net.sf.jasperreports.engine.JRException;
+
+/**
+ * Reads a bean property by using method handles resolved once per bean class.
+ * 
+ * <p>
+ * Simple and nested (e.g. <code>address.city</code>) property paths are resolved 
+ * to the public read methods of the bean classes, which are then invoked via method handles.
+ * Indexed and mapped properties, map and dynamic beans, and properties that cannot be
+ * resolved to public read methods are read using <code>PropertyUtils</code>.
+ * </p>
+ * 
+ * <p>
+ * Instances are not thread safe.
+ * </p>
+ * 
+ * @see JRAbstractBeanDataSource
+ */
+public class BeanPropertyAccessor
+{
+	
+	private static final Log log = LogFactory.getLog(BeanPropertyAccessor.class);
+	
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+	
+	private static final PropertyGetter NO_GETTER = new PropertyGetter(null);
+	
+	private final String propertyPath;
+	private final PathSegment[] segments;
+	
+	public BeanPropertyAccessor(String propertyPath)
+	{
+		this.propertyPath = propertyPath;
+		this.segments = createSegments(propertyPath);
+	}
+	
+	protected static PathSegment[] createSegments(String propertyPath)
+	{
+		if (propertyPath.isEmpty()
+				|| propertyPath.indexOf('[') >= 0 || propertyPath.indexOf('(') >= 0)
+		{
+			// indexed and mapped properties are read via PropertyUtils
+			return null;
+		}
+		
+		String[] names = propertyPath.split("\\.", -1);
+		PathSegment[] segments = new PathSegment[names.length];
+		for (int i = 0; i < names.length; i++)
+		{
+			if (names[i].isEmpty())
+			{
+				return null;
+			}
+			segments[i] = new PathSegment(names[i]);
+		}
+		return segments;
+	}
+	
+	public String getPropertyPath()
+	{
+		return propertyPath;
+	}
+
+	/**
+	 * Reads the property value from a bean.
+	 * 
+	 * @param bean the bean, not <code>null</code>
+	 * @return the property value, <code>null</code> if an intermediate property in the path is <code>null</code>
+	 * @throws JRException
+	 */
+	public Object getValue(Object bean) throws JRException
+	{
+		if (segments == null)
+		{
+			return getPropertyUtilsValue(bean, propertyPath);
+		}
+		
+		Object value = bean;
+		for (int i = 0; i < segments.length; i++)
+		{
+			if (value == null)
+			{
+				// same as NestedNullException
+				return null;
+			}
+			
+			PropertyGetter getter = segments[i].getter(value);
+			if (getter.handle == null)
+			{
+				return getPropertyUtilsValue(bean, propertyPath);
+			}
+			
+			try
+			{
+				value = getter.handle.invokeExact(value);
+			}
+			catch (Error e)
+			{
+				throw e;
+			}
+			catch (Throwable e)
+			{
+				throw 
+					new JRException(
+						JRAbstractBeanDataSource.EXCEPTION_MESSAGE_KEY_BEAN_FIELD_VALUE_NOT_RETRIEVED,
+						new Object[]{propertyPath}, 
+						e);
+			}
+		}
+		return value;
+	}
+	
+	protected static Object getPropertyUtilsValue(Object bean, String propertyPath) throws JRException
+	{
+		Object value = null;
+		try
+		{
+			value = PropertyUtils.getProperty(bean, propertyPath);
+		}
+		catch (java.lang.IllegalAccessException e)
+		{
+			throw 
+				new JRException(
+					JRAbstractBeanDataSource.EXCEPTION_MESSAGE_KEY_BEAN_FIELD_VALUE_NOT_RETRIEVED,
+					new Object[]{propertyPath}, 
+					e);
+		}
+		catch (java.lang.reflect.InvocationTargetException e)
+		{
+			throw 
+				new JRException(
+					JRAbstractBeanDataSource.EXCEPTION_MESSAGE_KEY_BEAN_FIELD_VALUE_NOT_RETRIEVED,
+					new Object[]{propertyPath}, 
+					e);
+		}
+		catch (java.lang.NoSuchMethodException e)
+		{
+			throw 
+				new JRException(
+					JRAbstractBeanDataSource.EXCEPTION_MESSAGE_KEY_BEAN_FIELD_VALUE_NOT_RETRIEVED,
+					new Object[]{propertyPath}, 
+					e);
+		}
+		catch (NestedNullException e)
+		{
+			// deliberately to be ignored
+		}
+		return value;
+	}
+	
+	protected static PropertyGetter resolveGetter(Object bean, String name)
+	{
+		if (bean instanceof Map || bean instanceof DynaBean)
+		{
+			// PropertyUtils has special handling for these
+			return NO_GETTER;
+		}
+		
+		try
+		{
+			PropertyDescriptor descriptor = PropertyUtils.getPropertyDescriptor(bean, name);
+			Method readMethod = descriptor == null ? null : PropertyUtils.getReadMethod(descriptor);
+			if (readMethod == null)
+			{
+				return NO_GETTER;
+			}
+			
+			MethodHandle handle = MethodHandles.publicLookup().unreflect(readMethod).asType(GETTER_TYPE);
+			
+			if (log.isDebugEnabled())
+			{
+				log.debug("resolved property " + name + " of " + bean.getClass().getName() + " to " + readMethod);
+			}
+			
+			return new PropertyGetter(handle);
+		}
+		catch (Exception e)
+		{
+			if (log.isDebugEnabled())
+			{
+				log.debug("could not resolve property " + name + " of " + bean.getClass().getName(), e);
+			}
+			
+			// PropertyUtils will produce the error if needed
+			return NO_GETTER;
+		}
+	}
+	
+	protected static class PropertyGetter
+	{
+		final MethodHandle handle;
+		
+		PropertyGetter(MethodHandle handle)
+		{
+			this.handle = handle;
+		}
+	}
+	
+	protected static class PathSegment
+	{
+		private final String name;
+		
+		// the last used bean class, beans usually have the same class
+		private Class<?> beanClass;
+		private PropertyGetter getter;
+		
+		private Map<Class<?>, PropertyGetter> classGetters;
+		
+		PathSegment(String name)
+		{
+			this.name = name;
+		}
+		
+		PropertyGetter getter(Object bean)
+		{
+			Class<?> valueClass = bean.getClass();
+			if (valueClass == beanClass)
+			{
+				return getter;
+			}
+			
+			if (beanClass != null)
+			{
+				if (classGetters == null)
+				{
+					classGetters = new HashMap<Class<?>, PropertyGetter>();
+				}
+				classGetters.put(beanClass, getter);
+			}
+			
+			PropertyGetter classGetter = classGetters == null ? null : classGetters.get(valueClass);
+			if (classGetter == null)
+			{
+				classGetter = resolveGetter(bean, name);
+			}
+			
+			beanClass = valueClass;
+			getter = classGetter;
+			return classGetter;
+		}
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.engine.data;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.repo.RepositoryContext;
+import net.sf.jasperreports.repo.RepositoryUtil;
+
+/**
+ * Source of the input read by the streaming data sources.
+ * 
+ * <p>
+ * Inputs backed by files and repository locations are opened again when the data source is rewound,
+ * streams provided by callers can only be read once.
+ * </p>
+ * 
+ * @see XmlStreamDataSource
+ * @see JsonStreamDataSource
+ */
+abstract class DataSourceInput
+{
+	
+	private static final Log log = LogFactory.getLog(DataSourceInput.class);
+	
+	abstract InputStream open() throws JRException;
+	
+	abstract boolean isReopenable();
+	
+	void close(InputStream stream)
+	{
+		try
+		{
+			stream.close();
+		}
+		catch (IOException e)
+		{
+			if (log.isWarnEnabled())
+			{
+				log.warn("Failed to close data source input", e);
+			}
+		}
+	}
+	
+	static class StreamInput extends DataSourceInput
+	{
+		private final InputStream stream;
+		
+		StreamInput(InputStream stream)
+		{
+			this.stream = stream;
+		}
+
+		@Override
+		InputStream open()
+		{
+			return stream;
+		}
+
+		@Override
+		boolean isReopenable()
+		{
+			return false;
+		}
+
+		@Override
+		void close(InputStream stream)
+		{
+			// the stream is owned by the caller
+		}
+	}
+	
+	static class FileInput extends DataSourceInput
+	{
+		private final File file;
+		
+		FileInput(File file) throws FileNotFoundException
+		{
+			if (!file.isFile())
+			{
+				throw new FileNotFoundException(file.getPath());
+			}
+			
+			this.file = file;
+		}
+
+		@Override
+		InputStream open() throws JRException
+		{
+			try
+			{
+				return new FileInputStream(file);
+			}
+			catch (FileNotFoundException e)
+			{
+				throw new JRException(e);
+			}
+		}
+
+		@Override
+		boolean isReopenable()
+		{
+			return true;
+		}
+	}
+	
+	static class LocationInput extends DataSourceInput
+	{
+		private final RepositoryContext repositoryContext;
+		private final String location;
+		
+		LocationInput(RepositoryContext repositoryContext, String location)
+		{
+			this.repositoryContext = repositoryContext;
+			this.location = location;
+		}
+
+		@Override
+		InputStream open() throws JRException
+		{
+			return RepositoryUtil.getInstance(repositoryContext).getInputStreamFromLocation(location);
+		}
+
+		@Override
+		boolean isReopenable()
+		{
+			return true;
+		}
+	}
+}
@@ -26,9 +26,6 @@ package net.sf.jasperreports.engine.data;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.apache.commons.beanutils.NestedNullException;
-import org.apache.commons.beanutils.PropertyUtils;
-
 import net.sf.jasperreports.annotations.properties.Property;
 import net.sf.jasperreports.annotations.properties.PropertyScope;
 import net.sf.jasperreports.engine.JRException;
@@ -72,6 +69,8 @@ public abstract class JRAbstractBeanDataSource implements JRRewindableDataSource
 	 *
 	 */
 	protected PropertyNameProvider propertyNameProvider;
+	
+	private final Map<String, BeanPropertyAccessor> propertyAccessors = new HashMap<String, BeanPropertyAccessor>();
 
 	/**
 	 * @deprecated To be removed.
@@ -167,7 +166,35 @@ public abstract class JRAbstractBeanDataSource implements JRRewindableDataSource
 
 	protected Object getFieldValue(Object bean, JRField field) throws JRException
 	{
-		return getBeanProperty(bean, getPropertyName(field));
+		String propertyName = getPropertyName(field);
+		if (isCurrentBeanMapping(propertyName))
+		{
+			return bean;
+		}
+		
+		if (bean == null)
+		{
+			return null;
+		}
+		
+		return getPropertyAccessor(propertyName).getValue(bean);
+	}
+	
+	/**
+	 * Returns the accessor used to read a bean property, creating it if not already present.
+	 * 
+	 * @param propertyName the property name or path
+	 * @return the property accessor
+	 */
+	protected BeanPropertyAccessor getPropertyAccessor(String propertyName)
+	{
+		BeanPropertyAccessor accessor = propertyAccessors.get(propertyName);
+		if (accessor == null)
+		{
+			accessor = new BeanPropertyAccessor(propertyName);
+			propertyAccessors.put(propertyName, accessor);
+		}
+		return accessor;
 	}
 	
 	protected static Object getBeanProperty(Object bean, String propertyName) throws JRException
@@ -180,38 +207,7 @@ public abstract class JRAbstractBeanDataSource implements JRRewindableDataSource
 		}
 		else if (bean != null)
 		{
-			try
-			{
-				value = PropertyUtils.getProperty(bean, propertyName);
-			}
-			catch (java.lang.IllegalAccessException e)
-			{
-				throw 
-					new JRException(
-						EXCEPTION_MESSAGE_KEY_BEAN_FIELD_VALUE_NOT_RETRIEVED,
-						new Object[]{propertyName}, 
-						e);
-			}
-			catch (java.lang.reflect.InvocationTargetException e)
-			{
-				throw 
-					new JRException(
-						EXCEPTION_MESSAGE_KEY_BEAN_FIELD_VALUE_NOT_RETRIEVED,
-						new Object[]{propertyName}, 
-						e);
-			}
-			catch (java.lang.NoSuchMethodException e)
-			{
-				throw 
-					new JRException(
-						EXCEPTION_MESSAGE_KEY_BEAN_FIELD_VALUE_NOT_RETRIEVED,
-						new Object[]{propertyName}, 
-						e);
-			}
-			catch (NestedNullException e)
-			{
-				// deliberately to be ignored
-			}
+			value = BeanPropertyAccessor.getPropertyUtilsValue(bean, propertyName);
 		}
 
 		return value;
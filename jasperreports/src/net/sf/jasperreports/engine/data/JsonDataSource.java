@@ -118,6 +118,20 @@ public class JsonDataSource extends JRAbstractTextDataSource implements JsonData
 	}
 
 
+	/**
+	 * Creates a data source that does not operate on a JSON tree, 
+	 * for subclasses that produce the JSON nodes to iterate in a different manner.
+	 * 
+	 * @param selectExpression the select expression
+	 * @param mapper the object mapper
+	 * @see #setCurrentJsonNode(JsonNode)
+	 */
+	protected JsonDataSource(String selectExpression, ObjectMapper mapper) {
+		this.mapper = mapper;
+		this.selectExpression = selectExpression;
+	}
+
+
 	public JsonDataSource(File file) throws FileNotFoundException, JRException {
 		this(file, null);
 	}
@@ -287,6 +301,19 @@ public class JsonDataSource extends JRAbstractTextDataSource implements JsonData
 		return value;
 	}
 	
+	protected String getSelectExpression() {
+		return selectExpression;
+	}
+	
+	/**
+	 * Sets the node that is used to evaluate field values.
+	 * 
+	 * @param currentJsonNode the current node, <code>null</code> if there is no current node
+	 */
+	protected void setCurrentJsonNode(JsonNode currentJsonNode) {
+		this.currentJsonNode = currentJsonNode;
+	}
+	
 	/**
 	 * Extracts the JSON nodes based on the query expression
 	 * 
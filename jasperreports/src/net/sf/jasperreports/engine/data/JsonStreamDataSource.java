@@ -0,0 +1,448 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.engine.data;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRRuntimeException;
+import net.sf.jasperreports.engine.util.JsonUtil;
+import net.sf.jasperreports.repo.RepositoryContext;
+
+/**
+ * JSON data source that reads the input incrementally.
+ * 
+ * <p>
+ * Instead of parsing the whole input into a JSON tree, the data source uses a streaming
+ * parser to locate the nodes selected by the select expression, and only builds the tree
+ * of the node that is used as the current record.
+ * Field expressions and sub data sources are evaluated on the current record node
+ * in the same way as for {@link JsonDataSource}.
+ * </p>
+ * 
+ * <p>
+ * Only simple select expressions consisting of property names separated by dots are supported,
+ * see {@link #isStreamable(String)}.
+ * Expressions that use array indexes or attribute filters require {@link JsonDataSource}.
+ * </p>
+ */
+public class JsonStreamDataSource extends JsonDataSource
+{
+	
+	private static final Log log = LogFactory.getLog(JsonStreamDataSource.class);
+
+	public static final String EXCEPTION_MESSAGE_KEY_STREAM_NOT_REWINDABLE = "data.json.stream.not.rewindable";
+	public static final String EXCEPTION_MESSAGE_KEY_STREAM_READ_ERROR = "data.json.stream.read.error";
+	public static final String EXCEPTION_MESSAGE_KEY_UNSUPPORTED_EXPRESSION = "data.json.stream.unsupported.expression";
+	
+	private static final String PROPERTY_SEPARATOR = ".";
+	
+	// an object at a path stage, the selected property is searched in its fields
+	private static final int FRAME_OBJECT = 1;
+	// an object that is part of an array at a path stage
+	private static final int FRAME_ARRAY_OBJECT = 2;
+	// an array whose items are part of an array at a path stage
+	private static final int FRAME_ARRAY_ITEMS = 3;
+	
+	private final DataSourceInput inputSource;
+	private final ObjectMapper mapper;
+	private final String[] path;
+	
+	private InputStream inputStream;
+	private JsonParser parser;
+	private boolean started;
+	private boolean ended;
+	
+	private final List<Frame> frames = new ArrayList<Frame>();
+	
+	public JsonStreamDataSource(InputStream jsonStream, String selectExpression) throws JRException
+	{
+		this(new DataSourceInput.StreamInput(jsonStream), selectExpression);
+	}
+	
+	public JsonStreamDataSource(File file, String selectExpression) throws FileNotFoundException, JRException
+	{
+		this(new DataSourceInput.FileInput(file), selectExpression);
+	}
+	
+	public JsonStreamDataSource(RepositoryContext repositoryContext, String location, String selectExpression) throws JRException
+	{
+		this(new DataSourceInput.LocationInput(repositoryContext, location), selectExpression);
+	}
+	
+	JsonStreamDataSource(DataSourceInput inputSource, String selectExpression) throws JRException
+	{
+		this(inputSource, selectExpression, JsonUtil.createObjectMapper());
+	}
+	
+	private JsonStreamDataSource(DataSourceInput inputSource, String selectExpression, ObjectMapper mapper) throws JRException
+	{
+		super(selectExpression, mapper);
+		
+		if (!isStreamable(selectExpression))
+		{
+			throw 
+				new JRException(
+					EXCEPTION_MESSAGE_KEY_UNSUPPORTED_EXPRESSION,
+					new Object[]{selectExpression});
+		}
+		
+		this.inputSource = inputSource;
+		this.mapper = mapper;
+		this.path = parsePath(selectExpression);
+		
+		moveFirst();
+	}
+
+	/**
+	 * Determines whether a select expression can be evaluated while streaming the JSON input.
+	 * 
+	 * <p>
+	 * Expressions that consist of property names separated by dots are supported,
+	 * array indexes and attribute filters are not.
+	 * </p>
+	 * 
+	 * @param selectExpression the select expression
+	 * @return whether the select expression is supported by the streaming data source
+	 */
+	public static boolean isStreamable(String selectExpression)
+	{
+		return selectExpression == null 
+				|| (selectExpression.indexOf('[') < 0 && selectExpression.indexOf('(') < 0);
+	}
+	
+	protected static String[] parsePath(String selectExpression)
+	{
+		if (selectExpression == null)
+		{
+			return new String[0];
+		}
+		
+		// tokenizing in the same manner as JsonDataSource
+		StringTokenizer tokenizer = new StringTokenizer(selectExpression, PROPERTY_SEPARATOR);
+		List<String> names = new ArrayList<String>();
+		while (tokenizer.hasMoreTokens())
+		{
+			names.add(tokenizer.nextToken());
+		}
+		return names.toArray(new String[names.size()]);
+	}
+
+	@Override
+	public void moveFirst() throws JRException
+	{
+		if (parser != null && !started)
+		{
+			// nothing read yet
+			return;
+		}
+		
+		if (started && !inputSource.isReopenable())
+		{
+			throw 
+				new JRException(
+					EXCEPTION_MESSAGE_KEY_STREAM_NOT_REWINDABLE,
+					(Object[]) null);
+		}
+		
+		closeInput();
+		setCurrentJsonNode(null);
+		frames.clear();
+		started = false;
+		ended = false;
+		
+		inputStream = inputSource.open();
+		try
+		{
+			parser = mapper.getFactory().createParser(inputStream);
+			if (parser.nextToken() == null)
+			{
+				throw 
+					new JRException(
+						EXCEPTION_MESSAGE_KEY_NO_DATA,
+						(Object[]) null);
+			}
+		}
+		catch (IOException e)
+		{
+			closeInput();
+			throw new JRException(e);
+		}
+		catch (JRException e)
+		{
+			closeInput();
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean next()
+	{
+		JsonNode record;
+		try
+		{
+			record = nextRecord();
+		}
+		catch (IOException e)
+		{
+			closeInput();
+			throw 
+				new JRRuntimeException(
+					EXCEPTION_MESSAGE_KEY_STREAM_READ_ERROR,
+					(Object[]) null, 
+					e);
+		}
+		
+		setCurrentJsonNode(record);
+		if (record == null)
+		{
+			ended = true;
+			closeInput();
+		}
+		return record != null;
+	}
+	
+	protected JsonNode nextRecord() throws IOException
+	{
+		if (ended || parser == null)
+		{
+			return null;
+		}
+		
+		if (!started)
+		{
+			started = true;
+			
+			// the root node is at the first stage of the path
+			JsonNode record = startValue(0);
+			if (record != null)
+			{
+				return record;
+			}
+		}
+		
+		while (!frames.isEmpty())
+		{
+			Frame frame = frames.get(frames.size() - 1);
+			JsonToken token = parser.nextToken();
+			if (token == null)
+			{
+				// premature end of input, handled as end of data
+				frames.clear();
+				break;
+			}
+			
+			JsonNode record = null;
+			switch (frame.type)
+			{
+			case FRAME_OBJECT:
+			case FRAME_ARRAY_OBJECT:
+				if (token == JsonToken.END_OBJECT)
+				{
+					popFrame();
+				}
+				else
+				{
+					String fieldName = parser.getCurrentName();
+					parser.nextToken();
+					if (fieldName.equals(path[frame.stage]))
+					{
+						record = frame.type == FRAME_OBJECT 
+								? startValue(frame.stage + 1) 
+								: startSelectedArrayValue(frame.stage + 1);
+					}
+					else
+					{
+						parser.skipChildren();
+					}
+				}
+				break;
+			case FRAME_ARRAY_ITEMS:
+				if (token == JsonToken.END_ARRAY)
+				{
+					popFrame();
+				}
+				else
+				{
+					record = startArrayItem(frame.stage);
+				}
+				break;
+			default:
+				throw new IllegalStateException("Unknown frame type " + frame.type);
+			}
+			
+			if (record != null)
+			{
+				return record;
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Handles a value that is selected by the path up to a given stage.
+	 */
+	protected JsonNode startValue(int stage) throws IOException
+	{
+		JsonToken token = parser.getCurrentToken();
+		if (token == JsonToken.START_ARRAY)
+		{
+			pushFrame(FRAME_ARRAY_ITEMS, stage);
+			return null;
+		}
+		
+		if (token == JsonToken.START_OBJECT)
+		{
+			if (stage == path.length)
+			{
+				return readRecord();
+			}
+			
+			pushFrame(FRAME_OBJECT, stage);
+			return null;
+		}
+		
+		// the path cannot continue from scalar values
+		return null;
+	}
+	
+	/**
+	 * Handles a property value of an object that is part of an array at a path stage.
+	 * The values are collected into the selected array, array values are flattened.
+	 */
+	protected JsonNode startSelectedArrayValue(int stage) throws IOException
+	{
+		if (parser.getCurrentToken() == JsonToken.START_ARRAY)
+		{
+			pushFrame(FRAME_ARRAY_ITEMS, stage);
+			return null;
+		}
+		
+		return startArrayItem(stage);
+	}
+	
+	/**
+	 * Handles an item of an array selected by the path up to a given stage.
+	 */
+	protected JsonNode startArrayItem(int stage) throws IOException
+	{
+		if (stage == path.length)
+		{
+			// all items of the selected array are records
+			return readRecord();
+		}
+		
+		if (parser.getCurrentToken() == JsonToken.START_OBJECT)
+		{
+			pushFrame(FRAME_ARRAY_OBJECT, stage);
+		}
+		else
+		{
+			// properties of arrays and scalar values are missing
+			parser.skipChildren();
+		}
+		return null;
+	}
+	
+	protected JsonNode readRecord() throws IOException
+	{
+		JsonNode record = mapper.readTree(parser);
+		return record == null ? NullNode.getInstance() : record;
+	}
+	
+	private void pushFrame(int type, int stage)
+	{
+		frames.add(new Frame(type, stage));
+	}
+	
+	private void popFrame()
+	{
+		frames.remove(frames.size() - 1);
+	}
+	
+	/**
+	 * Closes the JSON input.
+	 * 
+	 * <p>
+	 * The input is automatically closed when all the records have been read.
+	 * </p>
+	 */
+	public void dispose()
+	{
+		closeInput();
+	}
+	
+	protected void closeInput()
+	{
+		if (parser != null)
+		{
+			try
+			{
+				parser.close();
+			}
+			catch (IOException e)
+			{
+				if (log.isWarnEnabled())
+				{
+					log.warn("Failed to close JSON parser", e);
+				}
+			}
+			parser = null;
+		}
+		
+		if (inputStream != null)
+		{
+			inputSource.close(inputStream);
+			inputStream = null;
+		}
+	}
+	
+	protected static class Frame
+	{
+		final int type;
+		final int stage;
+		
+		Frame(int type, int stage)
+		{
+			this.type = type;
+			this.stage = stage;
+		}
+	}
+}
@@ -0,0 +1,817 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.engine.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.SAXException;
+
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+import net.sf.jasperreports.engine.JRRuntimeException;
+import net.sf.jasperreports.engine.JasperReportsContext;
+import net.sf.jasperreports.engine.util.FormatUtils;
+import net.sf.jasperreports.repo.RepositoryContext;
+import net.sf.jasperreports.repo.RepositoryUtil;
+import net.sf.jasperreports.repo.SimpleRepositoryContext;
+
+
+/**
+ * This data source implementation reads an XLSX stream row by row, without loading the workbook in memory.
+ * <p>
+ * The sheet XML parts of the XLSX package are parsed as the rows are requested and only the current
+ * row is kept in memory, along with the shared strings table of the workbook.
+ * Column names, sheet selection and date/number parsing work in the same way as for {@link JRXlsxDataSource}.
+ * <p>
+ * Formula cells are read using the values cached in the workbook, formulas are not evaluated. 
+ * Rows that are not present in the sheet data are skipped.
+ */
+public class XlsxStreamDataSource extends AbstractXlsDataSource
+{
+	
+	private static final Log log = LogFactory.getLog(XlsxStreamDataSource.class);
+	
+	public static final String EXCEPTION_MESSAGE_KEY_XLSX_READ_ERROR = "data.xlsx.stream.read.error";
+	
+	private static final String NAMESPACE_RELATIONSHIPS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+	
+	private static final byte CELL_NONE = 0;
+	private static final byte CELL_BLANK = 1;
+	private static final byte CELL_STRING = 2;
+	private static final byte CELL_NUMERIC = 3;
+	private static final byte CELL_BOOLEAN = 4;
+	private static final byte CELL_ERROR = 5;
+
+	private final XMLInputFactory inputFactory;
+	
+	private OPCPackage xlsxPackage;
+	private XSSFReader xssfReader;
+	private ReadOnlySharedStringsTable sharedStrings;
+	private boolean date1904;
+	private List<String> sheetNames = new ArrayList<String>();
+	private List<String> sheetIds = new ArrayList<String>();
+	
+	private int sheetIndex = -1;
+	private InputStream sheetStream;
+	private XMLStreamReader sheetReader;
+	private boolean sheetRowRead;
+	
+	private byte[] cellTypes = new byte[16];
+	private String[] cellValues = new String[16];
+	private int cellCount;
+
+	private File spoolFile;
+
+
+	/**
+	 * Creates a data source instance from an XLSX data input stream.
+	 * <p>
+	 * The stream is copied to a temporary file so that the package is read from the file
+	 * instead of being buffered in memory.
+	 * The stream is not closed by the data source.
+	 * 
+	 * @param inputStream an input stream containing XLSX data
+	 */
+	public XlsxStreamDataSource(InputStream inputStream) throws JRException, IOException
+	{
+		this.inputFactory = createInputFactory();
+		openSpooled(inputStream);
+	}
+
+
+	/**
+	 * Creates a data source instance from an XLSX file.
+	 * @param file a file containing XLSX data
+	 */
+	public XlsxStreamDataSource(File file) throws JRException, IOException
+	{
+		this.inputFactory = createInputFactory();
+		openFile(file);
+	}
+
+	
+	/**
+	 * Creates a data source instance that reads XLSX data from a given location.
+	 * @param jasperReportsContext the JasperReportsContext
+	 * @param location a String representing XLSX data source
+	 * @throws IOException 
+	 */
+	public XlsxStreamDataSource(JasperReportsContext jasperReportsContext, String location) throws JRException, IOException
+	{
+		this(SimpleRepositoryContext.of(jasperReportsContext), location);
+	}
+
+	public XlsxStreamDataSource(RepositoryContext context, String location) throws JRException, IOException
+	{
+		this.inputFactory = createInputFactory();
+		
+		InputStream locationStream = RepositoryUtil.getInstance(context).getInputStreamFromLocation(location);
+		try
+		{
+			openSpooled(locationStream);
+		}
+		finally
+		{
+			locationStream.close();
+		}
+	}
+	
+	/**
+	 * @see #XlsxStreamDataSource(JasperReportsContext, String)
+	 */
+	public XlsxStreamDataSource(String location) throws JRException, IOException
+	{
+		this(DefaultJasperReportsContext.getInstance(), location);
+	}
+	
+	
+	protected static XMLInputFactory createInputFactory()
+	{
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		return factory;
+	}
+	
+	
+	protected void openSpooled(InputStream inputStream) throws JRException, IOException
+	{
+		spoolFile = File.createTempFile("xlsx_", ".tmp");
+		try
+		{
+			Files.copy(inputStream, spoolFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (IOException e)
+		{
+			close();
+			throw e;
+		}
+		
+		openFile(spoolFile);
+	}
+	
+	
+	protected void openFile(File file) throws JRException, IOException
+	{
+		boolean opened = false;
+		try
+		{
+			open(OPCPackage.open(file, PackageAccess.READ));
+			opened = true;
+		}
+		catch (OpenXML4JException e)
+		{
+			throw new JRException(e);
+		}
+		finally
+		{
+			if (!opened)
+			{
+				// releases the package and the spool file
+				close();
+			}
+		}
+	}
+	
+	
+	protected void open(OPCPackage xlsxPackage) throws JRException, IOException
+	{
+		this.xlsxPackage = xlsxPackage;
+		try
+		{
+			xssfReader = new XSSFReader(xlsxPackage);
+			sharedStrings = new ReadOnlySharedStringsTable(xlsxPackage);
+			readWorkbook();
+		}
+		catch (OpenXML4JException e)
+		{
+			throw new JRException(e);
+		}
+		catch (SAXException e)
+		{
+			throw new JRException(e);
+		}
+		catch (XMLStreamException e)
+		{
+			throw 
+				new JRException(
+					EXCEPTION_MESSAGE_KEY_XLSX_READ_ERROR,
+					(Object[]) null, 
+					e);
+		}
+	}
+	
+	
+	/**
+	 * Reads the sheet list and the date system from the workbook part.
+	 */
+	protected void readWorkbook() throws IOException, OpenXML4JException, XMLStreamException
+	{
+		InputStream workbookStream = xssfReader.getWorkbookData();
+		try
+		{
+			XMLStreamReader reader = inputFactory.createXMLStreamReader(workbookStream);
+			try
+			{
+				while (reader.hasNext())
+				{
+					if (reader.next() == XMLStreamConstants.START_ELEMENT)
+					{
+						String name = reader.getLocalName();
+						if ("workbookPr".equals(name))
+						{
+							String date1904Value = reader.getAttributeValue(null, "date1904");
+							date1904 = "1".equals(date1904Value) || "true".equals(date1904Value);
+						}
+						else if ("sheet".equals(name))
+						{
+							sheetNames.add(reader.getAttributeValue(null, "name"));
+							sheetIds.add(reader.getAttributeValue(NAMESPACE_RELATIONSHIPS, "id"));
+						}
+					}
+				}
+			}
+			finally
+			{
+				reader.close();
+			}
+		}
+		finally
+		{
+			workbookStream.close();
+		}
+	}
+	
+
+	@Override
+	public boolean next() throws JRException
+	{
+		if (xssfReader == null)
+		{
+			return false;
+		}
+		
+		try
+		{
+			//initialize sheetIndex before first record
+			if (sheetIndex < 0)
+			{
+				int selectedIndex = getSelectedSheetIndex();
+				if (selectedIndex >= sheetNames.size())
+				{
+					// no sheets
+					return false;
+				}
+				openSheet(selectedIndex);
+			}
+			
+			while (true)
+			{
+				if (sheetReader != null && readRow())
+				{
+					boolean firstRow = !sheetRowRead;
+					sheetRowRead = true;
+					if (firstRow && useFirstRowAsHeader && (sheetSelection != null || sheetIndex == 0))
+					{
+						readHeader();
+						continue;
+					}
+					return true;
+				}
+				
+				closeSheet();
+				if (sheetSelection != null || sheetIndex + 1 >= sheetNames.size())
+				{
+					clearRow();
+					return false;
+				}
+				openSheet(sheetIndex + 1);
+			}
+		}
+		catch (IOException e)
+		{
+			throw 
+				new JRException(
+					EXCEPTION_MESSAGE_KEY_XLSX_READ_ERROR,
+					(Object[]) null, 
+					e);
+		}
+		catch (XMLStreamException e)
+		{
+			throw 
+				new JRException(
+					EXCEPTION_MESSAGE_KEY_XLSX_READ_ERROR,
+					(Object[]) null, 
+					e);
+		}
+		catch (OpenXML4JException e)
+		{
+			throw 
+				new JRException(
+					EXCEPTION_MESSAGE_KEY_XLSX_READ_ERROR,
+					(Object[]) null, 
+					e);
+		}
+	}
+	
+	
+	protected int getSelectedSheetIndex()
+	{
+		if (sheetSelection == null) 
+		{
+			return 0;
+		}
+		
+		int index = -1;
+		try
+		{
+			index = Integer.parseInt(sheetSelection);
+			if (index < 0 || index > sheetNames.size() - 1)
+			{
+				throw 
+					new JRRuntimeException(
+						EXCEPTION_MESSAGE_KEY_XLS_SHEET_INDEX_OUT_OF_RANGE,
+						new Object[]{index, (sheetNames.size() - 1)});
+			}
+		}
+		catch (NumberFormatException e)
+		{
+		}
+		
+		if (index < 0)
+		{
+			for (int i = 0; i < sheetNames.size(); i++)
+			{
+				// same as XSSFWorkbook.getSheet()
+				if (sheetSelection.equalsIgnoreCase(sheetNames.get(i)))
+				{
+					index = i;
+					break;
+				}
+			}
+
+			if (index < 0)
+			{
+				throw 
+					new JRRuntimeException(
+						EXCEPTION_MESSAGE_KEY_XLS_SHEET_NOT_FOUND,
+						new Object[]{sheetSelection});
+			}
+		}
+		return index;
+	}
+	
+	
+	protected void openSheet(int index) throws IOException, OpenXML4JException, XMLStreamException
+	{
+		sheetIndex = index;
+		sheetRowRead = false;
+		sheetStream = xssfReader.getSheet(sheetIds.get(index));
+		sheetReader = inputFactory.createXMLStreamReader(sheetStream);
+	}
+	
+	
+	protected void closeSheet()
+	{
+		if (sheetReader != null)
+		{
+			try
+			{
+				sheetReader.close();
+			}
+			catch (XMLStreamException e)
+			{
+				if (log.isWarnEnabled())
+				{
+					log.warn("Failed to close sheet parser", e);
+				}
+			}
+			sheetReader = null;
+		}
+		
+		if (sheetStream != null)
+		{
+			try
+			{
+				sheetStream.close();
+			}
+			catch (IOException e)
+			{
+				if (log.isWarnEnabled())
+				{
+					log.warn("Failed to close sheet data", e);
+				}
+			}
+			sheetStream = null;
+		}
+	}
+	
+	
+	/**
+	 * Reads the next row of the current sheet.
+	 * 
+	 * @return whether a row was found
+	 */
+	protected boolean readRow() throws XMLStreamException
+	{
+		while (sheetReader.hasNext())
+		{
+			int event = sheetReader.next();
+			if (event == XMLStreamConstants.START_ELEMENT && "row".equals(sheetReader.getLocalName()))
+			{
+				clearRow();
+				int column = -1;
+				while (true)
+				{
+					event = sheetReader.next();
+					if (event == XMLStreamConstants.START_ELEMENT && "c".equals(sheetReader.getLocalName()))
+					{
+						column = readCell(column + 1);
+					}
+					else if (event == XMLStreamConstants.END_ELEMENT && "row".equals(sheetReader.getLocalName()))
+					{
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+	
+	
+	/**
+	 * Reads a cell element.
+	 * 
+	 * @param defaultColumn the column index to use if the cell has no reference
+	 * @return the column index of the cell
+	 */
+	protected int readCell(int defaultColumn) throws XMLStreamException
+	{
+		String reference = sheetReader.getAttributeValue(null, "r");
+		int column = reference == null ? defaultColumn : columnIndex(reference);
+		String type = sheetReader.getAttributeValue(null, "t");
+		
+		String value = null;
+		StringBuilder inlineText = null;
+		boolean phonetic = false;
+		while (true)
+		{
+			int event = sheetReader.next();
+			if (event == XMLStreamConstants.START_ELEMENT)
+			{
+				String name = sheetReader.getLocalName();
+				if ("v".equals(name))
+				{
+					value = sheetReader.getElementText();
+				}
+				else if ("is".equals(name))
+				{
+					inlineText = new StringBuilder();
+				}
+				else if ("rPh".equals(name))
+				{
+					phonetic = true;
+				}
+				else if ("t".equals(name) && inlineText != null && !phonetic)
+				{
+					inlineText.append(sheetReader.getElementText());
+				}
+			}
+			else if (event == XMLStreamConstants.END_ELEMENT)
+			{
+				String name = sheetReader.getLocalName();
+				if ("c".equals(name))
+				{
+					break;
+				}
+				if ("rPh".equals(name))
+				{
+					phonetic = false;
+				}
+			}
+		}
+		
+		byte cellType;
+		if ("s".equals(type))
+		{
+			cellType = CELL_STRING;
+			value = value == null ? null : sharedStrings.getEntryAt(Integer.parseInt(value.trim()));
+		}
+		else if ("inlineStr".equals(type))
+		{
+			cellType = CELL_STRING;
+			value = inlineText == null ? value : inlineText.toString();
+		}
+		else if ("str".equals(type) || "d".equals(type))
+		{
+			cellType = CELL_STRING;
+		}
+		else if ("b".equals(type))
+		{
+			cellType = CELL_BOOLEAN;
+		}
+		else if ("e".equals(type))
+		{
+			cellType = CELL_ERROR;
+		}
+		else
+		{
+			cellType = CELL_NUMERIC;
+		}
+		
+		if (value == null)
+		{
+			cellType = CELL_BLANK;
+			value = "";
+		}
+		
+		setCell(column, cellType, value);
+		return column;
+	}
+	
+	
+	/**
+	 * Converts a cell reference such as <code>AB12</code> to a zero based column index.
+	 */
+	protected static int columnIndex(String reference)
+	{
+		int column = 0;
+		for (int i = 0; i < reference.length(); i++)
+		{
+			char c = reference.charAt(i);
+			if (c < 'A' || c > 'Z')
+			{
+				break;
+			}
+			column = column * 26 + (c - 'A' + 1);
+		}
+		return column - 1;
+	}
+	
+	
+	private void setCell(int column, byte type, String value)
+	{
+		if (column >= cellTypes.length)
+		{
+			int length = Math.max(column + 1, 2 * cellTypes.length);
+			cellTypes = Arrays.copyOf(cellTypes, length);
+			cellValues = Arrays.copyOf(cellValues, length);
+		}
+		cellTypes[column] = type;
+		cellValues[column] = value;
+		cellCount = Math.max(cellCount, column + 1);
+	}
+	
+	
+	private void clearRow()
+	{
+		Arrays.fill(cellTypes, 0, cellCount, CELL_NONE);
+		Arrays.fill(cellValues, 0, cellCount, null);
+		cellCount = 0;
+	}
+
+
+	@Override
+	public void moveFirst()
+	{
+		closeSheet();
+		clearRow();
+		this.sheetIndex = -1;
+	}
+
+
+	@Override
+	public Object getFieldValue(JRField jrField) throws JRException
+	{
+		Class<?> valueClass = jrField.getValueClass();
+		try 
+		{
+			Integer columnIndex = getColumnIndex(jrField);
+			if (columnIndex >= cellCount || cellTypes[columnIndex] == CELL_NONE)
+			{
+				return null;
+			}
+			
+			byte cellType = cellTypes[columnIndex];
+			String value = cellValues[columnIndex];
+			if (cellType == CELL_ERROR)
+			{
+				return null;
+			}
+			
+			if (valueClass.equals(String.class)) 
+			{
+				return value;
+			}
+			if (valueClass.equals(Boolean.class)) 
+			{
+				if (cellType == CELL_BOOLEAN)
+				{
+					return "1".equals(value) || "true".equalsIgnoreCase(value);
+				}
+				else if (value.trim().length() == 0)
+				{
+					return null;
+				}
+				else
+				{
+					return convertStringValue(value, valueClass);
+				}
+			}
+			else if (Number.class.isAssignableFrom(valueClass))
+			{
+				if (cellType == CELL_NUMERIC)
+				{
+					return convertNumber(Double.valueOf(value), valueClass);
+				}
+				else if (value.trim().length() == 0)
+				{
+					return null;
+				}
+				else if (numberFormat != null)
+				{
+					return FormatUtils.getFormattedNumber(numberFormat, value, valueClass);
+				}
+				else 
+				{
+					return convertStringValue(value, valueClass);
+				}
+			}
+			else if (Date.class.isAssignableFrom(valueClass))
+			{
+				if (cellType == CELL_NUMERIC)
+				{
+					return DateUtil.getJavaDate(Double.parseDouble(value), date1904);
+				}
+				else if (value.trim().length() == 0)
+				{
+					return null;
+				}
+				else if (dateFormat != null)
+				{
+					return FormatUtils.getFormattedDate(dateFormat, value, valueClass);
+				}
+				else 
+				{
+					return convertStringValue(value, valueClass);
+				}
+			}
+			else
+			{
+				throw 
+					new JRException(
+						EXCEPTION_MESSAGE_KEY_CANNOT_CONVERT_FIELD_TYPE,
+						new Object[]{jrField.getName(), valueClass.getName()});
+			}
+		}
+		catch (Exception e) 
+		{
+			throw 
+				new JRException(
+					EXCEPTION_MESSAGE_KEY_XLS_FIELD_VALUE_NOT_RETRIEVED,
+					new Object[]{jrField.getName(), valueClass.getName()}, 
+					e);
+		}
+	}
+
+
+	/**
+	 *
+	 */
+	private void readHeader()
+	{
+		if (columnNames.size() == 0)
+		{
+			for (int columnIndex = 0; columnIndex < cellCount; columnIndex++)
+			{
+				if (cellTypes[columnIndex] != CELL_NONE)
+				{
+					columnNames.put(getHeaderText(columnIndex), columnIndex);
+				}
+				else
+				{
+					columnNames.put(INDEXED_COLUMN_PREFIX + columnIndex, columnIndex);
+				}
+			}
+		}
+		else
+		{
+			Map<String, Integer> newColumnNames = new LinkedHashMap<String, Integer>();
+			for (Iterator<Integer> it = columnNames.values().iterator(); it.hasNext();)
+			{
+				Integer columnIndex = it.next();
+				if (columnIndex < cellCount && cellTypes[columnIndex] != CELL_NONE)
+				{
+					newColumnNames.put(getHeaderText(columnIndex), columnIndex);
+				}
+			}
+			columnNames = newColumnNames;
+		}
+	}
+	
+	
+	/**
+	 * Returns the text of a header cell in the same manner as the POI cell <code>toString()</code>.
+	 */
+	private String getHeaderText(int columnIndex)
+	{
+		String value = cellValues[columnIndex];
+		switch (cellTypes[columnIndex])
+		{
+		case CELL_NUMERIC:
+			return String.valueOf(Double.parseDouble(value));
+		case CELL_BOOLEAN:
+			return "1".equals(value) || "true".equalsIgnoreCase(value) ? "TRUE" : "FALSE";
+		default:
+			return value;
+		}
+	}
+
+
+	/**
+	 * Closes the reader. Users of this data source should close it after usage.
+	 */
+	@Override
+	public void close()
+	{
+		closeSheet();
+		
+		if (xlsxPackage != null)
+		{
+			// the package is only read, revert() closes it without saving
+			xlsxPackage.revert();
+			xlsxPackage = null;
+			xssfReader = null;
+		}
+		
+		if (spoolFile != null)
+		{
+			if (!spoolFile.delete() && log.isWarnEnabled())
+			{
+				log.warn("Could not delete XLSX spool file " + spoolFile);
+			}
+			spoolFile = null;
+		}
+	}
+
+
+	@Override
+	protected void checkReadStarted()
+	{
+		if (sheetIndex >= 0)
+		{
+			throw 
+				new JRRuntimeException(
+					EXCEPTION_MESSAGE_KEY_CANNOT_MODIFY_PROPERTIES_AFTER_START,
+					(Object[])null);
+		}
+	}
+	
+}
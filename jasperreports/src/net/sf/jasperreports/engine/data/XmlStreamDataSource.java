@@ -0,0 +1,648 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.engine.data;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.w3c.dom.Document;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+import net.sf.jasperreports.engine.JRPropertiesUtil;
+import net.sf.jasperreports.engine.JRRewindableDataSource;
+import net.sf.jasperreports.engine.JasperReportsContext;
+import net.sf.jasperreports.engine.data.XmlStreamPath.Step;
+import net.sf.jasperreports.engine.util.JRXmlUtils;
+import net.sf.jasperreports.repo.RepositoryContext;
+
+/**
+ * XML data source that reads the input in a single forward pass using a StAX parser.
+ * 
+ * <p>
+ * Unlike {@link JRXmlDataSource}, the data source does not load the whole XML document
+ * in memory. The records are selected while the input is parsed and only the element
+ * of the current record is kept in memory, as a lightweight tree on which the field
+ * expressions are evaluated.
+ * </p>
+ * 
+ * <p>
+ * The select and field expressions are restricted to a subset of XPath:
+ * <ul>
+ * <li>child and descendant steps, e.g. <code>/A/B</code>, <code>//B</code> or <code>/A//C</code></li>
+ * <li>element names, <code>*</code>, <code>.</code>, attributes (<code>@id</code>) and <code>text()</code></li>
+ * <li>predicates consisting of a position (<code>B[2]</code>), the existence of an attribute
+ * or child element (<code>B[@id]</code>) or the comparison of an attribute, child element or text
+ * with a literal (<code>B[@id &gt; 0]</code>, <code>B[C = 'x']</code>)</li>
+ * </ul>
+ * The select expression is always evaluated from the document root, only element steps
+ * are allowed and predicates that refer to the content of the elements are only allowed
+ * in the last step.
+ * The field expressions are evaluated relative to the record element and cannot
+ * refer to ancestors of the record.
+ * Records nested inside other records are not selected.
+ * </p>
+ * 
+ * <p>
+ * Expressions that are not part of the subset require {@link JRXmlDataSource},
+ * see {@link #isStreamable(String, JRField[])}.
+ * </p>
+ */
+public class XmlStreamDataSource extends JRAbstractTextDataSource implements JRRewindableDataSource
+{
+	
+	private static final Log log = LogFactory.getLog(XmlStreamDataSource.class);
+
+	public static final String EXCEPTION_MESSAGE_KEY_STREAM_NOT_REWINDABLE = "data.xml.stream.not.rewindable";
+	public static final String EXCEPTION_MESSAGE_KEY_STREAM_READ_ERROR = "data.xml.stream.read.error";
+	public static final String EXCEPTION_MESSAGE_KEY_UNSUPPORTED_EXPRESSION = "data.xml.stream.unsupported.expression";
+	
+	private final JasperReportsContext jasperReportsContext;
+	private final DataSourceInput inputSource;
+	private final XmlStreamPath selectPath;
+	private final int[] predicateOffsets;
+	private final int predicateCount;
+	
+	private final Map<String, XmlStreamPath> fieldPaths = new HashMap<String, XmlStreamPath>();
+	
+	private XMLInputFactory inputFactory;
+	private InputStream inputStream;
+	private XMLStreamReader reader;
+	private boolean started;
+	private boolean ended;
+	
+	private final List<Frame> frames = new ArrayList<Frame>();
+	private int depth;
+	private int skipDepth;
+	
+	private XmlStreamElement currentRecord;
+	
+	public XmlStreamDataSource(JasperReportsContext jasperReportsContext, InputStream in, String selectExpression) throws JRException
+	{
+		this(jasperReportsContext, new DataSourceInput.StreamInput(in), selectExpression);
+	}
+	
+	public XmlStreamDataSource(JasperReportsContext jasperReportsContext, File file, String selectExpression) throws FileNotFoundException, JRException
+	{
+		this(jasperReportsContext, new DataSourceInput.FileInput(file), selectExpression);
+	}
+	
+	public XmlStreamDataSource(RepositoryContext repositoryContext, String location, String selectExpression) throws JRException
+	{
+		this(repositoryContext.getJasperReportsContext(), new DataSourceInput.LocationInput(repositoryContext, location), selectExpression);
+	}
+	
+	XmlStreamDataSource(JasperReportsContext jasperReportsContext, DataSourceInput inputSource, String selectExpression) throws JRException
+	{
+		if (selectExpression == null)
+		{
+			throw 
+				new JRException(
+					EXCEPTION_MESSAGE_KEY_NULL_SELECT_EXPRESSION,
+					(Object[]) null);
+		}
+		
+		this.selectPath = XmlStreamPath.parseSelect(selectExpression);
+		if (selectPath == null)
+		{
+			throw 
+				new JRException(
+					EXCEPTION_MESSAGE_KEY_UNSUPPORTED_EXPRESSION,
+					new Object[]{selectExpression});
+		}
+		
+		this.jasperReportsContext = jasperReportsContext;
+		this.inputSource = inputSource;
+		
+		this.predicateOffsets = new int[selectPath.steps.length];
+		int offset = 0;
+		for (int i = 0; i < selectPath.steps.length; i++)
+		{
+			predicateOffsets[i] = offset;
+			offset += selectPath.steps[i].predicates.length;
+		}
+		this.predicateCount = offset;
+		
+		moveFirst();
+	}
+
+	/**
+	 * Determines whether a select expression and the expressions of a set of fields
+	 * can be evaluated while streaming the XML input.
+	 * 
+	 * @param selectExpression the select expression
+	 * @param fields the fields, can be <code>null</code>
+	 * @return whether the expressions are supported by the streaming data source
+	 */
+	public static boolean isStreamable(String selectExpression, JRField[] fields)
+	{
+		if (XmlStreamPath.parseSelect(selectExpression) == null)
+		{
+			return false;
+		}
+		
+		if (fields != null)
+		{
+			for (JRField field : fields)
+			{
+				if (XmlStreamPath.parseField(getFieldExpression(field)) == null)
+				{
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
+	protected static String getFieldExpression(JRField field)
+	{
+		String fieldExpression = null;
+		if (field.hasProperties())
+		{
+			fieldExpression = field.getPropertiesMap().getProperty(AbstractXmlDataSource.PROPERTY_FIELD_EXPRESSION);
+		}
+		if (fieldExpression == null || fieldExpression.length() == 0)
+		{
+			fieldExpression = field.getDescription();
+			if (fieldExpression == null || fieldExpression.length() == 0)
+			{
+				fieldExpression = field.getName();
+			}
+		}
+		return fieldExpression;
+	}
+
+	@Override
+	public void moveFirst() throws JRException
+	{
+		if (reader != null && !started)
+		{
+			// nothing read yet
+			return;
+		}
+		
+		if (started && !inputSource.isReopenable())
+		{
+			throw 
+				new JRException(
+					EXCEPTION_MESSAGE_KEY_STREAM_NOT_REWINDABLE,
+					(Object[]) null);
+		}
+		
+		closeInput();
+		currentRecord = null;
+		started = false;
+		ended = false;
+		
+		depth = 0;
+		skipDepth = 0;
+		Frame root = frame(0);
+		root.states[0] = true;
+		
+		inputStream = inputSource.open();
+		try
+		{
+			reader = getInputFactory().createXMLStreamReader(inputStream);
+		}
+		catch (XMLStreamException e)
+		{
+			closeInput();
+			throw 
+				new JRException(
+					EXCEPTION_MESSAGE_KEY_STREAM_READ_ERROR,
+					(Object[]) null, 
+					e);
+		}
+	}
+	
+	protected XMLInputFactory getInputFactory()
+	{
+		if (inputFactory == null)
+		{
+			inputFactory = XMLInputFactory.newInstance();
+			inputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+			inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+			if (!JRPropertiesUtil.getInstance(jasperReportsContext).getBooleanProperty(
+					JRXmlUtils.PROPERTY_ALLOW_DOCTYPE, false))
+			{
+				inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+			}
+		}
+		return inputFactory;
+	}
+
+	@Override
+	public boolean next() throws JRException
+	{
+		XmlStreamElement record;
+		try
+		{
+			record = nextRecord();
+		}
+		catch (XMLStreamException e)
+		{
+			closeInput();
+			throw 
+				new JRException(
+					EXCEPTION_MESSAGE_KEY_STREAM_READ_ERROR,
+					(Object[]) null, 
+					e);
+		}
+		
+		currentRecord = record;
+		if (record == null)
+		{
+			ended = true;
+			closeInput();
+		}
+		return record != null;
+	}
+	
+	private XmlStreamElement nextRecord() throws XMLStreamException
+	{
+		if (ended || reader == null)
+		{
+			return null;
+		}
+		
+		started = true;
+		while (reader.hasNext())
+		{
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT)
+			{
+				if (skipDepth > 0)
+				{
+					++skipDepth;
+					continue;
+				}
+				
+				XmlStreamElement record = startElement();
+				if (record != null)
+				{
+					return record;
+				}
+			}
+			else if (event == XMLStreamConstants.END_ELEMENT)
+			{
+				if (skipDepth > 0)
+				{
+					--skipDepth;
+				}
+				else
+				{
+					--depth;
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Matches an element against the select path, using the path states of the parent element.
+	 */
+	private XmlStreamElement startElement() throws XMLStreamException
+	{
+		Step[] steps = selectPath.steps;
+		int lastStep = steps.length - 1;
+		String name = qualifiedName(reader.getPrefix(), reader.getLocalName());
+		
+		Frame parent = frames.get(depth);
+		Frame frame = frame(depth + 1);
+		boolean active = false;
+		boolean candidate = false;
+		boolean deferred = false;
+		for (int i = 0; i <= lastStep; i++)
+		{
+			if (!parent.states[i])
+			{
+				continue;
+			}
+			
+			Step step = steps[i];
+			if (step.descendant)
+			{
+				frame.states[i] = true;
+				active = true;
+			}
+			
+			if (!step.matchesName(name))
+			{
+				continue;
+			}
+			
+			if (i == lastStep && step.needsContent())
+			{
+				// the predicates are evaluated after the record element is read
+				candidate = true;
+				deferred = true;
+			}
+			else if (matchesAttributes(step, parent.counters, predicateOffsets[i]))
+			{
+				if (i == lastStep)
+				{
+					candidate = true;
+				}
+				else
+				{
+					frame.states[i + 1] = true;
+					active = true;
+				}
+			}
+		}
+		
+		if (candidate)
+		{
+			// nested records are not selected, the whole record element is consumed
+			XmlStreamElement record = readElement();
+			if (!deferred || record.matches(steps[lastStep], parent.counters, predicateOffsets[lastStep]))
+			{
+				return record;
+			}
+		}
+		else if (active)
+		{
+			++depth;
+		}
+		else
+		{
+			// no path continues inside the element
+			skipDepth = 1;
+		}
+		return null;
+	}
+	
+	private boolean matchesAttributes(Step step, int[] counters, int offset)
+	{
+		for (int i = 0; i < step.predicates.length; i++)
+		{
+			XmlStreamPath.Predicate predicate = step.predicates[i];
+			if (predicate.type == XmlStreamPath.PREDICATE_POSITION)
+			{
+				if (++counters[offset + i] != predicate.position)
+				{
+					return false;
+				}
+			}
+			else if (!predicate.test(getAttribute(predicate.operandName)))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private String getAttribute(String name)
+	{
+		int count = reader.getAttributeCount();
+		for (int i = 0; i < count; i++)
+		{
+			if (name == null 
+					|| name.equals(qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i))))
+			{
+				return reader.getAttributeValue(i);
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Reads the element at the current position of the parser, including its content.
+	 */
+	private XmlStreamElement readElement() throws XMLStreamException
+	{
+		List<XmlStreamElement> stack = new ArrayList<XmlStreamElement>();
+		XmlStreamElement root = createElement();
+		stack.add(root);
+		while (true)
+		{
+			int event = reader.next();
+			XmlStreamElement element = stack.get(stack.size() - 1);
+			switch (event)
+			{
+			case XMLStreamConstants.START_ELEMENT:
+				XmlStreamElement child = createElement();
+				element.addChild(child);
+				stack.add(child);
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+			case XMLStreamConstants.ENTITY_REFERENCE:
+				element.appendText(reader.getText());
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				element.end();
+				stack.remove(stack.size() - 1);
+				if (stack.isEmpty())
+				{
+					return root;
+				}
+				break;
+			default:
+				// comments and processing instructions are ignored
+				break;
+			}
+		}
+	}
+	
+	private XmlStreamElement createElement()
+	{
+		String[] attributes = null;
+		int count = reader.getAttributeCount();
+		if (count > 0)
+		{
+			attributes = new String[2 * count];
+			for (int i = 0; i < count; i++)
+			{
+				attributes[2 * i] = qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i));
+				attributes[2 * i + 1] = reader.getAttributeValue(i);
+			}
+		}
+		return new XmlStreamElement(qualifiedName(reader.getPrefix(), reader.getLocalName()), attributes);
+	}
+	
+	private static String qualifiedName(String prefix, String localName)
+	{
+		return prefix == null || prefix.isEmpty() ? localName : (prefix + ":" + localName);
+	}
+	
+	private Frame frame(int index)
+	{
+		Frame frame;
+		if (index < frames.size())
+		{
+			frame = frames.get(index);
+			frame.reset();
+		}
+		else
+		{
+			frame = new Frame(selectPath.steps.length, predicateCount);
+			frames.add(frame);
+		}
+		return frame;
+	}
+
+	@Override
+	public Object getFieldValue(JRField field) throws JRException
+	{
+		if (currentRecord == null)
+		{
+			return null;
+		}
+		
+		XmlStreamPath path = fieldPaths.get(field.getName());
+		if (path == null)
+		{
+			String expression = getFieldExpression(field);
+			path = XmlStreamPath.parseField(expression);
+			if (path == null)
+			{
+				throw 
+					new JRException(
+						EXCEPTION_MESSAGE_KEY_UNSUPPORTED_EXPRESSION,
+						new Object[]{expression});
+			}
+			fieldPaths.put(field.getName(), path);
+		}
+		
+		String text = currentRecord.select(path);
+		if (text == null)
+		{
+			return null;
+		}
+		
+		Class<?> valueClass = field.getValueClass();
+		return Object.class.equals(valueClass) ? text : convertStringValue(text, valueClass);
+	}
+
+	/**
+	 * Creates a document using the current record element as root.
+	 * 
+	 * @return a document having the current record element as root
+	 * @throws JRException
+	 */
+	public Document subDocument() throws JRException
+	{
+		if (currentRecord == null)
+		{
+			throw 
+				new JRException(
+					EXCEPTION_MESSAGE_KEY_NODE_NOT_AVAILABLE,
+					(Object[]) null);
+		}
+		
+		Document document = JRXmlUtils.createDocumentBuilder().newDocument();
+		document.appendChild(currentRecord.toDOM(document));
+		return document;
+	}
+	
+	/**
+	 * Creates a sub data source using the current record element as the root of the document.
+	 * 
+	 * @param selectExpr the XPath select expression
+	 * @return the xml sub data source
+	 * @throws JRException if the sub data source couldn't be created
+	 * @see JRXmlDataSource#subDataSource(String)
+	 */
+	public JRXmlDataSource subDataSource(String selectExpr) throws JRException
+	{
+		JRXmlDataSource subDataSource = new JRXmlDataSource(jasperReportsContext, subDocument(), selectExpr);
+		subDataSource.setTextAttributes(this);
+		return subDataSource;
+	}
+
+	/**
+	 * Closes the XML input.
+	 * 
+	 * <p>
+	 * The input is automatically closed when all the records have been read.
+	 * </p>
+	 */
+	public void close()
+	{
+		closeInput();
+	}
+	
+	protected void closeInput()
+	{
+		if (reader != null)
+		{
+			try
+			{
+				reader.close();
+			}
+			catch (XMLStreamException e)
+			{
+				if (log.isWarnEnabled())
+				{
+					log.warn("Failed to close XML parser", e);
+				}
+			}
+			reader = null;
+		}
+		
+		if (inputStream != null)
+		{
+			inputSource.close(inputStream);
+			inputStream = null;
+		}
+	}
+	
+	/**
+	 * Select path states of an open element.
+	 */
+	private static class Frame
+	{
+		// the steps that can match child elements
+		final boolean[] states;
+		// position counters of the child elements
+		final int[] counters;
+		
+		Frame(int stepCount, int predicateCount)
+		{
+			this.states = new boolean[stepCount];
+			this.counters = new int[predicateCount];
+		}
+		
+		void reset()
+		{
+			Arrays.fill(states, false);
+			Arrays.fill(counters, 0);
+		}
+	}
+}
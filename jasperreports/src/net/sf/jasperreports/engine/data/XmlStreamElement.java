@@ -0,0 +1,266 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.engine.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import net.sf.jasperreports.engine.data.XmlStreamPath.Predicate;
+import net.sf.jasperreports.engine.data.XmlStreamPath.Step;
+
+/**
+ * Lightweight element tree built by {@link XmlStreamDataSource} for the current record.
+ */
+final class XmlStreamElement
+{
+	
+	private static final Object NOT_FOUND = new Object();
+	
+	private static final String[] NO_ATTRIBUTES = new String[0];
+	
+	private final String name;
+	// attribute names and values, alternating
+	private final String[] attributes;
+	
+	private StringBuilder textBuilder;
+	private String text;
+	private boolean hasContent;
+	private List<XmlStreamElement> children;
+	
+	XmlStreamElement(String name, String[] attributes)
+	{
+		this.name = name;
+		this.attributes = attributes == null ? NO_ATTRIBUTES : attributes;
+	}
+	
+	String getName()
+	{
+		return name;
+	}
+	
+	/**
+	 * Returns the value of an attribute.
+	 * 
+	 * @param attributeName the attribute name, <code>null</code> for any attribute
+	 */
+	String getAttribute(String attributeName)
+	{
+		for (int i = 0; i < attributes.length; i += 2)
+		{
+			if (attributeName == null || attributeName.equals(attributes[i]))
+			{
+				return attributes[i + 1];
+			}
+		}
+		return null;
+	}
+	
+	void appendText(String value)
+	{
+		hasContent = true;
+		if (textBuilder == null)
+		{
+			textBuilder = new StringBuilder(value.length());
+		}
+		textBuilder.append(value);
+	}
+	
+	void addChild(XmlStreamElement child)
+	{
+		hasContent = true;
+		if (children == null)
+		{
+			children = new ArrayList<XmlStreamElement>(4);
+		}
+		children.add(child);
+	}
+	
+	void end()
+	{
+		text = textBuilder == null ? (hasContent ? "" : null) : textBuilder.toString();
+		textBuilder = null;
+	}
+	
+	/**
+	 * Returns the text of the element in the same manner as {@link AbstractXmlDataSource#getText(org.w3c.dom.Node)},
+	 * i.e. the concatenated text that is directly contained by the element.
+	 * 
+	 * @return the element text, <code>null</code> if the element is empty
+	 */
+	String getText()
+	{
+		return text;
+	}
+	
+	/**
+	 * Evaluates a relative path on the element.
+	 * 
+	 * @param path the path
+	 * @return the text of the first node selected by the path, <code>null</code> if no node is selected
+	 */
+	String select(XmlStreamPath path)
+	{
+		Object value = select(path.steps, 0);
+		return value == NOT_FOUND ? null : (String) value;
+	}
+	
+	private Object select(Step[] steps, int stepIndex)
+	{
+		Step step = steps[stepIndex];
+		switch (step.type)
+		{
+		case XmlStreamPath.STEP_ATTRIBUTE:
+			String attribute = getAttribute(step.name);
+			return attribute == null ? NOT_FOUND : attribute;
+		case XmlStreamPath.STEP_TEXT:
+			return text == null || text.isEmpty() ? NOT_FOUND : text;
+		case XmlStreamPath.STEP_SELF:
+			if (!matches(step, new int[step.predicates.length], 0))
+			{
+				return NOT_FOUND;
+			}
+			return stepIndex + 1 == steps.length ? text : select(steps, stepIndex + 1);
+		case XmlStreamPath.STEP_ELEMENT:
+			return selectChildren(steps, stepIndex);
+		default:
+			throw new IllegalStateException("Unknown step type " + step.type);
+		}
+	}
+	
+	private Object selectChildren(Step[] steps, int stepIndex)
+	{
+		if (children == null)
+		{
+			return NOT_FOUND;
+		}
+		
+		Step step = steps[stepIndex];
+		int[] counters = step.predicates.length == 0 ? null : new int[step.predicates.length];
+		for (XmlStreamElement child : children)
+		{
+			if (step.matchesName(child.name) && child.matches(step, counters, 0))
+			{
+				Object value = stepIndex + 1 == steps.length ? child.text : child.select(steps, stepIndex + 1);
+				if (value != NOT_FOUND)
+				{
+					return value;
+				}
+			}
+			
+			if (step.descendant)
+			{
+				Object value = child.selectChildren(steps, stepIndex);
+				if (value != NOT_FOUND)
+				{
+					return value;
+				}
+			}
+		}
+		return NOT_FOUND;
+	}
+	
+	/**
+	 * Tests the predicates of a step on this element.
+	 * 
+	 * @param step the step
+	 * @param counters position counters of the elements that passed each predicate,
+	 * shared by the sibling elements
+	 * @param offset the offset of the step counters
+	 */
+	boolean matches(Step step, int[] counters, int offset)
+	{
+		for (int i = 0; i < step.predicates.length; i++)
+		{
+			Predicate predicate = step.predicates[i];
+			if (predicate.type == XmlStreamPath.PREDICATE_POSITION)
+			{
+				if (++counters[offset + i] != predicate.position)
+				{
+					return false;
+				}
+			}
+			else if (!test(predicate))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private boolean test(Predicate predicate)
+	{
+		switch (predicate.operandType)
+		{
+		case XmlStreamPath.STEP_ATTRIBUTE:
+			return predicate.test(getAttribute(predicate.operandName));
+		case XmlStreamPath.STEP_SELF:
+			return predicate.test(text == null ? "" : text);
+		case XmlStreamPath.STEP_TEXT:
+			return predicate.test(text == null || text.isEmpty() ? null : text);
+		case XmlStreamPath.STEP_ELEMENT:
+			if (children != null)
+			{
+				// true if any of the child elements matches
+				for (XmlStreamElement child : children)
+				{
+					if (child.name.equals(predicate.operandName)
+							&& predicate.test(child.text == null ? "" : child.text))
+					{
+						return true;
+					}
+				}
+			}
+			return false;
+		default:
+			throw new IllegalStateException("Unknown operand type " + predicate.operandType);
+		}
+	}
+	
+	/**
+	 * Creates a DOM element for this element.
+	 */
+	Element toDOM(Document document)
+	{
+		Element element = document.createElement(name);
+		for (int i = 0; i < attributes.length; i += 2)
+		{
+			element.setAttribute(attributes[i], attributes[i + 1]);
+		}
+		if (text != null && !text.isEmpty())
+		{
+			element.appendChild(document.createTextNode(text));
+		}
+		if (children != null)
+		{
+			for (XmlStreamElement child : children)
+			{
+				element.appendChild(child.toDOM(document));
+			}
+		}
+		return element;
+	}
+}
@@ -0,0 +1,609 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.engine.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiled form of the XPath subset supported by {@link XmlStreamDataSource}.
+ * 
+ * <p>
+ * The supported expressions are location paths made of child (<code>/</code>)
+ * and descendant (<code>//</code>) steps, where each step is an element name,
+ * <code>*</code>, <code>.</code>, an attribute (<code>@name</code>) or <code>text()</code>.
+ * Steps can have predicates consisting of a position (<code>[2]</code>), the existence
+ * of an attribute or child element (<code>[@id]</code>, <code>[name]</code>), or a comparison of
+ * an attribute, child element, <code>.</code> or <code>text()</code> with a literal
+ * using one of the <code>=, !=, &lt;, &lt;=, &gt;, &gt;=</code> operators.
+ * </p>
+ */
+final class XmlStreamPath
+{
+	
+	static final int STEP_ELEMENT = 1;
+	static final int STEP_SELF = 2;
+	static final int STEP_ATTRIBUTE = 3;
+	static final int STEP_TEXT = 4;
+	
+	static final int PREDICATE_POSITION = 1;
+	static final int PREDICATE_EXISTS = 2;
+	static final int PREDICATE_COMPARE = 3;
+	
+	static final int OPERATOR_EQ = 1;
+	static final int OPERATOR_NE = 2;
+	static final int OPERATOR_LT = 3;
+	static final int OPERATOR_LE = 4;
+	static final int OPERATOR_GT = 5;
+	static final int OPERATOR_GE = 6;
+	
+	private static final String TEXT_TEST = "text()";
+	
+	final String expression;
+	final boolean absolute;
+	final Step[] steps;
+	
+	private XmlStreamPath(String expression, boolean absolute, Step[] steps)
+	{
+		this.expression = expression;
+		this.absolute = absolute;
+		this.steps = steps;
+	}
+
+	/**
+	 * Compiles an expression.
+	 * 
+	 * @param expression the expression
+	 * @return the compiled path, or <code>null</code> if the expression is not part of the supported subset
+	 */
+	static XmlStreamPath parse(String expression)
+	{
+		if (expression == null)
+		{
+			return null;
+		}
+		
+		return new Parser(expression).parsePath();
+	}
+	
+	/**
+	 * Compiles a select expression.
+	 * 
+	 * <p>
+	 * Select expressions are always evaluated from the document root and can only
+	 * consist of element steps. Predicates that refer to the content of the elements
+	 * are only accepted for the last step.
+	 * </p>
+	 * 
+	 * @param expression the select expression
+	 * @return the compiled path, or <code>null</code> if the expression is not supported as a select expression
+	 */
+	static XmlStreamPath parseSelect(String expression)
+	{
+		XmlStreamPath path = parse(expression);
+		if (path == null)
+		{
+			return null;
+		}
+		
+		List<Step> steps = new ArrayList<Step>(path.steps.length);
+		for (Step step : path.steps)
+		{
+			if (step.type == STEP_SELF && steps.isEmpty() && !step.descendant && step.predicates.length == 0)
+			{
+				// leading . is the document node
+				continue;
+			}
+			
+			if (step.type != STEP_ELEMENT)
+			{
+				return null;
+			}
+			
+			steps.add(step);
+		}
+		
+		if (steps.isEmpty())
+		{
+			return null;
+		}
+		
+		for (int i = 0; i < steps.size() - 1; i++)
+		{
+			if (steps.get(i).needsContent())
+			{
+				return null;
+			}
+		}
+		
+		return new XmlStreamPath(path.expression, true, steps.toArray(new Step[steps.size()]));
+	}
+	
+	/**
+	 * Compiles a field expression, which is evaluated relative to the record element.
+	 * 
+	 * @param expression the field expression
+	 * @return the compiled path, or <code>null</code> if the expression is not supported as a field expression
+	 */
+	static XmlStreamPath parseField(String expression)
+	{
+		XmlStreamPath path = parse(expression);
+		return path == null || path.absolute ? null : path;
+	}
+	
+	static final class Step
+	{
+		final int type;
+		final boolean descendant;
+		// null for *
+		final String name;
+		final Predicate[] predicates;
+		
+		Step(int type, boolean descendant, String name, Predicate[] predicates)
+		{
+			this.type = type;
+			this.descendant = descendant;
+			this.name = name;
+			this.predicates = predicates;
+		}
+		
+		boolean matchesName(String elementName)
+		{
+			return name == null || name.equals(elementName);
+		}
+		
+		/**
+		 * Determines whether the predicates of the step need the content of the element,
+		 * as opposed to only its attributes.
+		 */
+		boolean needsContent()
+		{
+			for (Predicate predicate : predicates)
+			{
+				if (predicate.needsContent())
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+	
+	static final class Predicate
+	{
+		final int type;
+		final int position;
+		// STEP_ATTRIBUTE, STEP_ELEMENT, STEP_SELF or STEP_TEXT
+		final int operandType;
+		final String operandName;
+		final int operator;
+		final String literal;
+		final double numericLiteral;
+		final boolean numeric;
+		
+		Predicate(int position)
+		{
+			this.type = PREDICATE_POSITION;
+			this.position = position;
+			this.operandType = 0;
+			this.operandName = null;
+			this.operator = 0;
+			this.literal = null;
+			this.numericLiteral = Double.NaN;
+			this.numeric = false;
+		}
+		
+		Predicate(int operandType, String operandName)
+		{
+			this.type = PREDICATE_EXISTS;
+			this.position = 0;
+			this.operandType = operandType;
+			this.operandName = operandName;
+			this.operator = 0;
+			this.literal = null;
+			this.numericLiteral = Double.NaN;
+			this.numeric = false;
+		}
+		
+		Predicate(int operandType, String operandName, int operator, String literal, boolean numericLiteral)
+		{
+			this.type = PREDICATE_COMPARE;
+			this.position = 0;
+			this.operandType = operandType;
+			this.operandName = operandName;
+			this.operator = operator;
+			this.literal = literal;
+			this.numeric = numericLiteral || operator >= OPERATOR_LT;
+			this.numericLiteral = numeric ? toNumber(literal) : Double.NaN;
+		}
+		
+		boolean needsContent()
+		{
+			return type != PREDICATE_POSITION && operandType != STEP_ATTRIBUTE;
+		}
+		
+		/**
+		 * Tests an operand value.
+		 * 
+		 * @param value the operand value, <code>null</code> if the operand node does not exist
+		 */
+		boolean test(String value)
+		{
+			if (value == null)
+			{
+				return false;
+			}
+			
+			if (type == PREDICATE_EXISTS)
+			{
+				return true;
+			}
+			
+			if (!numeric)
+			{
+				boolean equal = literal.equals(value);
+				return operator == OPERATOR_EQ ? equal : !equal;
+			}
+			
+			double number = toNumber(value);
+			switch (operator)
+			{
+			case OPERATOR_EQ:
+				return number == numericLiteral;
+			case OPERATOR_NE:
+				return number != numericLiteral;
+			case OPERATOR_LT:
+				return number < numericLiteral;
+			case OPERATOR_LE:
+				return number <= numericLiteral;
+			case OPERATOR_GT:
+				return number > numericLiteral;
+			case OPERATOR_GE:
+				return number >= numericLiteral;
+			default:
+				throw new IllegalStateException("Unknown operator " + operator);
+			}
+		}
+		
+		private static double toNumber(String value)
+		{
+			try
+			{
+				return Double.parseDouble(value.trim());
+			}
+			catch (NumberFormatException e)
+			{
+				return Double.NaN;
+			}
+		}
+	}
+	
+	private static final class Parser
+	{
+		private final String expression;
+		private int index;
+		
+		Parser(String expression)
+		{
+			this.expression = expression;
+		}
+		
+		XmlStreamPath parsePath()
+		{
+			skipSpaces();
+			boolean absolute = peek() == '/';
+			boolean descendant = false;
+			if (absolute)
+			{
+				++index;
+				if (peek() == '/')
+				{
+					++index;
+					descendant = true;
+				}
+			}
+			
+			List<Step> steps = new ArrayList<Step>();
+			while (true)
+			{
+				Step step = parseStep(descendant);
+				if (step == null)
+				{
+					return null;
+				}
+				steps.add(step);
+				
+				skipSpaces();
+				if (index == expression.length())
+				{
+					break;
+				}
+				
+				if ((step.type != STEP_ELEMENT && step.type != STEP_SELF) || peek() != '/')
+				{
+					// attributes and text nodes can only be the last step
+					return null;
+				}
+				++index;
+				descendant = peek() == '/';
+				if (descendant)
+				{
+					++index;
+				}
+			}
+			
+			return new XmlStreamPath(expression, absolute, steps.toArray(new Step[steps.size()]));
+		}
+		
+		private Step parseStep(boolean descendant)
+		{
+			skipSpaces();
+			int type;
+			String name;
+			if (peek() == '.')
+			{
+				++index;
+				if (peek() == '.')
+				{
+					// parent steps are not supported
+					return null;
+				}
+				type = STEP_SELF;
+				name = null;
+			}
+			else if (peek() == '@')
+			{
+				++index;
+				type = STEP_ATTRIBUTE;
+				name = parseNameTest();
+				if (name == null)
+				{
+					return null;
+				}
+			}
+			else if (expression.startsWith(TEXT_TEST, index))
+			{
+				index += TEXT_TEST.length();
+				type = STEP_TEXT;
+				name = null;
+			}
+			else
+			{
+				type = STEP_ELEMENT;
+				name = parseNameTest();
+				if (name == null)
+				{
+					return null;
+				}
+			}
+			
+			List<Predicate> predicates = new ArrayList<Predicate>();
+			skipSpaces();
+			while (peek() == '[')
+			{
+				++index;
+				Predicate predicate = parsePredicate();
+				skipSpaces();
+				if (predicate == null || peek() != ']')
+				{
+					return null;
+				}
+				++index;
+				predicates.add(predicate);
+				skipSpaces();
+			}
+			
+			if (!predicates.isEmpty() && (type == STEP_ATTRIBUTE || type == STEP_TEXT))
+			{
+				return null;
+			}
+			
+			return new Step(type, descendant, "*".equals(name) ? null : name, 
+					predicates.toArray(new Predicate[predicates.size()]));
+		}
+		
+		private Predicate parsePredicate()
+		{
+			skipSpaces();
+			if (Character.isDigit(peek()))
+			{
+				int start = index;
+				while (Character.isDigit(peek()))
+				{
+					++index;
+				}
+				int position = Integer.parseInt(expression.substring(start, index));
+				return position > 0 ? new Predicate(position) : null;
+			}
+			
+			int operandType;
+			String operandName = null;
+			if (peek() == '@')
+			{
+				++index;
+				operandType = STEP_ATTRIBUTE;
+				operandName = parseName();
+			}
+			else if (expression.startsWith(TEXT_TEST, index))
+			{
+				index += TEXT_TEST.length();
+				operandType = STEP_TEXT;
+			}
+			else if (peek() == '.')
+			{
+				++index;
+				operandType = STEP_SELF;
+			}
+			else
+			{
+				operandType = STEP_ELEMENT;
+				operandName = parseName();
+			}
+			
+			if ((operandType == STEP_ATTRIBUTE || operandType == STEP_ELEMENT) 
+					&& operandName == null)
+			{
+				return null;
+			}
+			
+			skipSpaces();
+			if (peek() == ']')
+			{
+				return new Predicate(operandType, operandName);
+			}
+			
+			int operator = parseOperator();
+			if (operator == 0)
+			{
+				return null;
+			}
+			
+			skipSpaces();
+			char quote = peek();
+			if (quote == '\'' || quote == '"')
+			{
+				int end = expression.indexOf(quote, index + 1);
+				if (end < 0)
+				{
+					return null;
+				}
+				String literal = expression.substring(index + 1, end);
+				index = end + 1;
+				return new Predicate(operandType, operandName, operator, literal, false);
+			}
+			
+			int start = index;
+			while (Character.isDigit(peek()) || peek() == '.' || (index == start && peek() == '-'))
+			{
+				++index;
+			}
+			if (index == start)
+			{
+				return null;
+			}
+			return new Predicate(operandType, operandName, operator, expression.substring(start, index), true);
+		}
+		
+		private int parseOperator()
+		{
+			char c = peek();
+			int operator;
+			switch (c)
+			{
+			case '=':
+				operator = OPERATOR_EQ;
+				break;
+			case '!':
+				operator = OPERATOR_NE;
+				++index;
+				if (peek() != '=')
+				{
+					return 0;
+				}
+				break;
+			case '<':
+				operator = OPERATOR_LT;
+				if (peekNext() == '=')
+				{
+					++index;
+					operator = OPERATOR_LE;
+				}
+				break;
+			case '>':
+				operator = OPERATOR_GT;
+				if (peekNext() == '=')
+				{
+					++index;
+					operator = OPERATOR_GE;
+				}
+				break;
+			default:
+				return 0;
+			}
+			++index;
+			return operator;
+		}
+		
+		private String parseNameTest()
+		{
+			if (peek() == '*')
+			{
+				++index;
+				return "*";
+			}
+			return parseName();
+		}
+		
+		private String parseName()
+		{
+			int start = index;
+			while (index < expression.length())
+			{
+				char c = expression.charAt(index);
+				if (Character.isLetterOrDigit(c) || c == '_' || c == '-' 
+						|| (c == '.' && index > start)
+						|| (c == ':' && index > start && peekNext() != ':'))
+				{
+					++index;
+				}
+				else
+				{
+					break;
+				}
+			}
+			
+			if (index == start || !(Character.isLetter(expression.charAt(start)) || expression.charAt(start) == '_'))
+			{
+				return null;
+			}
+			
+			String name = expression.substring(start, index);
+			skipSpaces();
+			if (peek() == '(' || peek() == ':')
+			{
+				// function calls and axes are not supported
+				return null;
+			}
+			return name;
+		}
+		
+		private void skipSpaces()
+		{
+			while (index < expression.length() && Character.isWhitespace(expression.charAt(index)))
+			{
+				++index;
+			}
+		}
+		
+		private char peek()
+		{
+			return index < expression.length() ? expression.charAt(index) : 0;
+		}
+		
+		private char peekNext()
+		{
+			return index + 1 < expression.length() ? expression.charAt(index + 1) : 0;
+		}
+	}
+}
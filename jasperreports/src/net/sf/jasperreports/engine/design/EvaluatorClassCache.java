@@ -0,0 +1,201 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.engine.design;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Bounded cache of expression evaluator classes, keyed by the identity of the report compile data
+ * from which the classes have been loaded.
+ * 
+ * <p>
+ * The compile data objects are weakly referenced, an entry is discarded when the compiled report that
+ * contains its compile data is no longer used.
+ * When the maximum number of entries is exceeded, the least recently used entry is discarded.
+ * </p>
+ * 
+ * @see JRAbstractJavaCompiler#PROPERTY_EVALUATOR_CLASS_CACHE_MAX_ENTRIES
+ */
+public class EvaluatorClassCache
+{
+	private static final Log log = LogFactory.getLog(EvaluatorClassCache.class);
+	
+	private final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+	private final Map<DataKey, CachedClass> classes;
+	
+	/**
+	 * Creates a cache.
+	 * 
+	 * @param maxEntries the maximum number of classes to keep in the cache
+	 */
+	public EvaluatorClassCache(final int maxEntries)
+	{
+		this.classes = new LinkedHashMap<DataKey, CachedClass>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<DataKey, CachedClass> eldest)
+			{
+				boolean remove = size() > maxEntries;
+				if (remove && log.isDebugEnabled())
+				{
+					log.debug("evicting cached class " + eldest.getValue().loadedClass.getName());
+				}
+				return remove;
+			}
+		};
+	}
+	
+	/**
+	 * Returns the class loaded from a compile data object, if present in the cache.
+	 * 
+	 * @param compileData the compile data
+	 * @param className the class name
+	 * @param contextClassLoader the context class loader that was used to load the class
+	 * @return the cached class, or <code>null</code> if not found
+	 */
+	public synchronized Class<?> getClass(Object compileData, String className, ClassLoader contextClassLoader)
+	{
+		purge();
+		
+		CachedClass cached = classes.get(new DataKey(compileData));
+		if (cached == null 
+				|| cached.contextClassLoader != contextClassLoader
+				|| !cached.loadedClass.getName().equals(className))
+		{
+			return null;
+		}
+		return cached.loadedClass;
+	}
+	
+	/**
+	 * Adds a class loaded from a compile data object to the cache.
+	 * 
+	 * @param compileData the compile data
+	 * @param loadedClass the loaded class
+	 * @param contextClassLoader the context class loader used to load the class
+	 */
+	public synchronized void putClass(Object compileData, Class<?> loadedClass, ClassLoader contextClassLoader)
+	{
+		purge();
+		
+		classes.put(createDataKey(compileData, queue), new CachedClass(loadedClass, contextClassLoader));
+	}
+	
+	/**
+	 * Creates the weak reference used as key for a compile data object in the cache.
+	 * 
+	 * @param compileData the compile data
+	 * @param queue the queue on which the reference is to be enqueued when the compile data is collected
+	 * @return the cache key
+	 */
+	protected DataKey createDataKey(Object compileData, ReferenceQueue<Object> queue)
+	{
+		return new DataKey(compileData, queue);
+	}
+	
+	/**
+	 * Returns the number of classes in the cache.
+	 * 
+	 * @return the number of cached classes
+	 */
+	public synchronized int size()
+	{
+		purge();
+		return classes.size();
+	}
+	
+	protected void purge()
+	{
+		Reference<?> reference;
+		while ((reference = queue.poll()) != null)
+		{
+			CachedClass removed = classes.remove(reference);
+			if (removed != null && log.isDebugEnabled())
+			{
+				log.debug("removed cached class " + removed.loadedClass.getName());
+			}
+		}
+	}
+	
+	protected static class DataKey extends WeakReference<Object>
+	{
+		private final int hash;
+		
+		public DataKey(Object compileData)
+		{
+			super(compileData);
+			this.hash = System.identityHashCode(compileData);
+		}
+		
+		public DataKey(Object compileData, ReferenceQueue<Object> queue)
+		{
+			super(compileData, queue);
+			this.hash = System.identityHashCode(compileData);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (obj == this)
+			{
+				return true;
+			}
+			
+			if (!(obj instanceof DataKey))
+			{
+				return false;
+			}
+			
+			Object data = get();
+			return data != null && data == ((DataKey) obj).get();
+		}
+	}
+	
+	protected static class CachedClass
+	{
+		private final Class<?> loadedClass;
+		private final ClassLoader contextClassLoader;
+		
+		public CachedClass(Class<?> loadedClass, ClassLoader contextClassLoader)
+		{
+			this.loadedClass = loadedClass;
+			this.contextClassLoader = contextClassLoader;
+		}
+	}
+}
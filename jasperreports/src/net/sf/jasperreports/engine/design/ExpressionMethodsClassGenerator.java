@@ -0,0 +1,115 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.engine.design;
+
+import net.sf.jasperreports.engine.JRExpression;
+
+/**
+ * Java evaluator class generator that places each expression in a method of its own.
+ * 
+ * <p>
+ * The evaluation methods of the generated class only dispatch the expression ID to the
+ * expression methods, which keeps them small enough to be compiled by the JIT even for
+ * reports with many expressions (the JVM does not compile methods larger than 8000 bytes of bytecode).
+ * Old and estimated evaluations of expressions that do not depend on the evaluation type
+ * share the method of the default evaluation.
+ * </p>
+ * <p>
+ * Only the layout of the generated code changes. The expressions still read parameter, field and
+ * variable values through the fill objects and return boxed values, so reports whose evaluation
+ * methods are already small enough to be compiled are not evaluated faster.
+ * </p>
+ * <p>
+ * The generator is used when {@link JRClassGenerator#PROPERTY_EXPRESSION_METHODS} is set.
+ * </p>
+ */
+public class ExpressionMethodsClassGenerator extends JRClassGenerator
+{
+	
+	private static final String EXPRESSION_METHOD_PREFIX = "expression";
+
+	private final StringBuilder expressionMethods = new StringBuilder();
+	
+	protected ExpressionMethodsClassGenerator(JRSourceCompileTask sourceTask)
+	{
+		super(sourceTask);
+	}
+
+	@Override
+	protected void writeExpression(StringBuilder sb, JRExpression expression, byte evaluationType)
+	{
+		String methodName = writeExpressionMethod(expression, evaluationType);
+		
+		sb.append("            case "); 
+		sb.append(sourceTask.getExpressionId(expression)); 
+		sb.append(" : \n");
+		sb.append("            {\n");
+		sb.append("                value = ");
+		sb.append(methodName);
+		sb.append("();\n");
+		sb.append("                break;\n");
+		sb.append("            }\n");
+	}
+	
+	protected String writeExpressionMethod(JRExpression expression, byte evaluationType)
+	{
+		Integer expressionId = sourceTask.getExpressionId(expression);
+		String defaultMethodName = EXPRESSION_METHOD_PREFIX + expressionId;
+		
+		String code = generateExpression(expression, evaluationType);
+		if (evaluationType != JRExpression.EVALUATION_DEFAULT
+				&& code.equals(generateExpression(expression, JRExpression.EVALUATION_DEFAULT)))
+		{
+			// the default evaluation method is always generated first
+			return defaultMethodName;
+		}
+		
+		String methodName = defaultMethodName + methodSuffixMap.get(evaluationType);
+		
+		expressionMethods.append("    /**\n");
+		expressionMethods.append("     *\n");
+		expressionMethods.append("     */\n");
+		expressionMethods.append("    private Object ");
+		expressionMethods.append(methodName);
+		expressionMethods.append("() throws Throwable\n");
+		expressionMethods.append("    {\n");
+		expressionMethods.append("        return ");
+		expressionMethods.append(code);
+		expressionMethods.append(";");
+		appendExpressionComment(expressionMethods, expression);
+		expressionMethods.append("\n");
+		expressionMethods.append("    }\n");
+		expressionMethods.append("\n");
+		expressionMethods.append("\n");
+		
+		return methodName;
+	}
+
+	@Override
+	protected void generateClassEnd(StringBuilder sb)
+	{
+		sb.append(expressionMethods);
+	}
+	
+}
@@ -25,15 +25,21 @@ package net.sf.jasperreports.engine.design;
 
 import java.io.File;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 import net.sf.jasperreports.crosstabs.JRCrosstab;
 import net.sf.jasperreports.crosstabs.design.JRDesignCrosstab;
 import net.sf.jasperreports.engine.JRDataset;
+import net.sf.jasperreports.engine.JRConstants;
 import net.sf.jasperreports.engine.JRException;
 import net.sf.jasperreports.engine.JRExpressionCollector;
 import net.sf.jasperreports.engine.JRPropertiesUtil;
@@ -141,6 +147,112 @@ public abstract class JRAbstractCompiler implements JRCompiler
 	
 	@Override
 	public final JasperReport compileReport(JasperDesign jasperDesign) throws JRException
+	{
+		PreparedReport preparedReport = prepareReport(jasperDesign);
+		
+		try
+		{
+			// compiling generated sources
+			String compileErrors = compileUnits(preparedReport.units, preparedReport.classpath, preparedReport.tempDirFile);
+			if (compileErrors != null)
+			{
+				throw 
+					new JRException(
+						EXCEPTION_MESSAGE_KEY_REPORT_EXPRESSIONS_COMPILE_ERROR,
+						new Object[]{compileErrors});
+			}
+
+			return createReport(preparedReport);
+		}
+		catch (JRException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			throw 
+				new JRException(
+					EXCEPTION_MESSAGE_KEY_DESIGN_COMPILE_ERROR, 
+					null, 
+					e);
+		}
+		finally
+		{
+			deleteSourceFiles(preparedReport);
+		}
+	}
+
+
+	/**
+	 * Compiles several report designs.
+	 * <p>
+	 * The expression evaluator sources of the reports are generated in parallel using the common fork/join pool.
+	 * If the compiler {@link #isBatchCompileSupported() supports it}, the evaluator units of all reports
+	 * are then compiled together in a single compiler run for each worker thread, so that the compiler setup
+	 * and the resolution of the classes referenced by the expressions are shared by the reports.
+	 * Otherwise each report is compiled separately, also in parallel.
+	 * <p>
+	 * Errors are reported individually for each report, and do not prevent the other reports from being compiled.
+	 * 
+	 * @param jasperDesigns the report designs
+	 * @return the compile results, in the order of the report designs
+	 */
+	public List<ReportCompileResult> compileReports(List<JasperDesign> jasperDesigns)
+	{
+		int count = jasperDesigns.size();
+		ReportCompileResult[] results = new ReportCompileResult[count];
+		PreparedReport[] preparedReports = new PreparedReport[count];
+		
+		List<BatchAction> prepareActions = new ArrayList<BatchAction>(count);
+		for (int i = 0; i < count; ++i)
+		{
+			prepareActions.add(new PrepareAction(jasperDesigns.get(i), i, preparedReports, results));
+		}
+		ForkJoinTask.invokeAll(prepareActions);
+		
+		List<Integer> preparedIndexes = new ArrayList<Integer>(count);
+		for (int i = 0; i < count; ++i)
+		{
+			if (preparedReports[i] != null)
+			{
+				preparedIndexes.add(i);
+			}
+		}
+		
+		int preparedCount = preparedIndexes.size();
+		int chunkCount = isBatchCompileSupported() 
+				? Math.min(preparedCount, Math.max(1, ForkJoinPool.getCommonPoolParallelism()))
+				: preparedCount;
+		
+		List<BatchAction> compileActions = new ArrayList<BatchAction>(chunkCount);
+		int chunkStart = 0;
+		for (int chunk = 0; chunk < chunkCount; ++chunk)
+		{
+			int chunkEnd = (int) ((long) preparedCount * (chunk + 1) / chunkCount);
+			compileActions.add(new CompileAction(preparedIndexes.subList(chunkStart, chunkEnd), preparedReports, results));
+			chunkStart = chunkEnd;
+		}
+		ForkJoinTask.invokeAll(compileActions);
+		
+		return Arrays.asList(results);
+	}
+
+
+	/**
+	 * Determines whether the compiler is able to compile units that belong to several reports
+	 * in a single {@link #compileUnits(JRCompilationUnit[], String, File)} call, setting
+	 * the {@link JRCompilationUnit#setCompileErrors(String) errors} for each unit.
+	 * 
+	 * @return whether units of several reports can be compiled together
+	 * @see #compileReports(List)
+	 */
+	protected boolean isBatchCompileSupported()
+	{
+		return false;
+	}
+
+
+	private PreparedReport prepareReport(JasperDesign jasperDesign) throws JRException
 	{
 		// check if the language is supported by the compiler
 		checkLanguage(jasperDesign.getLanguage());
@@ -197,66 +309,150 @@ public abstract class JRAbstractCompiler implements JRCompiler
 
 		String classpath = JRPropertiesUtil.getInstance(jasperReportsContext).getProperty(JRCompiler.COMPILER_CLASSPATH);
 		
-		try
+		return new PreparedReport(jasperDesign, expressionCollector, nameSuffix, units, 
+				classpath, tempDirFile, isKeepJavaFile);
+	}
+
+
+	private JasperReport createReport(PreparedReport preparedReport) throws JRException
+	{
+		JasperDesign jasperDesign = preparedReport.jasperDesign;
+		JRExpressionCollector expressionCollector = preparedReport.expressionCollector;
+		JRCompilationUnit[] units = preparedReport.units;
+		List<JRDataset> datasets = jasperDesign.getDatasetsList();
+		List<JRCrosstab> crosstabs = jasperDesign.getCrosstabs();
+		
+		// creating the report compile data
+		JRReportCompileData reportCompileData = new JRReportCompileData();
+		reportCompileData.setMainDatasetCompileData(units[0].getCompileData());
+		
+		for (ListIterator<JRDataset> it = datasets.listIterator(); it.hasNext();)
 		{
-			// compiling generated sources
-			String compileErrors = compileUnits(units, classpath, tempDirFile);
-			if (compileErrors != null)
-			{
-				throw 
-					new JRException(
-						EXCEPTION_MESSAGE_KEY_REPORT_EXPRESSIONS_COMPILE_ERROR,
-						new Object[]{compileErrors});
-			}
+			JRDesignDataset dataset = (JRDesignDataset) it.next();
+			reportCompileData.setDatasetCompileData(dataset, units[it.nextIndex()].getCompileData());
+		}
+		
+		for (ListIterator<JRCrosstab> it = crosstabs.listIterator(); it.hasNext();)
+		{
+			JRDesignCrosstab crosstab = (JRDesignCrosstab) it.next();
+			Integer crosstabId = expressionCollector.getCrosstabId(crosstab);
+			reportCompileData.setCrosstabCompileData(crosstabId, units[datasets.size() + it.nextIndex()].getCompileData());
+		}
 
-			// creating the report compile data
-			JRReportCompileData reportCompileData = new JRReportCompileData();
-			reportCompileData.setMainDatasetCompileData(units[0].getCompileData());
-			
-			for (ListIterator<JRDataset> it = datasets.listIterator(); it.hasNext();)
-			{
-				JRDesignDataset dataset = (JRDesignDataset) it.next();
-				reportCompileData.setDatasetCompileData(dataset, units[it.nextIndex()].getCompileData());
-			}
+		// creating the report
+		JasperReport jasperReport = 
+			new JasperReport(
+				jasperDesign,
+				getCompilerClass(),
+				reportCompileData,
+				expressionCollector,
+				preparedReport.nameSuffix
+				);
+		
+		return jasperReport;
+	}
+
+
+	private void compileBatch(List<Integer> indexes, PreparedReport[] preparedReports, ReportCompileResult[] results)
+	{
+		int unitCount = 0;
+		for (Integer index : indexes)
+		{
+			unitCount += preparedReports[index].units.length;
+		}
+		
+		JRCompilationUnit[] batchUnits = new JRCompilationUnit[unitCount];
+		int offset = 0;
+		for (Integer index : indexes)
+		{
+			JRCompilationUnit[] units = preparedReports[index].units;
+			System.arraycopy(units, 0, batchUnits, offset, units.length);
+			offset += units.length;
+		}
+		
+		// all reports are prepared with the same context properties
+		PreparedReport firstReport = preparedReports[indexes.get(0)];
+		try
+		{
+			String compileErrors = compileUnits(batchUnits, firstReport.classpath, firstReport.tempDirFile);
 			
-			for (ListIterator<JRCrosstab> it = crosstabs.listIterator(); it.hasNext();)
+			offset = 0;
+			for (Integer index : indexes)
 			{
-				JRDesignCrosstab crosstab = (JRDesignCrosstab) it.next();
-				Integer crosstabId = expressionCollector.getCrosstabId(crosstab);
-				reportCompileData.setCrosstabCompileData(crosstabId, units[datasets.size() + it.nextIndex()].getCompileData());
+				PreparedReport preparedReport = preparedReports[index];
+				JRCompilationUnit[] units = preparedReport.units;
+				// the compiler might have replaced units in the array
+				System.arraycopy(batchUnits, offset, units, 0, units.length);
+				offset += units.length;
+				
+				String reportErrors = indexes.size() == 1 ? compileErrors : getCompileErrors(units, compileErrors);
+				if (reportErrors == null)
+				{
+					try
+					{
+						results[index] = ReportCompileResult.success(preparedReport.jasperDesign, createReport(preparedReport));
+					}
+					catch (JRException e)
+					{
+						results[index] = ReportCompileResult.failure(preparedReport.jasperDesign, e);
+					}
+				}
+				else
+				{
+					results[index] = ReportCompileResult.failure(preparedReport.jasperDesign, 
+							new JRException(
+								EXCEPTION_MESSAGE_KEY_REPORT_EXPRESSIONS_COMPILE_ERROR,
+								new Object[]{reportErrors}));
+				}
 			}
-
-			// creating the report
-			JasperReport jasperReport = 
-				new JasperReport(
-					jasperDesign,
-					getCompilerClass(),
-					reportCompileData,
-					expressionCollector,
-					nameSuffix
-					);
-			
-			return jasperReport;
 		}
-		catch (JRException e)
+		catch (JRException | RuntimeException e)
 		{
-			throw e;
+			JRException error = e instanceof JRException ? (JRException) e 
+					: new JRException(EXCEPTION_MESSAGE_KEY_DESIGN_COMPILE_ERROR, null, e);
+			for (Integer index : indexes)
+			{
+				if (results[index] == null)
+				{
+					results[index] = ReportCompileResult.failure(preparedReports[index].jasperDesign, error);
+				}
+			}
 		}
-		catch (Exception e)
+		finally
 		{
-			throw 
-				new JRException(
-					EXCEPTION_MESSAGE_KEY_DESIGN_COMPILE_ERROR, 
-					null, 
-					e);
+			for (Integer index : indexes)
+			{
+				deleteSourceFiles(preparedReports[index]);
+			}
 		}
-		finally
+	}
+
+
+	private static String getCompileErrors(JRCompilationUnit[] units, String compileErrors)
+	{
+		StringBuilder errors = null;
+		boolean compiled = true;
+		for (JRCompilationUnit unit : units)
 		{
-			if (needsSourceFiles && !isKeepJavaFile)
+			if (unit.getCompileErrors() != null)
 			{
-				deleteSourceFiles(units);
+				if (errors == null)
+				{
+					errors = new StringBuilder();
+				}
+				errors.append(unit.getCompileErrors());
 			}
+			
+			compiled &= unit.getCompileData() != null;
+		}
+		
+		if (errors != null)
+		{
+			return errors.toString();
 		}
+		
+		// the compiler did not attribute the errors to units
+		return compiled ? null : compileErrors;
 	}
 
 
@@ -328,11 +524,15 @@ public abstract class JRAbstractCompiler implements JRCompiler
 		return sourceFile;
 	}
 
-	private void deleteSourceFiles(JRCompilationUnit[] units)
+	private void deleteSourceFiles(PreparedReport preparedReport)
 	{
-		for (int i = 0; i < units.length; i++)
+		if (needsSourceFiles && !preparedReport.isKeepJavaFile)
 		{
-			units[i].getSourceFile().delete();
+			JRCompilationUnit[] units = preparedReport.units;
+			for (int i = 0; i < units.length; i++)
+			{
+				units[i].getSourceFile().delete();
+			}
 		}
 	}
 
@@ -417,4 +617,120 @@ public abstract class JRAbstractCompiler implements JRCompiler
 	 * @return the source file name
 	 */
 	protected abstract String getSourceFileName(String unitName);
+
+
+	/**
+	 * A report design for which the evaluator units have been generated.
+	 */
+	private static class PreparedReport
+	{
+		final JasperDesign jasperDesign;
+		final JRExpressionCollector expressionCollector;
+		final String nameSuffix;
+		final JRCompilationUnit[] units;
+		final String classpath;
+		final File tempDirFile;
+		final boolean isKeepJavaFile;
+		
+		PreparedReport(JasperDesign jasperDesign, JRExpressionCollector expressionCollector, String nameSuffix,
+				JRCompilationUnit[] units, String classpath, File tempDirFile, boolean isKeepJavaFile)
+		{
+			this.jasperDesign = jasperDesign;
+			this.expressionCollector = expressionCollector;
+			this.nameSuffix = nameSuffix;
+			this.units = units;
+			this.classpath = classpath;
+			this.tempDirFile = tempDirFile;
+			this.isKeepJavaFile = isKeepJavaFile;
+		}
+	}
+
+	
+	/**
+	 * Batch compilation task that runs with the context class loader of the thread that created it.
+	 */
+	private abstract static class BatchAction extends RecursiveAction
+	{
+		private static final long serialVersionUID = JRConstants.SERIAL_VERSION_UID;
+		
+		private final transient ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+		
+		@Override
+		protected void compute()
+		{
+			Thread thread = Thread.currentThread();
+			ClassLoader threadClassLoader = thread.getContextClassLoader();
+			thread.setContextClassLoader(contextClassLoader);
+			try
+			{
+				execute();
+			}
+			finally
+			{
+				thread.setContextClassLoader(threadClassLoader);
+			}
+		}
+		
+		protected abstract void execute();
+	}
+
+	
+	private class PrepareAction extends BatchAction
+	{
+		private static final long serialVersionUID = JRConstants.SERIAL_VERSION_UID;
+		
+		private final JasperDesign jasperDesign;
+		private final int index;
+		private final PreparedReport[] preparedReports;
+		private final ReportCompileResult[] results;
+		
+		PrepareAction(JasperDesign jasperDesign, int index, PreparedReport[] preparedReports, ReportCompileResult[] results)
+		{
+			this.jasperDesign = jasperDesign;
+			this.index = index;
+			this.preparedReports = preparedReports;
+			this.results = results;
+		}
+		
+		@Override
+		protected void execute()
+		{
+			try
+			{
+				preparedReports[index] = prepareReport(jasperDesign);
+			}
+			catch (JRException e)
+			{
+				results[index] = ReportCompileResult.failure(jasperDesign, e);
+			}
+			catch (RuntimeException e)
+			{
+				results[index] = ReportCompileResult.failure(jasperDesign, 
+						new JRException(EXCEPTION_MESSAGE_KEY_DESIGN_COMPILE_ERROR, null, e));
+			}
+		}
+	}
+
+	
+	private class CompileAction extends BatchAction
+	{
+		private static final long serialVersionUID = JRConstants.SERIAL_VERSION_UID;
+		
+		private final List<Integer> indexes;
+		private final PreparedReport[] preparedReports;
+		private final ReportCompileResult[] results;
+		
+		CompileAction(List<Integer> indexes, PreparedReport[] preparedReports, ReportCompileResult[] results)
+		{
+			this.indexes = indexes;
+			this.preparedReports = preparedReports;
+			this.results = results;
+		}
+		
+		@Override
+		protected void execute()
+		{
+			compileBatch(indexes, preparedReports, results);
+		}
+	}
 }
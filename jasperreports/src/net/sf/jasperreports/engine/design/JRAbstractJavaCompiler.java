@@ -72,6 +72,34 @@ public abstract class JRAbstractJavaCompiler extends JRAbstractCompiler
 	public static final String PROPERTY_EVALUATOR_CLASS_REFERENCE_FIX_ENABLED = JRPropertiesUtil.PROPERTY_PREFIX + 
 			"evaluator.class.reference.fix.enabled";
 	
+	/**
+	 * Property that specifies the maximum number of evaluator classes that are kept in a cache keyed by the
+	 * identity of the compiled report data.
+	 * 
+	 * Repeated fills of the same compiled report reuse the evaluator class loaded for the first fill.
+	 * Classes are discarded from the cache when the compiled reports are no longer used, or when the maximum
+	 * number of entries is exceeded.
+	 * Setting the property to 0 disables the cache.
+	 * 
+	 * <p>
+	 * A single cache is shared by all the compilers in the JVM. The cache is created when an evaluator is first
+	 * loaded by a compiler for which the property is positive, and its size is the value of the property in
+	 * the context of that compiler. Values of the property in other contexts, including 0, and later changes
+	 * of the property do not affect the cache once it has been created.
+	 * </p>
+	 * 
+	 * @see EvaluatorClassCache
+	 */
+	@Property(
+			category = PropertyConstants.CATEGORY_FILL,
+			defaultValue = "200",
+			scopes = {PropertyScope.CONTEXT},
+			sinceVersion = PropertyConstants.VERSION_6_8_0,
+			valueType = Integer.class
+			)
+	public static final String PROPERTY_EVALUATOR_CLASS_CACHE_MAX_ENTRIES = JRPropertiesUtil.PROPERTY_PREFIX + 
+			"evaluator.class.cache.max.entries";
+	
 	public static final String EXCEPTION_MESSAGE_KEY_EXPECTED_JAVA_LANGUAGE = "compilers.language.expected.java";
 	public static final String EXCEPTION_MESSAGE_KEY_EXPRESSION_CLASS_NOT_LOADED = "compilers.expression.class.not.loaded";
 
@@ -84,6 +112,7 @@ public abstract class JRAbstractJavaCompiler extends JRAbstractCompiler
 	private static Map<Object,Map<String,Class<?>>> classCache =
 			new ReferenceMap(ReferenceMap.ReferenceStrength.WEAK, ReferenceMap.ReferenceStrength.SOFT);
 
+	private static volatile EvaluatorClassCache evaluatorClassCache;
 
 	
 	/**
@@ -102,11 +131,23 @@ public abstract class JRAbstractJavaCompiler extends JRAbstractCompiler
 
 		try
 		{
-			Class<?> clazz = getClassFromCache(className);
+			EvaluatorClassCache evaluatorCache = getEvaluatorClassCache();
+			ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+			Class<?> clazz = evaluatorCache == null ? null 
+					: evaluatorCache.getClass(compileData, className, contextClassLoader);
 			if (clazz == null)
 			{
-				clazz = JRClassLoader.loadClassFromBytes(className, (byte[]) compileData);
-				putClassInCache(className, clazz);
+				clazz = getClassFromCache(className);
+				if (clazz == null)
+				{
+					clazz = JRClassLoader.loadClassFromBytes(className, (byte[]) compileData);
+					putClassInCache(className, clazz);
+				}
+				
+				if (evaluatorCache != null)
+				{
+					evaluatorCache.putClass(compileData, clazz, contextClassLoader);
+				}
 			}
 			
 			if (JRPropertiesUtil.getInstance(jasperReportsContext).getBooleanProperty(PROPERTY_EVALUATOR_CLASS_REFERENCE_FIX_ENABLED))
@@ -130,6 +171,38 @@ public abstract class JRAbstractJavaCompiler extends JRAbstractCompiler
 	}
 	
 	
+	/**
+	 * Returns the JVM wide evaluator class cache, creating it with the maximum number of entries 
+	 * from the context of this compiler if it has not been already created.
+	 * 
+	 * @return the evaluator class cache, or <code>null</code> if the cache has not been created
+	 * and is disabled in the context of this compiler
+	 * @see #PROPERTY_EVALUATOR_CLASS_CACHE_MAX_ENTRIES
+	 */
+	protected EvaluatorClassCache getEvaluatorClassCache()
+	{
+		EvaluatorClassCache cache = evaluatorClassCache;
+		if (cache == null)
+		{
+			synchronized (JRAbstractJavaCompiler.class)
+			{
+				cache = evaluatorClassCache;
+				if (cache == null)
+				{
+					int maxEntries = JRPropertiesUtil.getInstance(jasperReportsContext).getIntegerProperty(
+							PROPERTY_EVALUATOR_CLASS_CACHE_MAX_ENTRIES, 0);
+					// the cache is not created when disabled, the property is read again on the next call
+					if (maxEntries > 0)
+					{
+						cache = evaluatorClassCache = new EvaluatorClassCache(maxEntries);
+					}
+				}
+			}
+		}
+		return cache;
+	}
+	
+	
 	protected static Object classCacheKey()
 	{
 		ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
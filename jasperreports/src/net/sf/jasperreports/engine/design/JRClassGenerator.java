@@ -73,6 +73,21 @@ public class JRClassGenerator
 			)
 	public static final String PROPERTY_MAX_METHOD_SIZE = JRPropertiesUtil.PROPERTY_PREFIX + "compiler.max.java.method.size";
 	
+	/**
+	 * Property that determines whether the generated Java evaluator classes place each expression
+	 * in a separate method.
+	 * 
+	 * @see ExpressionMethodsClassGenerator
+	 */
+	@Property(
+			category = PropertyConstants.CATEGORY_COMPILE,
+			defaultValue = PropertyConstants.BOOLEAN_FALSE,
+			scopes = {PropertyScope.CONTEXT, PropertyScope.REPORT},
+			sinceVersion = PropertyConstants.VERSION_6_8_0,
+			valueType = Boolean.class
+			)
+	public static final String PROPERTY_EXPRESSION_METHODS = JRPropertiesUtil.PROPERTY_PREFIX + "compiler.java.expression.methods";
+	
 	
 	/**
 	 *
@@ -85,7 +100,7 @@ public class JRClassGenerator
 
 	private static Map<Byte,String> fieldPrefixMap;
 	private static Map<Byte,String> variablePrefixMap;
-	private static Map<Byte, String> methodSuffixMap;
+	protected static Map<Byte, String> methodSuffixMap;
 	
 	static
 	{
@@ -137,7 +152,11 @@ public class JRClassGenerator
 	 */
 	public static JRCompilationSourceCode generateClass(JRSourceCompileTask sourceTask) throws JRException
 	{
-		JRClassGenerator generator = new JRClassGenerator(sourceTask);
+		boolean expressionMethods = JRPropertiesUtil.getInstance(sourceTask.getJasperReportsContext()).getBooleanProperty(
+				sourceTask.getJasperDesign(), PROPERTY_EXPRESSION_METHODS, false);
+		JRClassGenerator generator = expressionMethods 
+				? new ExpressionMethodsClassGenerator(sourceTask) 
+				: new JRClassGenerator(sourceTask);
 		return generator.generateClass();
 	}
 
@@ -182,6 +201,8 @@ public class JRClassGenerator
 			sb.append(generateMethod(JRExpression.EVALUATION_ESTIMATED, expressions));
 		}
 		
+		generateClassEnd(sb);
+		
 		sb.append("}\n");
 
 		String code = sb.toString();
@@ -190,6 +211,17 @@ public class JRClassGenerator
 	}
 
 
+	/**
+	 * Generates additional code at the end of the class.
+	 * 
+	 * @param sb the class source code
+	 */
+	protected void generateClassEnd(StringBuilder sb)
+	{
+		// nothing by default
+	}
+
+
 	private void generateInitMethod(StringBuilder sb)
 	{
 		sb.append("\n");
@@ -603,7 +635,7 @@ public class JRClassGenerator
 	/**
 	 *
 	 */
-	private String generateExpression(
+	protected String generateExpression(
 		JRExpression expression,
 		byte evaluationType
 		)
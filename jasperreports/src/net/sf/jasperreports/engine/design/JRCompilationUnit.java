@@ -63,6 +63,11 @@ public class JRCompilationUnit
 	 */
 	private Serializable compileData;
 	
+	/**
+	 * The errors that resulted from compiling the unit.
+	 */
+	private String compileErrors;
+	
 	
 	/**
 	 * Creates a compilation unit.
@@ -155,6 +160,32 @@ public class JRCompilationUnit
 		return compileData;
 	}
 	
+	/**
+	 * Sets the errors that resulted from compiling the unit.
+	 * <p>
+	 * Compilers that compile several units in a single run use this to report the errors
+	 * of each unit, so that they can be attributed to the reports that contain the units.
+	 * 
+	 * @param compileErrors the formatted compilation errors, <code>null</code> if the unit has been compiled
+	 * @see JRAbstractCompiler#compileReports(List)
+	 */
+	public void setCompileErrors(String compileErrors)
+	{
+		this.compileErrors = compileErrors;
+	}
+	
+	
+	/**
+	 * Returns the errors that resulted from compiling the unit.
+	 * 
+	 * @return the formatted compilation errors, <code>null</code> if there were no errors 
+	 * or if the compiler does not report errors for individual units
+	 */
+	public String getCompileErrors()
+	{
+		return compileErrors;
+	}
+	
 	/**
 	 * Returns the compile task for the unit.
 	 * 
@@ -29,6 +29,7 @@ import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -166,11 +167,19 @@ public class JRJdtCompiler extends JRAbstractJavaCompiler
 		return requestor.getFormattedProblems();
 	}
 
+	@Override
+	protected boolean isBatchCompileSupported()
+	{
+		return true;
+	}
+
 	/**
 	 * 
 	 */
 	protected INameEnvironment getNameEnvironment(final JRCompilationUnit[] units)
 	{
+		final Map<String,Integer> unitIndexes = getUnitIndexes(units);
+		
 		final INameEnvironment env = new INameEnvironment() 
 		{
 			@Override
@@ -203,21 +212,8 @@ public class JRJdtCompiler extends JRAbstractJavaCompiler
 
 			private int getClassIndex(String className)
 			{
-				int classIdx;
-				for (classIdx = 0; classIdx < units.length; ++classIdx)
-				{
-					if (className.equals(units[classIdx].getName()))
-					{
-						break;
-					}
-				}
-				
-				if (classIdx >= units.length)
-				{
-					classIdx = -1;
-				}
-
-				return classIdx;
+				Integer classIdx = unitIndexes.get(className);
+				return classIdx == null ? -1 : classIdx;
 			}
 			
 			private NameEnvironmentAnswer findType(String className) 
@@ -389,6 +385,17 @@ public class JRJdtCompiler extends JRAbstractJavaCompiler
 		return env;
 	}
 
+	protected static Map<String,Integer> getUnitIndexes(JRCompilationUnit[] units)
+	{
+		// units can be looked up many times when compiling several reports at once
+		Map<String,Integer> unitIndexes = new HashMap<String,Integer>(units.length * 4 / 3 + 1);
+		for (int i = 0; i < units.length; i++)
+		{
+			unitIndexes.put(units[i].getName(), i);
+		}
+		return unitIndexes;
+	}
+
 	/**
 	 *
 	 */
@@ -551,6 +558,8 @@ public class JRJdtCompiler extends JRAbstractJavaCompiler
 		protected final JRJdtCompiler compiler;
 		protected final JRCompilationUnit[] units;
 		protected final CompilationUnitResult[] unitResults;
+		private final Map<String,Integer> unitIndexes;
+		private boolean compiled;
 		
 		public CompilerRequestor(final JasperReportsContext jasperReportsContext, final JRJdtCompiler compiler, final JRCompilationUnit[] units)
 		{
@@ -558,6 +567,7 @@ public class JRJdtCompiler extends JRAbstractJavaCompiler
 			this.compiler = compiler;
 			this.units = units;
 			this.unitResults = new CompilationUnitResult[units.length];
+			this.unitIndexes = getUnitIndexes(units);
 			
 			reset();
 		}
@@ -567,14 +577,7 @@ public class JRJdtCompiler extends JRAbstractJavaCompiler
 		{
 			String className = ((CompilationUnit) result.getCompilationUnit()).className;
 			
-			int classIdx;
-			for (classIdx = 0; classIdx < units.length; ++classIdx)
-			{
-				if (className.equals(units[classIdx].getName()))
-				{
-					break;
-				}
-			}
+			int classIdx = unitIndexes.get(className);
 			
 			if (result.hasErrors()) 
 			{
@@ -628,7 +631,10 @@ public class JRJdtCompiler extends JRAbstractJavaCompiler
 		 */
 		public void processProblems() 
 		{
-			//nothing to do here
+			for (int u = 0; u < units.length; u++) 
+			{
+				units[u].setCompileErrors(getFormattedProblems(u));
+			}
 		}
 
 		
@@ -641,65 +647,82 @@ public class JRJdtCompiler extends JRAbstractJavaCompiler
 			
 			for (int u = 0; u < units.length; u++) 
 			{
-				String sourceCode = units[u].getSourceCode();
-				
-				IProblem[] problems = unitResults[u].problems;
-				
-				if (problems != null && problems.length > 0)
+				String unitProblems = getFormattedProblems(u);
+				if (unitProblems != null)
 				{
-					for (int i = 0; i < problems.length; i++) 
-					{
-						IProblem problem = problems[i];
+					problemBuilder.append(unitProblems);
+				}
+			}
+			
+			return problemBuilder.length() > 0 ? problemBuilder.toString() : null;
+		}
+
+		
+		/**
+		 * 
+		 */
+		protected String getFormattedProblems(int u) 
+		{
+			StringBuilder problemBuilder = new StringBuilder();
 			
-						problemBuilder.append(i + 1);
-						problemBuilder.append(". ");
-						problemBuilder.append(problem.getMessage());
+			String sourceCode = units[u].getSourceCode();
 			
-						if (
-							problem.getSourceStart() >= 0
-							&& problem.getSourceEnd() >= 0
-							)
-						{									
-							int problemStartIndex = sourceCode.lastIndexOf("\n", problem.getSourceStart()) + 1;
-							int problemEndIndex = sourceCode.indexOf("\n", problem.getSourceEnd());
-							if (problemEndIndex < 0)
-							{
-								problemEndIndex = sourceCode.length();
-							}
-							
-							problemBuilder.append("\n");
-							problemBuilder.append(
-								sourceCode.substring(
-									problemStartIndex,
-									problemEndIndex
-									)
-								);
-							problemBuilder.append("\n");
-							for(int j = problemStartIndex; j < problem.getSourceStart(); j++)
-							{
-								problemBuilder.append(" ");
-							}
-							if (problem.getSourceStart() == problem.getSourceEnd())
-							{
-								problemBuilder.append("^");
-							}
-							else
+			IProblem[] problems = unitResults[u].problems;
+			
+			if (problems != null && problems.length > 0)
+			{
+				for (int i = 0; i < problems.length; i++) 
+				{
+					IProblem problem = problems[i];
+		
+					problemBuilder.append(i + 1);
+					problemBuilder.append(". ");
+					problemBuilder.append(problem.getMessage());
+		
+					if (
+						problem.getSourceStart() >= 0
+						&& problem.getSourceEnd() >= 0
+						)
+					{									
+						int problemStartIndex = sourceCode.lastIndexOf("\n", problem.getSourceStart()) + 1;
+						int problemEndIndex = sourceCode.indexOf("\n", problem.getSourceEnd());
+						if (problemEndIndex < 0)
+						{
+							problemEndIndex = sourceCode.length();
+						}
+						
+						problemBuilder.append("\n");
+						problemBuilder.append(
+							sourceCode.substring(
+								problemStartIndex,
+								problemEndIndex
+								)
+							);
+						problemBuilder.append("\n");
+						for(int j = problemStartIndex; j < problem.getSourceStart(); j++)
+						{
+							problemBuilder.append(" ");
+						}
+						if (problem.getSourceStart() == problem.getSourceEnd())
+						{
+							problemBuilder.append("^");
+						}
+						else
+						{
+							problemBuilder.append("<");
+							for(int j = problem.getSourceStart() + 1; j < problem.getSourceEnd(); j++)
 							{
-								problemBuilder.append("<");
-								for(int j = problem.getSourceStart() + 1; j < problem.getSourceEnd(); j++)
-								{
-									problemBuilder.append("-");
-								}
-								problemBuilder.append(">");
+								problemBuilder.append("-");
 							}
-			
-							problemBuilder.append("\n");
+							problemBuilder.append(">");
 						}
+		
+						problemBuilder.append("\n");
 					}
-					
-					problemBuilder.append(problems.length);
-					problemBuilder.append(" errors\n");
 				}
+				
+				problemBuilder.append(problems.length);
+				problemBuilder.append(" errors\n");
 			}
 			
 			return problemBuilder.length() > 0 ? problemBuilder.toString() : null;
@@ -725,22 +748,29 @@ public class JRJdtCompiler extends JRAbstractJavaCompiler
 		 */
 		public CompilationUnit[] processCompilationUnits()
 		{
-			final CompilationUnit[] compilationUnits = new CompilationUnit[units.length];
+			final List<CompilationUnit> compilationUnits = new ArrayList<CompilationUnit>(units.length);
 			
-			for (int i = 0; i < compilationUnits.length; i++)
+			for (int i = 0; i < units.length; i++)
 			{
-				if (unitResults[i].hasMissingMethods())
+				boolean missingMethods = unitResults[i].hasMissingMethods();
+				if (missingMethods)
 				{
 					units[i] = compiler.recreateCompileUnit(units[i], unitResults[i].getMissingMethods());
 					unitResults[i].resolveMissingMethods();
 				}
 				
-				compilationUnits[i] = new CompilationUnit(units[i].getSourceCode(), units[i].getName());
+				// after the first run only the units that had missing methods are compiled again,
+				// the results of the other units are kept
+				if (!compiled || missingMethods)
+				{
+					unitResults[i].reset();
+					compilationUnits.add(new CompilationUnit(units[i].getSourceCode(), units[i].getName()));
+				}
 			}
 			
-			reset();
+			compiled = true;
 			
-			return compilationUnits;
+			return compilationUnits.toArray(new CompilationUnit[compilationUnits.size()]);
 		}
 
 		/**
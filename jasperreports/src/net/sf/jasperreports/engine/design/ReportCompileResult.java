@@ -0,0 +1,110 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.engine.design;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperReport;
+
+/**
+ * The outcome of compiling a report design as part of a batch.
+ * 
+ * @see net.sf.jasperreports.engine.JasperCompileManager#compile(java.util.List)
+ */
+public class ReportCompileResult
+{
+	private final JasperDesign design;
+	private final JasperReport report;
+	private final JRException error;
+	
+	protected ReportCompileResult(JasperDesign design, JasperReport report, JRException error)
+	{
+		this.design = design;
+		this.report = report;
+		this.error = error;
+	}
+	
+	/**
+	 * Creates a result for a report design that has been compiled.
+	 * 
+	 * @param design the report design
+	 * @param report the compiled report
+	 * @return the compile result
+	 */
+	public static ReportCompileResult success(JasperDesign design, JasperReport report)
+	{
+		return new ReportCompileResult(design, report, null);
+	}
+	
+	/**
+	 * Creates a result for a report design that could not be compiled.
+	 * 
+	 * @param design the report design
+	 * @param error the compilation error
+	 * @return the compile result
+	 */
+	public static ReportCompileResult failure(JasperDesign design, JRException error)
+	{
+		return new ReportCompileResult(design, null, error);
+	}
+
+	/**
+	 * Returns the report design.
+	 * 
+	 * @return the report design
+	 */
+	public JasperDesign getDesign()
+	{
+		return design;
+	}
+
+	/**
+	 * Returns the compiled report.
+	 * 
+	 * @return the compiled report, or <code>null</code> if the compilation failed
+	 */
+	public JasperReport getReport()
+	{
+		return report;
+	}
+
+	/**
+	 * Returns the error that caused the compilation to fail.
+	 * 
+	 * @return the compilation error, or <code>null</code> if the report was compiled
+	 */
+	public JRException getError()
+	{
+		return error;
+	}
+	
+	/**
+	 * Determines whether the report design has been compiled.
+	 * 
+	 * @return whether the report design has been compiled
+	 */
+	public boolean isSuccessful()
+	{
+		return error == null;
+	}
+}
@@ -92,6 +92,7 @@ import net.sf.jasperreports.engine.export.tabulator.Table;
 import net.sf.jasperreports.engine.export.tabulator.TableCell;
 import net.sf.jasperreports.engine.export.tabulator.TablePosition;
 import net.sf.jasperreports.engine.export.tabulator.Tabulator;
+import net.sf.jasperreports.engine.fill.PagePrefetcher;
 import net.sf.jasperreports.engine.type.HorizontalImageAlignEnum;
 import net.sf.jasperreports.engine.type.HyperlinkTypeEnum;
 import net.sf.jasperreports.engine.type.LineDirectionEnum;
@@ -365,35 +366,50 @@ public class HtmlExporter extends AbstractHtmlExporter<HtmlReportConfiguration,
 				PageRange pageRange = getPageRange();
 				int startPageIndex = (pageRange == null || pageRange.getStartPageIndex() == null) ? 0 : pageRange.getStartPageIndex();
 				int endPageIndex = (pageRange == null || pageRange.getEndPageIndex() == null) ? (pages.size() - 1) : pageRange.getEndPageIndex();
-
-				JRPrintPage page = null;
-				for(pageIndex = startPageIndex; pageIndex <= endPageIndex; pageIndex++)
+				PagePrefetcher pagePrefetcher = createPagePrefetcher(pages, endPageIndex);
+				try
 				{
-					if (Thread.interrupted())
+					JRPrintPage page = null;
+					for(pageIndex = startPageIndex; pageIndex <= endPageIndex; pageIndex++)
 					{
-						throw new ExportInterruptedException();
-					}
-
-					page = pages.get(pageIndex);
-
-					writer.write("<a name=\"" + JR_PAGE_ANCHOR_PREFIX + reportIndex + "_" + (pageIndex + 1) + "\"></a>\n");
+						if (Thread.interrupted())
+						{
+							throw new ExportInterruptedException();
+						}
 
-					/*   */
-					exportPage(page);
+						page = pages.get(pageIndex);
 
-					if (reportIndex < items.size() - 1 || pageIndex < endPageIndex)
-					{
-						if (betweenPagesHtml == null)
+						if (pagePrefetcher != null)
 						{
-							writer.write("<br/>\n<br/>\n");
+							pagePrefetcher.pageAccessed(pageIndex);
 						}
-						else
+
+						writer.write("<a name=\"" + JR_PAGE_ANCHOR_PREFIX + reportIndex + "_" + (pageIndex + 1) + "\"></a>\n");
+
+						/*   */
+						exportPage(page);
+
+						if (reportIndex < items.size() - 1 || pageIndex < endPageIndex)
 						{
-							writer.write(betweenPagesHtml);
+							if (betweenPagesHtml == null)
+							{
+								writer.write("<br/>\n<br/>\n");
+							}
+							else
+							{
+								writer.write(betweenPagesHtml);
+							}
 						}
-					}
 
-					writer.write("\n");
+						writer.write("\n");
+					}
+				}
+				finally
+				{
+					if (pagePrefetcher != null)
+					{
+						pagePrefetcher.close();
+					}
 				}
 			}
 		}
@@ -115,6 +115,7 @@ import net.sf.jasperreports.engine.JasperReportsContext;
 import net.sf.jasperreports.engine.PrintPageFormat;
 import net.sf.jasperreports.engine.base.JRBaseFont;
 import net.sf.jasperreports.engine.base.JRBasePrintText;
+import net.sf.jasperreports.engine.fill.PagePrefetcher;
 import net.sf.jasperreports.engine.fonts.AwtFontAttribute;
 import net.sf.jasperreports.engine.fonts.FontFace;
 import net.sf.jasperreports.engine.fonts.FontFamily;
@@ -896,37 +897,52 @@ public class JRPdfExporter extends JRAbstractExporter<PdfReportConfiguration, Pd
 					PageRange pageRange = getPageRange();
 					int startPageIndex = (pageRange == null || pageRange.getStartPageIndex() == null) ? 0 : pageRange.getStartPageIndex();
 					int endPageIndex = (pageRange == null || pageRange.getEndPageIndex() == null) ? (pages.size() - 1) : pageRange.getEndPageIndex();
-
-					for (int pageIndex = startPageIndex; pageIndex <= endPageIndex; pageIndex++)
+					PagePrefetcher pagePrefetcher = createPagePrefetcher(pages, endPageIndex);
+					try
 					{
-						if (Thread.interrupted())
+						for (int pageIndex = startPageIndex; pageIndex <= endPageIndex; pageIndex++)
 						{
-							throw new ExportInterruptedException();
-						}
+							if (Thread.interrupted())
+							{
+								throw new ExportInterruptedException();
+							}
 
-						JRPrintPage page = pages.get(pageIndex);
+							JRPrintPage page = pages.get(pageIndex);
 
-						pageFormat = jasperPrint.getPageFormat(pageIndex);
+							if (pagePrefetcher != null)
+							{
+								pagePrefetcher.pageAccessed(pageIndex);
+							}
+
+							pageFormat = jasperPrint.getPageFormat(pageIndex);
 						
-						if (sizePageToContent || oldPageFormat != pageFormat)
-						{
-							setPageSize(sizePageToContent ? page : null);
-						}
+							if (sizePageToContent || oldPageFormat != pageFormat)
+							{
+								setPageSize(sizePageToContent ? page : null);
+							}
 						
-						document.newPage();
+							document.newPage();
 						
-						pdfContentByte = pdfWriter.getDirectContent();
+							pdfContentByte = pdfWriter.getDirectContent();
 
-						pdfContentByte.setLineCap(2);//PdfContentByte.LINE_CAP_PROJECTING_SQUARE since iText 1.02b
+							pdfContentByte.setLineCap(2);//PdfContentByte.LINE_CAP_PROJECTING_SQUARE since iText 1.02b
 
-						writePageAnchor(pageIndex);
+							writePageAnchor(pageIndex);
 						
-						crtDocumentPageNumber++;
+							crtDocumentPageNumber++;
 
-						/*   */
-						exportPage(page);
+							/*   */
+							exportPage(page);
 						
-						oldPageFormat = pageFormat;
+							oldPageFormat = pageFormat;
+						}
+					}
+					finally
+					{
+						if (pagePrefetcher != null)
+						{
+							pagePrefetcher.close();
+						}
 					}
 				}
 				else
@@ -67,6 +67,7 @@ import net.sf.jasperreports.engine.JasperReportsContext;
 import net.sf.jasperreports.engine.PrintPageFormat;
 import net.sf.jasperreports.engine.base.JRBasePrintPage;
 import net.sf.jasperreports.engine.base.JRBasePrintText;
+import net.sf.jasperreports.engine.fill.PagePrefetcher;
 import net.sf.jasperreports.engine.type.HorizontalTextAlignEnum;
 import net.sf.jasperreports.engine.type.ModeEnum;
 import net.sf.jasperreports.engine.type.OrientationEnum;
@@ -983,54 +984,73 @@ public abstract class JRXlsAbstractExporter<RC extends XlsReportConfiguration, C
 				PageRange pageRange = getPageRange();
 				int startPageIndex = (pageRange == null || pageRange.getStartPageIndex() == null) ? 0 : pageRange.getStartPageIndex();
 				int endPageIndex = (pageRange == null || pageRange.getEndPageIndex() == null) ? (pages.size() - 1) : pageRange.getEndPageIndex();
-
-				if (configuration.isOnePagePerSheet())
+				PagePrefetcher pagePrefetcher = createPagePrefetcher(pages, endPageIndex);
+				try
 				{
-					for (pageIndex = startPageIndex; pageIndex <= endPageIndex; pageIndex++)
+					if (configuration.isOnePagePerSheet())
 					{
-						if (Thread.interrupted())
+						for (pageIndex = startPageIndex; pageIndex <= endPageIndex; pageIndex++)
 						{
-							throw new ExportInterruptedException();
-						}
+							if (Thread.interrupted())
+							{
+								throw new ExportInterruptedException();
+							}
 
-						JRPrintPage page = pages.get(pageIndex);
+							JRPrintPage page = pages.get(pageIndex);
+
+							if (pagePrefetcher != null)
+							{
+								pagePrefetcher.pageAccessed(pageIndex);
+							}
 						
-						pageFormat = jasperPrint.getPageFormat(pageIndex);
+							pageFormat = jasperPrint.getPageFormat(pageIndex);
 						
-						/*   */
-						exportPage(page, /*xCuts*/null, /*startRow*/0, /*defaultSheetName*/null);
+							/*   */
+							exportPage(page, /*xCuts*/null, /*startRow*/0, /*defaultSheetName*/null);
+						}
 					}
-				}
-				else
-				{
-					/*
-					 * Make a pass and calculate the X cuts for all pages on this sheet.
-					 * The Y cuts can be calculated as each page is exported.
-					 */
-					CutsInfo xCuts = 
-						JRGridLayout.calculateXCuts(
-							getNature(), jasperPrint, startPageIndex, endPageIndex,
-							configuration.getOffsetX() == null ? 0 : configuration.getOffsetX() 
-							);
-					
-					//clear the filter's internal cache that might have built up
-					if (filter instanceof ResetableExporterFilter)
+					else
 					{
-						((ResetableExporterFilter)filter).reset();
-					}
-					int startRow = 0;
+						/*
+						 * Make a pass and calculate the X cuts for all pages on this sheet.
+						 * The Y cuts can be calculated as each page is exported.
+						 */
+						CutsInfo xCuts = 
+							JRGridLayout.calculateXCuts(
+								getNature(), jasperPrint, startPageIndex, endPageIndex,
+								configuration.getOffsetX() == null ? 0 : configuration.getOffsetX() 
+								);
+					
+						//clear the filter's internal cache that might have built up
+						if (filter instanceof ResetableExporterFilter)
+						{
+							((ResetableExporterFilter)filter).reset();
+						}
+						int startRow = 0;
 
-					for (pageIndex = startPageIndex; pageIndex <= endPageIndex; pageIndex++)
-					{
-						if (Thread.interrupted())
+						for (pageIndex = startPageIndex; pageIndex <= endPageIndex; pageIndex++)
 						{
-							throw new ExportInterruptedException();
+							if (Thread.interrupted())
+							{
+								throw new ExportInterruptedException();
+							}
+							JRPrintPage page = pages.get(pageIndex);
+							if (pagePrefetcher != null)
+							{
+								pagePrefetcher.pageAccessed(pageIndex);
+							}
+							pageFormat = jasperPrint.getPageFormat(pageIndex);
+							startRow = exportPage(page, xCuts, startRow, jasperPrint.getName());//FIXMEPART
 						}
-						JRPrintPage page = pages.get(pageIndex);
-						pageFormat = jasperPrint.getPageFormat(pageIndex);
-						startRow = exportPage(page, xCuts, startRow, jasperPrint.getName());//FIXMEPART
+						//updateColumns(xCuts);
+					}
+				}
+				finally
+				{
+					if (pagePrefetcher != null)
+					{
+						pagePrefetcher.close();
 					}
-					//updateColumns(xCuts);
 				}
 				pageExported = true;
 			} 
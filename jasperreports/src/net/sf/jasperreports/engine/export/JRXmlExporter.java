@@ -77,6 +77,7 @@ import net.sf.jasperreports.engine.PrintPageFormat;
 import net.sf.jasperreports.engine.PrintPart;
 import net.sf.jasperreports.engine.PrintParts;
 import net.sf.jasperreports.engine.TabStop;
+import net.sf.jasperreports.engine.fill.PagePrefetcher;
 import net.sf.jasperreports.engine.type.HyperlinkTargetEnum;
 import net.sf.jasperreports.engine.type.HyperlinkTypeEnum;
 import net.sf.jasperreports.engine.type.LineDirectionEnum;
@@ -446,18 +447,34 @@ public class JRXmlExporter extends JRAbstractExporter<ReportExportConfiguration,
 
 		if (pages != null && pages.size() > 0)
 		{
-			JRPrintPage page = null;
-			for(int i = startPageIndex; i <= endPageIndex; i++)
+			PagePrefetcher pagePrefetcher = createPagePrefetcher(pages, endPageIndex);
+			try
 			{
-				if (Thread.interrupted())
+				JRPrintPage page = null;
+				for(int i = startPageIndex; i <= endPageIndex; i++)
 				{
-					throw new ExportInterruptedException();
-				}
+					if (Thread.interrupted())
+					{
+						throw new ExportInterruptedException();
+					}
 				
-				page = pages.get(i);
+					page = pages.get(i);
+				
+					if (pagePrefetcher != null)
+					{
+						pagePrefetcher.pageAccessed(i);
+					}
 	
-				/*   */
-				exportPage(page);
+					/*   */
+					exportPage(page);
+				}
+			}
+			finally
+			{
+				if (pagePrefetcher != null)
+				{
+					pagePrefetcher.close();
+				}
 			}
 		}
 
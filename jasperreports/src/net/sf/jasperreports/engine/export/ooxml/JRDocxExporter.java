@@ -81,6 +81,7 @@ import net.sf.jasperreports.engine.export.JRXmlExporter;
 import net.sf.jasperreports.engine.export.LengthUtil;
 import net.sf.jasperreports.engine.export.OccupiedGridCell;
 import net.sf.jasperreports.engine.export.zip.FileBufferedZipEntry;
+import net.sf.jasperreports.engine.fill.PagePrefetcher;
 import net.sf.jasperreports.engine.type.HorizontalTextAlignEnum;
 import net.sf.jasperreports.engine.type.HyperlinkTypeEnum;
 import net.sf.jasperreports.engine.type.LineDirectionEnum;
@@ -436,27 +437,42 @@ public class JRDocxExporter extends JRAbstractExporter<DocxReportConfiguration,
 				PageRange pageRange = getPageRange();
 				startPageIndex = (pageRange == null || pageRange.getStartPageIndex() == null) ? 0 : pageRange.getStartPageIndex();
 				endPageIndex = (pageRange == null || pageRange.getEndPageIndex() == null) ? (pages.size() - 1) : pageRange.getEndPageIndex();
-
-				JRPrintPage page = null;
-				for(pageIndex = startPageIndex; pageIndex <= endPageIndex; pageIndex++)
+				PagePrefetcher pagePrefetcher = createPagePrefetcher(pages, endPageIndex);
+				try
 				{
-					if (Thread.interrupted())
+					JRPrintPage page = null;
+					for(pageIndex = startPageIndex; pageIndex <= endPageIndex; pageIndex++)
 					{
-						throw new ExportInterruptedException();
-					}
+						if (Thread.interrupted())
+						{
+							throw new ExportInterruptedException();
+						}
 
-					page = pages.get(pageIndex);
+						page = pages.get(pageIndex);
 
-					pageFormat = jasperPrint.getPageFormat(pageIndex);
+						if (pagePrefetcher != null)
+						{
+							pagePrefetcher.pageAccessed(pageIndex);
+						}
+
+						pageFormat = jasperPrint.getPageFormat(pageIndex);
 					
-					if (oldPageFormat != null && oldPageFormat != pageFormat)
-					{
-						docHelper.exportSection(oldPageFormat, pageGridLayout, false);
-					}
+						if (oldPageFormat != null && oldPageFormat != pageFormat)
+						{
+							docHelper.exportSection(oldPageFormat, pageGridLayout, false);
+						}
 					
-					exportPage(page);
+						exportPage(page);
 
-					oldPageFormat = pageFormat;
+						oldPageFormat = pageFormat;
+					}
+				}
+				finally
+				{
+					if (pagePrefetcher != null)
+					{
+						pagePrefetcher.close();
+					}
 				}
 			}
 		}
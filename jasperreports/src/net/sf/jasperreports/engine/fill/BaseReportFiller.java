@@ -439,6 +439,11 @@ public abstract class BaseReportFiller implements ReportFiller
 	}
 	
 	protected void setParameters(Map<String,Object> parameterValues) throws JRException
+	{
+		setParameters(parameterValues, false);
+	}
+	
+	protected void setParameters(Map<String,Object> parameterValues, boolean prefetchQuery) throws JRException
 	{
 		initVirtualizationContext(parameterValues);
 
@@ -454,7 +459,7 @@ public abstract class BaseReportFiller implements ReportFiller
 
 		mainDataset.setParameterValues(parameterValues);
 		mainDataset.evaluateFieldProperties();
-		mainDataset.initDatasource();
+		mainDataset.initDatasource(prefetchQuery);
 
 		this.scriptlet = mainDataset.delegateScriptlet;
 
@@ -0,0 +1,162 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.engine.fill;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import net.sf.jasperreports.annotations.properties.Property;
+import net.sf.jasperreports.annotations.properties.PropertyScope;
+import net.sf.jasperreports.engine.JRConstants;
+import net.sf.jasperreports.engine.JRPrintElement;
+import net.sf.jasperreports.engine.JRPropertiesUtil;
+import net.sf.jasperreports.properties.PropertyConstants;
+
+/**
+ * Page elements list backed by a {@link CompactElementStore}.
+ * 
+ * <p>
+ * The list is serialized as a regular list of elements.
+ * </p>
+ * 
+ * @see #PROPERTY_COMPACT_PAGE_ELEMENTS
+ */
+public class CompactElementList extends AbstractList<JRPrintElement> implements Serializable
+{
+	private static final long serialVersionUID = JRConstants.SERIAL_VERSION_UID;
+	
+	/**
+	 * Property that determines whether the elements of filled pages are kept in compact element stores.
+	 * 
+	 * <p>
+	 * Compact stores reduce the memory used by the generated document, 
+	 * with the cost of creating element objects each time the page elements are accessed.
+	 * The property only applies to report fills that do not use a virtualizer.
+	 * </p>
+	 * 
+	 * <p>
+	 * The property can be set at report and global levels.
+	 * </p>
+	 * 
+	 * @see CompactElementStore
+	 */
+	@Property(
+			category = PropertyConstants.CATEGORY_FILL,
+			defaultValue = PropertyConstants.BOOLEAN_FALSE,
+			scopes = {PropertyScope.CONTEXT, PropertyScope.REPORT},
+			sinceVersion = PropertyConstants.VERSION_6_8_0,
+			valueType = Boolean.class
+			)
+	public static final String PROPERTY_COMPACT_PAGE_ELEMENTS = 
+			JRPropertiesUtil.PROPERTY_PREFIX + "compact.page.elements";
+	
+	private final transient CompactElementStore store;
+	
+	public CompactElementList()
+	{
+		this.store = new CompactElementStore();
+	}
+	
+	/**
+	 * Creates a compact list containing a set of elements.
+	 * 
+	 * @param elements the elements
+	 * @param excludedElements elements that are to be kept as references, 
+	 * usually because they are still going to be modified
+	 */
+	public CompactElementList(List<JRPrintElement> elements, Collection<?> excludedElements)
+	{
+		this.store = new CompactElementStore(elements.size());
+		for (JRPrintElement element : elements)
+		{
+			store.add(store.size(), element, !excludedElements.contains(element));
+		}
+		store.trim();
+	}
+	
+	/**
+	 * Decomposes elements that were previously kept as references.
+	 * 
+	 * @param excludedElements elements that are to be kept as references
+	 */
+	public synchronized void compact(Collection<?> excludedElements)
+	{
+		for (int i = 0; i < store.size(); i++)
+		{
+			if (!store.isCompact(i) && !excludedElements.contains(store.get(i)))
+			{
+				store.compact(i);
+			}
+		}
+		store.trim();
+	}
+	
+	public CompactElementStore getStore()
+	{
+		return store;
+	}
+
+	@Override
+	public synchronized JRPrintElement get(int index)
+	{
+		return store.get(index);
+	}
+
+	@Override
+	public synchronized int size()
+	{
+		return store.size();
+	}
+
+	@Override
+	public synchronized void add(int index, JRPrintElement element)
+	{
+		store.add(index, element);
+		++modCount;
+	}
+
+	@Override
+	public synchronized JRPrintElement set(int index, JRPrintElement element)
+	{
+		return store.set(index, element);
+	}
+
+	@Override
+	public synchronized JRPrintElement remove(int index)
+	{
+		JRPrintElement element = store.remove(index);
+		++modCount;
+		return element;
+	}
+	
+	private Object writeReplace() throws ObjectStreamException
+	{
+		return Collections.synchronizedList(new ArrayList<JRPrintElement>(this));
+	}
+}
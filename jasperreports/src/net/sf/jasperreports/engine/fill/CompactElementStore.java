@@ -0,0 +1,626 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.engine.fill;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import net.sf.jasperreports.engine.JRAnchor;
+import net.sf.jasperreports.engine.JRPrintElement;
+import net.sf.jasperreports.engine.JRPrintHyperlinkParameters;
+import net.sf.jasperreports.engine.JRPrintText;
+import net.sf.jasperreports.engine.JRPropertiesMap;
+import net.sf.jasperreports.engine.base.ElementStore;
+import net.sf.jasperreports.engine.base.JRVirtualPrintPage;
+import net.sf.jasperreports.engine.type.RunDirectionEnum;
+
+/**
+ * Element store that keeps the elements of a page in primitive arrays.
+ * 
+ * <p>
+ * Template based texts, rectangles, lines and ellipses are decomposed into
+ * column arrays holding the element geometry and IDs, while templates, UUIDs
+ * and texts are kept in a per page pool so that repeated values are only stored once.
+ * The remaining element types are kept as references.
+ * </p>
+ * 
+ * <p>
+ * {@link #get(int)} creates a new element object each time it is called, 
+ * changes made to the returned object are only reflected in the store when
+ * the element is written back via {@link #set(int, JRPrintElement)}.
+ * </p>
+ * 
+ * <p>
+ * A compacted element still takes about 60 bytes in the column arrays, plus the
+ * pooled values that are not shared with other elements, while a template based text
+ * element object takes about 150 bytes.
+ * The retained size of pages made of texts and lines is therefore roughly halved,
+ * and pages made of other element types do not get any smaller.
+ * Since elements are recreated on access, iterating over the pages (for instance
+ * when exporting) allocates a short lived object for each compacted element.
+ * </p>
+ * 
+ * @see CompactElementList
+ */
+public class CompactElementStore implements ElementStore
+{
+
+	protected static final byte KIND_REFERENCE = 0;
+	protected static final byte KIND_TEXT = 1;
+	protected static final byte KIND_RECTANGLE = 2;
+	protected static final byte KIND_LINE = 3;
+	protected static final byte KIND_ELLIPSE = 4;
+	
+	private static final int FLAG_RUN_DIRECTION_MASK = 3;
+	private static final int FLAG_HYPERLINK_OMITTED = 1 << 2;
+	private static final int FLAG_ZERO_LINE_BREAK_OFFSETS = 1 << 3;
+	
+	private static final int NO_POOL_INDEX = -1;
+	private static final int DEFAULT_CAPACITY = 16;
+	
+	private static final RunDirectionEnum[] RUN_DIRECTIONS = RunDirectionEnum.values();
+	
+	private int size;
+	
+	private byte[] kinds;
+	private byte[] flags;
+	private int[] x;
+	private int[] y;
+	private int[] width;
+	private int[] height;
+	private int[] sourceElementIds;
+	private int[] printElementIds;
+	private int[] templates;
+	private int[] uuids;
+	private int[] texts;
+	private float[] lineSpacingFactors;
+	private float[] leadingOffsets;
+	private float[] textHeights;
+	private Object[] values;
+	
+	// element references for KIND_REFERENCE, optional extra attributes for the rest
+	private Object[] objects;
+	
+	private List<Object> pool;
+	private Map<Object, Integer> poolIndexes;
+	
+	public CompactElementStore()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+	
+	public CompactElementStore(int capacity)
+	{
+		size = 0;
+		allocate(Math.max(capacity, 1));
+		
+		pool = new ArrayList<Object>();
+		poolIndexes = new HashMap<Object, Integer>();
+	}
+	
+	private void allocate(int capacity)
+	{
+		kinds = new byte[capacity];
+		flags = new byte[capacity];
+		x = new int[capacity];
+		y = new int[capacity];
+		width = new int[capacity];
+		height = new int[capacity];
+		sourceElementIds = new int[capacity];
+		printElementIds = new int[capacity];
+		templates = new int[capacity];
+		uuids = new int[capacity];
+		texts = new int[capacity];
+		lineSpacingFactors = new float[capacity];
+		leadingOffsets = new float[capacity];
+		textHeights = new float[capacity];
+		values = new Object[capacity];
+		objects = new Object[capacity];
+	}
+	
+	private void resize(int capacity)
+	{
+		kinds = Arrays.copyOf(kinds, capacity);
+		flags = Arrays.copyOf(flags, capacity);
+		x = Arrays.copyOf(x, capacity);
+		y = Arrays.copyOf(y, capacity);
+		width = Arrays.copyOf(width, capacity);
+		height = Arrays.copyOf(height, capacity);
+		sourceElementIds = Arrays.copyOf(sourceElementIds, capacity);
+		printElementIds = Arrays.copyOf(printElementIds, capacity);
+		templates = Arrays.copyOf(templates, capacity);
+		uuids = Arrays.copyOf(uuids, capacity);
+		texts = Arrays.copyOf(texts, capacity);
+		lineSpacingFactors = Arrays.copyOf(lineSpacingFactors, capacity);
+		leadingOffsets = Arrays.copyOf(leadingOffsets, capacity);
+		textHeights = Arrays.copyOf(textHeights, capacity);
+		values = Arrays.copyOf(values, capacity);
+		objects = Arrays.copyOf(objects, capacity);
+	}
+	
+	private void move(int from, int to, int length)
+	{
+		System.arraycopy(kinds, from, kinds, to, length);
+		System.arraycopy(flags, from, flags, to, length);
+		System.arraycopy(x, from, x, to, length);
+		System.arraycopy(y, from, y, to, length);
+		System.arraycopy(width, from, width, to, length);
+		System.arraycopy(height, from, height, to, length);
+		System.arraycopy(sourceElementIds, from, sourceElementIds, to, length);
+		System.arraycopy(printElementIds, from, printElementIds, to, length);
+		System.arraycopy(templates, from, templates, to, length);
+		System.arraycopy(uuids, from, uuids, to, length);
+		System.arraycopy(texts, from, texts, to, length);
+		System.arraycopy(lineSpacingFactors, from, lineSpacingFactors, to, length);
+		System.arraycopy(leadingOffsets, from, leadingOffsets, to, length);
+		System.arraycopy(textHeights, from, textHeights, to, length);
+		System.arraycopy(values, from, values, to, length);
+		System.arraycopy(objects, from, objects, to, length);
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public JRPrintElement get(int index)
+	{
+		checkIndex(index);
+		
+		switch (kinds[index])
+		{
+		case KIND_TEXT:
+			return createText(index);
+		case KIND_RECTANGLE:
+			return createElement(new JRTemplatePrintRectangle(), index);
+		case KIND_LINE:
+			return createElement(new JRTemplatePrintLine(), index);
+		case KIND_ELLIPSE:
+			return createElement(new JRTemplatePrintEllipse(), index);
+		default:
+			return (JRPrintElement) objects[index];
+		}
+	}
+
+	@Override
+	public boolean add(JRPrintElement element)
+	{
+		return add(size, element, true);
+	}
+
+	@Override
+	public boolean add(int index, JRPrintElement element)
+	{
+		return add(index, element, true);
+	}
+
+	/**
+	 * Inserts an element in the store.
+	 * 
+	 * @param index the position at which the element is inserted
+	 * @param element the element
+	 * @param compact whether the element can be decomposed, 
+	 * if <code>false</code> the element object is kept as is
+	 * @return <code>true</code>
+	 */
+	public boolean add(int index, JRPrintElement element, boolean compact)
+	{
+		if (index < 0 || index > size)
+		{
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		
+		if (size == kinds.length)
+		{
+			resize(size + (size >> 1) + 1);
+		}
+		
+		if (index < size)
+		{
+			move(index, index + 1, size - index);
+		}
+		++size;
+		
+		store(index, element, compact);
+		return true;
+	}
+
+	@Override
+	public JRPrintElement set(int index, JRPrintElement element)
+	{
+		JRPrintElement previous = get(index);
+		store(index, element, true);
+		return previous;
+	}
+
+	/**
+	 * Determines whether an element has been decomposed or is kept as a reference.
+	 * 
+	 * @param index the element position
+	 * @return whether the element has been decomposed
+	 */
+	public boolean isCompact(int index)
+	{
+		checkIndex(index);
+		return kinds[index] != KIND_REFERENCE;
+	}
+
+	/**
+	 * Decomposes an element that was previously stored as a reference.
+	 * 
+	 * @param index the element position
+	 * @return whether the element has been decomposed
+	 */
+	public boolean compact(int index)
+	{
+		checkIndex(index);
+		
+		if (kinds[index] != KIND_REFERENCE)
+		{
+			return false;
+		}
+		
+		JRPrintElement element = (JRPrintElement) objects[index];
+		store(index, element, true);
+		return kinds[index] != KIND_REFERENCE;
+	}
+
+	@Override
+	public JRPrintElement remove(int index)
+	{
+		JRPrintElement element = get(index);
+		
+		if (index < size - 1)
+		{
+			move(index + 1, index, size - index - 1);
+		}
+		--size;
+		values[size] = null;
+		objects[size] = null;
+		
+		return element;
+	}
+
+	/**
+	 * Releases the spare array capacity and the pool lookup map.
+	 * 
+	 * <p>
+	 * The lookup map is recreated if more elements are added to the store.
+	 * </p>
+	 */
+	public void trim()
+	{
+		if (size < kinds.length)
+		{
+			resize(Math.max(size, 1));
+		}
+		
+		poolIndexes = null;
+		((ArrayList<Object>) pool).trimToSize();
+	}
+
+	@Override
+	public void dispose()
+	{
+		size = 0;
+		allocate(1);
+		
+		pool.clear();
+		poolIndexes = null;
+	}
+
+	/**
+	 * Returns <code>null</code> as compact stores are not used for virtual pages.
+	 */
+	@Override
+	public JRVirtualPrintPage getPage()
+	{
+		return null;
+	}
+	
+	private void checkIndex(int index)
+	{
+		if (index < 0 || index >= size)
+		{
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+	
+	protected byte elementKind(JRPrintElement element)
+	{
+		Class<?> elementClass = element.getClass();
+		if (elementClass == JRTemplatePrintText.class)
+		{
+			return KIND_TEXT;
+		}
+		if (elementClass == JRTemplatePrintRectangle.class)
+		{
+			return KIND_RECTANGLE;
+		}
+		if (elementClass == JRTemplatePrintLine.class)
+		{
+			return KIND_LINE;
+		}
+		if (elementClass == JRTemplatePrintEllipse.class)
+		{
+			return KIND_ELLIPSE;
+		}
+		return KIND_REFERENCE;
+	}
+	
+	protected void store(int index, JRPrintElement element, boolean compact)
+	{
+		byte kind = compact ? elementKind(element) : KIND_REFERENCE;
+		JRPropertiesMap properties = null;
+		if (kind != KIND_REFERENCE)
+		{
+			properties = ((JRTemplatePrintElement) element).getStoredProperties();
+			if (properties != null && properties.getClass() != JRPropertiesMap.class)
+			{
+				// custom properties map implementations are preserved as they are
+				kind = KIND_REFERENCE;
+			}
+			else if (properties != null && !properties.hasOwnProperties())
+			{
+				// the properties will be recreated from the template when needed
+				properties = null;
+			}
+		}
+		
+		kinds[index] = kind;
+		values[index] = null;
+		
+		if (kind == KIND_REFERENCE)
+		{
+			flags[index] = 0;
+			objects[index] = element;
+			return;
+		}
+		
+		JRTemplatePrintElement templateElement = (JRTemplatePrintElement) element;
+		x[index] = templateElement.getX();
+		y[index] = templateElement.getY();
+		width[index] = templateElement.getWidth();
+		height[index] = templateElement.getHeight();
+		sourceElementIds[index] = templateElement.getSourceElementId();
+		printElementIds[index] = templateElement.getPrintElementId();
+		templates[index] = poolIndex(templateElement.getTemplate());
+		uuids[index] = poolIndex(templateElement.getUUID());
+		
+		if (kind == KIND_TEXT)
+		{
+			storeText(index, (JRTemplatePrintText) element, properties);
+		}
+		else
+		{
+			flags[index] = 0;
+			objects[index] = properties == null ? null : new ElementExtras(properties);
+		}
+	}
+	
+	protected void storeText(int index, JRTemplatePrintText text, JRPropertiesMap properties)
+	{
+		texts[index] = poolIndex(text.getOriginalText());
+		
+		Object value = text.getValue();
+		// string values are frequently the same as the text
+		values[index] = value instanceof String ? pooled(value) : value;
+		
+		lineSpacingFactors[index] = text.getLineSpacingFactor();
+		leadingOffsets[index] = text.getLeadingOffset();
+		textHeights[index] = text.getTextHeight();
+		
+		int textFlags = 0;
+		RunDirectionEnum runDirection = text.getRunDirectionValue();
+		if (runDirection != null)
+		{
+			textFlags |= runDirection.ordinal() + 1;
+		}
+		if (text.isHyperlinkOmitted())
+		{
+			textFlags |= FLAG_HYPERLINK_OMITTED;
+		}
+		
+		short[] lineBreakOffsets = text.getLineBreakOffsets();
+		if (lineBreakOffsets != null && lineBreakOffsets.length == 0)
+		{
+			textFlags |= FLAG_ZERO_LINE_BREAK_OFFSETS;
+			lineBreakOffsets = null;
+		}
+		flags[index] = (byte) textFlags;
+		
+		TextExtras extras = null;
+		if (properties != null || lineBreakOffsets != null
+				|| text.getTextTruncateIndex() != null || text.getTextTruncateSuffix() != null
+				|| text.getTextFormat() != null || text.getAnchorName() != null
+				|| text.getHyperlinkReference() != null || text.getHyperlinkAnchor() != null
+				|| text.getHyperlinkPage() != null || text.getHyperlinkTooltip() != null
+				|| text.getHyperlinkParameters() != null || text.getBookmarkLevel() != JRAnchor.NO_BOOKMARK)
+		{
+			extras = new TextExtras(properties);
+			extras.lineBreakOffsets = lineBreakOffsets;
+			extras.textTruncateIndex = text.getTextTruncateIndex();
+			extras.textTruncateSuffix = (String) pooled(text.getTextTruncateSuffix());
+			extras.textFormat = text.getTextFormat();
+			extras.anchorName = text.getAnchorName();
+			extras.hyperlinkReference = (String) pooled(text.getHyperlinkReference());
+			extras.hyperlinkAnchor = (String) pooled(text.getHyperlinkAnchor());
+			extras.hyperlinkPage = text.getHyperlinkPage();
+			extras.hyperlinkTooltip = (String) pooled(text.getHyperlinkTooltip());
+			extras.hyperlinkParameters = text.getHyperlinkParameters();
+			extras.bookmarkLevel = text.getBookmarkLevel();
+		}
+		objects[index] = extras;
+	}
+	
+	protected JRPrintElement createElement(JRTemplatePrintElement element, int index)
+	{
+		element.setTemplate((JRTemplateElement) pool(templates[index]));
+		element.setUUID((UUID) pool(uuids[index]));
+		element.setX(x[index]);
+		element.setY(y[index]);
+		element.setWidth(width[index]);
+		element.setHeight(height[index]);
+		element.setSourceElementId(sourceElementIds[index]);
+		element.setPrintElementId(printElementIds[index]);
+		
+		ElementExtras extras = (ElementExtras) objects[index];
+		if (extras != null && extras.properties != null)
+		{
+			// copying only the own properties, the base properties are the template properties
+			JRPropertiesMap properties = new JRPropertiesMap();
+			properties.setBaseProperties(extras.properties.getBaseProperties());
+			for (String name : extras.properties.getOwnPropertyNames())
+			{
+				properties.setProperty(name, extras.properties.getProperty(name));
+			}
+			element.setStoredProperties(properties);
+		}
+		return element;
+	}
+	
+	protected JRPrintElement createText(int index)
+	{
+		JRTemplatePrintText text = new JRTemplatePrintText();
+		createElement(text, index);
+		
+		text.setText((String) pool(texts[index]));
+		text.setValue(values[index]);
+		text.setLineSpacingFactor(lineSpacingFactors[index]);
+		text.setLeadingOffset(leadingOffsets[index]);
+		text.setTextHeight(textHeights[index]);
+		
+		int textFlags = flags[index];
+		int runDirection = textFlags & FLAG_RUN_DIRECTION_MASK;
+		text.setRunDirection(runDirection == 0 ? null : RUN_DIRECTIONS[runDirection - 1]);
+		text.setHyperlinkOmitted((textFlags & FLAG_HYPERLINK_OMITTED) != 0);
+		if ((textFlags & FLAG_ZERO_LINE_BREAK_OFFSETS) != 0)
+		{
+			text.setLineBreakOffsets(JRPrintText.ZERO_LINE_BREAK_OFFSETS);
+		}
+		
+		TextExtras extras = (TextExtras) objects[index];
+		if (extras != null)
+		{
+			if (extras.lineBreakOffsets != null)
+			{
+				text.setLineBreakOffsets(extras.lineBreakOffsets);
+			}
+			text.setTextTruncateIndex(extras.textTruncateIndex);
+			text.setTextTruncateSuffix(extras.textTruncateSuffix);
+			text.setTextFormat(extras.textFormat);
+			text.setAnchorName(extras.anchorName);
+			text.setHyperlinkReference(extras.hyperlinkReference);
+			text.setHyperlinkAnchor(extras.hyperlinkAnchor);
+			text.setHyperlinkPage(extras.hyperlinkPage);
+			text.setHyperlinkTooltip(extras.hyperlinkTooltip);
+			text.setHyperlinkParameters(extras.hyperlinkParameters);
+			text.setBookmarkLevel(extras.bookmarkLevel);
+		}
+		return text;
+	}
+	
+	protected int poolIndex(Object value)
+	{
+		if (value == null)
+		{
+			return NO_POOL_INDEX;
+		}
+		
+		if (poolIndexes == null)
+		{
+			poolIndexes = new HashMap<Object, Integer>(pool.size() * 4 / 3 + 1);
+			for (int i = 0; i < pool.size(); i++)
+			{
+				poolIndexes.put(pool.get(i), i);
+			}
+		}
+		
+		Integer index = poolIndexes.get(value);
+		if (index == null)
+		{
+			index = pool.size();
+			pool.add(value);
+			poolIndexes.put(value, index);
+		}
+		return index;
+	}
+	
+	protected Object pooled(Object value)
+	{
+		int index = poolIndex(value);
+		return pool(index);
+	}
+	
+	protected Object pool(int index)
+	{
+		return index == NO_POOL_INDEX ? null : pool.get(index);
+	}
+	
+	/**
+	 * Returns the number of distinct objects kept in the pool.
+	 * 
+	 * @return the pool size
+	 */
+	public int getPoolSize()
+	{
+		return pool.size();
+	}
+	
+	protected static class ElementExtras
+	{
+		final JRPropertiesMap properties;
+		
+		ElementExtras(JRPropertiesMap properties)
+		{
+			this.properties = properties;
+		}
+	}
+	
+	protected static class TextExtras extends ElementExtras
+	{
+		short[] lineBreakOffsets;
+		Integer textTruncateIndex;
+		String textTruncateSuffix;
+		TextFormat textFormat;
+		String anchorName;
+		String hyperlinkReference;
+		String hyperlinkAnchor;
+		Integer hyperlinkPage;
+		String hyperlinkTooltip;
+		JRPrintHyperlinkParameters hyperlinkParameters;
+		int bookmarkLevel;
+		
+		TextExtras(JRPropertiesMap properties)
+		{
+			super(properties);
+		}
+	}
+}
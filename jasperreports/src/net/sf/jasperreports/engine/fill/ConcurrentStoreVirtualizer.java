@@ -0,0 +1,891 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.engine.fill;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.collections4.map.ReferenceMap;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import net.sf.jasperreports.engine.JRVirtualizable;
+import net.sf.jasperreports.engine.JRVirtualizer;
+import net.sf.jasperreports.engine.util.DaemonThreadFactory;
+import net.sf.jasperreports.engine.util.LocalVirtualizationSerializer;
+import net.sf.jasperreports.engine.util.VirtualizationSerializer;
+
+/**
+ * LRU virtualizer that is meant to be shared by several concurrent fills.
+ * <p>
+ * Unlike {@link JRAbstractLRUVirtualizer}, which guards all its state by locking
+ * the virtualizer object, this implementation splits the tracked objects into
+ * segments selected by the master virtualization context of the objects.
+ * Fills that run in parallel would most of the time work on different segments
+ * and would not contend with each other.
+ * Each segment keeps its paged in objects in approximate LRU order, and eviction picks
+ * the least recently touched objects from the heads of the segments once the
+ * total number of paged in objects goes over the configured maximum size.
+ * <p>
+ * Touching an object only records the access time and does not lock;
+ * the LRU lists are reordered lazily when eviction candidates are collected.
+ * The segment is only locked when the touched object is not already the last
+ * object of its virtualization context, which is kept in memory as in
+ * {@link JRAbstractLRUVirtualizer}.
+ * <p>
+ * Optionally, paging out objects can be done on a background thread.
+ * In that case, fill threads only need to page out objects themselves when the
+ * background thread falls behind by more than a configurable
+ * {@link #setPageOutBacklog(int) backlog}.
+ *
+ * @see StoreVirtualizer
+ */
+public class ConcurrentStoreVirtualizer implements JRVirtualizer
+{
+	private static final Log log = LogFactory.getLog(ConcurrentStoreVirtualizer.class);
+
+	private static final int MAX_SEGMENT_COUNT = 64;
+
+	private static final Comparator<Candidate> NEWEST_FIRST = new Comparator<Candidate>()
+	{
+		@Override
+		public int compare(Candidate o1, Candidate o2)
+		{
+			return Long.compare(o2.lastAccess, o1.lastAccess);
+		}
+	};
+
+	protected static class Entry extends WeakReference<JRVirtualizable<?>>
+	{
+		private final String id;
+		private volatile long lastAccess;
+		private volatile boolean pagedOut;
+		private volatile boolean last;
+
+		// links in the LRU list of the segment, guarded by the segment monitor
+		private Entry previous;
+		private Entry next;
+		private boolean linked;
+		// the last access at the time the entry was placed in the LRU list
+		private long linkedAccess;
+
+		public Entry(JRVirtualizable<?> o, ReferenceQueue<JRVirtualizable<?>> queue, boolean pagedOut)
+		{
+			super(o, queue);
+			this.id = o.getUID();
+			this.lastAccess = System.nanoTime();
+			this.pagedOut = pagedOut;
+		}
+
+		public String getId()
+		{
+			return id;
+		}
+
+		public boolean isPagedOut()
+		{
+			return pagedOut;
+		}
+	}
+
+	protected static class Candidate
+	{
+		private final Segment segment;
+		private final Entry entry;
+		private final long lastAccess;
+
+		public Candidate(Segment segment, Entry entry)
+		{
+			this.segment = segment;
+			this.entry = entry;
+			this.lastAccess = entry.lastAccess;
+		}
+	}
+
+	/**
+	 * Keeps the entries of the objects that belong to a set of virtualization contexts.
+	 * <p>
+	 * Lookups and touches are done without locking, structural changes and changes in the
+	 * paged in/out state of an entry are done while holding the segment monitor.
+	 * The paged in entries are also linked in a list ordered by the last access,
+	 * from the least recently used entry at the head to the most recently used at the tail.
+	 * Entries that have been touched since being linked are moved to the tail
+	 * when the list is traversed for eviction.
+	 */
+	protected class Segment
+	{
+		private final ReferenceQueue<JRVirtualizable<?>> refQueue;
+		private final ConcurrentHashMap<String, Entry> entries;
+		private final ReferenceMap<JRVirtualizationContext, Entry> lastEntries;
+
+		private Entry head;
+		private Entry tail;
+
+		protected Segment()
+		{
+			refQueue = new ReferenceQueue<JRVirtualizable<?>>();
+			entries = new ConcurrentHashMap<String, Entry>();
+			lastEntries = new ReferenceMap<JRVirtualizationContext, Entry>(
+					ReferenceMap.ReferenceStrength.WEAK, ReferenceMap.ReferenceStrength.HARD);
+		}
+
+		protected Entry get(String id)
+		{
+			return entries.get(id);
+		}
+
+		protected synchronized void purge()
+		{
+			Entry entry;
+			while ((entry = (Entry) refQueue.poll()) != null)
+			{
+				unlink(entry);
+
+				if (entries.remove(entry.id, entry))
+				{
+					if (entry.pagedOut)
+					{
+						// nobody can request the data any longer
+						store.remove(entry.id);
+					}
+					else
+					{
+						pagedInCount.decrementAndGet();
+					}
+				}
+			}
+		}
+
+		protected synchronized void register(JRVirtualizable<?> o)
+		{
+			purge();
+
+			String id = o.getUID();
+			Entry old = entries.get(id);
+			if (old != null)
+			{
+				JRVirtualizable<?> oldObject = old.get();
+				if (oldObject == o)
+				{
+					// already registered
+					return;
+				}
+
+				if (oldObject != null)
+				{
+					throw new IllegalStateException("Wrong object stored with UID \"" + id + "\"");
+				}
+
+				discard(old);
+			}
+
+			Entry entry = new Entry(o, refQueue, false);
+			entries.put(id, entry);
+			pagedInCount.incrementAndGet();
+			linkLast(entry);
+			setLast(o.getContext(), entry);
+		}
+
+		protected void touch(JRVirtualizationContext context, Entry entry)
+		{
+			// the entry is moved in the LRU list when collecting eviction candidates
+			entry.lastAccess = System.nanoTime();
+
+			if (!entry.last)
+			{
+				setLast(context, entry);
+			}
+		}
+
+		protected synchronized void setLast(JRVirtualizationContext context, Entry entry)
+		{
+			Entry previous = lastEntries.put(context, entry);
+			if (previous != null && previous != entry)
+			{
+				previous.last = false;
+			}
+			entry.last = true;
+		}
+
+		protected synchronized void pagedIn(JRVirtualizable<?> o, Entry entry)
+		{
+			if (entry.pagedOut && entries.get(entry.id) == entry)
+			{
+				entry.pagedOut = false;
+				pagedInCount.incrementAndGet();
+				entry.lastAccess = System.nanoTime();
+				linkLast(entry);
+			}
+
+			touch(o.getContext(), entry);
+		}
+
+		protected synchronized void pagedOut(JRVirtualizable<?> o)
+		{
+			Entry entry = entries.get(o.getUID());
+			if (entry == null || entry.get() != o)
+			{
+				if (entry != null)
+				{
+					discard(entry);
+				}
+
+				// not registered, keep track of it anyway so that the data gets paged in on request
+				entry = new Entry(o, refQueue, true);
+				entries.put(entry.id, entry);
+			}
+			else if (!entry.pagedOut)
+			{
+				entry.pagedOut = true;
+				pagedInCount.decrementAndGet();
+				unlink(entry);
+			}
+		}
+
+		protected synchronized void remove(JRVirtualizable<?> o)
+		{
+			Entry entry = entries.get(o.getUID());
+			if (entry != null)
+			{
+				JRVirtualizable<?> current = entry.get();
+				if (current != null && current != o)
+				{
+					throw new IllegalStateException("Wrong object stored with UID \"" + o.getUID() + "\"");
+				}
+
+				discard(entry);
+
+				if (entry.last && lastEntries.get(o.getContext()) == entry)
+				{
+					lastEntries.remove(o.getContext());
+				}
+				entry.last = false;
+			}
+
+			// We don't really care if someone deregisters an object
+			// that's not registered.
+		}
+
+		protected synchronized void discard(Entry entry)
+		{
+			unlink(entry);
+
+			if (entries.remove(entry.id, entry) && !entry.pagedOut)
+			{
+				pagedInCount.decrementAndGet();
+			}
+		}
+
+		/**
+		 * Collects the least recently used entries that can be paged out, starting from the head of the LRU list.
+		 */
+		protected synchronized void collectEldest(int count, PriorityQueue<Candidate> oldest)
+		{
+			purge();
+
+			int collected = 0;
+			// entries moved to the tail during the traversal are not visited again
+			Entry last = tail;
+			Entry next;
+			for (Entry entry = head; entry != null && collected < count; entry = next)
+			{
+				next = entry == last ? null : entry.next;
+
+				long lastAccess = entry.lastAccess;
+				if (lastAccess != entry.linkedAccess)
+				{
+					// touched since it was linked, no longer in LRU order
+					unlink(entry);
+					linkLast(entry, lastAccess);
+					continue;
+				}
+
+				JRVirtualizable<?> o = entry.get();
+				if (o == null || !isEvictable(entry, o))
+				{
+					continue;
+				}
+
+				if (oldest.size() < count)
+				{
+					oldest.add(new Candidate(this, entry));
+				}
+				else if (entry.lastAccess < oldest.peek().lastAccess)
+				{
+					oldest.poll();
+					oldest.add(new Candidate(this, entry));
+				}
+				else
+				{
+					// the following entries are newer
+					break;
+				}
+				++collected;
+			}
+		}
+
+		private void linkLast(Entry entry)
+		{
+			linkLast(entry, entry.lastAccess);
+		}
+
+		private void linkLast(Entry entry, long lastAccess)
+		{
+			if (entry.linked)
+			{
+				return;
+			}
+
+			entry.previous = tail;
+			entry.next = null;
+			if (tail == null)
+			{
+				head = entry;
+			}
+			else
+			{
+				tail.next = entry;
+			}
+			tail = entry;
+			entry.linked = true;
+			entry.linkedAccess = lastAccess;
+		}
+
+		private void unlink(Entry entry)
+		{
+			if (!entry.linked)
+			{
+				return;
+			}
+
+			if (entry.previous == null)
+			{
+				head = entry.next;
+			}
+			else
+			{
+				entry.previous.next = entry.next;
+			}
+
+			if (entry.next == null)
+			{
+				tail = entry.previous;
+			}
+			else
+			{
+				entry.next.previous = entry.previous;
+			}
+
+			entry.previous = null;
+			entry.next = null;
+			entry.linked = false;
+		}
+
+		protected synchronized void clear()
+		{
+			entries.clear();
+			lastEntries.clear();
+			head = null;
+			tail = null;
+		}
+	}
+
+	protected final VirtualizationSerializer serializer;
+
+	private final VirtualizerStore store;
+	private final int maxSize;
+	private final Segment[] segments;
+	private final AtomicInteger pagedInCount;
+
+	private final Executor pageOutExecutor;
+	private final boolean pageOutExecutorOwner;
+	private final AtomicBoolean pageOutScheduled;
+	private final Runnable pageOutTask;
+	private volatile int pageOutBacklog;
+
+	private volatile boolean readOnly;
+
+	/**
+	 * Creates a virtualizer that pages out objects on the fill threads.
+	 *
+	 * @param maxSize the maximum size (in JRVirtualizable objects) of the paged in cache
+	 * @param store the store used for paged out data
+	 */
+	public ConcurrentStoreVirtualizer(int maxSize, VirtualizerStore store)
+	{
+		this(maxSize, store, false);
+	}
+
+	/**
+	 * Creates a virtualizer that optionally pages out objects on a background thread.
+	 *
+	 * @param maxSize the maximum size (in JRVirtualizable objects) of the paged in cache
+	 * @param store the store used for paged out data
+	 * @param backgroundPageOut whether to create a dedicated thread for paging out objects.
+	 * The thread is stopped on {@link #cleanup() cleanup} and after being idle for a while.
+	 */
+	public ConcurrentStoreVirtualizer(int maxSize, VirtualizerStore store, boolean backgroundPageOut)
+	{
+		this(maxSize, store, defaultSegmentCount(),
+				backgroundPageOut ? createPageOutExecutor() : null, backgroundPageOut);
+	}
+
+	/**
+	 * Creates a virtualizer that pages out objects using an executor.
+	 *
+	 * @param maxSize the maximum size (in JRVirtualizable objects) of the paged in cache
+	 * @param store the store used for paged out data
+	 * @param segmentCount the number of segments in which objects are split, rounded up to a power of 2
+	 * @param pageOutExecutor the executor used for background page-out,
+	 * if <code>null</code> objects will be paged out on the fill threads.
+	 * The executor can be shared by several virtualizers, it is not shut down by {@link #cleanup()}.
+	 */
+	public ConcurrentStoreVirtualizer(int maxSize, VirtualizerStore store, int segmentCount, Executor pageOutExecutor)
+	{
+		this(maxSize, store, segmentCount, pageOutExecutor, false);
+	}
+
+	private ConcurrentStoreVirtualizer(int maxSize, VirtualizerStore store, int segmentCount,
+			Executor pageOutExecutor, boolean pageOutExecutorOwner)
+	{
+		this.serializer = new LocalVirtualizationSerializer();
+		this.store = store;
+		this.maxSize = maxSize;
+
+		int size = 1;
+		while (size < segmentCount && size < MAX_SEGMENT_COUNT)
+		{
+			size <<= 1;
+		}
+		this.segments = new Segment[size];
+		for (int i = 0; i < size; i++)
+		{
+			segments[i] = new Segment();
+		}
+
+		this.pagedInCount = new AtomicInteger();
+
+		this.pageOutExecutor = pageOutExecutor;
+		this.pageOutExecutorOwner = pageOutExecutorOwner;
+		this.pageOutScheduled = new AtomicBoolean();
+		this.pageOutTask = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				backgroundPageOut();
+			}
+		};
+		this.pageOutBacklog = Math.max(1, maxSize / 4);
+	}
+
+	protected static int defaultSegmentCount()
+	{
+		return 4 * Runtime.getRuntime().availableProcessors();
+	}
+
+	protected static ExecutorService createPageOutExecutor()
+	{
+		return DaemonThreadFactory.createExecutor("JasperReports virtualizer page-out", 1);
+	}
+
+	/**
+	 * Sets the read only mode for the virtualizer.
+	 *
+	 * @param ro the read-only mode to set
+	 * @see JRAbstractLRUVirtualizer#setReadOnly(boolean)
+	 */
+	public void setReadOnly(boolean ro)
+	{
+		this.readOnly = ro;
+	}
+
+	/**
+	 * Determines whether the virtualizer is in read-only mode.
+	 *
+	 * @return whether the virtualizer is in read-only mode
+	 * @see #setReadOnly(boolean)
+	 */
+	public boolean isReadOnly()
+	{
+		return readOnly;
+	}
+
+	protected final boolean isReadOnly(JRVirtualizable<?> o)
+	{
+		return readOnly || o.getContext().isReadOnly();
+	}
+
+	/**
+	 * Returns the number of objects by which the paged in cache can exceed the maximum size
+	 * while the background thread is paging out objects.
+	 *
+	 * @return the page-out backlog
+	 */
+	public int getPageOutBacklog()
+	{
+		return pageOutBacklog;
+	}
+
+	/**
+	 * Sets the number of objects by which the paged in cache can exceed the maximum size
+	 * while the background thread is paging out objects.
+	 * <p>
+	 * When the backlog is exceeded, fill threads page out objects themselves.
+	 * The default value is a quarter of the maximum size.
+	 * Does not apply when background page-out is not used.
+	 *
+	 * @param pageOutBacklog the page-out backlog
+	 */
+	public void setPageOutBacklog(int pageOutBacklog)
+	{
+		this.pageOutBacklog = pageOutBacklog;
+	}
+
+	protected Segment segment(JRVirtualizable<?> o)
+	{
+		int hash = System.identityHashCode(o.getContext().getMasterContext());
+		hash ^= (hash >>> 16);
+		return segments[hash & (segments.length - 1)];
+	}
+
+	@Override
+	public void registerObject(JRVirtualizable<?> o)
+	{
+		if (log.isDebugEnabled())
+		{
+			log.debug("registering " + o.getUID());
+		}
+
+		segment(o).register(o);
+
+		if (log.isDebugEnabled())
+		{
+			log.debug("registered object " + o + " with id " + o.getUID());
+		}
+
+		pageOutIfNeeded();
+	}
+
+	@Override
+	public void deregisterObject(JRVirtualizable<?> o)
+	{
+		String uid = o.getUID();
+		if (log.isDebugEnabled())
+		{
+			log.debug("deregistering " + uid);
+		}
+
+		//try to remove virtual data
+		try
+		{
+			store.remove(uid);
+		}
+		catch (Exception e)
+		{
+			log.error("Error removing virtual data", e);
+			//ignore
+		}
+
+		segment(o).remove(o);
+
+		if (log.isDebugEnabled())
+		{
+			log.debug("deregistered object " + o + " with id " + uid);
+		}
+	}
+
+	@Override
+	public void touch(JRVirtualizable<?> o)
+	{
+		Segment segment = segment(o);
+		Entry entry = segment.get(o.getUID());
+		if (entry != null && entry.get() == o)
+		{
+			segment.touch(o.getContext(), entry);
+		}
+	}
+
+	@Override
+	public void requestData(JRVirtualizable<?> o)
+	{
+		String uid = o.getUID();
+		Segment segment = segment(o);
+		boolean pagedIn = false;
+
+		o.getContext().lock();
+		try
+		{
+			Entry entry = segment.get(uid);
+			if (entry != null && entry.pagedOut && entry.get() == o)
+			{
+				if (log.isDebugEnabled())
+				{
+					log.debug("internalizing " + uid);
+				}
+
+				store.retrieve(o, !isReadOnly(o), serializer);
+				segment.pagedIn(o, entry);
+				o.afterInternalization();
+
+				pagedIn = true;
+			}
+			else
+			{
+				touch(o);
+			}
+		}
+		finally
+		{
+			o.getContext().unlock();
+		}
+
+		if (pagedIn)
+		{
+			pageOutIfNeeded();
+		}
+	}
+
+	@Override
+	public void clearData(JRVirtualizable<?> o)
+	{
+		String uid = o.getUID();
+		Segment segment = segment(o);
+		Entry entry = segment.get(uid);
+		if (entry != null && entry.pagedOut)
+		{
+			// remove virtual data
+			store.remove(uid);
+			segment.remove(o);
+		}
+		else
+		{
+			touch(o);
+		}
+	}
+
+	@Override
+	public void virtualizeData(JRVirtualizable<?> o)
+	{
+		String uid = o.getUID();
+		Segment segment = segment(o);
+		Entry entry = segment.get(uid);
+		if (entry == null || !entry.pagedOut)
+		{
+			if (log.isDebugEnabled())
+			{
+				log.debug("externalizing " + uid);
+			}
+
+			o.beforeExternalization();
+
+			boolean stored = store.store(o, serializer);
+			if (!stored && !isReadOnly(o))
+			{
+				throw new IllegalStateException("Cannot virtualize data because the data for object UID \"" + uid + "\" already exists.");
+			}
+
+			o.afterExternalization();
+
+			// Wait until we know it worked before tossing the data.
+			o.removeVirtualData();
+
+			segment.pagedOut(o);
+		}
+	}
+
+	protected void pageOutIfNeeded()
+	{
+		int excess = pagedInCount.get() - maxSize;
+		if (excess <= 0)
+		{
+			return;
+		}
+
+		if (pageOutExecutor != null)
+		{
+			if (pageOutScheduled.compareAndSet(false, true))
+			{
+				pageOutExecutor.execute(pageOutTask);
+			}
+
+			if (excess <= pageOutBacklog)
+			{
+				// the background thread will catch up
+				return;
+			}
+		}
+
+		evict();
+	}
+
+	protected void backgroundPageOut()
+	{
+		try
+		{
+			evict();
+		}
+		finally
+		{
+			pageOutScheduled.set(false);
+		}
+	}
+
+	/**
+	 * Pages out the least recently used objects until the number of paged in objects
+	 * drops to the maximum size, or until no more objects can be paged out.
+	 */
+	protected void evict()
+	{
+		int excess;
+		while ((excess = pagedInCount.get() - maxSize) > 0)
+		{
+			List<Candidate> candidates = evictionCandidates(excess);
+			if (candidates.isEmpty())
+			{
+				log.debug("The virtualizer is used by more contexts than its in-memory cache size " + maxSize);
+				break;
+			}
+
+			int evicted = 0;
+			for (Candidate candidate : candidates)
+			{
+				if (evict(candidate))
+				{
+					++evicted;
+				}
+			}
+
+			if (evicted == 0)
+			{
+				// all candidates are in use, we'll try again on the next registration
+				break;
+			}
+		}
+	}
+
+	protected List<Candidate> evictionCandidates(int count)
+	{
+		// each segment keeps its entries in LRU order, only the heads of the segments are visited
+		PriorityQueue<Candidate> oldest = new PriorityQueue<Candidate>(count + 1, NEWEST_FIRST);
+		for (Segment segment : segments)
+		{
+			segment.collectEldest(count, oldest);
+		}
+
+		List<Candidate> candidates = new ArrayList<Candidate>(oldest);
+		Collections.sort(candidates, Collections.reverseOrder(NEWEST_FIRST));
+		return candidates;
+	}
+
+	protected boolean isEvictable(Entry entry, JRVirtualizable<?> o)
+	{
+		return !entry.pagedOut && (o.getContext().isDisposed() || !entry.last);
+	}
+
+	protected boolean evict(Candidate candidate)
+	{
+		JRVirtualizable<?> o = candidate.entry.get();
+		if (o == null)
+		{
+			return false;
+		}
+
+		String uid = candidate.entry.id;
+		JRVirtualizationContext context = o.getContext();
+		if (!context.tryLock())
+		{
+			if (log.isDebugEnabled())
+			{
+				log.debug("couldn't lock for eviction " + uid);
+			}
+			return false;
+		}
+
+		try
+		{
+			// check again now that we have the lock
+			if (!isEvictable(candidate.entry, o) || candidate.segment.get(uid) != candidate.entry)
+			{
+				if (log.isDebugEnabled())
+				{
+					log.debug("no longer evictable: " + uid);
+				}
+				return false;
+			}
+
+			if (log.isDebugEnabled())
+			{
+				log.debug("evicting " + uid);
+			}
+
+			if (context.isDisposed())
+			{
+				candidate.segment.discard(candidate.entry);
+			}
+			else
+			{
+				virtualizeData(o);
+			}
+			return true;
+		}
+		finally
+		{
+			context.unlock();
+		}
+	}
+
+	@Override
+	public void cleanup()
+	{
+		if (log.isDebugEnabled())
+		{
+			log.debug("disposing " + this);
+		}
+
+		if (pageOutExecutorOwner)
+		{
+			// not interrupting the thread as it might be doing I/O on an interruptible channel
+			((ExecutorService) pageOutExecutor).shutdown();
+		}
+
+		for (Segment segment : segments)
+		{
+			segment.clear();
+		}
+		pagedInCount.set(0);
+
+		store.dispose();
+	}
+}
@@ -23,27 +23,34 @@
  */
 package net.sf.jasperreports.engine.fill;
 
-import java.text.Collator;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import net.sf.jasperreports.annotations.properties.Property;
+import net.sf.jasperreports.annotations.properties.PropertyScope;
 import net.sf.jasperreports.engine.JRException;
 import net.sf.jasperreports.engine.JRField;
 import net.sf.jasperreports.engine.JRParameter;
+import net.sf.jasperreports.engine.JRPropertiesUtil;
+import net.sf.jasperreports.engine.JRRewindableDataSource;
 import net.sf.jasperreports.engine.JRRuntimeException;
 import net.sf.jasperreports.engine.JRScriptletException;
 import net.sf.jasperreports.engine.JRSortField;
 import net.sf.jasperreports.engine.JRVariable;
 import net.sf.jasperreports.engine.design.JRDesignDatasetRun;
 import net.sf.jasperreports.engine.fill.DatasetSortInfo.RecordField;
-import net.sf.jasperreports.engine.fill.DatasetSortInfo.SortFieldInfo;
 import net.sf.jasperreports.engine.fill.SortedDataSource.SortRecord;
 import net.sf.jasperreports.engine.type.SortFieldTypeEnum;
+import net.sf.jasperreports.properties.PropertyConstants;
 
 
 /**
@@ -54,6 +61,83 @@ public class DatasetSortUtil
 	public static final String EXCEPTION_MESSAGE_KEY_SORT_FIELD_NOT_FOUND = "fill.dataset.sort.field.not.found";
 	public static final String EXCEPTION_MESSAGE_KEY_SORT_VARIABLE_NOT_FOUND = "fill.dataset.sort.variable.not.found";
 
+	/**
+	 * Property that specifies the minimum number of records for which dataset sorting is performed in parallel.
+	 * 
+	 * <p>
+	 * When a sorted dataset has at least the specified number of records, the sort keys are computed and
+	 * the records are sorted by tasks running in the common fork/join pool.
+	 * Setting the property to 0 disables parallel sorting.
+	 * </p>
+	 */
+	@Property(
+			category = PropertyConstants.CATEGORY_FILL,
+			defaultValue = "100000",
+			scopes = {PropertyScope.CONTEXT, PropertyScope.DATASET},
+			sinceVersion = PropertyConstants.VERSION_6_8_0,
+			valueType = Integer.class
+			)
+	public static final String PROPERTY_PARALLEL_SORT_THRESHOLD = JRPropertiesUtil.PROPERTY_PREFIX + "dataset.sort.parallel.threshold";
+	
+	private static final int DEFAULT_PARALLEL_SORT_THRESHOLD = 100000;
+
+	/**
+	 * Property that specifies the maximum number of records that are kept in memory while sorting a dataset.
+	 * 
+	 * <p>
+	 * When the number of records reaches the specified value, the records are sorted and written 
+	 * to a temporary file as a sorted run.
+	 * The runs are merged lazily as the sorted records are read by the filler.
+	 * Setting the property to 0 disables spilling to disk, in which case all the records are kept in memory.
+	 * </p>
+	 * <p>
+	 * Sorted datasets are not spilled to disk while data snapshots are being recorded.
+	 * </p>
+	 */
+	@Property(
+			category = PropertyConstants.CATEGORY_FILL,
+			defaultValue = "0",
+			scopes = {PropertyScope.CONTEXT, PropertyScope.DATASET},
+			sinceVersion = PropertyConstants.VERSION_6_8_0,
+			valueType = Integer.class
+			)
+	public static final String PROPERTY_SPILL_THRESHOLD = JRPropertiesUtil.PROPERTY_PREFIX + "dataset.sort.spill.threshold";
+
+	/**
+	 * Property that specifies the directory in which the sorted runs of a dataset are written
+	 * when the number of records exceeds {@link #PROPERTY_SPILL_THRESHOLD}.
+	 * 
+	 * <p>
+	 * If the property is not set, the default temporary-file directory is used.
+	 * </p>
+	 */
+	@Property(
+			category = PropertyConstants.CATEGORY_FILL,
+			scopes = {PropertyScope.CONTEXT, PropertyScope.DATASET},
+			sinceVersion = PropertyConstants.VERSION_6_8_0
+			)
+	public static final String PROPERTY_SPILL_DIRECTORY = JRPropertiesUtil.PROPERTY_PREFIX + "dataset.sort.spill.directory";
+
+	/**
+	 * Property that specifies the maximum number of sorted runs that are read at the same time
+	 * when the records of a dataset have been written to temporary files.
+	 * 
+	 * <p>
+	 * When there are more runs, groups of runs are merged into larger runs before the records are read.
+	 * Values lower than 2 are ignored.
+	 * </p>
+	 * 
+	 * @see #PROPERTY_SPILL_THRESHOLD
+	 */
+	@Property(
+			category = PropertyConstants.CATEGORY_FILL,
+			defaultValue = "64",
+			scopes = {PropertyScope.CONTEXT, PropertyScope.DATASET},
+			sinceVersion = PropertyConstants.VERSION_6_8_0,
+			valueType = Integer.class
+			)
+	public static final String PROPERTY_SPILL_MERGE_FAN_IN = JRPropertiesUtil.PROPERTY_PREFIX + "dataset.sort.spill.merge.fan.in";
+
 
 	/**
 	 * Returns all current sort field criteria, including the dynamic ones provided as report parameter.
@@ -97,42 +181,86 @@ public class DatasetSortUtil
 
 
 	/**
-	 *
+	 * Creates a data source that returns the dataset records sorted in memory.
+	 * 
+	 * @see #createSortedDataSource(BaseReportFiller, JRFillDataset, Locale)
 	 */
 	public static SortedDataSource getSortedDataSource(
 		BaseReportFiller filler, 
 		JRFillDataset dataset, 
 		Locale locale 
 		) throws JRException
+	{
+		return (SortedDataSource) sortDataset(filler, dataset, locale, false);
+	}
+
+
+	/**
+	 * Creates a data source that returns the dataset records sorted, writing the records 
+	 * to temporary files when their number exceeds {@link #PROPERTY_SPILL_THRESHOLD}.
+	 * 
+	 * @return a {@link SortedDataSource} if all the records fit in memory, 
+	 * or a {@link SpilledSortedDataSource} otherwise
+	 */
+	public static JRRewindableDataSource createSortedDataSource(
+		BaseReportFiller filler, 
+		JRFillDataset dataset, 
+		Locale locale 
+		) throws JRException
+	{
+		return sortDataset(filler, dataset, locale, true);
+	}
+
+
+	private static JRRewindableDataSource sortDataset(
+		BaseReportFiller filler, 
+		JRFillDataset dataset, 
+		Locale locale,
+		boolean spill
+		) throws JRException
 	{
 		DatasetSortInfo sortInfo = createSortInfo(dataset);
 		
-		SortFillDatasetRun sortDatasetRun = new SortFillDatasetRun(filler, dataset, sortInfo);
+		JRPropertiesUtil propertiesUtil = filler.getPropertiesUtil();
+		int parallelThreshold = propertiesUtil.getIntegerProperty(dataset, 
+				PROPERTY_PARALLEL_SORT_THRESHOLD, DEFAULT_PARALLEL_SORT_THRESHOLD);
+		
+		// the data snapshot needs all the records in the original order
+		int spillThreshold = spill && dataset.dataRecorder == null 
+				? propertiesUtil.getIntegerProperty(dataset, PROPERTY_SPILL_THRESHOLD, 0)
+				: 0;
+		String spillDirectory = propertiesUtil.getProperty(dataset, PROPERTY_SPILL_DIRECTORY);
+		
+		SortFillDatasetRun sortDatasetRun = new SortFillDatasetRun(filler, dataset, sortInfo, 
+				locale, parallelThreshold, spillThreshold, spillDirectory);
 		
 		List<SortedDataSource.SortRecord> records = sortDatasetRun.sort();
 		
-		// using indirect sorting in order to also preserve the original record order for data caching
-		int recordCount = records.size();
-		// we need wrapper objects for Arrays.sort with comparator
-		Integer[] indexes = new Integer[recordCount];
-		for (int i = 0; i < recordCount; i++) {
-			indexes[i] = i;
+		List<File> spilledRuns = sortDatasetRun.getSpilledRuns();
+		if (!spilledRuns.isEmpty())
+		{
+			SpilledSortedDataSource spilledDataSource = new SpilledSortedDataSource(filler.getJasperReportsContext(), 
+					sortInfo, locale, spilledRuns, sortDatasetRun.getSpillDirectory());
+			spilledDataSource.setMergeFanIn(propertiesUtil.getIntegerProperty(dataset, 
+					PROPERTY_SPILL_MERGE_FAN_IN, SpilledSortedDataSource.DEFAULT_MERGE_FAN_IN));
+			return spilledDataSource;
 		}
 		
-		/*   */
-		Arrays.sort(
-			indexes, 
-			new DataSourceComparator(
-				sortInfo, 
-				locale,
-				records
-				)
-			);
+		// using indirect sorting in order to also preserve the original record order for data caching
+		int[] indexes = sortRecords(sortInfo, locale, records, parallelThreshold);
 		
 		return new SortedDataSource(sortInfo, records, indexes);
 	}
 
 
+	static int[] sortRecords(DatasetSortInfo sortInfo, Locale locale, 
+			List<SortedDataSource.SortRecord> records, int parallelThreshold)
+	{
+		boolean parallel = parallelThreshold > 0 && records.size() >= parallelThreshold;
+		return new RecordIndexSorter(sortInfo, locale, records, parallel).sort();
+	}
+
+
 	/**
 	 *
 	 */
@@ -214,74 +342,6 @@ public class DatasetSortUtil
 }
 
 
-/**
- *
- */
-class DataSourceComparator implements Comparator<Integer>
-{
-	private final Collator collator;
-	private final List<SortFieldInfo> sortFields;
-	private final List<SortedDataSource.SortRecord> records;
-
-	public DataSourceComparator(DatasetSortInfo sortFieldInfo, Locale locale, 
-			List<SortedDataSource.SortRecord> records)
-	{
-		this.collator = Collator.getInstance(locale);
-		this.sortFields = sortFieldInfo.getSortFields();
-		this.records = records;
-	}
-
-	@Override
-	@SuppressWarnings({ "rawtypes", "unchecked" })
-	public int compare(Integer idx1, Integer idx2)
-	{
-		// assuming random access records list
-		Object[] record1 = records.get(idx1).getValues();
-		Object[] record2 = records.get(idx2).getValues();
-		
-		int ret = 0;
-
-		for (SortFieldInfo info : sortFields)
-		{
-			Comparable field1 = (Comparable)record1[info.getRecordIndex()];
-			Comparable field2 = (Comparable)record2[info.getRecordIndex()];
-
-			if (field1 == null)
-			{
-				ret = (field2 == null) ? 0 : -1;
-			}
-			else if (field2 == null)
-			{
-				ret = 1;
-			}
-			else
-			{
-				if (info.useCollator())
-				{
-					ret = collator.compare(field1, field2);
-				}
-				else
-				{
-					ret = field1.compareTo(field2);
-				}
-			}
-
-			if (ret != 0)
-			{
-				if (info.isDescending())
-				{
-					ret = -ret;
-				}
-				
-				return ret;
-			}
-		}
-
-		return ret;
-	}
-}
-
-
 /**
  * Used to iterate on a subdataset and create a sorted data source.
  * 
@@ -290,12 +350,28 @@ class DataSourceComparator implements Comparator<Integer>
 class SortFillDatasetRun extends JRFillDatasetRun
 {
 
+	private static final Log log = LogFactory.getLog(SortFillDatasetRun.class);
+	
+	public static final String EXCEPTION_MESSAGE_KEY_SPILL_FAILED = "fill.dataset.sort.spill.failed";
+
 	private DatasetSortInfo sortInfo;
+	private Locale locale;
+	private int parallelThreshold;
+	private int spillThreshold;
+	private String spillDirectory;
 	private int recordIndex;
 	private List<SortedDataSource.SortRecord> records;
+	private List<File> spilledRuns;
 
 	
 	public SortFillDatasetRun(BaseReportFiller filler, JRFillDataset dataset, DatasetSortInfo sortInfo) throws JRException
+	{
+		this(filler, dataset, sortInfo, null, 0, 0, null);
+	}
+
+	
+	public SortFillDatasetRun(BaseReportFiller filler, JRFillDataset dataset, DatasetSortInfo sortInfo,
+			Locale locale, int parallelThreshold, int spillThreshold, String spillDirectory) throws JRException
 	{
 		super(
 			filler, 
@@ -304,6 +380,10 @@ class SortFillDatasetRun extends JRFillDatasetRun
 			);
 
 		this.sortInfo = sortInfo;
+		this.locale = locale;
+		this.parallelThreshold = parallelThreshold;
+		this.spillThreshold = spillThreshold;
+		this.spillDirectory = spillDirectory;
 	}
 
 	
@@ -311,23 +391,106 @@ class SortFillDatasetRun extends JRFillDatasetRun
 	{
 		recordIndex = 0;
 		records = new ArrayList<SortedDataSource.SortRecord>();
+		spilledRuns = new ArrayList<File>();
 
+		boolean success = false;
 		try
 		{
 			//all parameters are already set onto the dataset by the main fill process
 
 			iterate();
+			
+			if (!spilledRuns.isEmpty() && !records.isEmpty())
+			{
+				// the remaining records go to the last run
+				spillRecords();
+			}
+			success = true;
 		}
 		finally
 		{
 			dataset.closeQueryExecuter();
 			dataset.reset();
+			
+			if (!success)
+			{
+				deleteSpilledRuns();
+			}
 		}
 		
 		return records;
 	}
 
 	
+	/**
+	 * Returns the files containing the sorted runs written while iterating the dataset.
+	 * 
+	 * If the list is empty, all the records are returned by {@link #sort()}.
+	 */
+	public List<File> getSpilledRuns()
+	{
+		return spilledRuns;
+	}
+	
+	
+	protected void spillRecords() throws JRException
+	{
+		int[] indexes = DatasetSortUtil.sortRecords(sortInfo, locale, records, parallelThreshold);
+		
+		SpilledSortedDataSource.RunWriter writer = null;
+		try
+		{
+			writer = new SpilledSortedDataSource.RunWriter(filler.getJasperReportsContext(), 
+					getSpillDirectory(), records.size());
+			if (log.isDebugEnabled())
+			{
+				log.debug("writing " + records.size() + " sorted records to " + writer.getFile());
+			}
+			
+			for (int index : indexes)
+			{
+				SortRecord record = records.get(index);
+				writer.write(record.getRecordIndex(), record.getValues());
+			}
+			writer.close();
+		}
+		catch (IOException e)
+		{
+			if (writer != null)
+			{
+				writer.discard();
+			}
+			throw 
+				new JRException(
+					EXCEPTION_MESSAGE_KEY_SPILL_FAILED,
+					(Object[]) null,
+					e);
+		}
+		
+		spilledRuns.add(writer.getFile());
+		records.clear();
+	}
+	
+	
+	public File getSpillDirectory()
+	{
+		return spillDirectory == null ? null : new File(spillDirectory);
+	}
+	
+	
+	protected void deleteSpilledRuns()
+	{
+		for (File runFile : spilledRuns)
+		{
+			if (!runFile.delete() && log.isDebugEnabled())
+			{
+				log.debug("failed to delete " + runFile);
+			}
+		}
+		spilledRuns.clear();
+	}
+
+	
 	@Override
 	protected void detail() throws JRScriptletException, JRException 
 	{
@@ -360,6 +523,11 @@ class SortFillDatasetRun extends JRFillDatasetRun
 		++recordIndex;
 		
 		records.add(sortRecord);
+		
+		if (spillThreshold > 0 && records.size() >= spillThreshold)
+		{
+			spillRecords();
+		}
 	}
 
 
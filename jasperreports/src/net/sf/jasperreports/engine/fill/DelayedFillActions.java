@@ -23,6 +23,7 @@
  */
 package net.sf.jasperreports.engine.fill;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -315,6 +316,40 @@ public class DelayedFillActions implements VirtualizationListener<VirtualElement
 		return false;
 	}
 	
+	/**
+	 * Collects the keys of the delayed actions registered for a page.
+	 * 
+	 * <p>
+	 * The keys of element evaluation actions are the print elements that are to be evaluated.
+	 * </p>
+	 * 
+	 * @param page the page
+	 * @param keys the collection to which the action keys are added
+	 */
+	public void collectDelayedActionKeys(JRPrintPage page, Collection<Object> keys)
+	{
+		FillPageKey pageKey = new FillPageKey(page);
+		for (LinkedHashMap<FillPageKey, LinkedMap<Object, EvaluationBoundAction>> map : actionsMap.values())
+		{
+			fillContext.lockVirtualizationContext();
+			try
+			{
+				synchronized (map)
+				{
+					LinkedMap<Object, EvaluationBoundAction> boundMap = map.get(pageKey);
+					if (boundMap != null)
+					{
+						boundMap.collectKeys(keys);
+					}
+				}
+			}
+			finally
+			{
+				fillContext.unlockVirtualizationContext();
+			}
+		}
+	}
+	
 	protected boolean hasMasterDelayedActions(JRPrintPage page)
 	{
 		LinkedHashMap<FillPageKey, LinkedMap<Object, EvaluationBoundAction>> masterActions = actionsMap.get(JREvaluationTime.EVALUATION_TIME_MASTER);
@@ -0,0 +1,391 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.engine.fill;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import net.sf.jasperreports.annotations.properties.Property;
+import net.sf.jasperreports.annotations.properties.PropertyScope;
+import net.sf.jasperreports.engine.JRPropertiesUtil;
+import net.sf.jasperreports.engine.JasperReportsContext;
+import net.sf.jasperreports.properties.PropertyConstants;
+import net.sf.jasperreports.repo.ResourceInfo;
+
+/**
+ * Process-wide cache of resources loaded from the repository during report filling.
+ * 
+ * <p>
+ * The cache keeps images, style templates and subreports that have been loaded by fills,
+ * so that other fills referencing the same repository resources can reuse them instead of
+ * loading them again.
+ * The resources are cached by the absolute location returned by {@link ResourceInfo#getResourceAbsoluteLocation()}
+ * rather than by repository location, since a repository location can resolve to different resources 
+ * in different repository contexts.
+ * The version token returned by {@link ResourceInfo#getResourceVersion()} is kept along with each resource,
+ * and cached resources are discarded when the repository reports a different version for their location.
+ * Resources for which the repository does not provide an absolute location and a version are not cached.
+ * </p>
+ * <p>
+ * Each resource has an estimated weight, and the least recently used resources are evicted
+ * when the total weight exceeds the {@link #PROPERTY_MAX_WEIGHT maximum weight}.
+ * </p>
+ * <p>
+ * The cache is consulted by the fill context when a resource is not found in the per fill caches.
+ * </p>
+ * 
+ * @see JRFillContext#getSharedResourceCache()
+ */
+public class FillResourceCache
+{
+	private static final Log log = LogFactory.getLog(FillResourceCache.class);
+	
+	/**
+	 * Property that enables the process-wide cache of resources used by report fills.
+	 * 
+	 * @see FillResourceCache
+	 */
+	@Property(
+			category = PropertyConstants.CATEGORY_FILL,
+			defaultValue = PropertyConstants.BOOLEAN_FALSE,
+			scopes = {PropertyScope.CONTEXT},
+			sinceVersion = PropertyConstants.VERSION_6_8_0,
+			valueType = Boolean.class
+			)
+	public static final String PROPERTY_ENABLED = JRPropertiesUtil.PROPERTY_PREFIX + "fill.resource.cache.enabled";
+	
+	/**
+	 * Property that specifies the maximum total weight of the resources kept in the process-wide cache.
+	 * 
+	 * <p>
+	 * The weight of a resource is an estimate of its size in bytes.
+	 * The property is read when the cache is first used.
+	 * </p>
+	 * 
+	 * @see FillResourceCache
+	 */
+	@Property(
+			category = PropertyConstants.CATEGORY_FILL,
+			defaultValue = "67108864",
+			scopes = {PropertyScope.CONTEXT},
+			sinceVersion = PropertyConstants.VERSION_6_8_0,
+			valueType = Long.class
+			)
+	public static final String PROPERTY_MAX_WEIGHT = JRPropertiesUtil.PROPERTY_PREFIX + "fill.resource.cache.max.weight";
+	
+	/**
+	 * The types of cached resources.
+	 */
+	public enum ResourceType
+	{
+		IMAGE,
+		TEMPLATE,
+		SUBREPORT
+	}
+	
+	private static volatile FillResourceCache instance;
+	
+	/**
+	 * Returns the process-wide cache if enabled by {@link #PROPERTY_ENABLED}.
+	 * 
+	 * @param jasperReportsContext the context
+	 * @return the process-wide cache, or <code>null</code> if the cache is not enabled
+	 */
+	public static FillResourceCache getInstance(JasperReportsContext jasperReportsContext)
+	{
+		JRPropertiesUtil propertiesUtil = JRPropertiesUtil.getInstance(jasperReportsContext);
+		if (!propertiesUtil.getBooleanProperty(PROPERTY_ENABLED))
+		{
+			return null;
+		}
+		
+		FillResourceCache cache = instance;
+		if (cache == null)
+		{
+			synchronized (FillResourceCache.class)
+			{
+				cache = instance;
+				if (cache == null)
+				{
+					cache = new FillResourceCache(propertiesUtil.getLongProperty(PROPERTY_MAX_WEIGHT));
+					instance = cache;
+				}
+			}
+		}
+		return cache;
+	}
+	
+	private final long maxWeight;
+	private final LinkedHashMap<CacheKey, CacheEntry> entries;
+	private long weight;
+	
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+	
+	/**
+	 * Creates a cache.
+	 * 
+	 * @param maxWeight the maximum total weight of the cached resources
+	 */
+	public FillResourceCache(long maxWeight)
+	{
+		this.maxWeight = maxWeight;
+		// access order for LRU eviction
+		this.entries = new LinkedHashMap<CacheKey, CacheEntry>(64, 0.75f, true);
+	}
+	
+	/**
+	 * Returns a cached resource.
+	 * 
+	 * @param type the resource type
+	 * @param resourceInfo the repository information of the resource
+	 * @return the cached resource, or <code>null</code> if the resource is not cached 
+	 * or the cached version is no longer current
+	 */
+	public Object get(ResourceType type, ResourceInfo resourceInfo)
+	{
+		CacheKey key = cacheKey(type, resourceInfo);
+		Object version = resourceInfo.getResourceVersion();
+		if (key == null || version == null)
+		{
+			return null;
+		}
+		
+		Object resource = null;
+		synchronized (this)
+		{
+			CacheEntry entry = entries.get(key);
+			if (entry != null)
+			{
+				if (entry.version.equals(version))
+				{
+					resource = entry.resource;
+				}
+				else
+				{
+					if (log.isDebugEnabled())
+					{
+						log.debug("discarding " + key + " with version " + entry.version + ", current version " + version);
+					}
+					
+					entries.remove(key);
+					weight -= entry.weight;
+				}
+			}
+		}
+		
+		if (resource == null)
+		{
+			missCount.incrementAndGet();
+		}
+		else
+		{
+			hitCount.incrementAndGet();
+			if (log.isDebugEnabled())
+			{
+				log.debug("found " + key + " in the shared cache");
+			}
+		}
+		return resource;
+	}
+	
+	/**
+	 * Adds a resource to the cache.
+	 * 
+	 * <p>
+	 * The resource is not cached if the repository did not provide an absolute location and a version for it,
+	 * or if its weight exceeds the maximum weight of the cache.
+	 * </p>
+	 * 
+	 * @param type the resource type
+	 * @param resourceInfo the repository information of the resource
+	 * @param resource the resource
+	 * @param resourceWeight the estimated weight of the resource
+	 */
+	public void put(ResourceType type, ResourceInfo resourceInfo, Object resource, long resourceWeight)
+	{
+		CacheKey key = cacheKey(type, resourceInfo);
+		Object version = resourceInfo.getResourceVersion();
+		if (key == null || version == null || resourceWeight > maxWeight)
+		{
+			return;
+		}
+		
+		synchronized (this)
+		{
+			CacheEntry previous = entries.put(key, new CacheEntry(version, resource, resourceWeight));
+			if (previous != null)
+			{
+				weight -= previous.weight;
+			}
+			weight += resourceWeight;
+			
+			for (Iterator<Map.Entry<CacheKey, CacheEntry>> it = entries.entrySet().iterator(); 
+					weight > maxWeight && it.hasNext();)
+			{
+				Map.Entry<CacheKey, CacheEntry> eldest = it.next();
+				if (log.isDebugEnabled())
+				{
+					log.debug("evicting " + eldest.getKey() + " from the shared cache");
+				}
+				
+				it.remove();
+				weight -= eldest.getValue().weight;
+				evictionCount.incrementAndGet();
+			}
+		}
+	}
+	
+	protected CacheKey cacheKey(ResourceType type, ResourceInfo resourceInfo)
+	{
+		// not using the repository location as it depends on the repository context
+		String absoluteLocation = resourceInfo.getResourceAbsoluteLocation();
+		return absoluteLocation == null ? null : new CacheKey(type, absoluteLocation);
+	}
+	
+	/**
+	 * Removes all the resources from the cache.
+	 */
+	public synchronized void clear()
+	{
+		entries.clear();
+		weight = 0;
+	}
+	
+	/**
+	 * Returns the number of cached resources.
+	 * 
+	 * @return the number of cached resources
+	 */
+	public synchronized int size()
+	{
+		return entries.size();
+	}
+	
+	/**
+	 * Returns the total weight of the cached resources.
+	 * 
+	 * @return the total weight of the cached resources
+	 */
+	public synchronized long getWeight()
+	{
+		return weight;
+	}
+	
+	public long getMaxWeight()
+	{
+		return maxWeight;
+	}
+	
+	/**
+	 * Returns the number of times a current resource was found in the cache.
+	 * 
+	 * @return the number of cache hits
+	 */
+	public long getHitCount()
+	{
+		return hitCount.get();
+	}
+	
+	/**
+	 * Returns the number of times a versioned resource was not found in the cache.
+	 * 
+	 * @return the number of cache misses
+	 */
+	public long getMissCount()
+	{
+		return missCount.get();
+	}
+	
+	/**
+	 * Returns the number of resources evicted to keep the weight of the cache under the maximum weight.
+	 * 
+	 * @return the number of evicted resources
+	 */
+	public long getEvictionCount()
+	{
+		return evictionCount.get();
+	}
+	
+	protected static class CacheKey
+	{
+		private final ResourceType type;
+		private final String location;
+		
+		public CacheKey(ResourceType type, String location)
+		{
+			this.type = type;
+			this.location = location;
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			return 31 * type.hashCode() + location.hashCode();
+		}
+		
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (obj == this)
+			{
+				return true;
+			}
+			
+			if (!(obj instanceof CacheKey))
+			{
+				return false;
+			}
+			
+			CacheKey key = (CacheKey) obj;
+			return type == key.type && location.equals(key.location);
+		}
+		
+		@Override
+		public String toString()
+		{
+			return type + " " + location;
+		}
+	}
+	
+	protected static class CacheEntry
+	{
+		private final Object version;
+		private final Object resource;
+		private final long weight;
+		
+		public CacheEntry(Object version, Object resource, long weight)
+		{
+			this.version = version;
+			this.resource = resource;
+			this.weight = weight;
+		}
+	}
+}
@@ -23,6 +23,7 @@
  */
 package net.sf.jasperreports.engine.fill;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.javaflow.api.continuable;
@@ -49,9 +50,13 @@ public class FillerSubreportParent implements BandReportFillerParent
 	private final DatasetExpressionEvaluator evaluator;
 
 	private JRSubreportRunner subreportRunner;
+	private volatile SubreportPrefill prefill;
 
 	private int currentPageStretchHeight;
 	
+	private List<Integer> elementIds;
+	private int elementIdIndex;
+	
 	public FillerSubreportParent(JRFillSubreport parentElement, DatasetExpressionEvaluator evaluator)
 	{
 		this.parentElement = parentElement;
@@ -86,7 +91,12 @@ public class FillerSubreportParent implements BandReportFillerParent
 	@Override
 	public void abortSubfiller(JRBaseFiller filler)
 	{
-		if (subreportRunner != null)
+		SubreportPrefill currentPrefill = prefill;
+		if (currentPrefill != null)
+		{
+			currentPrefill.abort();
+		}
+		else if (subreportRunner != null)
 		{
 			subreportRunner.abort();
 		}
@@ -127,6 +137,20 @@ public class FillerSubreportParent implements BandReportFillerParent
 		this.subreportRunner = subreportRunner;
 	}
 
+	/**
+	 * Sets the prefill that fills the subreport ahead of its placement.
+	 * 
+	 * <p>
+	 * While a prefill is set, it handles page overflows and aborts instead of the subreport runner.
+	 * </p>
+	 * 
+	 * @param prefill the subreport prefill, <code>null</code> when the subreport is filled by its runner
+	 */
+	public void setPrefill(SubreportPrefill prefill)
+	{
+		this.prefill = prefill;
+	}
+
 	@Override
 	@continuable
 	public void addPage(FillerPageAddedEvent pageAdded) throws JRException
@@ -151,6 +175,12 @@ public class FillerSubreportParent implements BandReportFillerParent
 	@continuable
 	protected void suspendSubreportRunner(FillerPageAddedEvent pageAdded) throws JRException
 	{
+		SubreportPrefill currentPrefill = prefill;
+		if (currentPrefill != null)
+		{
+			currentPrefill.overflow();
+		}
+		
 		if (subreportRunner == null)
 		{
 			throw 
@@ -168,6 +198,55 @@ public class FillerSubreportParent implements BandReportFillerParent
 		subreportRunner.suspend();
 	}
 
+	/**
+	 * Makes the subreport filler record the Ids assigned to its elements.
+	 * 
+	 * <p>
+	 * Ids already present in the list are reused in the order in which they were recorded,
+	 * which allows a filler that replaces a discarded filler of the same report to produce
+	 * the same element Ids.
+	 * </p>
+	 * 
+	 * @param elementIds the list of recorded element Ids, <code>null</code> to start a new list
+	 */
+	public void recordElementIds(List<Integer> elementIds)
+	{
+		this.elementIds = elementIds == null ? new ArrayList<Integer>() : elementIds;
+		this.elementIdIndex = 0;
+	}
+	
+	/**
+	 * Returns the element Ids recorded by the subreport filler.
+	 * 
+	 * @return the element Ids, <code>null</code> if Ids are not recorded
+	 * @see #recordElementIds(List)
+	 */
+	public List<Integer> getElementIds()
+	{
+		return elementIds;
+	}
+	
+	protected int generateFillElementId()
+	{
+		if (elementIds == null)
+		{
+			return parentFiller.generateFillElementId();
+		}
+		
+		int id;
+		if (elementIdIndex < elementIds.size())
+		{
+			id = elementIds.get(elementIdIndex);
+		}
+		else
+		{
+			id = parentFiller.generateFillElementId();
+			elementIds.add(id);
+		}
+		++elementIdIndex;
+		return id;
+	}
+
 	public int getCurrentPageStretchHeight()
 	{
 		return currentPageStretchHeight;
@@ -568,6 +568,154 @@ public abstract class JRAbstractLRUVirtualizer implements JRVirtualizer
 		}
 	}
 
+	/**
+	 * Loads the data of an object ahead of the object being accessed.
+	 * 
+	 * <p>
+	 * If the object belongs to a read-only context, the data is read and deserialized
+	 * without holding the context lock, so that threads accessing other objects of the
+	 * context are not blocked while the data is loaded.
+	 * Otherwise the data is loaded as in {@link #requestData(JRVirtualizable)}.
+	 * 
+	 * @param o the object whose data should be loaded
+	 * @see PagePrefetcher
+	 */
+	public void prefetchData(JRVirtualizable<?> o)
+	{
+		prefetchTypedData(o);
+	}
+	
+	protected <T> void prefetchTypedData(JRVirtualizable<T> o)
+	{
+		if (!isReadOnly(o))
+		{
+			requestData(o);
+			return;
+		}
+		
+		String uid = o.getUID();
+		if (!isPagedOut(uid))
+		{
+			return;
+		}
+		
+		if (log.isDebugEnabled())
+		{
+			log.debug("prefetching " + uid);
+		}
+		
+		// read only contexts keep the data in the store, we can load it without locking
+		PrefetchedObject<T> prefetched = new PrefetchedObject<T>(o);
+		try
+		{
+			pageIn(prefetched);
+		}
+		catch (IOException e)
+		{
+			log.error("Error devirtualizing object", e);
+			throw new JRRuntimeException(e);
+		}
+		
+		boolean evictRequired = false;
+		o.getContext().lock();
+		try
+		{
+			// checking whether the data has been loaded in the meantime
+			if (isPagedOut(uid))
+			{
+				o.setVirtualData(prefetched.getVirtualData());
+				
+				synchronized (this)
+				{
+					setLastObject(o);
+					pagedOut.remove(uid);
+					pagedIn.put(uid, o);
+				}
+
+				o.afterInternalization();
+				
+				evictRequired = true;
+			}
+		}
+		finally
+		{
+			o.getContext().unlock();
+		}
+		
+		if (evictRequired)
+		{
+			evict();
+		}
+	}
+	
+	/**
+	 * Collects the data of an object without setting it on the object.
+	 */
+	protected static class PrefetchedObject<T> implements JRVirtualizable<T>
+	{
+		private final JRVirtualizable<T> object;
+		private T virtualData;
+		
+		public PrefetchedObject(JRVirtualizable<T> object)
+		{
+			this.object = object;
+		}
+
+		@Override
+		public String getUID()
+		{
+			return object.getUID();
+		}
+
+		@Override
+		public void ensureVirtualData()
+		{
+			//NOP
+		}
+
+		@Override
+		public void setVirtualData(T o)
+		{
+			this.virtualData = o;
+		}
+
+		@Override
+		public T getVirtualData()
+		{
+			return virtualData;
+		}
+
+		@Override
+		public void removeVirtualData()
+		{
+			virtualData = null;
+		}
+
+		@Override
+		public void beforeExternalization()
+		{
+			//NOP
+		}
+
+		@Override
+		public void afterExternalization()
+		{
+			//NOP
+		}
+
+		@Override
+		public void afterInternalization()
+		{
+			//NOP
+		}
+
+		@Override
+		public JRVirtualizationContext getContext()
+		{
+			return object.getContext();
+		}
+	}
+
 	@Override
 	public void clearData(JRVirtualizable o)
 	{
@@ -36,6 +36,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
@@ -207,6 +208,7 @@ public abstract class JRBaseFiller extends BaseReportFiller implements JRDefault
 	 * Collection of subfillers
 	 */
 	protected Map<Integer, JRBaseFiller> subfillers;
+	private final Object subfillersLock = new Object();
 
 	private boolean bandOverFlowAllowed;
 
@@ -260,6 +262,11 @@ public abstract class JRBaseFiller extends BaseReportFiller implements JRDefault
 	protected boolean isReorderBandElements;
 	
 	protected int usedPageHeight = 0;
+	
+	private boolean dataPrefetched;
+	
+	private boolean compactPageElements;
+	private int compactedPageCount;
 
 	/**
 	 *
@@ -575,10 +582,20 @@ public abstract class JRBaseFiller extends BaseReportFiller implements JRDefault
 				bandReportParent.registerSubfiller(this);
 			}
 
-			setParameters(parameterValues);
+			if (dataPrefetched)
+			{
+				// parameters already set by prefetchData
+				dataPrefetched = false;
+			}
+			else
+			{
+				setParameters(parameterValues);
+			}
 
 			setBookmarkHelper();
 			
+			setCompactPageElements();
+			
 			loadStyles();
 
 			jasperPrint.setName(name);
@@ -614,6 +631,11 @@ public abstract class JRBaseFiller extends BaseReportFiller implements JRDefault
 			/*   */
 			fillReport();
 			
+			if (compactPageElements)
+			{
+				compactPages(jasperPrint.getPages().size(), true);
+			}
+			
 			mainDataset.evaluateProperties(PropertyEvaluationTimeEnum.REPORT);
 			
 			propertiesUtil.transferProperties(
@@ -668,6 +690,59 @@ public abstract class JRBaseFiller extends BaseReportFiller implements JRDefault
 		}
 	}
 		
+	/**
+	 * Sets the parameter values and initializes the data source ahead of the fill,
+	 * executing the report query on a separate thread.
+	 * 
+	 * <p>
+	 * The same parameter values map needs to be passed to the subsequent {@link #fill(Map)} call.
+	 * If the report is not filled, {@link #disposePrefetchedData()} needs to be called to close the query.
+	 * </p>
+	 * 
+	 * @param parameterValues the parameter values
+	 * @throws JRException
+	 * @see JRFillDataset#PROPERTY_QUERY_PREFETCH
+	 */
+	protected void prefetchData(Map<String,Object> parameterValues) throws JRException
+	{
+		if (log.isDebugEnabled())
+		{
+			log.debug("Fill " + fillerId + ": prefetching data");
+		}
+		
+		setParametersToContext(parameterValues);
+		
+		JRResourcesFillUtil.ResourcesFillContext resourcesContext = 
+			JRResourcesFillUtil.setResourcesFillContext(parameterValues);
+		try
+		{
+			setParameters(parameterValues, true);
+			dataPrefetched = true;
+		}
+		finally
+		{
+			JRResourcesFillUtil.revertResourcesFillContext(resourcesContext);
+		}
+	}
+	
+	/**
+	 * Closes the data source initialized by {@link #prefetchData(Map)} if the report has not been filled.
+	 */
+	protected void disposePrefetchedData()
+	{
+		if (dataPrefetched)
+		{
+			if (log.isDebugEnabled())
+			{
+				log.debug("Fill " + fillerId + ": disposing prefetched data");
+			}
+			
+			dataPrefetched = false;
+			mainDataset.closeDatasource();
+			mainDataset.disposeParameterContributors();
+		}
+	}
+		
 	public void addPrintStyle(JRStyle style) throws JRException
 	{
 		jasperPrint.addStyle(style, true);
@@ -1283,9 +1358,13 @@ public abstract class JRBaseFiller extends BaseReportFiller implements JRDefault
 
 	protected void registerSubfiller(JRBaseFiller subfiller)
 	{
-		if (subfillers == null)
+		// subfillers of parallel prefilled subreports register from separate threads
+		synchronized (subfillersLock)
 		{
-			subfillers = new ConcurrentHashMap<Integer, JRBaseFiller>(16, 0.75f, 1);
+			if (subfillers == null)
+			{
+				subfillers = new ConcurrentHashMap<Integer, JRBaseFiller>(16, 0.75f, 1);
+			}
 		}
 
 		subfillers.put(subfiller.fillerId, subfiller);
@@ -1361,6 +1440,63 @@ public abstract class JRBaseFiller extends BaseReportFiller implements JRDefault
 
 			jasperPrint.addPage(page);
 			fillContext.setPrintPage(page);
+			
+			if (compactPageElements)
+			{
+				// the previous page can still be changed when moving elements for keep together and footers
+				compactPages(jasperPrint.getPages().size() - 2, false);
+			}
+		}
+	}
+	
+	protected void setCompactPageElements()
+	{
+		compactPageElements = parent == null && !fillContext.isUsingVirtualizer()
+				&& propertiesUtil.getBooleanProperty(mainDataset, CompactElementList.PROPERTY_COMPACT_PAGE_ELEMENTS, false);
+		compactedPageCount = 0;
+	}
+	
+	/**
+	 * Moves the elements of generated pages to compact element stores.
+	 * 
+	 * <p>
+	 * Elements that still have pending delayed evaluations are kept as references
+	 * and are compacted by a subsequent call made after the evaluations have been performed.
+	 * </p>
+	 * 
+	 * @param pageCount the number of pages to compact
+	 * @param recompact whether previously compacted pages are to be revisited
+	 * @see CompactElementList#PROPERTY_COMPACT_PAGE_ELEMENTS
+	 */
+	protected void compactPages(int pageCount, boolean recompact)
+	{
+		List<JRPrintPage> pages = jasperPrint.getPages();
+		int startIndex = recompact ? 0 : compactedPageCount;
+		for (int pageIndex = startIndex; pageIndex < pageCount; pageIndex++)
+		{
+			JRPrintPage page = pages.get(pageIndex);
+			if (page instanceof JRVirtualPrintPage)
+			{
+				continue;
+			}
+			
+			Set<Object> boundElements = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+			collectBoundElements(page, boundElements);
+			
+			List<JRPrintElement> elements = page.getElements();
+			if (elements instanceof CompactElementList)
+			{
+				((CompactElementList) elements).compact(boundElements);
+			}
+			else
+			{
+				page.setElements(new CompactElementList(elements, boundElements));
+			}
+		}
+		
+		if (pageCount > compactedPageCount)
+		{
+			compactedPageCount = pageCount;
 		}
 	}
 	
@@ -1574,6 +1710,20 @@ public abstract class JRBaseFiller extends BaseReportFiller implements JRDefault
 		return !hasBoundActions(page);
 	}
 	
+	protected void collectBoundElements(JRPrintPage page, Set<Object> elements)
+	{
+		delayedActions.collectDelayedActionKeys(page, elements);
+		
+		if (subfillers != null)
+		{
+			for (JRBaseFiller subfiller : subfillers.values())
+			{
+				// recursive
+				subfiller.collectBoundElements(page, elements);
+			}
+		}
+	}
+
 	protected boolean hasBoundActions(JRPrintPage page)
 	{
 		boolean hasActions = delayedActions.hasDelayedActions(page);
@@ -1717,8 +1867,16 @@ public abstract class JRBaseFiller extends BaseReportFiller implements JRDefault
 
 	protected PrintElementOriginator assignElementId(JRFillElement fillElement)
 	{
-		int id = getFillContext().generateFillElementId();
+		int id = generateFillElementId();
 		DefaultPrintElementOriginator originator = new DefaultPrintElementOriginator(id);
 		return originator;
 	}
+
+	protected int generateFillElementId()
+	{
+		// subreport Ids go through the parents so that nested fillers also reuse recorded Ids
+		return bandReportParent instanceof FillerSubreportParent
+				? ((FillerSubreportParent) bandReportParent).generateFillElementId()
+				: getFillContext().generateFillElementId();
+	}
 }
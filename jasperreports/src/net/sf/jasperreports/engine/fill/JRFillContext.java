@@ -24,10 +24,13 @@
 package net.sf.jasperreports.engine.fill;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.TimeZone;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -76,10 +79,13 @@ public class JRFillContext
 	private RenderersCache renderersCache;
 	private Map<Object,JasperReportSource> loadedSubreports;
 	private Map<Object,ReportTemplateSource> loadedTemplates;
+	private FillResourceCache sharedResourceCache;
 	private DeduplicableRegistry deduplicableRegistry;
 	private boolean usingVirtualizer;
 	private JRPrintPage printPage;
 	private JRQueryExecuter queryExecuter;
+	private final Set<JRQueryExecuter> prefetchedQueryExecuters = 
+			Collections.newSetFromMap(new IdentityHashMap<JRQueryExecuter, Boolean>());
 	
 	private JasperReportsContext jasperReportsContext;
 	private JRStyledTextUtil styledTextUtil;
@@ -100,7 +106,7 @@ public class JRFillContext
 	private final AtomicInteger fillerIdSeq = new AtomicInteger();
 	private final AtomicInteger fillElementSeq = new AtomicInteger();
 	
-	private Map<String, Object> fillCaches = new HashMap<String, Object>();
+	private Map<String, Object> fillCaches = Collections.synchronizedMap(new HashMap<String, Object>());
 
 	/**
 	 * @deprecated To be removed.
@@ -122,10 +128,12 @@ public class JRFillContext
 		this.jasperReportsContext = masterFiller.getJasperReportsContext();
 		this.styledTextUtil = JRStyledTextUtil.getInstance(jasperReportsContext);
 		
-		loadedImageRenderers = new HashMap<Object,Renderable>();
+		// synchronized as subreports can be filled in parallel
+		loadedImageRenderers = Collections.synchronizedMap(new HashMap<Object,Renderable>());
 		renderersCache = new RenderersCache(jasperReportsContext);
-		loadedSubreports = new HashMap<>();
-		loadedTemplates = new HashMap<>();
+		loadedSubreports = Collections.synchronizedMap(new HashMap<Object,JasperReportSource>());
+		loadedTemplates = Collections.synchronizedMap(new HashMap<Object,ReportTemplateSource>());
+		sharedResourceCache = FillResourceCache.getInstance(jasperReportsContext);
 		deduplicableRegistry = new DeduplicableRegistry();
 		
 		FontUtil.getInstance(jasperReportsContext).resetThreadMissingFontsCache();
@@ -151,6 +159,18 @@ public class JRFillContext
 		return styledTextUtil;
 	}
 
+	/**
+	 * Returns the process-wide cache of repository resources, consulted when a resource 
+	 * has not been loaded in this fill.
+	 * 
+	 * @return the shared resource cache, or <code>null</code> if the cache is not enabled
+	 * @see FillResourceCache#PROPERTY_ENABLED
+	 */
+	public FillResourceCache getSharedResourceCache()
+	{
+		return sharedResourceCache;
+	}
+
 	/**
 	 * Checks whether an image renderer given by source has already been loaded and cached.
 	 * 
@@ -358,13 +378,46 @@ public class JRFillContext
 	
 	
 	/**
-	 * Cancels the running query.
+	 * Registers a query executer whose query is executed on a prefetch thread.
+	 * <p>
+	 * Prefetched queries run concurrently with the query of the filling dataset
+	 * and are cancelled along with it by {@link #cancelRunningQuery()}.
 	 * 
-	 * @return <code>true</code> if and only if there is a running query and it has been canceled.
+	 * @param queryExecuter the prefetched query executer
+	 * @see JRFillDataset#PROPERTY_QUERY_PREFETCH
+	 */
+	public synchronized void addPrefetchedQueryExecuter(JRQueryExecuter queryExecuter)
+	{
+		prefetchedQueryExecuters.add(queryExecuter);
+	}
+	
+	
+	/**
+	 * Removes a prefetched query executer after its query has ended.
+	 * 
+	 * @param queryExecuter the prefetched query executer
+	 * @see #addPrefetchedQueryExecuter(JRQueryExecuter)
+	 */
+	public synchronized void removePrefetchedQueryExecuter(JRQueryExecuter queryExecuter)
+	{
+		prefetchedQueryExecuters.remove(queryExecuter);
+	}
+	
+	
+	/**
+	 * Cancels the running query and the queries that are being executed by prefetch threads.
+	 * 
+	 * @return <code>true</code> if and only if there is a query running on the filling thread and it has been canceled.
 	 * @throws JRException
 	 */
 	public synchronized boolean cancelRunningQuery() throws JRException
 	{
+		for (JRQueryExecuter prefetchedQueryExecuter : prefetchedQueryExecuters)
+		{
+			prefetchedQueryExecuter.cancelQuery();
+		}
+		
+		// only the query of the filling thread stops the fill, otherwise the thread needs to be interrupted
 		if (queryExecuter != null)
 		{
 			return queryExecuter.cancelQuery();
@@ -487,7 +540,10 @@ public class JRFillContext
 	 */
 	public <T extends Deduplicable> T deduplicate(T object)
 	{
-		return deduplicableRegistry.deduplicate(object);
+		synchronized (deduplicableRegistry)
+		{
+			return deduplicableRegistry.deduplicate(object);
+		}
 	}
 
 	/**
@@ -606,7 +662,13 @@ public class JRFillContext
 
 	public void dispose()
 	{
-		for (Object cacheObject : fillCaches.values())
+		List<Object> cacheObjects;
+		synchronized (fillCaches)
+		{
+			cacheObjects = new ArrayList<Object>(fillCaches.values());
+		}
+		
+		for (Object cacheObject : cacheObjects)
 		{
 			if (cacheObject instanceof FillCacheDisposable)
 			{
@@ -40,6 +40,8 @@ import java.util.UUID;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import net.sf.jasperreports.annotations.properties.Property;
+import net.sf.jasperreports.annotations.properties.PropertyScope;
 import net.sf.jasperreports.data.cache.CachedDataset;
 import net.sf.jasperreports.data.cache.DataCacheHandler;
 import net.sf.jasperreports.data.cache.DataRecorder;
@@ -91,6 +93,7 @@ import net.sf.jasperreports.engine.util.JRDataUtils;
 import net.sf.jasperreports.engine.util.JRQueryExecuterUtils;
 import net.sf.jasperreports.engine.util.JRResourcesUtil;
 import net.sf.jasperreports.engine.util.MD5Digest;
+import net.sf.jasperreports.properties.PropertyConstants;
 import net.sf.jasperreports.repo.RepositoryContext;
 import net.sf.jasperreports.repo.SimpleRepositoryContext;
 
@@ -108,6 +111,61 @@ public class JRFillDataset implements JRDataset, DatasetFillContext
 	public static final String EXCEPTION_MESSAGE_KEY_NO_SUCH_SNAPSHOT_PARAMETER = "fill.dataset.no.such.snapshot.parameter";
 	public static final String EXCEPTION_MESSAGE_KEY_NO_SUCH_VARIABLE = "fill.dataset.no.such.variable";
 	
+	/**
+	 * Property that determines whether the query of a subreport or of a list dataset run is executed 
+	 * as soon as the parameters of the subreport or dataset run are evaluated, 
+	 * ahead of the fill of the subreport or list.
+	 * 
+	 * <p>
+	 * The query is executed on a separate thread and the first records are read into memory,
+	 * so that database latency overlaps with the layout of the bands that precede the subreport or list.
+	 * The connections used by such queries need to support concurrent use.
+	 * </p>
+	 * 
+	 * @see PrefetchDataSource
+	 * @see #PROPERTY_QUERY_PREFETCH_ROWS
+	 * @see #PROPERTY_QUERY_PREFETCH_THREADS
+	 */
+	@Property(
+			category = PropertyConstants.CATEGORY_FILL,
+			defaultValue = PropertyConstants.BOOLEAN_FALSE,
+			scopes = {PropertyScope.CONTEXT, PropertyScope.DATASET, PropertyScope.SUBREPORT, PropertyScope.SUBDATASET_RUN},
+			sinceVersion = PropertyConstants.VERSION_6_8_0,
+			valueType = Boolean.class
+			)
+	public static final String PROPERTY_QUERY_PREFETCH = 
+			JRPropertiesUtil.PROPERTY_PREFIX + "query.prefetch";
+	
+	/**
+	 * Property that specifies the number of records that are read into memory when a query is prefetched.
+	 * 
+	 * @see #PROPERTY_QUERY_PREFETCH
+	 */
+	@Property(
+			category = PropertyConstants.CATEGORY_FILL,
+			defaultValue = "100",
+			scopes = {PropertyScope.CONTEXT, PropertyScope.DATASET},
+			sinceVersion = PropertyConstants.VERSION_6_8_0,
+			valueType = Integer.class
+			)
+	public static final String PROPERTY_QUERY_PREFETCH_ROWS = 
+			JRPropertiesUtil.PROPERTY_PREFIX + "query.prefetch.rows";
+	
+	/**
+	 * Property that specifies the number of threads used by a report fill to execute prefetched queries.
+	 * 
+	 * @see #PROPERTY_QUERY_PREFETCH
+	 */
+	@Property(
+			category = PropertyConstants.CATEGORY_FILL,
+			defaultValue = "4",
+			scopes = {PropertyScope.CONTEXT},
+			sinceVersion = PropertyConstants.VERSION_6_8_0,
+			valueType = Integer.class
+			)
+	public static final String PROPERTY_QUERY_PREFETCH_THREADS = 
+			JRPropertiesUtil.PROPERTY_PREFIX + "query.prefetch.threads";
+	
 	/**
 	 * The filler that created this object.
 	 */
@@ -254,6 +312,7 @@ public class JRFillDataset implements JRDataset, DatasetFillContext
 	protected Integer reportMaxCount;
 
 	private JRQueryExecuter queryExecuter;
+	private PrefetchDataSource prefetchDataSource;
 	private List<ParameterContributor> parameterContributors;
 	
 	protected DatasetFilter filter;
@@ -708,8 +767,22 @@ public class JRFillDataset implements JRDataset, DatasetFillContext
 	 * @throws JRException
 	 */
 	public void initDatasource() throws JRException
+	{
+		initDatasource(false);
+	}
+	
+	/**
+	 * Initializes the data source which will be used by this dataset, 
+	 * optionally executing the query ahead of the iteration.
+	 * 
+	 * @param prefetchQuery whether the dataset query is to be executed on a separate thread
+	 * @throws JRException
+	 * @see #PROPERTY_QUERY_PREFETCH
+	 */
+	public void initDatasource(boolean prefetchQuery) throws JRException
 	{
 		queryExecuter = null;
+		prefetchDataSource = null;
 		dataSource = null;
 
 		if (cachedDataset != null)
@@ -723,16 +796,17 @@ public class JRFillDataset implements JRDataset, DatasetFillContext
 			dataSource = (JRDataSource) getParameterValue(JRParameter.REPORT_DATA_SOURCE);
 			if (!useDatasourceParamValue && (useConnectionParamValue || dataSource == null))
 			{
-				dataSource = createQueryDatasource();
+				dataSource = createQueryDatasource(prefetchQuery);
 				setParameter(JRParameter.REPORT_DATA_SOURCE, dataSource);
 			}
 		}
 
 		if (DatasetSortUtil.needSorting(this))
 		{
-			dataSource = DatasetSortUtil.getSortedDataSource(filler, this, locale);
+			dataSource = DatasetSortUtil.createSortedDataSource(filler, this, locale);
 			setParameter(JRParameter.REPORT_DATA_SOURCE, dataSource);
-			sortedDataSource = true;
+			// records spilled to disk are not kept for data caching
+			sortedDataSource = dataSource instanceof SortedDataSource;
 		}
 	}
 
@@ -1231,16 +1305,18 @@ public class JRFillDataset implements JRDataset, DatasetFillContext
 	/**
 	 * Creates the data source from a connection.
 	 * 
+	 * @param prefetchQuery whether to execute the query on a separate thread
 	 * @return the data source to be used
 	 * @throws JRException
 	 */
-	private JRDataSource createQueryDatasource() throws JRException
+	private JRDataSource createQueryDatasource(boolean prefetchQuery) throws JRException
 	{
 		if (query == null)
 		{
 			return null;
 		}
 
+		boolean running = false;
 		try
 		{
 			if (log.isDebugEnabled())
@@ -1252,13 +1328,35 @@ public class JRFillDataset implements JRDataset, DatasetFillContext
 			SimpleQueryExecutionContext queryExecutionContext = SimpleQueryExecutionContext.of(
 					getJasperReportsContext(), getRepositoryContext());
 			queryExecuter = queryExecuterFactory.createQueryExecuter(queryExecutionContext, this, parametersMap);
+			
+			if (prefetchQuery)
+			{
+				int rowCount = propertiesUtil.getIntegerProperty(this, PROPERTY_QUERY_PREFETCH_ROWS, 0);
+				// the prefetch removes the query executer from the context once the query has been executed
+				filler.fillContext.addPrefetchedQueryExecuter(queryExecuter);
+				try
+				{
+					prefetchDataSource = new PrefetchDataSource(filler, fields, queryExecuter, rowCount);
+				}
+				catch (RuntimeException e)
+				{
+					filler.fillContext.removePrefetchedQueryExecuter(queryExecuter);
+					throw e;
+				}
+				return prefetchDataSource;
+			}
+			
 			filler.fillContext.setRunningQueryExecuter(queryExecuter);
+			running = true;
 			
 			return queryExecuter.createDatasource();
 		}
 		finally
 		{
-			filler.fillContext.clearRunningQueryExecuter();
+			if (running)
+			{
+				filler.fillContext.clearRunningQueryExecuter();
+			}
 		}
 	}
 
@@ -1314,6 +1412,11 @@ public class JRFillDataset implements JRDataset, DatasetFillContext
 	{
 		closeQueryExecuter();
 		reset();
+		
+		if (dataSource instanceof SpilledSortedDataSource)
+		{
+			((SpilledSortedDataSource) dataSource).dispose();
+		}
 
 		if (ended)
 		{
@@ -1324,6 +1427,14 @@ public class JRFillDataset implements JRDataset, DatasetFillContext
 
 	protected void closeQueryExecuter()
 	{
+		if (prefetchDataSource != null)
+		{
+			// stops the query if still running and closes the query executer
+			prefetchDataSource.dispose();
+			prefetchDataSource = null;
+			queryExecuter = null;
+		}
+		
 		if (queryExecuter != null)
 		{
 			if (log.isDebugEnabled())
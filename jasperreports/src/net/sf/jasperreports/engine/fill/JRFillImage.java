@@ -56,6 +56,7 @@ import net.sf.jasperreports.renderers.DimensionRenderable;
 import net.sf.jasperreports.renderers.Renderable;
 import net.sf.jasperreports.renderers.RenderersCache;
 import net.sf.jasperreports.renderers.ResourceRenderer;
+import net.sf.jasperreports.renderers.SimpleDataRenderer;
 import net.sf.jasperreports.renderers.util.RendererUtil;
 import net.sf.jasperreports.repo.RepositoryContext;
 import net.sf.jasperreports.repo.RepositoryUtil;
@@ -529,7 +530,16 @@ public class JRFillImage extends JRFillGraphicElement implements JRImage
 							}
 							else
 							{
-								newRenderer = RendererUtil.getInstance(repositoryContext).getNonLazyRenderable(absoluteLocation, getOnErrorTypeValue());
+								FillResourceCache sharedCache = isUsingCache ? filler.fillContext.getSharedResourceCache() : null;
+								if (sharedCache == null)
+								{
+									newRenderer = RendererUtil.getInstance(repositoryContext).getNonLazyRenderable(absoluteLocation, getOnErrorTypeValue());
+								}
+								else
+								{
+									newRenderer = loadSharedRenderer(sharedCache, resourceInfo, repositoryContext);
+								}
+								
 								if (isUsingCache)
 								{
 									filler.fillContext.registerLoadedRenderer(absoluteKey, newRenderer);
@@ -622,6 +632,24 @@ public class JRFillImage extends JRFillGraphicElement implements JRImage
 		hyperlinkParameters = JRFillHyperlinkHelper.evaluateHyperlinkParameters(this, expressionEvaluator, evaluation);
 	}
 	
+	protected Renderable loadSharedRenderer(FillResourceCache sharedCache, ResourceInfo resourceInfo, 
+			RepositoryContext repositoryContext) throws JRException
+	{
+		Renderable renderer = (Renderable) sharedCache.get(FillResourceCache.ResourceType.IMAGE, resourceInfo);
+		if (renderer == null)
+		{
+			renderer = RendererUtil.getInstance(repositoryContext).getNonLazyRenderable(
+					resourceInfo.getRepositoryResourceLocation(), getOnErrorTypeValue());
+			// error renderers are not kept in the shared cache
+			if (renderer instanceof SimpleDataRenderer)
+			{
+				byte[] data = ((SimpleDataRenderer) renderer).getData(filler.getJasperReportsContext());
+				sharedCache.put(FillResourceCache.ResourceType.IMAGE, resourceInfo, renderer, data.length);
+			}
+		}
+		return renderer;
+	}
+	
 
 	@Override
 	public void rewind()
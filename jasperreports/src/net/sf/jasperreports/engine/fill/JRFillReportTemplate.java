@@ -31,6 +31,7 @@ import net.sf.jasperreports.engine.JRException;
 import net.sf.jasperreports.engine.JRExpression;
 import net.sf.jasperreports.engine.JRReportTemplate;
 import net.sf.jasperreports.engine.JRRuntimeException;
+import net.sf.jasperreports.engine.JRStyle;
 import net.sf.jasperreports.engine.JRTemplate;
 import net.sf.jasperreports.engine.xml.JRXmlTemplateLoader;
 import net.sf.jasperreports.repo.RepositoryContext;
@@ -56,6 +57,9 @@ public class JRFillReportTemplate implements JRReportTemplate
 	
 	public static final String EXCEPTION_MESSAGE_KEY_UNKNOWN_TEMPLATE_SOURCE = "fill.report.template.unknown.template.source";
 	
+	private static final long TEMPLATE_BASE_WEIGHT = 1024;
+	private static final long TEMPLATE_STYLE_WEIGHT = 512;
+	
 	private final JRReportTemplate parent;
 	private final JRBaseFiller filler;
 	
@@ -135,8 +139,19 @@ public class JRFillReportTemplate implements JRReportTemplate
 					}
 					else
 					{
-						JRTemplate template = JRXmlTemplateLoader.getInstance(repositoryContext).loadTemplate(resourceLocation);
-						templateSource = ReportTemplateSource.of(template, resourceInfo);
+						FillResourceCache sharedCache = filler.fillContext.getSharedResourceCache();
+						templateSource = sharedCache == null ? null 
+								: (ReportTemplateSource) sharedCache.get(FillResourceCache.ResourceType.TEMPLATE, resourceInfo);
+						if (templateSource == null)
+						{
+							JRTemplate template = JRXmlTemplateLoader.getInstance(repositoryContext).loadTemplate(resourceLocation);
+							templateSource = ReportTemplateSource.of(template, resourceInfo);
+							if (sharedCache != null)
+							{
+								sharedCache.put(FillResourceCache.ResourceType.TEMPLATE, resourceInfo, 
+										templateSource, templateWeight(template));
+							}
+						}
 						filler.fillContext.registerLoadedTemplate(absoluteKey, templateSource);
 					}
 				}
@@ -170,4 +185,11 @@ public class JRFillReportTemplate implements JRReportTemplate
 		return templateSource;
 	}
 	
+	protected static long templateWeight(JRTemplate template)
+	{
+		// rough estimate of the memory used by the styles
+		JRStyle[] styles = template.getStyles();
+		return TEMPLATE_BASE_WEIGHT + (styles == null ? 0 : styles.length * TEMPLATE_STYLE_WEIGHT);
+	}
+	
 }
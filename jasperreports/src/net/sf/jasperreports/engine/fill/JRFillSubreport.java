@@ -25,6 +25,7 @@ package net.sf.jasperreports.engine.fill;
 
 import java.io.File;
 import java.io.InputStream;
+import java.io.Serializable;
 import java.net.URL;
 import java.sql.Connection;
 import java.util.ArrayList;
@@ -41,8 +42,10 @@ import org.apache.commons.logging.LogFactory;
 
 import net.sf.jasperreports.annotations.properties.Property;
 import net.sf.jasperreports.annotations.properties.PropertyScope;
+import net.sf.jasperreports.crosstabs.JRCrosstab;
 import net.sf.jasperreports.data.cache.DataCacheHandler;
 import net.sf.jasperreports.engine.CommonReturnValue;
+import net.sf.jasperreports.engine.JRBand;
 import net.sf.jasperreports.engine.JRDataSource;
 import net.sf.jasperreports.engine.JRDatasetParameter;
 import net.sf.jasperreports.engine.JRException;
@@ -73,8 +76,10 @@ import net.sf.jasperreports.engine.design.JRVerifier;
 import net.sf.jasperreports.engine.type.ModeEnum;
 import net.sf.jasperreports.engine.type.OverflowType;
 import net.sf.jasperreports.engine.type.SectionTypeEnum;
+import net.sf.jasperreports.engine.util.JRElementsVisitor;
 import net.sf.jasperreports.engine.util.JRLoader;
 import net.sf.jasperreports.engine.util.JRSingletonCache;
+import net.sf.jasperreports.engine.util.JRVisitorSupport;
 import net.sf.jasperreports.properties.PropertyConstants;
 import net.sf.jasperreports.repo.RepositoryResourceContext;
 import net.sf.jasperreports.repo.RepositoryUtil;
@@ -95,6 +100,8 @@ public class JRFillSubreport extends JRFillElement implements JRSubreport
 	public static final String EXCEPTION_MESSAGE_KEY_NO_REWINDABLE_DATA_SOURCE = "fill.subreport.no.rewindable.data.source";
 	public static final String EXCEPTION_MESSAGE_KEY_UNSUPPORTED_SECTION_TYPE = "fill.subreport.unsupported.section.type";
 	public static final String EXCEPTION_MESSAGE_KEY_UNKNOWN_SOURCE_CLASS = "fill.subreport.unknown.source.class";
+	
+	private static final long REPORT_BASE_WEIGHT = 64 * 1024;
 			
 	/**
 	 * Property used to specify when rectangle elements should be generated  for subreports during the report filling. 
@@ -111,6 +118,54 @@ public class JRFillSubreport extends JRFillElement implements JRSubreport
 	
 	public static final String SUBREPORT_GENERATE_RECTANGLE_ALWAYS = "always";
 	
+	/**
+	 * Property that marks subreports as independent of the master report, allowing them to be filled
+	 * in parallel, ahead of their placement in the master report.
+	 * 
+	 * <p>
+	 * A subreport filled ahead is used only if its contents fit in the space available for the subreport element
+	 * in the master page. Otherwise the subreport is rewound and filled in the usual manner,
+	 * therefore the output does not depend on the property.
+	 * Subreports that have return values, data sources that are not rewindable, multiple columns
+	 * or a background band are not filled ahead. The same applies when the report fill uses a virtualizer,
+	 * collects bookmarks or uses data caching.
+	 * </p>
+	 * 
+	 * <p>
+	 * Expressions of independent subreports must not have side effects on objects shared with the master
+	 * report or with other subreports, and the data sources and connections passed to such subreports
+	 * need to support concurrent use.
+	 * </p>
+	 * 
+	 * @see SubreportPrefill
+	 * @see #PROPERTY_PARALLEL_PREFILL_THREADS
+	 */
+	@Property(
+			category = PropertyConstants.CATEGORY_FILL,
+			defaultValue = PropertyConstants.BOOLEAN_FALSE,
+			scopes = {PropertyScope.CONTEXT, PropertyScope.DATASET, PropertyScope.ELEMENT},
+			sinceVersion = PropertyConstants.VERSION_6_8_0,
+			valueType = Boolean.class
+			)
+	public static final String PROPERTY_PARALLEL_PREFILL = 
+			JRPropertiesUtil.PROPERTY_PREFIX + "subreport.parallel.prefill";
+	
+	/**
+	 * Property that specifies the number of threads used by a report fill to fill independent subreports
+	 * ahead of their placement.
+	 * 
+	 * @see #PROPERTY_PARALLEL_PREFILL
+	 */
+	@Property(
+			category = PropertyConstants.CATEGORY_FILL,
+			defaultValue = "4",
+			scopes = {PropertyScope.CONTEXT},
+			sinceVersion = PropertyConstants.VERSION_6_8_0,
+			valueType = Integer.class
+			)
+	public static final String PROPERTY_PARALLEL_PREFILL_THREADS = 
+			JRPropertiesUtil.PROPERTY_PREFIX + "subreport.parallel.prefill.threads";
+	
 	private static final JRSingletonCache<JRSubreportRunnerFactory> runnerFactoryCache = 
 			new JRSingletonCache<JRSubreportRunnerFactory>(JRSubreportRunnerFactory.class);
 
@@ -167,6 +222,11 @@ public class JRFillSubreport extends JRFillElement implements JRSubreport
 
 	private final String defaultGenerateRectangle;
 	private final boolean dynamicGenerateRectangle;
+	
+	private final boolean parallelPrefill;
+	private SubreportPrefill prefill;
+	private List<Integer> prefillElementIds;
+	private Map<JasperReport, Boolean> prefillNestedFillers;
 
 
 	/**
@@ -184,11 +244,15 @@ public class JRFillSubreport extends JRFillElement implements JRSubreport
 		returnValues = new FillReturnValues(subreport.getReturnValues(), factory, filler);
 		
 		loadedEvaluators = new HashMap<JasperReport,JREvaluator>();
+		prefillNestedFillers = new HashMap<JasperReport, Boolean>();
 		checkedReports = new HashSet<JasperReport>();
 		
 		this.defaultGenerateRectangle = filler.getPropertiesUtil().getProperty( 
 				PROPERTY_SUBREPORT_GENERATE_RECTANGLE, subreport, filler.getMainDataset());
 		this.dynamicGenerateRectangle = hasDynamicProperty(PROPERTY_SUBREPORT_GENERATE_RECTANGLE);
+		
+		this.parallelPrefill = JRPropertiesUtil.asBoolean(filler.getPropertiesUtil().getProperty( 
+				PROPERTY_PARALLEL_PREFILL, subreport, filler.getMainDataset()));
 	}
 
 	protected JRFillSubreport(JRFillSubreport subreport, JRFillCloneFactory factory)
@@ -200,10 +264,13 @@ public class JRFillSubreport extends JRFillElement implements JRSubreport
 		returnValuesContext = subreport.returnValuesContext;//FIXMERETURN this was missing; really need it?
 		
 		loadedEvaluators = new HashMap<JasperReport,JREvaluator>();// not sharing evaluators between clones
+		prefillNestedFillers = new HashMap<JasperReport, Boolean>();
 		checkedReports = subreport.checkedReports;
 		
 		defaultGenerateRectangle = subreport.defaultGenerateRectangle;
 		dynamicGenerateRectangle = subreport.dynamicGenerateRectangle;
+		
+		parallelPrefill = subreport.parallelPrefill;
 	}
 
 	@Override
@@ -402,7 +469,23 @@ public class JRFillSubreport extends JRFillElement implements JRSubreport
 						}
 						else
 						{
-							report = loadReportSource(reportLocation, contextLocation);
+							FillResourceCache sharedCache = isUsingCache ? getSharedResourceCache() : null;
+							if (sharedCache == null)
+							{
+								report = loadReportSource(reportLocation, contextLocation);
+							}
+							else
+							{
+								JasperReport jasperReport = (JasperReport) sharedCache.get(FillResourceCache.ResourceType.SUBREPORT, resourceInfo);
+								if (jasperReport == null)
+								{
+									jasperReport = loadReport(reportLocation, filler);
+									sharedCache.put(FillResourceCache.ResourceType.SUBREPORT, resourceInfo, 
+											jasperReport, reportWeight(jasperReport));
+								}
+								report = createReportSource(jasperReport, reportLocation, contextLocation);
+							}
+							
 							if (isUsingCache)
 							{
 								filler.fillContext.registerLoadedSubreport(absolutePathKey, report);
@@ -433,6 +516,11 @@ public class JRFillSubreport extends JRFillElement implements JRSubreport
 	protected JasperReportSource loadReportSource(Object reportSource, String contextLocation) throws JRException
 	{
 		JasperReport jasperReport = loadReport(reportSource, filler);
+		return createReportSource(jasperReport, reportSource, contextLocation);
+	}
+	
+	protected JasperReportSource createReportSource(JasperReport jasperReport, Object reportSource, String contextLocation)
+	{
 		JasperReportSource report = null;
 		if (jasperReport != null)
 		{
@@ -445,6 +533,19 @@ public class JRFillSubreport extends JRFillElement implements JRSubreport
 		}
 		return report;
 	}
+	
+	protected FillResourceCache getSharedResourceCache()
+	{
+		// reports that are kept in the report context can be modified, using only the per fill cache for them
+		return filler.getFillContext().getReportContext() == null ? filler.fillContext.getSharedResourceCache() : null;
+	}
+	
+	protected static long reportWeight(JasperReport jasperReport)
+	{
+		// rough estimate of the memory used by the report
+		Serializable compileData = jasperReport.getCompileData();
+		return REPORT_BASE_WEIGHT + (compileData instanceof byte[] ? ((byte[]) compileData).length : 0);
+	}
 
 	public static JasperReport loadReport(Object source, BaseReportFiller filler) throws JRException
 	{
@@ -493,6 +594,8 @@ public class JRFillSubreport extends JRFillElement implements JRSubreport
 		byte evaluation
 		) throws JRException
 	{
+		cancelPrefill();
+		
 		evaluateProperties(evaluation);
 		evaluateStyle(evaluation);
 
@@ -528,6 +631,7 @@ public class JRFillSubreport extends JRFillElement implements JRSubreport
 
 			if (subreportFiller != null)
 			{
+				subreportFiller.disposePrefetchedData();
 				filler.unregisterSubfiller(subreportFiller);
 			}
 
@@ -538,8 +642,169 @@ public class JRFillSubreport extends JRFillElement implements JRSubreport
 			validateReport();
 			
 			returnValues.saveReturnVariables();
+			
+			if (isQueryPrefetch())
+			{
+				prefetchSubreportData();
+			}
+			
+			if (isPrefillEligible())
+			{
+				startPrefill();
+			}
+		}
+	}
+	
+	protected boolean isQueryPrefetch()
+	{
+		// only when the subreport data source is produced by its query
+		if (getDataSourceExpression() != null || getReport().getQuery() == null
+				|| filler.fillContext.hasDataSnapshot())
+		{
+			return false;
+		}
+		
+		return JRPropertiesUtil.asBoolean(filler.getPropertiesUtil().getProperty(
+				JRFillDataset.PROPERTY_QUERY_PREFETCH, this, subreportFiller.getMainDataset()));
+	}
+	
+	protected void prefetchSubreportData() throws JRException
+	{
+		if (getConnectionExpression() != null)
+		{
+			subreportFiller.setConnectionParameterValue(parameterValues, connection);
+		}
+		
+		subreportFiller.prefetchData(parameterValues);
+	}
+	
+	protected boolean isPrefillEligible()
+	{
+		if (!parallelPrefill || !isParallelPrefillSupported())
+		{
+			return false;
+		}
+		
+		JRSubreportReturnValue[] returnValueList = getReturnValues();
+		if (returnValueList != null && returnValueList.length > 0)
+		{
+			return false;
+		}
+		
+		// we need to be able to fill the subreport again if the prefilled page does not fit
+		if (getConnectionExpression() == null && dataSource != null && !(dataSource instanceof JRRewindableDataSource))
+		{
+			return false;
+		}
+		
+		if ((isRunToBottom() != null && isRunToBottom())
+				|| filler.fillContext.isUsingVirtualizer()
+				|| filler.fillContext.isCollectingBookmarks()
+				|| filler.fillContext.getCacheHandler() != null)
+		{
+			return false;
+		}
+		
+		// the layout of the subreport contents should not depend on the page height
+		JasperReport jasperReport = getReport();
+		JRBand background = jasperReport.getBackground();
+		if (jasperReport.getColumnCount() != 1
+				|| (background != null && background.getHeight() > 0))
+		{
+			return false;
+		}
+		
+		// nested fillers would be assigned element Ids concurrently with the master
+		return !hasNestedFillers(jasperReport);
+	}
+	
+	protected boolean hasNestedFillers(JasperReport jasperReport)
+	{
+		Boolean nestedFillers = prefillNestedFillers.get(jasperReport);
+		if (nestedFillers == null)
+		{
+			// list contents are filled by the subreport filler and table fillers get their Ids 
+			// through the subreport parent, the contents of both are visited for nested fillers
+			final boolean[] found = new boolean[1];
+			JRElementsVisitor.visitReport(jasperReport, new JRVisitorSupport()
+			{
+				@Override
+				public void visitSubreport(JRSubreport subreport)
+				{
+					found[0] = true;
+				}
+				
+				@Override
+				public void visitCrosstab(JRCrosstab crosstab)
+				{
+					found[0] = true;
+				}
+			});
+			nestedFillers = found[0];
+			prefillNestedFillers.put(jasperReport, nestedFillers);
+		}
+		return nestedFillers;
+	}
+	
+	/**
+	 * Decides whether the subreport can be filled ahead of its placement when {@link #PROPERTY_PARALLEL_PREFILL}
+	 * is set.
+	 * 
+	 * @return whether the subreport supports parallel prefill
+	 */
+	protected boolean isParallelPrefillSupported()
+	{
+		return true;
+	}
+	
+	protected void startPrefill()
+	{
+		prefill = new SubreportPrefill(this, subreportFiller);
+		subFillerParent.setPrefill(prefill);
+		// the subreport can't get more than the height of the master page
+		prefill.start(filler.pageHeight);
+	}
+	
+	protected void cancelPrefill()
+	{
+		if (prefill != null)
+		{
+			prefill.cancelPrefill();
+			prefill = null;
+			subFillerParent.setPrefill(null);
 		}
 	}
+	
+	protected boolean isPrefillUsable(int pageHeight)
+	{
+		boolean filled = prefill.awaitFilled();
+		if (!filled)
+		{
+			return false;
+		}
+		
+		// when filling on the actual page, space is reserved for the footers 
+		// even if they are placed right after the contents
+		JasperReport jasperReport = getReport();
+		int reservedHeight = bandHeight(jasperReport.getColumnFooter())
+				+ Math.max(bandHeight(jasperReport.getPageFooter()), bandHeight(jasperReport.getLastPageFooter()));
+		int stretchHeight = subFillerParent.getCurrentPageStretchHeight();
+		boolean fits = stretchHeight + reservedHeight <= pageHeight;
+		
+		if (log.isDebugEnabled())
+		{
+			log.debug("Fill " + filler.fillerId + ": prefilled subreport " + subreportFiller.fillerId 
+					+ " height " + stretchHeight + ", reserved " + reservedHeight + ", available " + pageHeight
+					+ (fits ? ", using prefill" : ", filling again"));
+		}
+		
+		return fits;
+	}
+	
+	private static int bandHeight(JRBand band)
+	{
+		return band == null ? 0 : band.getHeight();
+	}
 
 	protected JasperReport getReport()
 	{
@@ -619,6 +884,12 @@ public class JRFillSubreport extends JRFillElement implements JRSubreport
 		}
 		
 		subFillerParent = new FillerSubreportParent(this, evaluator);
+		if (parallelPrefill)
+		{
+			// a filler that replaces a discarded prefill reuses the element Ids of the prefill filler
+			subFillerParent.recordElementIds(prefillElementIds);
+			prefillElementIds = null;
+		}
 
 		switch (jasperReport.getPrintOrderValue())
 		{
@@ -859,6 +1130,20 @@ public class JRFillSubreport extends JRFillElement implements JRSubreport
 		boolean toPrint = !isOverflow || isPrintWhenDetailOverflows() || !isAlreadyPrinted();
 		boolean reprinted = isOverflow && isPrintWhenDetailOverflows();
 
+		int pageHeight;
+		OverflowType overflowType = getOverflowType();
+		if (overflowType == OverflowType.NO_STRETCH && !filler.isIgnorePagination())
+		{
+			// not allowed to stretch beyond the element height
+			// note that we always have elementHeight <= availableHeight - getRelativeY(), it's tested above
+			pageHeight = elementHeight;
+		}
+		else
+		{
+			// stretching by default
+			pageHeight = availableHeight - getRelativeY();
+		}
+
 		// for zero height subreports, check if we are at the bottom of the available space
 		// and if the container is already marked to overflow.  in that case, do not
 		// start the subreport here as the column header infinite loop test could throw
@@ -879,6 +1164,21 @@ public class JRFillSubreport extends JRFillElement implements JRSubreport
 			return true;//willOverflow;
 		}
 		
+		boolean prefilled = false;
+		if (prefill != null && !filling)
+		{
+			prefilled = toPrint && !reprinted && isPrefillUsable(pageHeight);
+			prefill = null;
+			subFillerParent.setPrefill(null);
+			
+			if (!prefilled && !(toPrint && reprinted))
+			{
+				// starting from scratch, with the same element Ids as a sequential fill
+				prefillElementIds = subFillerParent.getElementIds();
+				rewind();
+			}
+		}
+		
 		if (!filling && toPrint && reprinted)
 		{
 			rewind();
@@ -892,19 +1192,6 @@ public class JRFillSubreport extends JRFillElement implements JRSubreport
 			((JRVirtualPrintPage) printPage).dispose();
 		}
 		
-		int pageHeight;
-		OverflowType overflowType = getOverflowType();
-		if (overflowType == OverflowType.NO_STRETCH && !filler.isIgnorePagination())
-		{
-			// not allowed to stretch beyond the element height
-			// note that we always have elementHeight <= availableHeight - getRelativeY(), it's tested above
-			pageHeight = elementHeight;
-		}
-		else
-		{
-			// stretching by default
-			pageHeight = availableHeight - getRelativeY();
-		}
 		subreportFiller.setPageHeight(pageHeight);
 
 		synchronized (subreportFiller)
@@ -923,12 +1210,24 @@ public class JRFillSubreport extends JRFillElement implements JRSubreport
 			{
 				setReprinted(reprinted);
 
-				if (log.isDebugEnabled())
+				if (prefilled)
 				{
-					log.debug("Fill " + filler.fillerId + ": starting " + subreportFiller.fillerId);
+					if (log.isDebugEnabled())
+					{
+						log.debug("Fill " + filler.fillerId + ": using prefilled " + subreportFiller.fillerId);
+					}
+					
+					result = new JRSubreportRunResult(true, null);
 				}
+				else
+				{
+					if (log.isDebugEnabled())
+					{
+						log.debug("Fill " + filler.fillerId + ": starting " + subreportFiller.fillerId);
+					}
 
-				result = runner.start();
+					result = runner.start();
+				}
 			}
 			else
 			{
@@ -1008,6 +1307,7 @@ public class JRFillSubreport extends JRFillElement implements JRSubreport
 			return;
 		}
 		
+		cancelPrefill();
 		cancelSubreportFill();
 		
 		initSubreportFiller(null);//FIXME used cached evaluator
@@ -1049,6 +1349,7 @@ public class JRFillSubreport extends JRFillElement implements JRSubreport
 			runner.reset();
 		}
 
+		subreportFiller.disposePrefetchedData();
 		filler.unregisterSubfiller(subreportFiller);
 	}
 
@@ -368,6 +368,24 @@ public class JRTemplatePrintElement implements JRPrintElement, Serializable, Vir
 	{
 		this.sourceElementId = sourceElementId;
 	}
+
+	void setPrintElementId(int printElementId)
+	{
+		this.printElementId = printElementId;
+	}
+	
+	/**
+	 * Returns the properties map of the element without creating it when not present.
+	 */
+	JRPropertiesMap getStoredProperties()
+	{
+		return properties;
+	}
+	
+	void setStoredProperties(JRPropertiesMap properties)
+	{
+		this.properties = properties;
+	}
 	
 	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
 	{
@@ -362,10 +362,20 @@ public class JRTemplatePrintText extends JRTemplatePrintElement implements JRPri
 		this.anchorName = anchorName;
 	}
 	
+	TextFormat getTextFormat()
+	{
+		return textFormat;
+	}
+	
 	public void setHyperlinkOmitted(boolean hyperlinkOmitted)
 	{
 		this.hyperlinkOmitted = hyperlinkOmitted;
 	}
+	
+	boolean isHyperlinkOmitted()
+	{
+		return hyperlinkOmitted;
+	}
 		
 	@Override
 	public HyperlinkTypeEnum getHyperlinkTypeValue()
@@ -37,10 +37,13 @@ import org.apache.commons.collections4.map.ReferenceMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import net.sf.jasperreports.annotations.properties.Property;
+import net.sf.jasperreports.annotations.properties.PropertyScope;
 import net.sf.jasperreports.engine.DefaultJasperReportsContext;
 import net.sf.jasperreports.engine.JRConstants;
 import net.sf.jasperreports.engine.JRPrintElement;
 import net.sf.jasperreports.engine.JRPrintFrame;
+import net.sf.jasperreports.engine.JRPrintPage;
 import net.sf.jasperreports.engine.JRPropertiesUtil;
 import net.sf.jasperreports.engine.JRRuntimeException;
 import net.sf.jasperreports.engine.JRVirtualizable;
@@ -53,6 +56,7 @@ import net.sf.jasperreports.engine.base.JRVirtualPrintPage;
 import net.sf.jasperreports.engine.base.VirtualElementsData;
 import net.sf.jasperreports.engine.util.DeepPrintElementVisitor;
 import net.sf.jasperreports.engine.util.UniformPrintElementVisitor;
+import net.sf.jasperreports.properties.PropertyConstants;
 import net.sf.jasperreports.renderers.Renderable;
 
 /**
@@ -70,6 +74,27 @@ public class JRVirtualizationContext implements Serializable, VirtualizationList
 	
 	private static final Log log = LogFactory.getLog(JRVirtualizationContext.class);
 
+	/**
+	 * Property that specifies the number of pages that exporters should load in advance
+	 * when exporting a virtualized report.
+	 * 
+	 * <p>
+	 * The pages are loaded on a background thread while the current page is exported.
+	 * The virtualizer needs to be able to keep in memory the prefetched pages along with
+	 * the current page.
+	 * The default value is 0, which means that pages are not loaded in advance.
+	 * 
+	 * @see #sequentialPageAccess(List, int, int)
+	 */
+	@Property(
+			category = PropertyConstants.CATEGORY_EXPORT,
+			defaultValue = "0",
+			scopes = {PropertyScope.CONTEXT, PropertyScope.REPORT},
+			sinceVersion = PropertyConstants.VERSION_6_8_0,
+			valueType = Integer.class
+			)
+	public static final String PROPERTY_EXPORT_PREFETCH_PAGES = JRPropertiesUtil.PROPERTY_PREFIX + "virtualizer.export.prefetch.pages";
+
 	private static final ReferenceMap contexts =
 			new ReferenceMap(ReferenceMap.ReferenceStrength.WEAK, ReferenceMap.ReferenceStrength.WEAK);
 
@@ -369,6 +394,24 @@ public class JRVirtualizationContext implements Serializable, VirtualizationList
 	{
 		this.virtualizer = virtualizer;
 	}
+	
+	/**
+	 * Declares that the pages of a report that uses this context are going to be accessed in order.
+	 * 
+	 * <p>
+	 * The returned object should be notified when each page is accessed, and it loads the data of
+	 * the following pages on a background thread.
+	 * 
+	 * @param pages the pages of the report
+	 * @param endPageIndex the index of the last page that is going to be accessed
+	 * @param prefetchCount the number of pages to load ahead of the current page
+	 * @return an object that loads pages ahead of the current page
+	 * @see PagePrefetcher#pageAccessed(int)
+	 */
+	public PagePrefetcher sequentialPageAccess(List<JRPrintPage> pages, int endPageIndex, int prefetchCount)
+	{
+		return new PagePrefetcher(this, pages, endPageIndex, prefetchCount);
+	}
 
 	@SuppressWarnings("unchecked")
 	private void readObject(java.io.ObjectInputStream in) throws IOException, ClassNotFoundException
@@ -397,6 +440,16 @@ public class JRVirtualizationContext implements Serializable, VirtualizationList
 		}
 	}
 
+	/**
+	 * Returns the JasperReports context in which this virtualization context is used.
+	 * 
+	 * @return the JasperReports context
+	 */
+	public JasperReportsContext getJasperReportsContext()
+	{
+		return jasperReportsContext;
+	}
+
 	private void setThreadJasperReportsContext()
 	{
 		JasperReportsContext threadJasperReportsContext = JRVirtualizationHelper.getThreadJasperReportsContext();
@@ -0,0 +1,206 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.engine.fill;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import net.sf.jasperreports.engine.JRPrintElement;
+import net.sf.jasperreports.engine.JRPrintPage;
+import net.sf.jasperreports.engine.JRVirtualizable;
+import net.sf.jasperreports.engine.JRVirtualizer;
+import net.sf.jasperreports.engine.base.ElementStore;
+import net.sf.jasperreports.engine.base.ElementsBlock;
+import net.sf.jasperreports.engine.base.ElementsBlockList;
+import net.sf.jasperreports.engine.base.JRVirtualPrintPage;
+import net.sf.jasperreports.engine.base.VirtualizableElementList;
+import net.sf.jasperreports.engine.util.DaemonThreadFactory;
+
+/**
+ * Loads the virtualized data of report pages on a background thread ahead of the pages
+ * being accessed.
+ * <p>
+ * Instances are created by {@link JRVirtualizationContext#sequentialPageAccess(List, int, int)}
+ * for code that accesses the pages of a virtualized report in order, such as exporters.
+ * The caller notifies the prefetcher each time it starts working on a page by calling
+ * {@link #pageAccessed(int)}, and the data of the next pages is loaded while the current
+ * page is processed.
+ * <p>
+ * Note that the virtualizer needs to be able to keep in memory the prefetched pages
+ * along with the current page, otherwise the prefetched data would be paged out
+ * before being used.
+ */
+public class PagePrefetcher
+{
+	private static final Log log = LogFactory.getLog(PagePrefetcher.class);
+	
+	private static class ExecutorHolder
+	{
+		private static final Executor EXECUTOR = DaemonThreadFactory.createExecutor(
+				"JasperReports page prefetch", Runtime.getRuntime().availableProcessors());
+	}
+	
+	private final JRVirtualizationContext virtualizationContext;
+	private final List<JRPrintPage> pages;
+	private final int endPageIndex;
+	private final int prefetchCount;
+	
+	private volatile int currentPageIndex = -1;
+	private int scheduledPageIndex = -1;
+	private volatile boolean closed;
+
+	/**
+	 * Creates a page prefetcher.
+	 * 
+	 * @param virtualizationContext the virtualization context of the report
+	 * @param pages the report pages
+	 * @param endPageIndex the index of the last page that will be accessed
+	 * @param prefetchCount the number of pages to load ahead of the current page
+	 */
+	protected PagePrefetcher(JRVirtualizationContext virtualizationContext, List<JRPrintPage> pages,
+			int endPageIndex, int prefetchCount)
+	{
+		this.virtualizationContext = virtualizationContext;
+		this.pages = pages;
+		this.endPageIndex = Math.min(endPageIndex, pages.size() - 1);
+		this.prefetchCount = prefetchCount;
+	}
+	
+	/**
+	 * Notifies the prefetcher that a page is being accessed.
+	 * 
+	 * @param pageIndex the index of the page
+	 */
+	public void pageAccessed(int pageIndex)
+	{
+		currentPageIndex = pageIndex;
+		if (closed)
+		{
+			return;
+		}
+		
+		int lastPageIndex = Math.min(pageIndex + prefetchCount, endPageIndex);
+		for (int index = Math.max(scheduledPageIndex, pageIndex) + 1; index <= lastPageIndex; ++index)
+		{
+			schedule(index);
+		}
+		scheduledPageIndex = Math.max(scheduledPageIndex, lastPageIndex);
+	}
+	
+	protected void schedule(final int pageIndex)
+	{
+		try
+		{
+			ExecutorHolder.EXECUTOR.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					prefetch(pageIndex);
+				}
+			});
+		}
+		catch (RejectedExecutionException e)
+		{
+			// not failing, the page will be loaded when accessed
+			if (log.isDebugEnabled())
+			{
+				log.debug("could not schedule prefetch for page " + pageIndex, e);
+			}
+		}
+	}
+	
+	protected void prefetch(int pageIndex)
+	{
+		if (closed || pageIndex <= currentPageIndex || virtualizationContext.isDisposed())
+		{
+			// too late
+			return;
+		}
+		
+		JRPrintPage page = pages.get(pageIndex);
+		if (!(page instanceof JRVirtualPrintPage))
+		{
+			return;
+		}
+		
+		List<JRPrintElement> elements = page.getElements();
+		if (!(elements instanceof VirtualizableElementList))
+		{
+			return;
+		}
+		
+		if (log.isDebugEnabled())
+		{
+			log.debug("prefetching page " + pageIndex);
+		}
+		
+		try
+		{
+			ElementStore store = ((VirtualizableElementList) elements).getElementStore();
+			if (store instanceof ElementsBlockList)
+			{
+				ElementsBlock[] blocks = ((ElementsBlockList) store).getBlocks();
+				for (int i = 0; i < blocks.length && blocks[i] != null && !closed; i++)
+				{
+					prefetch(blocks[i]);
+				}
+			}
+			else if (store instanceof JRVirtualizable<?>)
+			{
+				prefetch((JRVirtualizable<?>) store);
+			}
+		}
+		catch (RuntimeException e)
+		{
+			// not failing, the page will be loaded when accessed
+			log.warn("Failed to prefetch page " + pageIndex, e);
+		}
+	}
+	
+	protected void prefetch(JRVirtualizable<?> object)
+	{
+		JRVirtualizer virtualizer = object.getContext().getVirtualizer();
+		if (virtualizer instanceof JRAbstractLRUVirtualizer)
+		{
+			((JRAbstractLRUVirtualizer) virtualizer).prefetchData(object);
+		}
+		else
+		{
+			object.ensureVirtualData();
+		}
+	}
+	
+	/**
+	 * Stops loading pages.
+	 */
+	public void close()
+	{
+		closed = true;
+	}
+}
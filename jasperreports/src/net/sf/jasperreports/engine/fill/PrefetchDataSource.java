@@ -0,0 +1,413 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.engine.fill;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+import net.sf.jasperreports.engine.JRPropertiesUtil;
+import net.sf.jasperreports.engine.query.JRQueryExecuter;
+
+/**
+ * Data source that executes a dataset query ahead of the dataset iteration.
+ * 
+ * <p>
+ * The query is executed on a separate thread and the first records are read into memory,
+ * so that the query latency overlaps with the fill of the report bands that precede the dataset iteration.
+ * The iteration first returns the buffered records, and then continues on the data source 
+ * produced by the query executer.
+ * If the iteration starts before the query has been picked up by a prefetch thread,
+ * the query is executed on the calling thread.
+ * </p>
+ * 
+ * @see JRFillDataset#PROPERTY_QUERY_PREFETCH
+ */
+public class PrefetchDataSource implements JRDataSource
+{
+	
+	private static final Log log = LogFactory.getLog(PrefetchDataSource.class);
+	
+	public static final String EXCEPTION_MESSAGE_KEY_FIELD_NOT_BUFFERED = "fill.prefetch.data.source.field.not.buffered";
+	public static final String EXCEPTION_MESSAGE_KEY_QUERY_FAILED = "fill.prefetch.data.source.query.failed";
+	
+	private static final String EXECUTOR_KEY = PrefetchDataSource.class.getName() + ".Executor";
+	
+	private final JRFillContext fillContext;
+	private final JRQueryExecuter queryExecuter;
+	private final JRField[] fields;
+	private final Map<String, Integer> fieldIndexes;
+	private final int rowCount;
+	private final FutureTask<JRDataSource> task;
+	private final PrefetchExecutor executor;
+	
+	private volatile boolean cancelled;
+	private volatile boolean started;
+	private List<Object[]> rows;
+	private boolean exhausted;
+	
+	private boolean awaited;
+	private JRDataSource dataSource;
+	private int rowIndex;
+	private Object[] currentRow;
+	private boolean disposed;
+	
+	/**
+	 * Starts executing a query.
+	 * 
+	 * @param filler the filler of the dataset
+	 * @param fields the dataset fields
+	 * @param queryExecuter the query executer
+	 * @param rowCount the number of records to read ahead
+	 */
+	public PrefetchDataSource(BaseReportFiller filler, JRField[] fields, JRQueryExecuter queryExecuter, int rowCount)
+	{
+		this.fillContext = filler.getFillContext();
+		this.queryExecuter = queryExecuter;
+		this.fields = fields == null ? new JRField[0] : fields;
+		this.fieldIndexes = new HashMap<String, Integer>();
+		for (int i = 0; i < this.fields.length; i++)
+		{
+			fieldIndexes.put(this.fields[i].getName(), i);
+		}
+		this.rowCount = rowCount;
+		
+		final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+		this.task = new FutureTask<JRDataSource>(new Callable<JRDataSource>()
+		{
+			@Override
+			public JRDataSource call() throws Exception
+			{
+				Thread thread = Thread.currentThread();
+				ClassLoader threadClassLoader = thread.getContextClassLoader();
+				thread.setContextClassLoader(contextClassLoader);
+				try
+				{
+					return prefetch();
+				}
+				finally
+				{
+					thread.setContextClassLoader(threadClassLoader);
+				}
+			}
+		});
+		
+		this.executor = getExecutor(fillContext, filler.getPropertiesUtil());
+		executor.execute(this);
+	}
+	
+	protected JRDataSource prefetch() throws JRException
+	{
+		JRDataSource queryDataSource;
+		try
+		{
+			if (cancelled)
+			{
+				return null;
+			}
+			
+			started = true;
+			queryDataSource = queryExecuter.createDatasource();
+		}
+		finally
+		{
+			// registered by the dataset so that the query can be cancelled with the fill
+			fillContext.removePrefetchedQueryExecuter(queryExecuter);
+		}
+		
+		List<Object[]> records = new ArrayList<Object[]>();
+		boolean ended = queryDataSource == null;
+		while (!ended && !cancelled && records.size() < rowCount)
+		{
+			if (queryDataSource.next())
+			{
+				Object[] record = new Object[fields.length];
+				for (int i = 0; i < fields.length; i++)
+				{
+					record[i] = queryDataSource.getFieldValue(fields[i]);
+				}
+				records.add(record);
+			}
+			else
+			{
+				ended = true;
+			}
+		}
+		
+		if (log.isDebugEnabled())
+		{
+			log.debug("prefetched " + records.size() + " records" + (ended ? ", query ended" : ""));
+		}
+		
+		rows = records;
+		exhausted = ended;
+		return queryDataSource;
+	}
+	
+	protected void await() throws JRException
+	{
+		// no-op if already running or done, otherwise we don't wait for a prefetch thread
+		task.run();
+		
+		try
+		{
+			dataSource = task.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new JRFillInterruptedException();
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof JRException)
+			{
+				throw (JRException) cause;
+			}
+			if (cause instanceof RuntimeException)
+			{
+				throw (RuntimeException) cause;
+			}
+			throw new JRException(EXCEPTION_MESSAGE_KEY_QUERY_FAILED, null, cause);
+		}
+		finally
+		{
+			awaited = true;
+		}
+	}
+
+	@Override
+	public boolean next() throws JRException
+	{
+		if (!awaited)
+		{
+			await();
+		}
+		
+		if (rows != null)
+		{
+			if (rowIndex < rows.size())
+			{
+				currentRow = rows.get(rowIndex);
+				++rowIndex;
+				return true;
+			}
+			
+			// the buffered records are no longer needed
+			rows = null;
+			currentRow = null;
+		}
+		
+		return !exhausted && dataSource != null && dataSource.next();
+	}
+
+	@Override
+	public Object getFieldValue(JRField field) throws JRException
+	{
+		if (currentRow == null)
+		{
+			return dataSource.getFieldValue(field);
+		}
+		
+		Integer fieldIndex = fieldIndexes.get(field.getName());
+		if (fieldIndex == null)
+		{
+			throw 
+				new JRException(
+					EXCEPTION_MESSAGE_KEY_FIELD_NOT_BUFFERED, 
+					new Object[]{field.getName()});
+		}
+		return currentRow[fieldIndex];
+	}
+	
+	/**
+	 * Returns the query executer used by the data source.
+	 * 
+	 * @return the query executer
+	 */
+	public JRQueryExecuter getQueryExecuter()
+	{
+		return queryExecuter;
+	}
+	
+	/**
+	 * Stops the query if still running, and closes the query executer.
+	 */
+	public void dispose()
+	{
+		synchronized (this)
+		{
+			if (disposed)
+			{
+				return;
+			}
+			disposed = true;
+		}
+		
+		cancelled = true;
+		if (started && !task.isDone())
+		{
+			if (log.isDebugEnabled())
+			{
+				log.debug("cancelling prefetched query");
+			}
+			
+			try
+			{
+				queryExecuter.cancelQuery();
+			}
+			catch (JRException e)
+			{
+				log.warn("Failed to cancel prefetched query", e);
+			}
+		}
+		
+		// wait for the prefetch thread to release the query executer
+		task.run();
+		try
+		{
+			task.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e)
+		{
+			// already reported if the data source was used
+			if (log.isDebugEnabled())
+			{
+				log.debug("prefetched query failed", e.getCause());
+			}
+		}
+		
+		queryExecuter.close();
+		executor.removePending(this);
+	}
+	
+	protected static PrefetchExecutor getExecutor(JRFillContext fillContext, JRPropertiesUtil propertiesUtil)
+	{
+		synchronized (fillContext)
+		{
+			PrefetchExecutor executor = (PrefetchExecutor) fillContext.getFillCache(EXECUTOR_KEY);
+			if (executor == null)
+			{
+				int threads = propertiesUtil.getIntegerProperty(JRFillDataset.PROPERTY_QUERY_PREFETCH_THREADS);
+				executor = new PrefetchExecutor(fillContext, Math.max(threads, 1));
+				fillContext.setFillCache(EXECUTOR_KEY, executor);
+			}
+			return executor;
+		}
+	}
+	
+	/**
+	 * Executor for the queries of a report fill, disposed along with the fill context.
+	 */
+	protected static class PrefetchExecutor implements JRFillContext.FillCacheDisposable
+	{
+		private final ExecutorService executorService;
+		private final Set<PrefetchDataSource> pending;
+		
+		public PrefetchExecutor(final JRFillContext fillContext, int threads)
+		{
+			final AtomicInteger threadCount = new AtomicInteger();
+			this.executorService = Executors.newFixedThreadPool(threads, new ThreadFactory()
+			{
+				@Override
+				public Thread newThread(Runnable r)
+				{
+					String threadName = fillContext.getMasterFiller().getJasperReport().getName() 
+							+ " query prefetch #" + threadCount.incrementAndGet();
+					Thread thread = new Thread(r, threadName);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			this.pending = new HashSet<PrefetchDataSource>();
+			
+			if (log.isDebugEnabled())
+			{
+				log.debug("created query prefetch executor " + executorService + " with " + threads + " threads");
+			}
+		}
+		
+		protected void execute(PrefetchDataSource dataSource)
+		{
+			synchronized (pending)
+			{
+				pending.add(dataSource);
+			}
+			
+			executorService.execute(dataSource.task);
+		}
+		
+		protected void removePending(PrefetchDataSource dataSource)
+		{
+			synchronized (pending)
+			{
+				pending.remove(dataSource);
+			}
+		}
+
+		@Override
+		public void dispose()
+		{
+			List<PrefetchDataSource> dataSources;
+			synchronized (pending)
+			{
+				dataSources = new ArrayList<PrefetchDataSource>(pending);
+			}
+			
+			// closing queries that were never consumed, e.g. when the fill has been cancelled
+			for (PrefetchDataSource dataSource : dataSources)
+			{
+				dataSource.dispose();
+			}
+			
+			if (log.isDebugEnabled())
+			{
+				log.debug("shutting down " + executorService);
+			}
+			
+			executorService.shutdownNow();
+		}
+	}
+}
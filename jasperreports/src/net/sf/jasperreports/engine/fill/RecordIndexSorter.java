@@ -0,0 +1,301 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.engine.fill;
+
+import java.text.Collator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import net.sf.jasperreports.engine.JRConstants;
+import net.sf.jasperreports.engine.fill.DatasetSortInfo.SortFieldInfo;
+
+/**
+ * Sorts record indexes according to the sort fields.
+ * 
+ * <p>
+ * The sort field values are extracted as columns before sorting, and string values
+ * that are compared using a collator are replaced by collation keys so that the collator 
+ * is only used once per value.
+ * The indexes are sorted using a stable merge sort, which for large datasets can run
+ * as fork/join tasks.
+ * </p>
+ */
+class RecordIndexSorter
+{
+	private static final int INSERTION_SORT_THRESHOLD = 32;
+	private static final int MIN_PARALLEL_CHUNK_SIZE = 8192;
+	
+	private final int recordCount;
+	private final boolean parallel;
+	private final int chunkSize;
+	private final Object[][] sortKeys;
+	private final boolean[] descending;
+
+	public RecordIndexSorter(DatasetSortInfo sortInfo, Locale locale, 
+			List<SortedDataSource.SortRecord> records, boolean parallel)
+	{
+		this.recordCount = records.size();
+		this.parallel = parallel;
+		this.chunkSize = Math.max(MIN_PARALLEL_CHUNK_SIZE, 
+				recordCount / (4 * ForkJoinPool.getCommonPoolParallelism()));
+		
+		List<SortFieldInfo> sortFields = sortInfo.getSortFields();
+		this.sortKeys = new Object[sortFields.size()][];
+		this.descending = new boolean[sortFields.size()];
+		for (int i = 0; i < sortKeys.length; i++)
+		{
+			sortKeys[i] = new Object[recordCount];
+			descending[i] = sortFields.get(i).isDescending();
+		}
+		
+		KeysTask keysTask = new KeysTask(sortFields, Collator.getInstance(locale), records, 0, recordCount);
+		if (parallel)
+		{
+			ForkJoinPool.commonPool().invoke(keysTask);
+		}
+		else
+		{
+			keysTask.compute();
+		}
+	}
+	
+	/**
+	 * Returns the record indexes in sorted order.
+	 */
+	public int[] sort()
+	{
+		int[] indexes = new int[recordCount];
+		for (int i = 0; i < recordCount; i++)
+		{
+			indexes[i] = i;
+		}
+		
+		int[] buffer = new int[recordCount];
+		if (parallel)
+		{
+			ForkJoinPool.commonPool().invoke(new SortTask(indexes, buffer, 0, recordCount));
+		}
+		else
+		{
+			sort(indexes, buffer, 0, recordCount);
+		}
+		return indexes;
+	}
+
+	protected int compare(int index1, int index2)
+	{
+		for (int i = 0; i < sortKeys.length; i++)
+		{
+			int ret = compareKeys(sortKeys[i][index1], sortKeys[i][index2], descending[i]);
+			if (ret != 0)
+			{
+				return ret;
+			}
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Returns the key used to compare a sort field value.
+	 */
+	protected static Object sortKey(Object value, boolean useCollator, Collator collator)
+	{
+		return useCollator && value != null 
+				? collator.getCollationKey((String) value) : value;
+	}
+
+	/**
+	 * Compares two sort keys, null keys being placed first.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	protected static int compareKeys(Object key1, Object key2, boolean descending)
+	{
+		int ret;
+		if (key1 == null)
+		{
+			ret = (key2 == null) ? 0 : -1;
+		}
+		else if (key2 == null)
+		{
+			ret = 1;
+		}
+		else
+		{
+			ret = ((Comparable) key1).compareTo(key2);
+		}
+		return descending ? -ret : ret;
+	}
+	
+	protected void sort(int[] indexes, int[] buffer, int from, int to)
+	{
+		if (to - from <= INSERTION_SORT_THRESHOLD)
+		{
+			insertionSort(indexes, from, to);
+			return;
+		}
+		
+		int middle = (from + to) >>> 1;
+		sort(indexes, buffer, from, middle);
+		sort(indexes, buffer, middle, to);
+		merge(indexes, buffer, from, middle, to);
+	}
+	
+	protected void insertionSort(int[] indexes, int from, int to)
+	{
+		for (int i = from + 1; i < to; i++)
+		{
+			int index = indexes[i];
+			int j = i - 1;
+			while (j >= from && compare(indexes[j], index) > 0)
+			{
+				indexes[j + 1] = indexes[j];
+				--j;
+			}
+			indexes[j + 1] = index;
+		}
+	}
+	
+	protected void merge(int[] indexes, int[] buffer, int from, int middle, int to)
+	{
+		if (compare(indexes[middle - 1], indexes[middle]) <= 0)
+		{
+			// the ranges are already in order
+			return;
+		}
+		
+		// moving the first range to the buffer, the second range is merged in place
+		System.arraycopy(indexes, from, buffer, from, middle - from);
+		int left = from;
+		int right = middle;
+		int target = from;
+		while (left < middle && right < to)
+		{
+			// taking equal records from the first range to keep the sort stable
+			if (compare(buffer[left], indexes[right]) <= 0)
+			{
+				indexes[target++] = buffer[left++];
+			}
+			else
+			{
+				indexes[target++] = indexes[right++];
+			}
+		}
+		
+		while (left < middle)
+		{
+			indexes[target++] = buffer[left++];
+		}
+	}
+	
+	/**
+	 * Extracts the sort keys for a range of records.
+	 */
+	protected class KeysTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = JRConstants.SERIAL_VERSION_UID;
+		
+		private final List<SortFieldInfo> sortFields;
+		private final Collator collator;
+		private final List<SortedDataSource.SortRecord> records;
+		private final int from;
+		private final int to;
+
+		public KeysTask(List<SortFieldInfo> sortFields, Collator collator, 
+				List<SortedDataSource.SortRecord> records, int from, int to)
+		{
+			this.sortFields = sortFields;
+			this.collator = collator;
+			this.records = records;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (parallel && to - from > chunkSize)
+			{
+				// collators are not meant to be used concurrently, each task gets its own copy
+				int middle = (from + to) >>> 1;
+				invokeAll(new KeysTask(sortFields, (Collator) collator.clone(), records, from, middle),
+						new KeysTask(sortFields, (Collator) collator.clone(), records, middle, to));
+				return;
+			}
+			
+			for (int i = 0; i < sortKeys.length; i++)
+			{
+				SortFieldInfo sortField = sortFields.get(i);
+				int valueIndex = sortField.getRecordIndex();
+				boolean useCollator = sortField.useCollator();
+				
+				Object[] keys = sortKeys[i];
+				for (int recordIndex = from; recordIndex < to; recordIndex++)
+				{
+					// assuming random access records list
+					Object value = records.get(recordIndex).getValues()[valueIndex];
+					keys[recordIndex] = sortKey(value, useCollator, collator);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Sorts a range of record indexes.
+	 */
+	protected class SortTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = JRConstants.SERIAL_VERSION_UID;
+		
+		private final int[] indexes;
+		private final int[] buffer;
+		private final int from;
+		private final int to;
+
+		public SortTask(int[] indexes, int[] buffer, int from, int to)
+		{
+			this.indexes = indexes;
+			this.buffer = buffer;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (to - from <= chunkSize)
+			{
+				sort(indexes, buffer, from, to);
+				return;
+			}
+			
+			int middle = (from + to) >>> 1;
+			invokeAll(new SortTask(indexes, buffer, from, middle), 
+					new SortTask(indexes, buffer, middle, to));
+			merge(indexes, buffer, from, middle, to);
+		}
+	}
+}
@@ -86,7 +86,7 @@ public class SortedDataSource implements JRRewindableDataSource, IndexedDataSour
 	}
 	
 	private final List<SortRecord> records;
-	private final Integer[] recordIndexes;
+	private final int[] recordIndexes;
 	private final Map<String, Integer> columnNamesMap = new HashMap<String, Integer>();
 	
 	private int currentIndex;
@@ -94,6 +94,12 @@ public class SortedDataSource implements JRRewindableDataSource, IndexedDataSour
 	
 	public SortedDataSource(DatasetSortInfo sortInfo, 
 			List<SortRecord> records, Integer[] recordIndexes)
+	{
+		this(sortInfo, records, toPrimitiveIndexes(recordIndexes));
+	}
+	
+	public SortedDataSource(DatasetSortInfo sortInfo, 
+			List<SortRecord> records, int[] recordIndexes)
 	{
 		if (records.size() != recordIndexes.length)
 		{
@@ -116,6 +122,16 @@ public class SortedDataSource implements JRRewindableDataSource, IndexedDataSour
 		this.currentIndex = 0;
 	}
 
+	private static int[] toPrimitiveIndexes(Integer[] recordIndexes)
+	{
+		int[] indexes = new int[recordIndexes.length];
+		for (int i = 0; i < recordIndexes.length; i++)
+		{
+			indexes[i] = recordIndexes[i];
+		}
+		return indexes;
+	}
+
 	@Override
 	public boolean next()
 	{
@@ -0,0 +1,575 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.engine.fill;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+import net.sf.jasperreports.engine.JRPropertiesUtil;
+import net.sf.jasperreports.engine.JRRewindableDataSource;
+import net.sf.jasperreports.engine.JRRuntimeException;
+import net.sf.jasperreports.engine.JasperReportsContext;
+import net.sf.jasperreports.engine.data.IndexedDataSource;
+import net.sf.jasperreports.engine.fill.DatasetSortInfo.RecordField;
+import net.sf.jasperreports.engine.fill.DatasetSortInfo.SortFieldInfo;
+import net.sf.jasperreports.engine.util.JRSwapFile;
+import net.sf.jasperreports.engine.virtualization.VirtualizationInput;
+import net.sf.jasperreports.engine.virtualization.VirtualizationOutput;
+
+/**
+ * Sorted data source that merges sorted runs of records written to temporary files.
+ * 
+ * <p>
+ * The runs are read sequentially and only the current record of each run is kept in memory.
+ * Records that have equal sort keys are returned in their original order.
+ * </p>
+ * <p>
+ * At most {@link #setMergeFanIn(int) a limited number of} runs are read at once.  If there are more runs,
+ * groups of runs are first merged into larger runs, until the number of runs is small
+ * enough to be merged as the records are read.
+ * </p>
+ * 
+ * @see DatasetSortUtil#PROPERTY_SPILL_THRESHOLD
+ */
+public class SpilledSortedDataSource implements JRRewindableDataSource, IndexedDataSource
+{
+	private static final Log log = LogFactory.getLog(SpilledSortedDataSource.class);
+	
+	public static final String EXCEPTION_MESSAGE_KEY_READ_FAILED = "data.sorted.spilled.read.failed";
+	
+	/**
+	 * The default maximum number of runs that are read at the same time.
+	 */
+	public static final int DEFAULT_MERGE_FAN_IN = 64;
+
+	private final JasperReportsContext jasperReportsContext;
+	private final File directory;
+	private final List<File> runFiles;
+	private int mergeFanIn = DEFAULT_MERGE_FAN_IN;
+	private final int fieldCount;
+	private final int[] sortValueIndexes;
+	private final boolean[] useCollator;
+	private final boolean[] descending;
+	private final Collator collator;
+	private final Map<String, Integer> columnNamesMap = new HashMap<String, Integer>();
+	
+	private PriorityQueue<RunCursor> runQueue;
+	private RunCursor currentRun;
+	private Object[] currentValues;
+	private int currentRecordIndex;
+	
+	/**
+	 * Creates a data source that merges sorted runs.
+	 * 
+	 * @param jasperReportsContext the context
+	 * @param sortInfo the sort information used to write the runs
+	 * @param locale the locale used for collation
+	 * @param runFiles the files containing the sorted runs, which are owned and deleted by the data source
+	 * @param directory the directory in which intermediate runs are written, 
+	 * <code>null</code> for the default temporary-file directory
+	 */
+	public SpilledSortedDataSource(JasperReportsContext jasperReportsContext, DatasetSortInfo sortInfo, 
+			Locale locale, List<File> runFiles, File directory)
+	{
+		this.jasperReportsContext = jasperReportsContext;
+		this.directory = directory;
+		this.runFiles = new ArrayList<File>(runFiles);
+		this.fieldCount = sortInfo.getRecordFields().size();
+		
+		List<SortFieldInfo> sortFields = sortInfo.getSortFields();
+		this.sortValueIndexes = new int[sortFields.size()];
+		this.useCollator = new boolean[sortFields.size()];
+		this.descending = new boolean[sortFields.size()];
+		for (int i = 0; i < sortValueIndexes.length; i++)
+		{
+			SortFieldInfo sortField = sortFields.get(i);
+			sortValueIndexes[i] = sortField.getRecordIndex();
+			useCollator[i] = sortField.useCollator();
+			descending[i] = sortField.isDescending();
+		}
+		this.collator = Collator.getInstance(locale);
+		
+		for (ListIterator<RecordField> it = sortInfo.getRecordFields().listIterator(); it.hasNext();)
+		{
+			RecordField recordField = it.next();
+			if (!recordField.isVariable())
+			{
+				columnNamesMap.put(recordField.getName(), it.previousIndex());
+			}
+		}
+	}
+
+	public int getMergeFanIn()
+	{
+		return mergeFanIn;
+	}
+
+	/**
+	 * Sets the maximum number of runs that are read at the same time.
+	 * 
+	 * @param mergeFanIn the maximum number of runs read at once, at least 2
+	 */
+	public void setMergeFanIn(int mergeFanIn)
+	{
+		this.mergeFanIn = Math.max(2, mergeFanIn);
+	}
+
+	@Override
+	public boolean next() throws JRException
+	{
+		if (runQueue == null)
+		{
+			openRuns();
+		}
+		
+		try
+		{
+			if (currentRun != null)
+			{
+				// the current run goes back to the queue with its next record
+				if (currentRun.advance())
+				{
+					runQueue.add(currentRun);
+				}
+				else
+				{
+					currentRun.close();
+				}
+				currentRun = null;
+			}
+		}
+		catch (IOException e)
+		{
+			throw new JRException(EXCEPTION_MESSAGE_KEY_READ_FAILED, (Object[]) null, e);
+		}
+		
+		RunCursor run = runQueue.poll();
+		if (run == null)
+		{
+			currentValues = null;
+			return false;
+		}
+		
+		currentRun = run;
+		currentValues = run.values;
+		currentRecordIndex = run.recordIndex;
+		return true;
+	}
+
+	protected void openRuns() throws JRException
+	{
+		try
+		{
+			mergeRuns();
+			
+			runQueue = new PriorityQueue<RunCursor>(Math.max(1, runFiles.size()), new RunCursorComparator());
+			openRuns(runFiles, runQueue);
+		}
+		catch (IOException e)
+		{
+			closeRuns();
+			throw new JRException(EXCEPTION_MESSAGE_KEY_READ_FAILED, (Object[]) null, e);
+		}
+	}
+	
+	protected void openRuns(List<File> files, PriorityQueue<RunCursor> queue) throws IOException
+	{
+		for (File runFile : files)
+		{
+			RunCursor run = new RunCursor(runFile);
+			if (run.advance())
+			{
+				queue.add(run);
+			}
+			else
+			{
+				run.close();
+			}
+		}
+	}
+	
+	/**
+	 * Merges groups of runs until the number of runs does not exceed the merge fan-in.
+	 */
+	protected void mergeRuns() throws IOException
+	{
+		while (runFiles.size() > mergeFanIn)
+		{
+			List<File> mergedFiles = new ArrayList<File>((runFiles.size() + mergeFanIn - 1) / mergeFanIn);
+			try
+			{
+				while (!runFiles.isEmpty())
+				{
+					List<File> group = runFiles.subList(0, Math.min(mergeFanIn, runFiles.size()));
+					mergedFiles.add(group.size() == 1 ? group.get(0) : mergeRuns(group));
+					group.clear();
+				}
+			}
+			finally
+			{
+				// keeping track of all files so that they are deleted on dispose
+				runFiles.addAll(mergedFiles);
+			}
+		}
+	}
+	
+	/**
+	 * Merges several runs into a new run and deletes the merged runs.
+	 */
+	protected File mergeRuns(List<File> files) throws IOException
+	{
+		PriorityQueue<RunCursor> queue = new PriorityQueue<RunCursor>(files.size(), new RunCursorComparator());
+		RunWriter writer = null;
+		try
+		{
+			int recordCount = 0;
+			List<RunCursor> runs = new ArrayList<RunCursor>(files.size());
+			try
+			{
+				for (File file : files)
+				{
+					RunCursor run = new RunCursor(file);
+					runs.add(run);
+					recordCount += run.remaining;
+				}
+			}
+			catch (IOException e)
+			{
+				for (RunCursor run : runs)
+				{
+					run.close();
+				}
+				throw e;
+			}
+			
+			for (RunCursor run : runs)
+			{
+				if (run.advance())
+				{
+					queue.add(run);
+				}
+				else
+				{
+					run.close();
+				}
+			}
+			
+			writer = new RunWriter(jasperReportsContext, directory, recordCount);
+			if (log.isDebugEnabled())
+			{
+				log.debug("merging " + files.size() + " sorted runs into " + writer.getFile());
+			}
+			
+			RunCursor run;
+			while ((run = queue.poll()) != null)
+			{
+				writer.write(run.recordIndex, run.values);
+				if (run.advance())
+				{
+					queue.add(run);
+				}
+				else
+				{
+					run.close();
+				}
+			}
+			
+			writer.close();
+		}
+		catch (IOException e)
+		{
+			if (writer != null)
+			{
+				writer.discard();
+			}
+			throw e;
+		}
+		finally
+		{
+			for (RunCursor run : queue)
+			{
+				run.close();
+			}
+		}
+		
+		for (File file : files)
+		{
+			delete(file);
+		}
+		return writer.getFile();
+	}
+	
+	protected static void delete(File file)
+	{
+		if (!file.delete() && log.isDebugEnabled())
+		{
+			log.debug("failed to delete " + file);
+		}
+	}
+	
+	protected void closeRuns()
+	{
+		if (currentRun != null)
+		{
+			currentRun.close();
+			currentRun = null;
+		}
+		
+		if (runQueue != null)
+		{
+			for (RunCursor run : runQueue)
+			{
+				run.close();
+			}
+			runQueue = null;
+		}
+		
+		currentValues = null;
+	}
+
+	@Override
+	public Object getFieldValue(JRField jrField)
+	{
+		Integer fieldIndex = columnNamesMap.get(jrField.getName());
+		if (fieldIndex == null)
+		{
+			throw 
+				new JRRuntimeException(
+					SortedDataSource.EXCEPTION_MESSAGE_KEY_FIELD_NOT_FOUND,
+					new Object[]{jrField.getName()});
+		}
+		return currentValues[fieldIndex];
+	}
+
+	@Override
+	public void moveFirst()
+	{
+		closeRuns();
+	}
+
+	@Override
+	public int getRecordIndex()
+	{
+		return currentRecordIndex;
+	}
+	
+	/**
+	 * Closes the runs and deletes the temporary files.
+	 */
+	public void dispose()
+	{
+		closeRuns();
+		
+		for (File runFile : runFiles)
+		{
+			delete(runFile);
+		}
+		runFiles.clear();
+	}
+	
+	/**
+	 * Writes a sorted run to a temporary file.
+	 */
+	protected static class RunWriter
+	{
+		private final File file;
+		private final VirtualizationOutput out;
+		
+		/**
+		 * Creates a temporary file and writes the run header.
+		 * 
+		 * @param jasperReportsContext the context
+		 * @param directory the directory of the file, <code>null</code> for the default temporary-file directory
+		 * @param recordCount the number of records that will be written
+		 */
+		public RunWriter(JasperReportsContext jasperReportsContext, File directory, int recordCount) throws IOException
+		{
+			this.file = File.createTempFile("sort_", ".run", directory);
+			
+			VirtualizationOutput output = null;
+			try
+			{
+				if (JRPropertiesUtil.getInstance(jasperReportsContext).getBooleanProperty(
+						JRSwapFile.PROPERTY_DELETE_ON_EXIT))
+				{
+					file.deleteOnExit();
+				}
+				
+				output = new VirtualizationOutput(
+						new BufferedOutputStream(new FileOutputStream(file)), 
+						new JRVirtualizationContext(jasperReportsContext));
+				output.writeIntCompressed(recordCount);
+			}
+			catch (IOException | RuntimeException e)
+			{
+				if (output != null)
+				{
+					try
+					{
+						output.close();
+					}
+					catch (IOException closeException)
+					{
+						e.addSuppressed(closeException);
+					}
+				}
+				delete(file);
+				throw e;
+			}
+			this.out = output;
+		}
+		
+		public File getFile()
+		{
+			return file;
+		}
+		
+		public void write(int recordIndex, Object[] values) throws IOException
+		{
+			out.writeIntCompressed(recordIndex);
+			for (Object value : values)
+			{
+				// not keeping references to the written objects
+				out.writeJRObject(value, false, false);
+			}
+			
+			// releasing the objects written via Java serialization
+			out.reset();
+		}
+		
+		public void close() throws IOException
+		{
+			out.close();
+		}
+		
+		/**
+		 * Closes and deletes the file after a failure.
+		 */
+		public void discard()
+		{
+			try
+			{
+				out.close();
+			}
+			catch (IOException e)
+			{
+				log.debug("failed to close " + file, e);
+			}
+			delete(file);
+		}
+	}
+	
+	protected class RunCursor
+	{
+		private final File file;
+		private final VirtualizationInput input;
+		private int remaining;
+		private int recordIndex;
+		private Object[] values;
+		private final Object[] keys;
+		
+		public RunCursor(File file) throws IOException
+		{
+			this.file = file;
+			this.input = new VirtualizationInput(new BufferedInputStream(new FileInputStream(file)), 
+					new JRVirtualizationContext(jasperReportsContext));
+			this.remaining = input.readIntCompressed();
+			this.keys = new Object[sortValueIndexes.length];
+		}
+		
+		public boolean advance() throws IOException
+		{
+			if (remaining == 0)
+			{
+				return false;
+			}
+			
+			recordIndex = input.readIntCompressed();
+			
+			// a new array because the previous one might still be used as current record
+			values = new Object[fieldCount];
+			for (int i = 0; i < fieldCount; i++)
+			{
+				values[i] = input.readJRObject(false);
+			}
+			
+			for (int i = 0; i < keys.length; i++)
+			{
+				keys[i] = RecordIndexSorter.sortKey(values[sortValueIndexes[i]], useCollator[i], collator);
+			}
+			
+			--remaining;
+			return true;
+		}
+		
+		public void close()
+		{
+			try
+			{
+				input.close();
+			}
+			catch (IOException e)
+			{
+				log.warn("Failed to close sorted run " + file, e);
+			}
+		}
+	}
+	
+	protected class RunCursorComparator implements Comparator<RunCursor>
+	{
+		@Override
+		public int compare(RunCursor run1, RunCursor run2)
+		{
+			for (int i = 0; i < descending.length; i++)
+			{
+				int ret = RecordIndexSorter.compareKeys(run1.keys[i], run2.keys[i], descending[i]);
+				if (ret != 0)
+				{
+					return ret;
+				}
+			}
+			
+			// preserving the original order of equal records
+			return Integer.compare(run1.recordIndex, run2.recordIndex);
+		}
+	}
+}
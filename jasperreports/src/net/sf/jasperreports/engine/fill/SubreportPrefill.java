@@ -0,0 +1,205 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.engine.fill;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import net.sf.jasperreports.engine.JRPropertiesUtil;
+
+/**
+ * Fills an independent subreport ahead of its placement in the master report.
+ * 
+ * <p>
+ * The subreport is filled on a separate thread, as soon as the subreport element is evaluated, 
+ * into a single page of a height that is not smaller than the space available for the element. 
+ * When the master filler places the subreport, the prefilled page is used if its contents fit in the available space,
+ * otherwise the subreport is rewound and filled as usual.
+ * </p>
+ * 
+ * <p>
+ * The subreport filler parent defers page overflows and aborts to the prefill while it runs, 
+ * when the subreport reaches the end of the page the prefill is abandoned.
+ * </p>
+ * 
+ * @see JRFillSubreport#PROPERTY_PARALLEL_PREFILL
+ */
+public class SubreportPrefill
+{
+	
+	private static final Log log = LogFactory.getLog(SubreportPrefill.class);
+	
+	private static final String EXECUTOR_KEY = SubreportPrefill.class.getName() + ".Executor";
+
+	private final JRBaseFiller subreportFiller;
+	private final FutureTask<Boolean> task;
+	
+	public SubreportPrefill(final JRFillSubreport fillSubreport, JRBaseFiller subreportFiller)
+	{
+		this.subreportFiller = subreportFiller;
+		
+		final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+		this.task = new FutureTask<Boolean>(new Callable<Boolean>()
+		{
+			@Override
+			public Boolean call() throws Exception
+			{
+				Thread thread = Thread.currentThread();
+				ClassLoader threadClassLoader = thread.getContextClassLoader();
+				thread.setContextClassLoader(contextClassLoader);
+				try
+				{
+					fillSubreport.fillSubreport();
+					return true;
+				}
+				catch (JRFillInterruptedException e)
+				{
+					// the subreport did not fit on the page, or the prefill was cancelled
+					return false;
+				}
+				finally
+				{
+					thread.setContextClassLoader(threadClassLoader);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Starts the prefill.
+	 * 
+	 * @param pageHeight the height of the page to fill the subreport on
+	 */
+	public void start(int pageHeight)
+	{
+		if (log.isDebugEnabled())
+		{
+			log.debug("Fill " + subreportFiller.fillerId + ": starting prefill with page height " + pageHeight);
+		}
+		
+		subreportFiller.setPageHeight(pageHeight);
+		getExecutor(subreportFiller.getFillContext(), subreportFiller.getPropertiesUtil()).execute(task);
+	}
+	
+	/**
+	 * Waits for the prefill to complete.
+	 * 
+	 * <p>
+	 * If the prefill has not yet been picked up by the executor, it runs on the calling thread.
+	 * </p>
+	 * 
+	 * @return whether the subreport has been completely filled on the prefill page
+	 */
+	public boolean awaitFilled()
+	{
+		// no-op if already running or done, otherwise we avoid waiting for a free thread
+		task.run();
+		
+		try
+		{
+			return task.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new JRFillInterruptedException();
+		}
+		catch (ExecutionException e)
+		{
+			// the error will be reproduced if the subreport is filled again
+			if (log.isDebugEnabled())
+			{
+				log.debug("Fill " + subreportFiller.fillerId + ": prefill failed", e.getCause());
+			}
+			return false;
+		}
+	}
+	
+	/**
+	 * Cancels the prefill and waits for it to stop.
+	 */
+	public void cancelPrefill()
+	{
+		if (log.isDebugEnabled())
+		{
+			log.debug("Fill " + subreportFiller.fillerId + ": cancelling prefill");
+		}
+		
+		subreportFiller.setInterrupted(true);
+		awaitFilled();
+	}
+	
+	protected static ExecutorService getExecutor(JRFillContext fillContext, JRPropertiesUtil propertiesUtil)
+	{
+		synchronized (fillContext)
+		{
+			ThreadPoolSubreportRunnerFactory.ExecutorServiceDisposable executor = 
+					(ThreadPoolSubreportRunnerFactory.ExecutorServiceDisposable) fillContext.getFillCache(EXECUTOR_KEY);
+			if (executor == null)
+			{
+				int threads = propertiesUtil.getIntegerProperty(JRFillSubreport.PROPERTY_PARALLEL_PREFILL_THREADS);
+				ExecutorService executorService = Executors.newFixedThreadPool(Math.max(threads, 1), 
+						new ThreadPoolSubreportRunnerFactory.SubreportsThreadFactory(fillContext));
+				if (log.isDebugEnabled())
+				{
+					log.debug("created subreport prefill executor " + executorService + " with " + threads + " threads");
+				}
+				
+				executor = new ThreadPoolSubreportRunnerFactory.ExecutorServiceDisposable(executorService);
+				fillContext.setFillCache(EXECUTOR_KEY, executor);
+			}
+			return executor.getExecutorService();
+		}
+	}
+
+	/**
+	 * Abandons the prefill when the subreport overflows the prefill page.
+	 */
+	public void overflow()
+	{
+		if (log.isDebugEnabled())
+		{
+			log.debug("Fill " + subreportFiller.fillerId + ": subreport overflows the prefill page");
+		}
+		
+		throw new JRFillInterruptedException();
+	}
+
+	/**
+	 * Interrupts the thread that fills the subreport.
+	 */
+	public void abort()
+	{
+		if (subreportFiller.fillingThread != null)
+		{
+			subreportFiller.fillingThread.interrupt();
+		}
+	}
+}
@@ -39,6 +39,7 @@ import net.sf.jasperreports.engine.JasperReportsContext;
 import net.sf.jasperreports.engine.data.JRAbstractTextDataSource;
 import net.sf.jasperreports.engine.data.JsonData;
 import net.sf.jasperreports.engine.data.JsonDataCollection;
+import net.sf.jasperreports.engine.data.JsonStreamDataSource;
 import net.sf.jasperreports.engine.data.TextDataSourceAttributes;
 
 import org.apache.commons.logging.Log;
@@ -160,7 +161,10 @@ public abstract class AbstractJsonQueryExecuter<T extends JRAbstractTextDataSour
 	@Override
 	public void close()
 	{
-		//NOP
+		if (datasource instanceof JsonStreamDataSource)
+		{
+			((JsonStreamDataSource) datasource).dispose();
+		}
 	}
 
 	@Override
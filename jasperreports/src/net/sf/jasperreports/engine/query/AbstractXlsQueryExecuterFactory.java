@@ -200,6 +200,27 @@ public abstract class AbstractXlsQueryExecuterFactory extends AbstractQueryExecu
 	 * would have no effect. 
 	 */
 	public static final String XLS_USE_FIRST_ROW_AS_HEADER = "XLS_USE_FIRST_ROW_AS_HEADER";
+	
+	/**
+	 * Property specifying whether XLSX data should be read row by row from the sheet XML parts, 
+	 * instead of loading the whole workbook in memory.
+	 * <p>
+	 * The Excel query executer reads XLSX data in streaming mode when the XLSX format is specified,
+	 * or when the format is detected automatically and the file or source name has the <code>.xlsx</code> extension.
+	 * The XLSX query executer always reads input streams, files and sources in streaming mode when the flag is set.
+	 * Formula cells are read using the values cached in the workbook.
+	 * 
+	 * @see net.sf.jasperreports.engine.data.XlsxStreamDataSource
+	 */
+	@Property(
+			category = PropertyConstants.CATEGORY_DATA_SOURCE,
+			defaultValue = PropertyConstants.BOOLEAN_FALSE,
+			scopes = {PropertyScope.CONTEXT, PropertyScope.DATASET},
+			scopeQualifications = {QUERY_EXECUTER_NAME},
+			sinceVersion = PropertyConstants.VERSION_6_8_0,
+			valueType = Boolean.class
+			)
+	public static final String XLS_STREAMING = JRPropertiesUtil.PROPERTY_PREFIX + "xls.streaming";
 
 	@Override
 	public String getDesignation()
@@ -55,6 +55,7 @@ public class ExcelQueryExecuter extends AbstractXlsQueryExecuter
 	private static final String EXCEL_DATA_SOURCE_CLASS = "net.sf.jasperreports.engine.data.ExcelDataSource";
 	private static final String XLS_DATA_SOURCE_CLASS = "net.sf.jasperreports.engine.data.XlsDataSource";
 	private static final String XLSX_DATA_SOURCE_CLASS = "net.sf.jasperreports.engine.data.JRXlsxDataSource";
+	private static final String XLSX_STREAM_DATA_SOURCE_CLASS = "net.sf.jasperreports.engine.data.XlsxStreamDataSource";
 	private static final String XLS_WORKBOOK_CLASS = "org.apache.poi.hssf.usermodel.HSSFWorkbook";
 	private static final String XLSX_WORKBOOK_CLASS = "org.apache.poi.xssf.usermodel.XSSFWorkbook";
 	
@@ -195,6 +196,16 @@ public class ExcelQueryExecuter extends AbstractXlsQueryExecuter
 					}
 				}
 			}
+			
+			if (
+				constrParamValues != null
+				&& (format == ExcelFormatEnum.XLSX 
+					|| (format == ExcelFormatEnum.AUTODETECT && isXlsxLocation(constrParamValues[constrParamValues.length - 1])))
+				&& getBooleanParameterOrProperty(AbstractXlsQueryExecuterFactory.XLS_STREAMING, false)
+				)
+			{
+				dataSourceClassName = XLSX_STREAM_DATA_SOURCE_CLASS;
+			}
 		}
 		
 		AbstractXlsDataSource datasource = createDatasource(dataSourceClassName, constrParamTypes, constrParamValues);
@@ -207,6 +218,25 @@ public class ExcelQueryExecuter extends AbstractXlsQueryExecuter
 	}
 	
 
+	/**
+	 * Determines whether a file or source refers to XLSX data, based on its name.
+	 * Input streams are not detected as XLSX since the format is determined by reading the data.
+	 */
+	protected boolean isXlsxLocation(Object source)
+	{
+		String name = null;
+		if (source instanceof File)
+		{
+			name = ((File) source).getName();
+		}
+		else if (source instanceof String)
+		{
+			name = (String) source;
+		}
+		return name != null && name.toLowerCase().endsWith(".xlsx");
+	}
+	
+
 	private AbstractXlsDataSource createDatasource(
 		String dataSourceClassName, 
 		Class<?>[] constrParamTypes,
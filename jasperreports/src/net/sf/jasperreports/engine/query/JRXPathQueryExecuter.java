@@ -38,6 +38,7 @@ import net.sf.jasperreports.engine.JRDataset;
 import net.sf.jasperreports.engine.JRException;
 import net.sf.jasperreports.engine.JRValueParameter;
 import net.sf.jasperreports.engine.JasperReportsContext;
+import net.sf.jasperreports.engine.data.JRAbstractTextDataSource;
 import net.sf.jasperreports.engine.data.JRXmlDataSource;
 
 /**
@@ -58,7 +59,7 @@ public class JRXPathQueryExecuter extends JRAbstractQueryExecuter
 
 	public static final String CANONICAL_LANGUAGE = "XPath";
 	
-	private JRXmlDataSource datasource;
+	private JRAbstractTextDataSource datasource;
 
 	/**
 	 * 
@@ -99,7 +100,7 @@ public class JRXPathQueryExecuter extends JRAbstractQueryExecuter
 	@Override
 	public JRDataSource createDatasource() throws JRException
 	{
-		JRXmlDataSource datasource = null;
+		datasource = null;
 		
 		String xPath = getQueryString();
 		
@@ -112,19 +113,19 @@ public class JRXPathQueryExecuter extends JRAbstractQueryExecuter
 		{
 			Document document = (Document) getParameterValue(JRXPathQueryExecuterFactory.PARAMETER_XML_DATA_DOCUMENT);
 			if (document != null) {
-				datasource = new JRXmlDataSource(getJasperReportsContext(), document, xPath);
+				datasource = createDocumentDatasource(document, xPath);
 			} else {
 				InputStream xmlInputStream = (InputStream) getParameterValue(JRXPathQueryExecuterFactory.XML_INPUT_STREAM);
 				if (xmlInputStream != null) {
-					datasource = new JRXmlDataSource(getJasperReportsContext(), xmlInputStream, xPath);
+					datasource = createStreamDatasource(xmlInputStream, xPath);
 				} else {
 					File xmlFile = (File) getParameterValue(JRXPathQueryExecuterFactory.XML_FILE);
 					if (xmlFile != null) {
-						datasource = new JRXmlDataSource(getJasperReportsContext(), xmlFile, xPath);
+						datasource = createFileDatasource(xmlFile, xPath);
 					} else {
 						String xmlSource = getStringParameterOrProperty(JRXPathQueryExecuterFactory.XML_SOURCE);
 						if (xmlSource != null) {
-							datasource = new JRXmlDataSource(getRepositoryContext(), xmlSource, xPath, false);
+							datasource = createLocationDatasource(xmlSource, xPath);
 						} else {
 							if (log.isWarnEnabled()){
 								log.warn("No XML source was provided.");
@@ -146,11 +147,81 @@ public class JRXPathQueryExecuter extends JRAbstractQueryExecuter
 		return datasource;
 	}
 
+	/**
+	 * Creates the data source for a document provided via 
+	 * {@link JRXPathQueryExecuterFactory#PARAMETER_XML_DATA_DOCUMENT}.
+	 * 
+	 * @param document the XML document
+	 * @param xPath the query
+	 * @return the data source
+	 * @throws JRException
+	 */
+	protected JRAbstractTextDataSource createDocumentDatasource(Document document, String xPath) throws JRException
+	{
+		return new JRXmlDataSource(getJasperReportsContext(), document, xPath);
+	}
+
+	/**
+	 * Creates the data source for an input stream provided via 
+	 * {@link JRXPathQueryExecuterFactory#XML_INPUT_STREAM}.
+	 * 
+	 * @param xmlInputStream the XML input stream
+	 * @param xPath the query
+	 * @return the data source
+	 * @throws JRException
+	 */
+	protected JRAbstractTextDataSource createStreamDatasource(InputStream xmlInputStream, String xPath) throws JRException
+	{
+		return new JRXmlDataSource(getJasperReportsContext(), xmlInputStream, xPath);
+	}
+
+	/**
+	 * Creates the data source for a file provided via 
+	 * {@link JRXPathQueryExecuterFactory#XML_FILE}.
+	 * 
+	 * @param xmlFile the XML file
+	 * @param xPath the query
+	 * @return the data source
+	 * @throws JRException
+	 */
+	protected JRAbstractTextDataSource createFileDatasource(File xmlFile, String xPath) throws JRException
+	{
+		return new JRXmlDataSource(getJasperReportsContext(), xmlFile, xPath);
+	}
+
+	/**
+	 * Creates the data source for a repository location provided via 
+	 * {@link JRXPathQueryExecuterFactory#XML_SOURCE}.
+	 * 
+	 * @param xmlSource the location of the XML resource
+	 * @param xPath the query
+	 * @return the data source
+	 * @throws JRException
+	 */
+	protected JRAbstractTextDataSource createLocationDatasource(String xmlSource, String xPath) throws JRException
+	{
+		return new JRXmlDataSource(getRepositoryContext(), xmlSource, xPath, false);
+	}
+
 	@Override
 	public void close()
 	{
-		if(datasource != null){
-			datasource.close();
+		if (datasource != null)
+		{
+			closeDatasource(datasource);
+		}
+	}
+
+	/**
+	 * Closes a data source created by the query executer.
+	 * 
+	 * @param datasource the data source
+	 */
+	protected void closeDatasource(JRAbstractTextDataSource datasource)
+	{
+		if (datasource instanceof JRXmlDataSource)
+		{
+			((JRXmlDataSource) datasource).close();
 		}
 	}
 
@@ -37,7 +37,9 @@ import net.sf.jasperreports.engine.JRDataset;
 import net.sf.jasperreports.engine.JRException;
 import net.sf.jasperreports.engine.JRValueParameter;
 import net.sf.jasperreports.engine.JasperReportsContext;
+import net.sf.jasperreports.engine.data.AbstractXlsDataSource;
 import net.sf.jasperreports.engine.data.JRXlsxDataSource;
+import net.sf.jasperreports.engine.data.XlsxStreamDataSource;
 
 /**
  * XLS query executer implementation.
@@ -49,7 +51,7 @@ public class JRXlsxQueryExecuter extends AbstractXlsQueryExecuter
 	
 	private static final Log log = LogFactory.getLog(JRXlsxQueryExecuter.class);
 	
-	private JRXlsxDataSource datasource;
+	private AbstractXlsDataSource datasource;
 	
 	/**
 	 * 
@@ -92,7 +94,7 @@ public class JRXlsxQueryExecuter extends AbstractXlsQueryExecuter
 					xlsxInputStream = (InputStream) getParameterValue(AbstractXlsQueryExecuterFactory.XLS_INPUT_STREAM, true);
 				}
 				if (xlsxInputStream != null) {
-					datasource = new JRXlsxDataSource(xlsxInputStream);
+					datasource = isStreaming() ? new XlsxStreamDataSource(xlsxInputStream) : new JRXlsxDataSource(xlsxInputStream);
 				} else {
 					@SuppressWarnings("deprecation")
 					File xlsxFile = (File) getParameterValue(JRXlsxQueryExecuterFactory.XLSX_FILE);
@@ -101,7 +103,7 @@ public class JRXlsxQueryExecuter extends AbstractXlsQueryExecuter
 						xlsxFile = (File) getParameterValue(AbstractXlsQueryExecuterFactory.XLS_FILE, true);
 					}
 					if (xlsxFile != null) {
-						datasource = new JRXlsxDataSource(xlsxFile);
+						datasource = isStreaming() ? new XlsxStreamDataSource(xlsxFile) : new JRXlsxDataSource(xlsxFile);
 					} else {
 						@SuppressWarnings("deprecation")
 						String xlsxSource = getStringParameterOrProperty(JRXlsxQueryExecuterFactory.XLSX_SOURCE);
@@ -110,7 +112,9 @@ public class JRXlsxQueryExecuter extends AbstractXlsQueryExecuter
 							xlsxSource = getStringParameterOrProperty(AbstractXlsQueryExecuterFactory.XLS_SOURCE);
 						}
 						if (xlsxSource != null) {
-							datasource = new JRXlsxDataSource(getRepositoryContext(), xlsxSource);//TODO
+							datasource = isStreaming() 
+								? new XlsxStreamDataSource(getRepositoryContext(), xlsxSource) 
+								: new JRXlsxDataSource(getRepositoryContext(), xlsxSource);//TODO
 						} else {
 							if (log.isWarnEnabled()){
 								log.warn("No XLS source was provided.");
@@ -130,4 +134,9 @@ public class JRXlsxQueryExecuter extends AbstractXlsQueryExecuter
 		return datasource;
 	}
 	
+	protected boolean isStreaming()
+	{
+		return getBooleanParameterOrProperty(AbstractXlsQueryExecuterFactory.XLS_STREAMING, false);
+	}
+	
 }
@@ -26,6 +26,9 @@ package net.sf.jasperreports.engine.query;
 import java.io.InputStream;
 import java.util.Map;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
 import net.sf.jasperreports.data.RewindableDataSourceProvider;
 import net.sf.jasperreports.engine.JRDataset;
 import net.sf.jasperreports.engine.JRException;
@@ -33,6 +36,7 @@ import net.sf.jasperreports.engine.JRValueParameter;
 import net.sf.jasperreports.engine.JasperReportsContext;
 import net.sf.jasperreports.engine.data.JsonDataSource;
 import net.sf.jasperreports.engine.data.JsonDataSourceProvider;
+import net.sf.jasperreports.engine.data.JsonStreamDataSource;
 import net.sf.jasperreports.engine.data.TextDataSourceAttributes;
 
 /**
@@ -42,6 +46,8 @@ import net.sf.jasperreports.engine.data.TextDataSourceAttributes;
  */
 public class JsonQueryExecuter extends AbstractJsonQueryExecuter<JsonDataSource>
 {
+	private static final Log log = LogFactory.getLog(JsonQueryExecuter.class);
+	
 	public static final String CANONICAL_LANGUAGE = "JSON";
 	
 	/**
@@ -81,13 +87,30 @@ public class JsonQueryExecuter extends AbstractJsonQueryExecuter<JsonDataSource>
 
 	@Override
 	protected JsonDataSource getJsonDataInstance(InputStream jsonInputStream) throws JRException {
+		if (isStreaming()) {
+			return new JsonStreamDataSource(jsonInputStream, getQueryString());
+		}
 		return new JsonDataSource(jsonInputStream, getQueryString());
 	}
 
 	@Override
 	protected JsonDataSource getJsonDataInstance(String jsonSource) throws JRException {
+		if (isStreaming()) {
+			return new JsonStreamDataSource(getRepositoryContext(), jsonSource, getQueryString());
+		}
 		return new JsonDataSource(getRepositoryContext(), jsonSource, getQueryString());
 	}
+	
+	protected boolean isStreaming() {
+		boolean streaming = getBooleanParameterOrProperty(JsonQueryExecuterFactory.JSON_STREAMING, false);
+		if (streaming && !JsonStreamDataSource.isStreamable(getQueryString())) {
+			if (log.isDebugEnabled()) {
+				log.debug("JSON query " + getQueryString() + " cannot be streamed, using a JSON tree");
+			}
+			streaming = false;
+		}
+		return streaming;
+	}
 
 	@Override
 	protected RewindableDataSourceProvider<JsonDataSource> getJsonDataProviderInstance(String source, TextDataSourceAttributes textAttributes) {
@@ -130,6 +130,26 @@ public class JsonQueryExecuterFactory extends AbstractQueryExecuterFactory imple
 			)
 	public static final String JSON_TIMEZONE_ID = JRPropertiesUtil.PROPERTY_PREFIX + "json.timezone.id";
 	
+	/**
+	 * Property that determines whether the JSON input is read in streaming mode.
+	 * <p/>
+	 * In streaming mode the JSON input is not parsed into a tree, the nodes selected by the query
+	 * are located while reading the input and only the current record node is kept in memory.
+	 * Streaming is only used for queries that consist of property names separated by dots,
+	 * other queries are evaluated on the JSON tree.
+	 * 
+	 * @see net.sf.jasperreports.engine.data.JsonStreamDataSource
+	 */
+	@Property(
+			category = PropertyConstants.CATEGORY_DATA_SOURCE,
+			defaultValue = PropertyConstants.BOOLEAN_FALSE,
+			scopes = {PropertyScope.CONTEXT, PropertyScope.DATASET},
+			scopeQualifications = {JsonQueryExecuterFactory.JSON_QUERY_EXECUTER_NAME},
+			sinceVersion = PropertyConstants.VERSION_6_8_0,
+			valueType = Boolean.class
+			)
+	public static final String JSON_STREAMING = JRPropertiesUtil.PROPERTY_PREFIX + "json.streaming";
+	
 	private final static Object[] JSON_BUILTIN_PARAMETERS = {
 		JSON_INPUT_STREAM, "java.io.InputStream",
 		JSON_SOURCE, "java.lang.String",
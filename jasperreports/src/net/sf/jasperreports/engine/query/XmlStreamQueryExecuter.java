@@ -0,0 +1,149 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.engine.query;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import net.sf.jasperreports.engine.JRDataset;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRValueParameter;
+import net.sf.jasperreports.engine.JasperReportsContext;
+import net.sf.jasperreports.engine.data.JRAbstractTextDataSource;
+import net.sf.jasperreports.engine.data.JRXmlDataSource;
+import net.sf.jasperreports.engine.data.XmlStreamDataSource;
+
+/**
+ * Streaming XPath query executer implementation.
+ * <p/>
+ * The query executer creates {@link XmlStreamDataSource} instances that read the XML input
+ * in a single pass, without loading the whole document in memory.
+ * When the report query or the dataset field expressions are not part of the XPath subset supported by
+ * {@link XmlStreamDataSource}, or when the document is provided via the
+ * {@link net.sf.jasperreports.engine.query.JRXPathQueryExecuterFactory#PARAMETER_XML_DATA_DOCUMENT PARAMETER_XML_DATA_DOCUMENT}
+ * parameter, a {@link JRXmlDataSource} is created instead.
+ * <p/>
+ * All the parameters in the XPath query are replaced by calling <code>String.valueOf(Object)</code>
+ * on the parameter value.
+ */
+public class XmlStreamQueryExecuter extends JRXPathQueryExecuter
+{
+	private static final Log log = LogFactory.getLog(XmlStreamQueryExecuter.class);
+
+	public static final String CANONICAL_LANGUAGE = "XPathStream";
+
+	public XmlStreamQueryExecuter(
+		JasperReportsContext jasperReportsContext,
+		JRDataset dataset, 
+		Map<String,? extends JRValueParameter> parametersMap
+		)
+	{
+		this(SimpleQueryExecutionContext.of(jasperReportsContext),
+				dataset, parametersMap);
+	}
+	
+	public XmlStreamQueryExecuter(
+		QueryExecutionContext context,
+		JRDataset dataset, 
+		Map<String,? extends JRValueParameter> parametersMap
+		)
+	{
+		super(context, dataset, parametersMap);
+	}
+
+	@Override
+	protected String getCanonicalQueryLanguage()
+	{
+		return CANONICAL_LANGUAGE;
+	}
+	
+	protected boolean isStreamable(String xPath)
+	{
+		boolean streamable = XmlStreamDataSource.isStreamable(xPath, dataset.getFields());
+		if (!streamable && log.isDebugEnabled())
+		{
+			log.debug("XPath query " + xPath + " or field expressions not supported by the streaming data source");
+		}
+		return streamable;
+	}
+
+	@Override
+	protected JRAbstractTextDataSource createStreamDatasource(InputStream xmlInputStream, String xPath) throws JRException
+	{
+		if (!isStreamable(xPath))
+		{
+			return super.createStreamDatasource(xmlInputStream, xPath);
+		}
+		
+		return new XmlStreamDataSource(getJasperReportsContext(), xmlInputStream, xPath);
+	}
+
+	@Override
+	protected JRAbstractTextDataSource createFileDatasource(File xmlFile, String xPath) throws JRException
+	{
+		if (!isStreamable(xPath))
+		{
+			return super.createFileDatasource(xmlFile, xPath);
+		}
+		
+		try
+		{
+			return new XmlStreamDataSource(getJasperReportsContext(), xmlFile, xPath);
+		}
+		catch (FileNotFoundException e)
+		{
+			throw new JRException(e);
+		}
+	}
+
+	@Override
+	protected JRAbstractTextDataSource createLocationDatasource(String xmlSource, String xPath) throws JRException
+	{
+		if (!isStreamable(xPath))
+		{
+			return super.createLocationDatasource(xmlSource, xPath);
+		}
+		
+		return new XmlStreamDataSource(getRepositoryContext(), xmlSource, xPath);
+	}
+
+	@Override
+	protected void closeDatasource(JRAbstractTextDataSource datasource)
+	{
+		if (datasource instanceof XmlStreamDataSource)
+		{
+			((XmlStreamDataSource) datasource).close();
+		}
+		else
+		{
+			super.closeDatasource(datasource);
+		}
+	}
+	
+}
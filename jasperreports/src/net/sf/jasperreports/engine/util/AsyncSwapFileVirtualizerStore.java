@@ -0,0 +1,543 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.engine.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import net.sf.jasperreports.engine.JRVirtualizable;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Swap file virtualizer store that writes data to the swap file on a background thread.
+ * <p>
+ * Objects are serialized on the calling thread, and the serialized data is queued
+ * for writing.  The background writer takes the queued data in batches and writes
+ * each batch using {@link JRSwapFile#write(List)}, which allocates the blocks for
+ * the whole batch at once so that consecutive blocks are written in a single operation.
+ * Data that is requested before being written is served from the queue.
+ * When the queue is full, the data is written on the calling thread.
+ * <p>
+ * When data is retrieved from a read-only virtualization context, that is while
+ * the filled report is exported, the store also reads ahead the data of the objects
+ * that were written after the retrieved object, on the assumption that objects are
+ * retrieved in the order in which they were stored.
+ * The order in which objects were written is kept in the swap handles, so that it
+ * is discarded along with the data of the objects.
+ * <p>
+ * The store is meant to be used with a {@link JRConcurrentSwapFile}, which allows
+ * the background reads and writes to proceed in parallel with the fill threads.
+ */
+public class AsyncSwapFileVirtualizerStore extends SwapFileVirtualizerStore
+{
+	private static final Log log = LogFactory.getLog(AsyncSwapFileVirtualizerStore.class);
+	
+	public static final int DEFAULT_MAX_PENDING = 128;
+	public static final int DEFAULT_BATCH_SIZE = 32;
+	public static final int DEFAULT_READ_AHEAD = 4;
+	
+	/**
+	 * Swap handle that also records the object written after the handle's object.
+	 */
+	protected static class OrderedSwapHandle extends JRSwapFile.SwapHandle
+	{
+		private volatile String next;
+		
+		public OrderedSwapHandle(JRSwapFile.SwapHandle handle)
+		{
+			super(handle.getOffsets(), handle.getLastSize());
+		}
+	}
+	
+	protected static class ReadAheadData
+	{
+		private final JRSwapFile.SwapHandle handle;
+		private final byte[] data;
+		
+		public ReadAheadData(JRSwapFile.SwapHandle handle, byte[] data)
+		{
+			this.handle = handle;
+			this.data = data;
+		}
+	}
+	
+	private final Executor executor;
+	private final boolean executorOwner;
+	
+	// guarded by itself
+	private final Map<String, byte[]> pending;
+	private final LinkedBlockingQueue<String> writeQueue;
+	private final Semaphore pendingPermits;
+	private final AtomicBoolean writerScheduled;
+	private final Runnable writerTask;
+	
+	// only accessed by the writer
+	private OrderedSwapHandle lastWritten;
+	private final Map<String, ReadAheadData> readAhead;
+	
+	private volatile int batchSize = DEFAULT_BATCH_SIZE;
+	private volatile int readAheadCount = DEFAULT_READ_AHEAD;
+	private volatile boolean disposed;
+
+	public AsyncSwapFileVirtualizerStore(JRSwapFile swap, boolean swapOwner)
+	{
+		this(swap, swapOwner, null);
+	}
+
+	public AsyncSwapFileVirtualizerStore(JRSwapFile swap, boolean swapOwner, StreamCompression compression)
+	{
+		this(swap, swapOwner, compression, null, DEFAULT_MAX_PENDING);
+	}
+
+	/**
+	 * Creates a store.
+	 * 
+	 * @param swap the swap file
+	 * @param swapOwner whether the store owns the swap file and disposes it on {@link #dispose()}
+	 * @param compression stream compression to apply to serialized data
+	 * @param executor the executor used for background writes and reads.
+	 * If <code>null</code>, the store creates its own executor which is shut down on {@link #dispose()}.
+	 * @param maxPending the maximum number of objects queued for writing
+	 */
+	public AsyncSwapFileVirtualizerStore(JRSwapFile swap, boolean swapOwner, StreamCompression compression,
+			Executor executor, int maxPending)
+	{
+		super(swap, swapOwner, compression);
+		
+		if (executor == null)
+		{
+			this.executor = DaemonThreadFactory.createExecutor("JasperReports swap file I/O", 2);
+			this.executorOwner = true;
+		}
+		else
+		{
+			this.executor = executor;
+			this.executorOwner = false;
+		}
+		
+		this.pending = new HashMap<String, byte[]>();
+		this.writeQueue = new LinkedBlockingQueue<String>();
+		this.pendingPermits = new Semaphore(maxPending);
+		this.writerScheduled = new AtomicBoolean();
+		this.writerTask = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				runWriter();
+			}
+		};
+		
+		this.readAhead = new ConcurrentHashMap<String, ReadAheadData>();
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "AsyncSwapFileVirtualizerStore " + getSwap().toString(); 
+	}
+
+	public int getBatchSize()
+	{
+		return batchSize;
+	}
+
+	/**
+	 * Sets the maximum number of objects written to the swap file at once by the background writer.
+	 * 
+	 * @param batchSize the maximum number of objects written at once
+	 */
+	public void setBatchSize(int batchSize)
+	{
+		this.batchSize = batchSize;
+	}
+
+	public int getReadAheadCount()
+	{
+		return readAheadCount;
+	}
+
+	/**
+	 * Sets the number of objects that are read ahead when data is retrieved.
+	 * 
+	 * @param readAheadCount the number of objects to read ahead, 0 to disable reading ahead
+	 */
+	public void setReadAheadCount(int readAheadCount)
+	{
+		this.readAheadCount = readAheadCount;
+	}
+
+	@Override
+	protected boolean isStored(JRVirtualizable<?> o)
+	{
+		synchronized (pending)
+		{
+			if (pending.containsKey(o.getUID()))
+			{
+				return true;
+			}
+		}
+		return super.isStored(o);
+	}
+
+	@Override
+	protected void writeData(String objectId, byte[] data) throws IOException
+	{
+		readAhead.remove(objectId);
+		
+		if (disposed || !pendingPermits.tryAcquire())
+		{
+			// the writer is behind, writing on the calling thread
+			if (log.isTraceEnabled())
+			{
+				log.trace("write queue full, writing object " + objectId);
+			}
+			
+			super.writeData(objectId, data);
+			return;
+		}
+
+		synchronized (pending)
+		{
+			pending.put(objectId, data);
+		}
+		writeQueue.add(objectId);
+		
+		if (log.isTraceEnabled())
+		{
+			log.trace("queued " + data.length + " for object " + objectId);
+		}
+		
+		if (writerScheduled.compareAndSet(false, true))
+		{
+			executor.execute(writerTask);
+		}
+	}
+	
+	protected void runWriter()
+	{
+		do
+		{
+			try
+			{
+				writePending();
+			}
+			finally
+			{
+				writerScheduled.set(false);
+			}
+		}
+		// checking for objects queued after the writer has finished
+		while (!writeQueue.isEmpty() && !disposed && writerScheduled.compareAndSet(false, true));
+	}
+	
+	protected void writePending()
+	{
+		List<String> queuedIds = new ArrayList<String>();
+		List<String> batchIds = new ArrayList<String>();
+		List<byte[]> batch = new ArrayList<byte[]>();
+		while (!disposed)
+		{
+			queuedIds.clear();
+			writeQueue.drainTo(queuedIds, batchSize);
+			if (queuedIds.isEmpty())
+			{
+				break;
+			}
+			
+			batchIds.clear();
+			batch.clear();
+			synchronized (pending)
+			{
+				for (String id : queuedIds)
+				{
+					byte[] data = pending.get(id);
+					if (data == null)
+					{
+						// already retrieved or removed
+						pendingPermits.release();
+					}
+					else
+					{
+						batchIds.add(id);
+						batch.add(data);
+					}
+				}
+			}
+			
+			if (batch.isEmpty())
+			{
+				continue;
+			}
+			
+			JRSwapFile.SwapHandle[] handles;
+			try
+			{
+				handles = getSwap().write(batch);
+			}
+			catch (IOException e)
+			{
+				log.error("Error writing " + batch.size() + " objects to " + getSwap(), e);
+				writeEach(batchIds, batch);
+				continue;
+			}
+			
+			if (log.isTraceEnabled())
+			{
+				log.trace("wrote " + batch.size() + " objects to " + getSwap());
+			}
+			
+			synchronized (pending)
+			{
+				for (int i = 0; i < batchIds.size(); ++i)
+				{
+					String id = batchIds.get(i);
+					if (pending.get(id) == batch.get(i))
+					{
+						OrderedSwapHandle handle = new OrderedSwapHandle(handles[i]);
+						putHandle(id, handle);
+						pending.remove(id);
+						
+						if (lastWritten != null)
+						{
+							lastWritten.next = id;
+						}
+						lastWritten = handle;
+					}
+					else
+					{
+						// retrieved or removed while we were writing
+						getSwap().free(handles[i]);
+					}
+				}
+			}
+			pendingPermits.release(batchIds.size());
+		}
+	}
+	
+	/**
+	 * Writes the objects of a batch one by one after the batch write has failed.
+	 * 
+	 * <p>
+	 * Objects that cannot be written are kept in memory and served from there when retrieved.
+	 */
+	protected void writeEach(List<String> batchIds, List<byte[]> batch)
+	{
+		for (int i = 0; i < batchIds.size(); ++i)
+		{
+			String id = batchIds.get(i);
+			byte[] data = batch.get(i);
+			synchronized (pending)
+			{
+				if (pending.get(id) != data)
+				{
+					// retrieved or removed in the meantime
+					continue;
+				}
+				
+				try
+				{
+					super.writeData(id, data);
+					pending.remove(id);
+				}
+				catch (IOException e)
+				{
+					log.error("Error writing object " + id + " to " + getSwap(), e);
+				}
+			}
+		}
+		pendingPermits.release(batchIds.size());
+	}
+
+	@Override
+	protected byte[] readData(String objectId, boolean remove) throws IOException
+	{
+		byte[] data;
+		synchronized (pending)
+		{
+			data = remove ? pending.remove(objectId) : pending.get(objectId);
+		}
+		
+		if (data != null)
+		{
+			if (log.isTraceEnabled())
+			{
+				log.trace("found queued data for object " + objectId);
+			}
+		}
+		else
+		{
+			ReadAheadData readAheadData = readAhead.remove(objectId);
+			JRSwapFile.SwapHandle handle = getHandle(objectId);
+			if (readAheadData != null && readAheadData.data != null 
+					&& handle != null && readAheadData.handle == handle)
+			{
+				if (log.isTraceEnabled())
+				{
+					log.trace("found read ahead data for object " + objectId);
+				}
+				
+				data = readAheadData.data;
+				if (remove && removeHandle(objectId, handle))
+				{
+					getSwap().free(handle);
+				}
+			}
+			else
+			{
+				data = super.readData(objectId, remove);
+			}
+		}
+		
+		return data;
+	}
+	
+	@Override
+	public void retrieve(JRVirtualizable<?> o, boolean remove, VirtualizationSerializer serializer)
+	{
+		super.retrieve(o, remove, serializer);
+		
+		// while filling objects are paged in at random, only exports access them in sequence
+		if (!remove && o.getContext().isReadOnly())
+		{
+			readAhead(o.getUID());
+		}
+	}
+	
+	protected void readAhead(String objectId)
+	{
+		int count = readAheadCount;
+		if (count <= 0 || disposed || readAhead.size() >= 4 * count)
+		{
+			return;
+		}
+		
+		final List<String> ids = new ArrayList<String>(count);
+		String id = objectId;
+		for (int i = 0; i < 2 * count && ids.size() < count; ++i)
+		{
+			JRSwapFile.SwapHandle previous = getHandle(id);
+			id = previous instanceof OrderedSwapHandle ? ((OrderedSwapHandle) previous).next : null;
+			if (id == null)
+			{
+				break;
+			}
+			
+			JRSwapFile.SwapHandle handle = getHandle(id);
+			if (handle != null && !readAhead.containsKey(id))
+			{
+				// placeholder to prevent other threads from reading the same data
+				readAhead.put(id, new ReadAheadData(handle, null));
+				ids.add(id);
+			}
+		}
+		
+		if (!ids.isEmpty())
+		{
+			executor.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					readAhead(ids);
+				}
+			});
+		}
+	}
+	
+	protected void readAhead(List<String> ids)
+	{
+		for (String id : ids)
+		{
+			if (disposed)
+			{
+				return;
+			}
+			
+			ReadAheadData placeholder = readAhead.get(id);
+			if (placeholder == null || placeholder.data != null)
+			{
+				continue;
+			}
+			
+			try
+			{
+				// the handle is checked against the current one when the data is used
+				byte[] data = getSwap().read(placeholder.handle, false);
+				readAhead.replace(id, placeholder, new ReadAheadData(placeholder.handle, data));
+			}
+			catch (IOException e)
+			{
+				if (log.isDebugEnabled())
+				{
+					log.debug("failed to read ahead object " + id + " from " + getSwap(), e);
+				}
+				readAhead.remove(id, placeholder);
+			}
+		}
+	}
+	
+	@Override
+	public void remove(String objectId)
+	{
+		synchronized (pending)
+		{
+			pending.remove(objectId);
+		}
+		readAhead.remove(objectId);
+		
+		super.remove(objectId);
+	}
+
+	@Override
+	public void dispose()
+	{
+		disposed = true;
+		if (executorOwner)
+		{
+			// not interrupting the threads as they might be doing I/O on an interruptible channel
+			((ExecutorService) executor).shutdown();
+		}
+		
+		synchronized (pending)
+		{
+			pending.clear();
+		}
+		writeQueue.clear();
+		readAhead.clear();
+		
+		super.dispose();
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.engine.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Thread factory that creates named daemon threads, used for background work
+ * that should not prevent the JVM from exiting.
+ */
+public class DaemonThreadFactory implements ThreadFactory
+{
+	private static final Log log = LogFactory.getLog(DaemonThreadFactory.class);
+	
+	private static final long IDLE_TIMEOUT_SECONDS = 60;
+	
+	private final String namePrefix;
+	private final AtomicInteger threadCount;
+	
+	public DaemonThreadFactory(String namePrefix)
+	{
+		this.namePrefix = namePrefix;
+		this.threadCount = new AtomicInteger();
+	}
+
+	@Override
+	public Thread newThread(Runnable r)
+	{
+		Thread thread = new Thread(r, namePrefix + " #" + threadCount.incrementAndGet());
+		thread.setDaemon(true);
+		if (log.isDebugEnabled())
+		{
+			log.debug("created thread " + thread);
+		}
+		return thread;
+	}
+	
+	/**
+	 * Creates a fixed size executor whose threads are stopped after being idle for a while.
+	 * 
+	 * @param namePrefix the prefix of the thread names
+	 * @param threadCount the maximum number of threads
+	 * @return the executor
+	 */
+	public static ExecutorService createExecutor(String namePrefix, int threadCount)
+	{
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount,
+				IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new DaemonThreadFactory(namePrefix));
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+}
@@ -23,16 +23,18 @@
  */
 package net.sf.jasperreports.engine.util;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
 
 /**
  * @author Lucian Chirita (lucianc@users.sourceforge.net)
  */
-public class DeflateStreamCompression implements StreamCompression
+public class DeflateStreamCompression implements DictionaryStreamCompression
 {
 
 	private int deflaterLevel;
@@ -57,4 +59,82 @@ public class DeflateStreamCompression implements StreamCompression
 		return inflaterStream;
 	}
 
+	@Override
+	public OutputStream compressedOutput(OutputStream stream, byte[] dictionary)
+	{
+		Deflater deflater = new Deflater(deflaterLevel);
+		if (dictionary != null && dictionary.length > 0)
+		{
+			deflater.setDictionary(dictionary);
+		}
+		return new DeflaterStream(stream, deflater);
+	}
+
+	@Override
+	public InputStream uncompressedInput(InputStream stream, byte[] dictionary)
+	{
+		if (dictionary == null || dictionary.length == 0)
+		{
+			return uncompressedInput(stream);
+		}
+		return new DictionaryInflaterStream(stream, dictionary);
+	}
+	
+	protected static class DeflaterStream extends DeflaterOutputStream
+	{
+		public DeflaterStream(OutputStream out, Deflater deflater)
+		{
+			super(out, deflater);
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			try
+			{
+				super.close();
+			}
+			finally
+			{
+				// the deflater was created by us, releasing its native memory
+				def.end();
+			}
+		}
+	}
+	
+	protected static class DictionaryInflaterStream extends InflaterInputStream
+	{
+		private final byte[] dictionary;
+		
+		public DictionaryInflaterStream(InputStream in, byte[] dictionary)
+		{
+			super(in, new Inflater());
+			this.dictionary = dictionary;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			int read = super.read(b, off, len);
+			if (read < 0 && inf.needsDictionary())
+			{
+				inf.setDictionary(dictionary);
+				read = super.read(b, off, len);
+			}
+			return read;
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			try
+			{
+				super.close();
+			}
+			finally
+			{
+				inf.end();
+			}
+		}
+	}
 }
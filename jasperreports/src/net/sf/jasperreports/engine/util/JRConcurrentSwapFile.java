@@ -27,7 +27,9 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
 import net.sf.jasperreports.engine.JRRuntimeException;
+import net.sf.jasperreports.engine.JasperReportsContext;
 
 
 /**
@@ -54,7 +56,22 @@ public class JRConcurrentSwapFile extends JRSwapFile
 	 */
 	public JRConcurrentSwapFile(String directory, int blockSize, int minGrowCount)
 	{
-		super(directory, blockSize, minGrowCount);
+		this(DefaultJasperReportsContext.getInstance(), directory, blockSize, minGrowCount);
+	}
+	
+	/**
+	 * Creates a swap file.
+	 * 
+	 * The file name is generated automatically.
+	 * 
+	 * @param jasperReportsContext the JasperReportsContext to read configuration from.
+	 * @param directory the directory where the file should be created.
+	 * @param blockSize the size of the blocks allocated by the swap file
+	 * @param minGrowCount the minimum number of blocks by which the swap file grows when full
+	 */
+	public JRConcurrentSwapFile(JasperReportsContext jasperReportsContext, String directory, int blockSize, int minGrowCount)
+	{
+		super(jasperReportsContext, directory, blockSize, minGrowCount);
 
 		fileChannel = file.getChannel();
 	}
@@ -68,7 +85,12 @@ public class JRConcurrentSwapFile extends JRSwapFile
 	@Override
 	protected void write(byte[] data, int dataSize, int dataOffset, long fileOffset) throws IOException
 	{
-		fileChannel.write(ByteBuffer.wrap(data, dataOffset, dataSize), fileOffset);
+		ByteBuffer buffer = ByteBuffer.wrap(data, dataOffset, dataSize);
+		int totalWritten = 0;
+		while (buffer.hasRemaining())
+		{
+			totalWritten += fileChannel.write(buffer, fileOffset + totalWritten);
+		}
 	}
 
 	@Override
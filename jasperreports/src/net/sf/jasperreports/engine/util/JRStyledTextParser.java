@@ -36,6 +36,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -57,15 +58,21 @@ import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
+import net.sf.jasperreports.annotations.properties.Property;
+import net.sf.jasperreports.annotations.properties.PropertyScope;
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.engine.JRConstants;
 import net.sf.jasperreports.engine.JRPrintHyperlink;
 import net.sf.jasperreports.engine.JRPrintHyperlinkParameter;
 import net.sf.jasperreports.engine.JRPrintHyperlinkParameters;
+import net.sf.jasperreports.engine.JRPropertiesUtil;
 import net.sf.jasperreports.engine.JRRuntimeException;
 import net.sf.jasperreports.engine.base.JRBasePrintHyperlink;
 import net.sf.jasperreports.engine.fonts.FontFamily;
 import net.sf.jasperreports.engine.type.HyperlinkTypeEnum;
 import net.sf.jasperreports.engine.util.JRStyledText.Run;
 import net.sf.jasperreports.extensions.ExtensionsEnvironment;
+import net.sf.jasperreports.properties.PropertyConstants;
 
 
 /**
@@ -144,6 +151,33 @@ public class JRStyledTextParser implements ErrorHandler
 	private static final String LESS_SLASH = "</";
 	private static final String GREATER = ">";
 	
+	/**
+	 * Property that specifies the maximum number of parsed styled texts that are cached by each parser instance.
+	 * 
+	 * <p>
+	 * Parser instances are kept per thread, the cache avoids parsing styled texts that repeat
+	 * across the report (for instance static texts or text fields having a limited set of values).
+	 * Hits in the cache return copies of the parsed styled texts.
+	 * Setting the property to 0 disables the cache.
+	 * </p>
+	 */
+	@Property(
+			category = PropertyConstants.CATEGORY_FILL,
+			defaultValue = "100",
+			scopes = {PropertyScope.GLOBAL},
+			sinceVersion = PropertyConstants.VERSION_6_8_0,
+			valueType = Integer.class
+			)
+	public static final String PROPERTY_CACHE_SIZE = JRPropertiesUtil.PROPERTY_PREFIX + "styled.text.parser.cache.size";
+	
+	private static final int CACHE_SIZE = 
+		JRPropertiesUtil.getInstance(DefaultJasperReportsContext.getInstance()).getIntegerProperty(PROPERTY_CACHE_SIZE, 100);
+	
+	/**
+	 * Longer texts are not cached.
+	 */
+	private static final int CACHED_TEXT_MAX_LENGTH = 4096;
+	
 	/**
 	 * Thread local soft cache of instances.
 	 */
@@ -201,6 +235,21 @@ public class JRStyledTextParser implements ErrorHandler
 	 *
 	 */
 	private JRBasePrintHyperlink hyperlink;
+	
+	/**
+	 *
+	 */
+	private final MarkupTokenizer tokenizer;
+	
+	/**
+	 * Recently parsed styled texts, only created when the cache is enabled.
+	 */
+	private final Map<ParseKey,JRStyledText> cache;
+	
+	/**
+	 * Flag set when the last streaming parse created hyperlinks, which prevents the result from being cached.
+	 */
+	private boolean hyperlinksFound;
 
 
 	/**
@@ -220,6 +269,25 @@ public class JRStyledTextParser implements ErrorHandler
 		{
 			throw new JRRuntimeException(e);
 		}
+		
+		tokenizer = new MarkupTokenizer();
+		
+		if (CACHE_SIZE > 0)
+		{
+			// creating a LRU map
+			cache = new LinkedHashMap<ParseKey,JRStyledText>(16, 0.75f, true)
+			{
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<ParseKey,JRStyledText> eldest)
+				{
+					return size() > CACHE_SIZE;
+				}
+			};
+		}
+		else
+		{
+			cache = null;
+		}
 	}
 
 
@@ -227,6 +295,85 @@ public class JRStyledTextParser implements ErrorHandler
 	 *
 	 */
 	public JRStyledText parse(Map<Attribute,Object> attributes, String text, Locale locale) throws SAXException
+	{
+		if (text == null)
+		{
+			return parseDocument(attributes, text, locale);
+		}
+
+		boolean cacheable = cache != null && text.length() <= CACHED_TEXT_MAX_LENGTH;
+		if (cacheable)
+		{
+			JRStyledText cachedText = cache.get(new ParseKey(text, attributes, locale));
+			if (cachedText != null)
+			{
+				return cachedText.cloneText();
+			}
+		}
+		
+		JRStyledText styledText = parseMarkup(attributes, text, locale);
+		if (styledText == null)
+		{
+			// the text is either invalid or it contains XML constructs not handled by the tokenizer
+			return parseDocument(attributes, text, locale);
+		}
+		
+		if (cacheable && !hyperlinksFound)
+		{
+			// making sure that the text is not kept in a buffer shared with the cached copy
+			styledText.getText();
+			
+			Map<Attribute,Object> keyAttributes = attributes == null ? null : new HashMap<Attribute,Object>(attributes);
+			cache.put(new ParseKey(text, keyAttributes, locale), styledText.cloneText());
+		}
+		
+		return styledText;
+	}
+
+	/**
+	 * Parses the styled text using the streaming markup tokenizer.
+	 * 
+	 * @return the styled text, or <code>null</code> if the text needs to be parsed as an XML document
+	 */
+	private JRStyledText parseMarkup(Map<Attribute,Object> attributes, String text, Locale locale)
+	{
+		JRStyledText styledText = new JRStyledText(locale);
+		
+		tokenizer.reset(text);
+		hyperlink = null;
+		hyperlinksFound = false;
+		
+		try
+		{
+			parseStyle(styledText, tokenizer);
+		}
+		catch (UnsupportedMarkupException e)
+		{
+			return null;
+		}
+		catch (RuntimeException e)
+		{
+			// letting the XML parser decide whether the error is reported or the text is invalid
+			if (log.isDebugEnabled())
+			{
+				log.debug("Error parsing styled text, falling back to XML parsing", e);
+			}
+			return null;
+		}
+		finally
+		{
+			tokenizer.reset(null);
+		}
+		
+		styledText.setGlobalAttributes(attributes);
+		
+		return styledText;
+	}
+
+	/**
+	 * Parses the styled text as an XML document.
+	 */
+	private JRStyledText parseDocument(Map<Attribute,Object> attributes, String text, Locale locale) throws SAXException
 	{
 		JRStyledText styledText = new JRStyledText(locale);
 		
@@ -487,111 +634,7 @@ public class JRStyledTextParser implements ErrorHandler
 				&& NODE_style.equals(node.getNodeName())
 				)
 			{
-				NamedNodeMap nodeAttrs = node.getAttributes();
-
-				Map<Attribute,Object> styleAttrs = new HashMap<Attribute,Object>();
-
-				if (nodeAttrs.getNamedItem(ATTRIBUTE_fontName) != null)
-				{
-					styleAttrs.put(
-						TextAttribute.FAMILY,
-						nodeAttrs.getNamedItem(ATTRIBUTE_fontName).getNodeValue()
-						);
-				}
-
-				if (nodeAttrs.getNamedItem(ATTRIBUTE_isBold) != null)
-				{
-					styleAttrs.put(
-						TextAttribute.WEIGHT,
-						Boolean.valueOf(nodeAttrs.getNamedItem(ATTRIBUTE_isBold).getNodeValue())
-						? TextAttribute.WEIGHT_BOLD : TextAttribute.WEIGHT_REGULAR
-						);
-				}
-
-				if (nodeAttrs.getNamedItem(ATTRIBUTE_isItalic) != null)
-				{
-					styleAttrs.put(
-						TextAttribute.POSTURE,
-						Boolean.valueOf(nodeAttrs.getNamedItem(ATTRIBUTE_isItalic).getNodeValue())
-						? TextAttribute.POSTURE_OBLIQUE : TextAttribute.POSTURE_REGULAR
-						);
-				}
-
-				if (nodeAttrs.getNamedItem(ATTRIBUTE_isUnderline) != null)
-				{
-					styleAttrs.put(
-						TextAttribute.UNDERLINE,
-						Boolean.valueOf(nodeAttrs.getNamedItem(ATTRIBUTE_isUnderline).getNodeValue())
-						? TextAttribute.UNDERLINE_ON : null
-						);
-				}
-
-				if (nodeAttrs.getNamedItem(ATTRIBUTE_isStrikeThrough) != null)
-				{
-					styleAttrs.put(
-						TextAttribute.STRIKETHROUGH,
-						Boolean.valueOf(nodeAttrs.getNamedItem(ATTRIBUTE_isStrikeThrough).getNodeValue())
-						? TextAttribute.STRIKETHROUGH_ON : null
-						);
-				}
-
-				if (nodeAttrs.getNamedItem(ATTRIBUTE_size) != null)
-				{
-					styleAttrs.put(
-						TextAttribute.SIZE,
-						Float.valueOf(nodeAttrs.getNamedItem(ATTRIBUTE_size).getNodeValue())
-						);
-				}
-
-				if (nodeAttrs.getNamedItem(ATTRIBUTE_pdfFontName) != null)
-				{
-					styleAttrs.put(
-						JRTextAttribute.PDF_FONT_NAME,
-						nodeAttrs.getNamedItem(ATTRIBUTE_pdfFontName).getNodeValue()
-						);
-				}
-
-				if (nodeAttrs.getNamedItem(ATTRIBUTE_pdfEncoding) != null)
-				{
-					styleAttrs.put(
-						JRTextAttribute.PDF_ENCODING,
-						nodeAttrs.getNamedItem(ATTRIBUTE_pdfEncoding).getNodeValue()
-						);
-				}
-
-				if (nodeAttrs.getNamedItem(ATTRIBUTE_isPdfEmbedded) != null)
-				{
-					styleAttrs.put(
-						JRTextAttribute.IS_PDF_EMBEDDED,
-						Boolean.valueOf(nodeAttrs.getNamedItem(ATTRIBUTE_isPdfEmbedded).getNodeValue())
-						);
-				}
-
-				if (nodeAttrs.getNamedItem(ATTRIBUTE_forecolor) != null)
-				{
-					Color color = 
-						JRColorUtil.getColor(
-							nodeAttrs.getNamedItem(ATTRIBUTE_forecolor).getNodeValue(),
-							Color.black
-							);
-					styleAttrs.put(
-						TextAttribute.FOREGROUND,
-						color
-						);
-				}
-
-				if (nodeAttrs.getNamedItem(ATTRIBUTE_backcolor) != null)
-				{
-					Color color = 
-						JRColorUtil.getColor(
-							nodeAttrs.getNamedItem(ATTRIBUTE_backcolor).getNodeValue(),
-							Color.black
-							);
-					styleAttrs.put(
-						TextAttribute.BACKGROUND,
-						color
-						);
-				}
+				Map<Attribute,Object> styleAttrs = getStyleAttributes(new NodeTagAttributes(node));
 
 				int startIndex = styledText.length();
 
@@ -656,46 +699,7 @@ public class JRStyledTextParser implements ErrorHandler
 			}
 			else if (node.getNodeType() == Node.ELEMENT_NODE && NODE_font.equalsIgnoreCase(node.getNodeName()))
 			{
-				NamedNodeMap nodeAttrs = node.getAttributes();
-
-				Map<Attribute,Object> styleAttrs = new HashMap<Attribute,Object>();
-
-				if (nodeAttrs.getNamedItem(ATTRIBUTE_size) != null)
-				{
-					styleAttrs.put(
-						TextAttribute.SIZE,
-						Float.valueOf(nodeAttrs.getNamedItem(ATTRIBUTE_size).getNodeValue())
-						);
-				}
-
-				if (nodeAttrs.getNamedItem(ATTRIBUTE_color) != null)
-				{
-					Color color = 
-						JRColorUtil.getColor(
-							nodeAttrs.getNamedItem(ATTRIBUTE_color).getNodeValue(),
-							Color.black
-							);
-					styleAttrs.put(
-						TextAttribute.FOREGROUND,
-						color
-						);
-				}
-
-				if (nodeAttrs.getNamedItem(ATTRIBUTE_fontFace) != null) 
-				{
-					String fontFaces = nodeAttrs.getNamedItem(ATTRIBUTE_fontFace).getNodeValue();
-
-					StringTokenizer t = new StringTokenizer(fontFaces, ",");
-					while (t.hasMoreTokens()) 
-					{
-						String face = t.nextToken().trim();
-						if (AVAILABLE_FONT_FACE_NAMES.contains(face)) 
-						{
-							styleAttrs.put(TextAttribute.FAMILY, face);
-							break;
-						}
-					}
-				}
+				Map<Attribute,Object> styleAttrs = getFontAttributes(new NodeTagAttributes(node));
 				
 				int startIndex = styledText.length();
 
@@ -751,28 +755,7 @@ public class JRStyledTextParser implements ErrorHandler
 			{
 				if (hyperlink == null)
 				{
-					NamedNodeMap nodeAttrs = node.getAttributes();
-
-					Map<Attribute,Object> styleAttrs = new HashMap<Attribute,Object>();
-
-					hyperlink = new JRBasePrintHyperlink();
-					hyperlink.setHyperlinkType(HyperlinkTypeEnum.REFERENCE);
-					styleAttrs.put(JRTextAttribute.HYPERLINK, hyperlink);
-					
-					if (nodeAttrs.getNamedItem(ATTRIBUTE_href) != null)
-					{
-						hyperlink.setHyperlinkReference( nodeAttrs.getNamedItem(ATTRIBUTE_href).getNodeValue());
-					}
-
-					if (nodeAttrs.getNamedItem(ATTRIBUTE_type) != null)
-					{
-						hyperlink.setLinkType(nodeAttrs.getNamedItem(ATTRIBUTE_type).getNodeValue());
-					}
-
-					if (nodeAttrs.getNamedItem(ATTRIBUTE_target) != null)
-					{
-						hyperlink.setLinkTarget(nodeAttrs.getNamedItem(ATTRIBUTE_target).getNodeValue());
-					}
+					Map<Attribute,Object> styleAttrs = createHyperlink(new NodeTagAttributes(node));
 
 					int startIndex = styledText.length();
 
@@ -795,19 +778,7 @@ public class JRStyledTextParser implements ErrorHandler
 				}
 				else
 				{
-					NamedNodeMap nodeAttrs = node.getAttributes();
-
-					JRPrintHyperlinkParameter parameter = new JRPrintHyperlinkParameter();
-					
-					if (nodeAttrs.getNamedItem(ATTRIBUTE_name) != null)
-					{
-						parameter.setName(nodeAttrs.getNamedItem(ATTRIBUTE_name).getNodeValue());
-					}
-
-					if (nodeAttrs.getNamedItem(ATTRIBUTE_valueClass) != null)
-					{
-						parameter.setValueClass(nodeAttrs.getNamedItem(ATTRIBUTE_valueClass).getNodeValue());
-					}
+					JRPrintHyperlinkParameter parameter = createHyperlinkParameter(new NodeTagAttributes(node));
 
 					String strValue = node.getTextContent();
 					if (strValue != null)
@@ -828,62 +799,373 @@ public class JRStyledTextParser implements ErrorHandler
 	}
 
 	/**
-	 *
+	 * Processes the markup tokens up to the end of the current tag, mirroring {@link #parseStyle(JRStyledText, Node)}.
+	 * 
+	 * Errors are not reported by this method, the text is parsed again as an XML document in order to produce
+	 * the same exceptions and log messages.
 	 */
-	private void resizeRuns(List<Run> runs, int startIndex, int count)
+	private void parseStyle(JRStyledText styledText, MarkupTokenizer tokenizer) throws UnsupportedMarkupException
 	{
-		for (int j = 0; j < runs.size(); j++)
+		for (int token = tokenizer.next(); token == MarkupTokenizer.TEXT || token == MarkupTokenizer.START_TAG; token = tokenizer.next())
 		{
-			JRStyledText.Run run = runs.get(j);
-			if (run.startIndex <= startIndex && run.endIndex > startIndex - count)
+			if (token == MarkupTokenizer.TEXT)
 			{
-				run.endIndex += count;
+				styledText.append(tokenizer.getText());
+				continue;
+			}
+			
+			String tagName = tokenizer.getTagName();
+			if (NODE_style.equals(tagName))
+			{
+				parseRun(styledText, tokenizer, getStyleAttributes(tokenizer));
+			}
+			else if (NODE_bold.equalsIgnoreCase(tagName))
+			{
+				Map<Attribute,Object> styleAttrs = new HashMap<Attribute,Object>();
+				styleAttrs.put(TextAttribute.WEIGHT, TextAttribute.WEIGHT_BOLD);
+				parseRun(styledText, tokenizer, styleAttrs);
+			}
+			else if (NODE_italic.equalsIgnoreCase(tagName))
+			{
+				Map<Attribute,Object> styleAttrs = new HashMap<Attribute,Object>();
+				styleAttrs.put(TextAttribute.POSTURE, TextAttribute.POSTURE_OBLIQUE);
+				parseRun(styledText, tokenizer, styleAttrs);
+			}
+			else if (NODE_underline.equalsIgnoreCase(tagName))
+			{
+				Map<Attribute,Object> styleAttrs = new HashMap<Attribute,Object>();
+				styleAttrs.put(TextAttribute.UNDERLINE, TextAttribute.UNDERLINE_ON);
+				parseRun(styledText, tokenizer, styleAttrs);
+			}
+			else if (NODE_sup.equalsIgnoreCase(tagName))
+			{
+				Map<Attribute,Object> styleAttrs = new HashMap<Attribute,Object>();
+				styleAttrs.put(TextAttribute.SUPERSCRIPT, TextAttribute.SUPERSCRIPT_SUPER);
+				parseRun(styledText, tokenizer, styleAttrs);
+			}
+			else if (NODE_sub.equalsIgnoreCase(tagName))
+			{
+				Map<Attribute,Object> styleAttrs = new HashMap<Attribute,Object>();
+				styleAttrs.put(TextAttribute.SUPERSCRIPT, TextAttribute.SUPERSCRIPT_SUB);
+				parseRun(styledText, tokenizer, styleAttrs);
+			}
+			else if (NODE_font.equalsIgnoreCase(tagName))
+			{
+				parseRun(styledText, tokenizer, getFontAttributes(tokenizer));
+			}
+			else if (NODE_br.equalsIgnoreCase(tagName))
+			{
+				styledText.append("\n");
+
+				int startIndex = styledText.length();
+				resizeRuns(styledText.getRuns(), startIndex, 1);
+
+				parseStyle(styledText, tokenizer);
+				styledText.addRun(new JRStyledText.Run(new HashMap<Attribute,Object>(), startIndex, styledText.length()));
+
+				if (startIndex < styledText.length())
+				{
+					styledText.append("\n");
+					resizeRuns(styledText.getRuns(), startIndex, 1);
+				}
+			}
+			else if (NODE_li.equalsIgnoreCase(tagName))
+			{
+				String tmpText = styledText.getText();
+				if (tmpText.length() > 0 && !tmpText.endsWith("\n"))
+				{
+					styledText.append("\n");
+				}
+				styledText.append(" \u2022 ");
+
+				int startIndex = styledText.length();
+				resizeRuns(styledText.getRuns(), startIndex, 1);
+				parseStyle(styledText, tokenizer);
+				styledText.addRun(new JRStyledText.Run(new HashMap<Attribute,Object>(), startIndex, styledText.length()));
+				
+				if (tokenizer.isLineBreakAfterItem())
+				{
+					styledText.append("\n");
+					resizeRuns(styledText.getRuns(), startIndex, 1);
+				}
+			}
+			else if (NODE_a.equalsIgnoreCase(tagName) && hyperlink == null)
+			{
+				hyperlinksFound = true;
+				
+				parseRun(styledText, tokenizer, createHyperlink(tokenizer));
+				
+				hyperlink = null;
+			}
+			else if (NODE_param.equalsIgnoreCase(tagName) && hyperlink != null)
+			{
+				JRPrintHyperlinkParameter parameter = createHyperlinkParameter(tokenizer);
+				
+				String strValue = tokenizer.readTextContent();
+				Object value = JRValueStringUtils.deserialize(parameter.getValueClass(), strValue);
+				parameter.setValue(value);
+				
+				hyperlink.addHyperlinkParameter(parameter);
+			}
+			else
+			{
+				// invalid styled text tag
+				throw UnsupportedMarkupException.INSTANCE;
 			}
 		}
 	}
 
+	/**
+	 *
+	 */
+	private void parseRun(JRStyledText styledText, MarkupTokenizer tokenizer, Map<Attribute,Object> styleAttrs) throws UnsupportedMarkupException
+	{
+		int startIndex = styledText.length();
+
+		parseStyle(styledText, tokenizer);
+
+		styledText.addRun(new JRStyledText.Run(styleAttrs, startIndex, styledText.length()));
+	}
 
 	/**
 	 *
 	 */
-	private StringBuilder writeStyleAttributes(Map<Attribute,Object> parentAttrs,  Map<Attribute,Object> attrs)
+	private Map<Attribute,Object> getStyleAttributes(TagAttributes tagAttrs)
 	{
-		StringBuilder sb = new StringBuilder();
-		
-		Object value = attrs.get(TextAttribute.FAMILY);
-		Object oldValue = parentAttrs.get(TextAttribute.FAMILY);
-		
-		if (value != null && !value.equals(oldValue))
+		Map<Attribute,Object> styleAttrs = new HashMap<Attribute,Object>();
+
+		String value = tagAttrs.getAttribute(ATTRIBUTE_fontName);
+		if (value != null)
 		{
-			sb.append(SPACE);
-			sb.append(ATTRIBUTE_fontName);
-			sb.append(EQUAL_QUOTE);
-			sb.append(value);
-			sb.append(QUOTE);
+			styleAttrs.put(TextAttribute.FAMILY, value);
 		}
 
-		value = attrs.get(TextAttribute.WEIGHT);
-		oldValue = parentAttrs.get(TextAttribute.WEIGHT);
-
-		if (value != null && !value.equals(oldValue))
+		value = tagAttrs.getAttribute(ATTRIBUTE_isBold);
+		if (value != null)
 		{
-			sb.append(SPACE);
-			sb.append(ATTRIBUTE_isBold);
-			sb.append(EQUAL_QUOTE);
-			sb.append(value.equals(TextAttribute.WEIGHT_BOLD));
-			sb.append(QUOTE);
+			styleAttrs.put(
+				TextAttribute.WEIGHT,
+				Boolean.valueOf(value) ? TextAttribute.WEIGHT_BOLD : TextAttribute.WEIGHT_REGULAR
+				);
 		}
 
-		value = attrs.get(TextAttribute.POSTURE);
-		oldValue = parentAttrs.get(TextAttribute.POSTURE);
-
-		if (value != null && !value.equals(oldValue))
+		value = tagAttrs.getAttribute(ATTRIBUTE_isItalic);
+		if (value != null)
 		{
-			sb.append(SPACE);
-			sb.append(ATTRIBUTE_isItalic);
-			sb.append(EQUAL_QUOTE);
-			sb.append(value.equals(TextAttribute.POSTURE_OBLIQUE));
-			sb.append(QUOTE);
+			styleAttrs.put(
+				TextAttribute.POSTURE,
+				Boolean.valueOf(value) ? TextAttribute.POSTURE_OBLIQUE : TextAttribute.POSTURE_REGULAR
+				);
+		}
+
+		value = tagAttrs.getAttribute(ATTRIBUTE_isUnderline);
+		if (value != null)
+		{
+			styleAttrs.put(
+				TextAttribute.UNDERLINE,
+				Boolean.valueOf(value) ? TextAttribute.UNDERLINE_ON : null
+				);
+		}
+
+		value = tagAttrs.getAttribute(ATTRIBUTE_isStrikeThrough);
+		if (value != null)
+		{
+			styleAttrs.put(
+				TextAttribute.STRIKETHROUGH,
+				Boolean.valueOf(value) ? TextAttribute.STRIKETHROUGH_ON : null
+				);
+		}
+
+		value = tagAttrs.getAttribute(ATTRIBUTE_size);
+		if (value != null)
+		{
+			styleAttrs.put(TextAttribute.SIZE, Float.valueOf(value));
+		}
+
+		value = tagAttrs.getAttribute(ATTRIBUTE_pdfFontName);
+		if (value != null)
+		{
+			styleAttrs.put(JRTextAttribute.PDF_FONT_NAME, value);
+		}
+
+		value = tagAttrs.getAttribute(ATTRIBUTE_pdfEncoding);
+		if (value != null)
+		{
+			styleAttrs.put(JRTextAttribute.PDF_ENCODING, value);
+		}
+
+		value = tagAttrs.getAttribute(ATTRIBUTE_isPdfEmbedded);
+		if (value != null)
+		{
+			styleAttrs.put(JRTextAttribute.IS_PDF_EMBEDDED, Boolean.valueOf(value));
+		}
+
+		value = tagAttrs.getAttribute(ATTRIBUTE_forecolor);
+		if (value != null)
+		{
+			Color color = JRColorUtil.getColor(value, Color.black);
+			styleAttrs.put(TextAttribute.FOREGROUND, color);
+		}
+
+		value = tagAttrs.getAttribute(ATTRIBUTE_backcolor);
+		if (value != null)
+		{
+			Color color = JRColorUtil.getColor(value, Color.black);
+			styleAttrs.put(TextAttribute.BACKGROUND, color);
+		}
+		
+		return styleAttrs;
+	}
+
+	/**
+	 *
+	 */
+	private Map<Attribute,Object> getFontAttributes(TagAttributes tagAttrs)
+	{
+		Map<Attribute,Object> styleAttrs = new HashMap<Attribute,Object>();
+
+		String value = tagAttrs.getAttribute(ATTRIBUTE_size);
+		if (value != null)
+		{
+			styleAttrs.put(TextAttribute.SIZE, Float.valueOf(value));
+		}
+
+		value = tagAttrs.getAttribute(ATTRIBUTE_color);
+		if (value != null)
+		{
+			Color color = JRColorUtil.getColor(value, Color.black);
+			styleAttrs.put(TextAttribute.FOREGROUND, color);
+		}
+
+		String fontFaces = tagAttrs.getAttribute(ATTRIBUTE_fontFace);
+		if (fontFaces != null) 
+		{
+			StringTokenizer t = new StringTokenizer(fontFaces, ",");
+			while (t.hasMoreTokens()) 
+			{
+				String face = t.nextToken().trim();
+				if (AVAILABLE_FONT_FACE_NAMES.contains(face)) 
+				{
+					styleAttrs.put(TextAttribute.FAMILY, face);
+					break;
+				}
+			}
+		}
+		
+		return styleAttrs;
+	}
+
+	/**
+	 * Creates the current hyperlink and returns the style attributes that refer to it.
+	 */
+	private Map<Attribute,Object> createHyperlink(TagAttributes tagAttrs)
+	{
+		Map<Attribute,Object> styleAttrs = new HashMap<Attribute,Object>();
+
+		hyperlink = new JRBasePrintHyperlink();
+		hyperlink.setHyperlinkType(HyperlinkTypeEnum.REFERENCE);
+		styleAttrs.put(JRTextAttribute.HYPERLINK, hyperlink);
+		
+		String value = tagAttrs.getAttribute(ATTRIBUTE_href);
+		if (value != null)
+		{
+			hyperlink.setHyperlinkReference(value);
+		}
+
+		value = tagAttrs.getAttribute(ATTRIBUTE_type);
+		if (value != null)
+		{
+			hyperlink.setLinkType(value);
+		}
+
+		value = tagAttrs.getAttribute(ATTRIBUTE_target);
+		if (value != null)
+		{
+			hyperlink.setLinkTarget(value);
+		}
+		
+		return styleAttrs;
+	}
+
+	/**
+	 *
+	 */
+	private JRPrintHyperlinkParameter createHyperlinkParameter(TagAttributes tagAttrs)
+	{
+		JRPrintHyperlinkParameter parameter = new JRPrintHyperlinkParameter();
+		
+		String value = tagAttrs.getAttribute(ATTRIBUTE_name);
+		if (value != null)
+		{
+			parameter.setName(value);
+		}
+
+		value = tagAttrs.getAttribute(ATTRIBUTE_valueClass);
+		if (value != null)
+		{
+			parameter.setValueClass(value);
+		}
+		
+		return parameter;
+	}
+
+	/**
+	 *
+	 */
+	private void resizeRuns(List<Run> runs, int startIndex, int count)
+	{
+		for (int j = 0; j < runs.size(); j++)
+		{
+			JRStyledText.Run run = runs.get(j);
+			if (run.startIndex <= startIndex && run.endIndex > startIndex - count)
+			{
+				run.endIndex += count;
+			}
+		}
+	}
+
+
+	/**
+	 *
+	 */
+	private StringBuilder writeStyleAttributes(Map<Attribute,Object> parentAttrs,  Map<Attribute,Object> attrs)
+	{
+		StringBuilder sb = new StringBuilder();
+		
+		Object value = attrs.get(TextAttribute.FAMILY);
+		Object oldValue = parentAttrs.get(TextAttribute.FAMILY);
+		
+		if (value != null && !value.equals(oldValue))
+		{
+			sb.append(SPACE);
+			sb.append(ATTRIBUTE_fontName);
+			sb.append(EQUAL_QUOTE);
+			sb.append(value);
+			sb.append(QUOTE);
+		}
+
+		value = attrs.get(TextAttribute.WEIGHT);
+		oldValue = parentAttrs.get(TextAttribute.WEIGHT);
+
+		if (value != null && !value.equals(oldValue))
+		{
+			sb.append(SPACE);
+			sb.append(ATTRIBUTE_isBold);
+			sb.append(EQUAL_QUOTE);
+			sb.append(value.equals(TextAttribute.WEIGHT_BOLD));
+			sb.append(QUOTE);
+		}
+
+		value = attrs.get(TextAttribute.POSTURE);
+		oldValue = parentAttrs.get(TextAttribute.POSTURE);
+
+		if (value != null && !value.equals(oldValue))
+		{
+			sb.append(SPACE);
+			sb.append(ATTRIBUTE_isItalic);
+			sb.append(EQUAL_QUOTE);
+			sb.append(value.equals(TextAttribute.POSTURE_OBLIQUE));
+			sb.append(QUOTE);
 		}
 
 		value = attrs.get(TextAttribute.UNDERLINE);
@@ -1040,4 +1322,673 @@ public class JRStyledTextParser implements ErrorHandler
 		}
 	}
 
+	/**
+	 * Gives access to the attributes of a styled text tag.
+	 */
+	private interface TagAttributes
+	{
+		String getAttribute(String name);
+	}
+
+	/**
+	 *
+	 */
+	private static class NodeTagAttributes implements TagAttributes
+	{
+		private final NamedNodeMap nodeAttrs;
+		
+		public NodeTagAttributes(Node node)
+		{
+			this.nodeAttrs = node.getAttributes();
+		}
+
+		@Override
+		public String getAttribute(String name)
+		{
+			Node attributeNode = nodeAttrs.getNamedItem(name);
+			return attributeNode == null ? null : attributeNode.getNodeValue();
+		}
+	}
+
+	/**
+	 * Key used to cache parsed styled texts.
+	 */
+	private static class ParseKey
+	{
+		private final String text;
+		private final Map<Attribute,Object> attributes;
+		private final Locale locale;
+		private final int hash;
+		
+		public ParseKey(String text, Map<Attribute,Object> attributes, Locale locale)
+		{
+			this.text = text;
+			this.attributes = attributes;
+			this.locale = locale;
+			
+			int hashCode = text.hashCode();
+			hashCode = 31 * hashCode + (attributes == null ? 0 : attributes.hashCode());
+			hashCode = 31 * hashCode + (locale == null ? 0 : locale.hashCode());
+			this.hash = hashCode;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (obj == this)
+			{
+				return true;
+			}
+			
+			if (!(obj instanceof ParseKey))
+			{
+				return false;
+			}
+			
+			ParseKey key = (ParseKey) obj;
+			return hash == key.hash && text.equals(key.text)
+					&& (attributes == null ? key.attributes == null : attributes.equals(key.attributes))
+					&& (locale == null ? key.locale == null : locale.equals(key.locale));
+		}
+	}
+
+	/**
+	 * Signals that the markup cannot be handled by {@link MarkupTokenizer}.
+	 * 
+	 * The exception is preallocated and does not record the stack trace.
+	 */
+	private static class UnsupportedMarkupException extends Exception
+	{
+		private static final long serialVersionUID = JRConstants.SERIAL_VERSION_UID;
+		
+		private static final UnsupportedMarkupException INSTANCE = new UnsupportedMarkupException();
+		
+		private UnsupportedMarkupException()
+		{
+			super(null, null, false, false);
+		}
+	}
+
+	/**
+	 * Streaming tokenizer for styled text markup.
+	 * 
+	 * <p>
+	 * The tokenizer handles the subset of XML used by styled texts: elements with quoted attributes,
+	 * character data, predefined entities and character references.
+	 * Other constructs such as comments, CDATA sections and processing instructions, as well as malformed
+	 * markup, result in {@link UnsupportedMarkupException} so that the text is parsed as an XML document.
+	 * </p>
+	 */
+	private static final class MarkupTokenizer implements TagAttributes
+	{
+		private static final int END_OF_TEXT = 0;
+		private static final int TEXT = 1;
+		private static final int START_TAG = 2;
+		private static final int END_TAG = 3;
+		
+		private static final String[] KNOWN_NAMES = new String[]{
+			NODE_style, NODE_bold, NODE_italic, NODE_underline, NODE_sup, NODE_sub, NODE_font, NODE_br,
+			NODE_li, NODE_a, NODE_param, ATTRIBUTE_fontName, ATTRIBUTE_fontFace, ATTRIBUTE_color, ATTRIBUTE_size,
+			ATTRIBUTE_isBold, ATTRIBUTE_isItalic, ATTRIBUTE_isUnderline, ATTRIBUTE_isStrikeThrough,
+			ATTRIBUTE_forecolor, ATTRIBUTE_backcolor, ATTRIBUTE_pdfFontName, ATTRIBUTE_pdfEncoding,
+			ATTRIBUTE_isPdfEmbedded, ATTRIBUTE_type, ATTRIBUTE_href, ATTRIBUTE_target, ATTRIBUTE_name,
+			ATTRIBUTE_valueClass
+		};
+		
+		private String markup;
+		private int length;
+		private int position;
+		
+		private String[] openTags = new String[8];
+		private int openTagsCount;
+		private boolean emptyTag;
+		
+		private String tagName;
+		private String[] attributeNames = new String[8];
+		private String[] attributeValues = new String[8];
+		private int attributeCount;
+		
+		private String text;
+		private final StringBuilder buffer = new StringBuilder();
+		
+		public void reset(String markup)
+		{
+			this.markup = markup;
+			this.length = markup == null ? 0 : markup.length();
+			this.position = 0;
+			this.openTagsCount = 0;
+			this.emptyTag = false;
+			this.tagName = null;
+			this.attributeCount = 0;
+			this.text = null;
+		}
+		
+		public String getTagName()
+		{
+			return tagName;
+		}
+		
+		public String getText()
+		{
+			return text;
+		}
+
+		@Override
+		public String getAttribute(String name)
+		{
+			for (int i = 0; i < attributeCount; i++)
+			{
+				if (attributeNames[i].equals(name))
+				{
+					return attributeValues[i];
+				}
+			}
+			return null;
+		}
+		
+		/**
+		 * Reads the next token.
+		 * 
+		 * Empty element tags produce a start tag token followed by an end tag token.
+		 */
+		public int next() throws UnsupportedMarkupException
+		{
+			if (emptyTag)
+			{
+				emptyTag = false;
+				--openTagsCount;
+				return END_TAG;
+			}
+			
+			if (position >= length)
+			{
+				if (openTagsCount > 0)
+				{
+					throw UnsupportedMarkupException.INSTANCE;
+				}
+				return END_OF_TEXT;
+			}
+			
+			if (markup.charAt(position) != '<')
+			{
+				readText();
+				return TEXT;
+			}
+			
+			if (position + 1 < length && markup.charAt(position + 1) == '/')
+			{
+				position += 2;
+				String name = readName();
+				skipWhitespace();
+				expect('>');
+				
+				if (openTagsCount == 0 || !openTags[openTagsCount - 1].equals(name))
+				{
+					throw UnsupportedMarkupException.INSTANCE;
+				}
+				--openTagsCount;
+				return END_TAG;
+			}
+			
+			++position;
+			tagName = readName();
+			attributeCount = 0;
+			while (true)
+			{
+				boolean whitespace = skipWhitespace();
+				if (position >= length)
+				{
+					throw UnsupportedMarkupException.INSTANCE;
+				}
+				
+				char c = markup.charAt(position);
+				if (c == '>')
+				{
+					++position;
+					break;
+				}
+				
+				if (c == '/')
+				{
+					++position;
+					expect('>');
+					emptyTag = true;
+					break;
+				}
+				
+				if (!whitespace)
+				{
+					throw UnsupportedMarkupException.INSTANCE;
+				}
+				
+				String attributeName = readName();
+				skipWhitespace();
+				expect('=');
+				skipWhitespace();
+				
+				char quote = position < length ? markup.charAt(position) : 0;
+				if (quote != '"' && quote != '\'')
+				{
+					throw UnsupportedMarkupException.INSTANCE;
+				}
+				++position;
+				
+				addAttribute(attributeName, readAttributeValue(quote));
+			}
+			
+			if (openTagsCount == openTags.length)
+			{
+				openTags = Arrays.copyOf(openTags, openTagsCount * 2);
+			}
+			openTags[openTagsCount++] = tagName;
+			return START_TAG;
+		}
+		
+		/**
+		 * Determines whether a line break needs to be added after a list item, 
+		 * that is if the item has a next sibling that is not another item and whose text does not start with a new line.
+		 */
+		public boolean isLineBreakAfterItem() throws UnsupportedMarkupException
+		{
+			int savedPosition = position;
+			int savedOpenTagsCount = openTagsCount;
+			try
+			{
+				int token = next();
+				if (token == END_OF_TEXT || token == END_TAG 
+						|| (token == START_TAG && NODE_li.equalsIgnoreCase(tagName)))
+				{
+					return false;
+				}
+				
+				int depth = 0;
+				while (token != TEXT)
+				{
+					depth += token == START_TAG ? 1 : -1;
+					if (depth == 0)
+					{
+						// the next sibling contains no text
+						return true;
+					}
+					token = next();
+				}
+				return !text.startsWith("\n");
+			}
+			finally
+			{
+				position = savedPosition;
+				openTagsCount = savedOpenTagsCount;
+				emptyTag = false;
+			}
+		}
+		
+		/**
+		 * Reads the text content of the current tag up to its end, skipping nested tags.
+		 */
+		public String readTextContent() throws UnsupportedMarkupException
+		{
+			String content = "";
+			StringBuilder contentBuilder = null;
+			int depth = 1;
+			while (depth > 0)
+			{
+				int token = next();
+				if (token == TEXT)
+				{
+					if (content.isEmpty())
+					{
+						content = text;
+					}
+					else
+					{
+						if (contentBuilder == null)
+						{
+							contentBuilder = new StringBuilder(content);
+						}
+						contentBuilder.append(text);
+					}
+				}
+				else
+				{
+					depth += token == START_TAG ? 1 : -1;
+				}
+			}
+			return contentBuilder == null ? content : contentBuilder.toString();
+		}
+		
+		private void addAttribute(String name, String value) throws UnsupportedMarkupException
+		{
+			if (getAttribute(name) != null)
+			{
+				// duplicate attribute
+				throw UnsupportedMarkupException.INSTANCE;
+			}
+			
+			if (attributeCount == attributeNames.length)
+			{
+				attributeNames = Arrays.copyOf(attributeNames, attributeCount * 2);
+				attributeValues = Arrays.copyOf(attributeValues, attributeCount * 2);
+			}
+			attributeNames[attributeCount] = name;
+			attributeValues[attributeCount] = value;
+			++attributeCount;
+		}
+		
+		private boolean skipWhitespace()
+		{
+			int start = position;
+			while (position < length && isWhitespace(markup.charAt(position)))
+			{
+				++position;
+			}
+			return position > start;
+		}
+		
+		private void expect(char c) throws UnsupportedMarkupException
+		{
+			if (position >= length || markup.charAt(position) != c)
+			{
+				throw UnsupportedMarkupException.INSTANCE;
+			}
+			++position;
+		}
+		
+		/**
+		 * Reads a tag or attribute name, accepting ASCII names only.
+		 */
+		private String readName() throws UnsupportedMarkupException
+		{
+			int start = position;
+			char c = position < length ? markup.charAt(position) : 0;
+			if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_'))
+			{
+				throw UnsupportedMarkupException.INSTANCE;
+			}
+			
+			++position;
+			while (position < length)
+			{
+				c = markup.charAt(position);
+				if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') 
+						|| c == '_' || c == '-' || c == '.')
+				{
+					++position;
+				}
+				else if (c == '>' || c == '/' || c == '=' || isWhitespace(c))
+				{
+					break;
+				}
+				else
+				{
+					throw UnsupportedMarkupException.INSTANCE;
+				}
+			}
+			
+			int nameLength = position - start;
+			for (String name : KNOWN_NAMES)
+			{
+				if (name.length() == nameLength && markup.startsWith(name, start))
+				{
+					return name;
+				}
+			}
+			return markup.substring(start, position);
+		}
+		
+		private void readText() throws UnsupportedMarkupException
+		{
+			int start = position;
+			while (position < length)
+			{
+				char c = markup.charAt(position);
+				if (c == '<')
+				{
+					break;
+				}
+				
+				if (c == '&' || c == '\r')
+				{
+					// the text needs to be decoded
+					buffer.setLength(0);
+					buffer.append(markup, start, position);
+					readDecoded('<', false);
+					text = buffer.toString();
+					return;
+				}
+				
+				readChar(c);
+			}
+			
+			text = markup.substring(start, position);
+		}
+		
+		private String readAttributeValue(char quote) throws UnsupportedMarkupException
+		{
+			int start = position;
+			while (true)
+			{
+				if (position >= length)
+				{
+					throw UnsupportedMarkupException.INSTANCE;
+				}
+				
+				char c = markup.charAt(position);
+				if (c == quote)
+				{
+					String value = markup.substring(start, position);
+					++position;
+					return value;
+				}
+				
+				if (c == '&' || (isWhitespace(c) && c != ' '))
+				{
+					// the value needs to be decoded and normalized
+					buffer.setLength(0);
+					buffer.append(markup, start, position);
+					readDecoded(quote, true);
+					if (position >= length)
+					{
+						throw UnsupportedMarkupException.INSTANCE;
+					}
+					++position;
+					return buffer.toString();
+				}
+				
+				if (c == '<')
+				{
+					throw UnsupportedMarkupException.INSTANCE;
+				}
+				
+				readChar(c);
+			}
+		}
+		
+		/**
+		 * Decodes characters into the buffer up to the delimiter, 
+		 * applying XML line end and (optionally) attribute value normalization.
+		 */
+		private void readDecoded(char delimiter, boolean attribute) throws UnsupportedMarkupException
+		{
+			while (position < length)
+			{
+				char c = markup.charAt(position);
+				if (c == delimiter)
+				{
+					break;
+				}
+				
+				if (c == '&')
+				{
+					readReference();
+				}
+				else if (c == '\r')
+				{
+					++position;
+					if (position < length && markup.charAt(position) == '\n')
+					{
+						++position;
+					}
+					buffer.append(attribute ? ' ' : '\n');
+				}
+				else if (attribute && (c == '\n' || c == '\t'))
+				{
+					++position;
+					buffer.append(' ');
+				}
+				else if (attribute && c == '<')
+				{
+					throw UnsupportedMarkupException.INSTANCE;
+				}
+				else
+				{
+					int charStart = position;
+					readChar(c);
+					buffer.append(markup, charStart, position);
+				}
+			}
+		}
+		
+		/**
+		 * Validates and skips a character (or a surrogate pair).
+		 */
+		private void readChar(char c) throws UnsupportedMarkupException
+		{
+			if (c < 0x20)
+			{
+				if (c != '\t' && c != '\n')
+				{
+					throw UnsupportedMarkupException.INSTANCE;
+				}
+			}
+			else if (c == ']')
+			{
+				if (markup.startsWith("]]>", position))
+				{
+					throw UnsupportedMarkupException.INSTANCE;
+				}
+			}
+			else if (Character.isHighSurrogate(c))
+			{
+				if (position + 1 >= length || !Character.isLowSurrogate(markup.charAt(position + 1)))
+				{
+					throw UnsupportedMarkupException.INSTANCE;
+				}
+				++position;
+			}
+			else if (Character.isLowSurrogate(c) || c == '\uFFFE' || c == '\uFFFF')
+			{
+				throw UnsupportedMarkupException.INSTANCE;
+			}
+			++position;
+		}
+		
+		/**
+		 * Decodes a predefined entity or a character reference into the buffer.
+		 */
+		private void readReference() throws UnsupportedMarkupException
+		{
+			int end = markup.indexOf(';', position + 1);
+			if (end < 0)
+			{
+				throw UnsupportedMarkupException.INSTANCE;
+			}
+			
+			int nameStart = position + 1;
+			int nameLength = end - nameStart;
+			if (nameLength > 1 && markup.charAt(nameStart) == '#')
+			{
+				int radix = 10;
+				int index = nameStart + 1;
+				if (markup.charAt(index) == 'x')
+				{
+					radix = 16;
+					++index;
+					if (index == end)
+					{
+						throw UnsupportedMarkupException.INSTANCE;
+					}
+				}
+				
+				int codePoint = 0;
+				for (; index < end; ++index)
+				{
+					char c = markup.charAt(index);
+					int digit;
+					if (c >= '0' && c <= '9')
+					{
+						digit = c - '0';
+					}
+					else if (radix == 16 && c >= 'a' && c <= 'f')
+					{
+						digit = c - 'a' + 10;
+					}
+					else if (radix == 16 && c >= 'A' && c <= 'F')
+					{
+						digit = c - 'A' + 10;
+					}
+					else
+					{
+						throw UnsupportedMarkupException.INSTANCE;
+					}
+					
+					codePoint = codePoint * radix + digit;
+					if (codePoint > Character.MAX_CODE_POINT)
+					{
+						throw UnsupportedMarkupException.INSTANCE;
+					}
+				}
+				
+				if (!isXmlChar(codePoint))
+				{
+					throw UnsupportedMarkupException.INSTANCE;
+				}
+				buffer.appendCodePoint(codePoint);
+			}
+			else if (nameLength == 2 && markup.startsWith("lt", nameStart))
+			{
+				buffer.append('<');
+			}
+			else if (nameLength == 2 && markup.startsWith("gt", nameStart))
+			{
+				buffer.append('>');
+			}
+			else if (nameLength == 3 && markup.startsWith("amp", nameStart))
+			{
+				buffer.append('&');
+			}
+			else if (nameLength == 4 && markup.startsWith("quot", nameStart))
+			{
+				buffer.append('"');
+			}
+			else if (nameLength == 4 && markup.startsWith("apos", nameStart))
+			{
+				buffer.append('\'');
+			}
+			else
+			{
+				throw UnsupportedMarkupException.INSTANCE;
+			}
+			
+			position = end + 1;
+		}
+		
+		private static boolean isWhitespace(char c)
+		{
+			return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+		}
+		
+		private static boolean isXmlChar(int codePoint)
+		{
+			return codePoint == 0x9 || codePoint == 0xA || codePoint == 0xD
+					|| (codePoint >= 0x20 && codePoint <= 0xD7FF)
+					|| (codePoint >= 0xE000 && codePoint <= 0xFFFD)
+					|| (codePoint >= 0x10000 && codePoint <= Character.MAX_CODE_POINT);
+		}
+	}
 }
@@ -27,6 +27,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.List;
 
 import net.sf.jasperreports.engine.DefaultJasperReportsContext;
 import net.sf.jasperreports.engine.JRPropertiesUtil;
@@ -155,16 +156,109 @@ public class JRSwapFile
 		long[] offsets = reserveFreeBlocks(blockCount);
 		int lastBlockSize = (data.length - 1) % blockSize + 1;
 		SwapHandle handle = new SwapHandle(offsets, lastBlockSize);
+		
+		// consecutive blocks are written in one operation
+		int runStart = 0;
 		for (int i = 0; i < blockCount; ++i)
 		{
-			int dataSize = i < blockCount - 1 ? blockSize : lastBlockSize;
-			int dataOffset = i * blockSize;			
-			write(data, dataSize, dataOffset, offsets[i]);
+			if (i == blockCount - 1 || offsets[i + 1] != offsets[i] + blockSize)
+			{
+				int dataOffset = runStart * blockSize;
+				int dataSize = (i == blockCount - 1 ? data.length : (i + 1) * blockSize) - dataOffset;
+				write(data, dataSize, dataOffset, offsets[runStart]);
+				runStart = i + 1;
+			}
 		}
 		
 		return handle;
 	}
 
+	
+	/**
+	 * Allocates areas in the swap file and writes several data chunks in them.
+	 * <p>
+	 * The areas are allocated at once, and when consecutive blocks are allocated
+	 * for several chunks the data is written in a single operation.
+	 * 
+	 * @param data the data chunks for which to allocate areas in the file
+	 * @return handles to the allocated areas, in the order of the data chunks
+	 * @throws IOException
+	 */
+	public SwapHandle[] write(List<byte[]> data) throws IOException
+	{
+		int chunkCount = data.size();
+		int totalBlockCount = 0;
+		for (byte[] chunk : data)
+		{
+			totalBlockCount += (chunk.length - 1) / blockSize + 1;
+		}
+		
+		long[] allOffsets = reserveFreeBlocks(totalBlockCount);
+		
+		// split the offsets into handles
+		SwapHandle[] handles = new SwapHandle[chunkCount];
+		int[] chunkIndexes = new int[totalBlockCount];
+		int[] chunkBlockIndexes = new int[totalBlockCount];
+		for (int chunkIdx = 0, blockIdx = 0; chunkIdx < chunkCount; ++chunkIdx)
+		{
+			byte[] chunk = data.get(chunkIdx);
+			int blockCount = (chunk.length - 1) / blockSize + 1;
+			long[] offsets = new long[blockCount];
+			System.arraycopy(allOffsets, blockIdx, offsets, 0, blockCount);
+			handles[chunkIdx] = new SwapHandle(offsets, (chunk.length - 1) % blockSize + 1);
+			
+			for (int i = 0; i < blockCount; ++i, ++blockIdx)
+			{
+				chunkIndexes[blockIdx] = chunkIdx;
+				chunkBlockIndexes[blockIdx] = i;
+			}
+		}
+		
+		// write runs of consecutive blocks
+		byte[] runBuffer = null;
+		int runStart = 0;
+		for (int blockIdx = 0; blockIdx < totalBlockCount; ++blockIdx)
+		{
+			if (blockIdx < totalBlockCount - 1 && allOffsets[blockIdx + 1] == allOffsets[blockIdx] + blockSize)
+			{
+				continue;
+			}
+			
+			if (chunkIndexes[runStart] == chunkIndexes[blockIdx])
+			{
+				// the run is contained in a single chunk, writing directly from the chunk
+				byte[] chunk = data.get(chunkIndexes[runStart]);
+				int dataOffset = chunkBlockIndexes[runStart] * blockSize;
+				int dataEnd = Math.min(chunk.length, (chunkBlockIndexes[blockIdx] + 1) * blockSize);
+				write(chunk, dataEnd - dataOffset, dataOffset, allOffsets[runStart]);
+			}
+			else
+			{
+				// copying the blocks of several chunks into one buffer
+				int runLength = (blockIdx - runStart + 1) * blockSize;
+				if (runBuffer == null || runBuffer.length < runLength)
+				{
+					runBuffer = new byte[runLength];
+				}
+				
+				int runSize = 0;
+				for (int i = runStart; i <= blockIdx; ++i)
+				{
+					byte[] chunk = data.get(chunkIndexes[i]);
+					int dataOffset = chunkBlockIndexes[i] * blockSize;
+					int dataSize = Math.min(blockSize, chunk.length - dataOffset);
+					System.arraycopy(chunk, dataOffset, runBuffer, (i - runStart) * blockSize, dataSize);
+					runSize = (i - runStart) * blockSize + dataSize;
+				}
+				write(runBuffer, runSize, 0, allOffsets[runStart]);
+			}
+			
+			runStart = blockIdx + 1;
+		}
+		
+		return handles;
+	}
+
 
 	protected void write(byte[] data, int dataSize, int dataOffset, long fileOffset) throws IOException
 	{
@@ -190,11 +284,17 @@ public class JRSwapFile
 		int totalLength = (offsets.length - 1) * blockSize + handle.getLastSize();
 		byte[] data = new byte[totalLength];
 		
+		// consecutive blocks are read in one operation
+		int runStart = 0;
 		for (int i = 0; i < offsets.length; ++i)
 		{
-			int dataOffset = i * blockSize;
-			int dataLength = i < offsets.length - 1 ? blockSize : handle.getLastSize();
-			read(data, dataOffset, dataLength, offsets[i]);
+			if (i == offsets.length - 1 || offsets[i + 1] != offsets[i] + blockSize)
+			{
+				int dataOffset = runStart * blockSize;
+				int dataLength = (i == offsets.length - 1 ? totalLength : (i + 1) * blockSize) - dataOffset;
+				read(data, dataOffset, dataLength, offsets[runStart]);
+				runStart = i + 1;
+			}
 		}
 		
 		if (free)
@@ -0,0 +1,566 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.engine.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Fast LZ77 family compression implemented in Java.
+ * <p>
+ * The data is compressed in independent blocks using a greedy hash based match finder,
+ * in a format similar to LZ4.  The compression ratio is lower than the one achieved by
+ * {@link DeflateStreamCompression deflate}, but compressing and uncompressing is
+ * considerably faster, which makes it a good fit for virtualizer stores where pages
+ * are uncompressed each time they are paged in.
+ * <p>
+ * A preset dictionary can be used, in which case matches are also looked up in the dictionary.
+ */
+public class LZStreamCompression implements DictionaryStreamCompression
+{
+	
+	public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+	
+	protected static final int MIN_MATCH = 4;
+	protected static final int MAX_OFFSET = 0xFFFF;
+	protected static final int HASH_BITS = 14;
+	protected static final int MAX_DICTIONARY_SIZE = MAX_OFFSET;
+	
+	private final int blockSize;
+	
+	public LZStreamCompression()
+	{
+		this(DEFAULT_BLOCK_SIZE);
+	}
+	
+	/**
+	 * Creates a compression object.
+	 * 
+	 * @param blockSize the size of the blocks in which data is compressed
+	 */
+	public LZStreamCompression(int blockSize)
+	{
+		this.blockSize = blockSize;
+	}
+
+	@Override
+	public OutputStream compressedOutput(OutputStream stream)
+	{
+		return compressedOutput(stream, null);
+	}
+
+	@Override
+	public InputStream uncompressedInput(InputStream stream)
+	{
+		return uncompressedInput(stream, null);
+	}
+
+	@Override
+	public OutputStream compressedOutput(OutputStream stream, byte[] dictionary)
+	{
+		return new LZOutputStream(stream, blockSize, dictionary);
+	}
+
+	@Override
+	public InputStream uncompressedInput(InputStream stream, byte[] dictionary)
+	{
+		return new LZInputStream(stream, blockSize, dictionary);
+	}
+	
+	protected static byte[] dictionaryWindow(byte[] dictionary, int blockSize)
+	{
+		int dictionaryLength = dictionaryLength(dictionary);
+		byte[] window = new byte[dictionaryLength + blockSize];
+		if (dictionaryLength > 0)
+		{
+			// using the end of the dictionary if it's too large
+			System.arraycopy(dictionary, dictionary.length - dictionaryLength, window, 0, dictionaryLength);
+		}
+		return window;
+	}
+	
+	protected static int dictionaryLength(byte[] dictionary)
+	{
+		return dictionary == null ? 0 : Math.min(dictionary.length, MAX_DICTIONARY_SIZE);
+	}
+	
+	protected static int readInt(byte[] data, int offset)
+	{
+		return (data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8) 
+				| ((data[offset + 2] & 0xFF) << 16) | ((data[offset + 3] & 0xFF) << 24);
+	}
+	
+	protected static int hash(int value)
+	{
+		return (value * -1640531535) >>> (32 - HASH_BITS);
+	}
+	
+	protected static void writeVarInt(OutputStream out, int value) throws IOException
+	{
+		while ((value & ~0x7F) != 0)
+		{
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+	
+	protected static int readVarInt(InputStream in) throws IOException
+	{
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7)
+		{
+			int b = in.read();
+			if (b < 0)
+			{
+				throw new EOFException();
+			}
+			
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+			{
+				return value;
+			}
+		}
+		throw new IOException("Malformed compressed data");
+	}
+	
+	protected static void readFully(InputStream in, byte[] buffer, int offset, int length) throws IOException
+	{
+		while (length > 0)
+		{
+			int read = in.read(buffer, offset, length);
+			if (read < 0)
+			{
+				throw new EOFException();
+			}
+			offset += read;
+			length -= read;
+		}
+	}
+
+	protected static class LZOutputStream extends OutputStream
+	{
+		private final OutputStream out;
+		private final int dictionaryLength;
+		private final byte[] window;
+		private final int[] dictionaryHashTable;
+		private final int[] hashTable;
+		private byte[] compressed;
+		private int position;
+		private boolean closed;
+		
+		public LZOutputStream(OutputStream out, int blockSize, byte[] dictionary)
+		{
+			this.out = out;
+			this.dictionaryLength = dictionaryLength(dictionary);
+			this.window = dictionaryWindow(dictionary, blockSize);
+			this.position = dictionaryLength;
+			
+			this.hashTable = new int[1 << HASH_BITS];
+			if (dictionaryLength >= MIN_MATCH)
+			{
+				// the hash table for the dictionary is computed once and copied for each block
+				dictionaryHashTable = new int[1 << HASH_BITS];
+				for (int i = 0; i + MIN_MATCH <= dictionaryLength; ++i)
+				{
+					dictionaryHashTable[hash(readInt(window, i))] = i + 1;
+				}
+			}
+			else
+			{
+				dictionaryHashTable = null;
+			}
+		}
+
+		@Override
+		public void write(int b) throws IOException
+		{
+			if (position == window.length)
+			{
+				writeBlock();
+			}
+			window[position++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			while (len > 0)
+			{
+				if (position == window.length)
+				{
+					writeBlock();
+				}
+				
+				int count = Math.min(len, window.length - position);
+				System.arraycopy(b, off, window, position, count);
+				position += count;
+				off += count;
+				len -= count;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException
+		{
+			writeBlock();
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			if (!closed)
+			{
+				closed = true;
+				writeBlock();
+				// end marker
+				writeVarInt(out, 0);
+				out.close();
+			}
+		}
+		
+		protected void writeBlock() throws IOException
+		{
+			int length = position - dictionaryLength;
+			if (length == 0)
+			{
+				return;
+			}
+			
+			int maxCompressedLength = length + length / 255 + 16;
+			if (compressed == null || compressed.length < maxCompressedLength)
+			{
+				compressed = new byte[maxCompressedLength];
+			}
+			
+			int compressedLength = compress(length);
+			if (compressedLength < length)
+			{
+				writeVarInt(out, (length << 1) | 1);
+				writeVarInt(out, compressedLength);
+				out.write(compressed, 0, compressedLength);
+			}
+			else
+			{
+				// not compressible
+				writeVarInt(out, length << 1);
+				out.write(window, dictionaryLength, length);
+			}
+			
+			position = dictionaryLength;
+		}
+		
+		protected int compress(int length)
+		{
+			if (dictionaryHashTable == null)
+			{
+				Arrays.fill(hashTable, 0);
+			}
+			else
+			{
+				System.arraycopy(dictionaryHashTable, 0, hashTable, 0, hashTable.length);
+			}
+			
+			byte[] src = window;
+			int start = dictionaryLength;
+			int end = start + length;
+			int matchLimit = end - MIN_MATCH;
+			int anchor = start;
+			int pos = start;
+			int outPos = 0;
+			while (pos <= matchLimit)
+			{
+				int value = readInt(src, pos);
+				int hash = hash(value);
+				int candidate = hashTable[hash] - 1;
+				hashTable[hash] = pos + 1;
+				
+				if (candidate < 0 || pos - candidate > MAX_OFFSET || readInt(src, candidate) != value)
+				{
+					// skipping faster through incompressible data
+					pos += 1 + ((pos - anchor) >>> 6);
+					continue;
+				}
+				
+				int matchLength = MIN_MATCH;
+				while (pos + matchLength < end && src[candidate + matchLength] == src[pos + matchLength])
+				{
+					++matchLength;
+				}
+				
+				outPos = writeSequence(anchor, pos - anchor, pos - candidate, matchLength, outPos);
+				
+				pos += matchLength;
+				anchor = pos;
+				
+				if (pos - 2 >= start && pos - 2 <= matchLimit)
+				{
+					hashTable[hash(readInt(src, pos - 2))] = pos - 1;
+				}
+			}
+			
+			// last literals
+			return writeSequence(anchor, end - anchor, 0, 0, outPos);
+		}
+		
+		protected int writeSequence(int literalStart, int literalLength, int offset, int matchLength, int outPos)
+		{
+			byte[] dest = compressed;
+			int tokenPos = outPos++;
+			int token;
+			
+			if (literalLength >= 15)
+			{
+				token = 15 << 4;
+				outPos = writeLength(literalLength - 15, outPos);
+			}
+			else
+			{
+				token = literalLength << 4;
+			}
+			
+			System.arraycopy(window, literalStart, dest, outPos, literalLength);
+			outPos += literalLength;
+			
+			if (matchLength > 0)
+			{
+				dest[outPos++] = (byte) offset;
+				dest[outPos++] = (byte) (offset >>> 8);
+				
+				int length = matchLength - MIN_MATCH;
+				if (length >= 15)
+				{
+					token |= 15;
+					outPos = writeLength(length - 15, outPos);
+				}
+				else
+				{
+					token |= length;
+				}
+			}
+			
+			dest[tokenPos] = (byte) token;
+			return outPos;
+		}
+		
+		protected int writeLength(int length, int outPos)
+		{
+			while (length >= 255)
+			{
+				compressed[outPos++] = (byte) 255;
+				length -= 255;
+			}
+			compressed[outPos++] = (byte) length;
+			return outPos;
+		}
+	}
+
+	protected static class LZInputStream extends InputStream
+	{
+		private final InputStream in;
+		private final int dictionaryLength;
+		private final byte[] window;
+		private byte[] compressed;
+		private int position;
+		private int limit;
+		private boolean finished;
+		
+		public LZInputStream(InputStream in, int blockSize, byte[] dictionary)
+		{
+			this.in = in;
+			this.dictionaryLength = dictionaryLength(dictionary);
+			this.window = dictionaryWindow(dictionary, blockSize);
+			this.position = dictionaryLength;
+			this.limit = dictionaryLength;
+		}
+
+		@Override
+		public int read() throws IOException
+		{
+			if (position == limit && !readBlock())
+			{
+				return -1;
+			}
+			return window[position++] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			if (len == 0)
+			{
+				return 0;
+			}
+			
+			if (position == limit && !readBlock())
+			{
+				return -1;
+			}
+			
+			int count = Math.min(len, limit - position);
+			System.arraycopy(window, position, b, off, count);
+			position += count;
+			return count;
+		}
+
+		@Override
+		public int available()
+		{
+			return limit - position;
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			in.close();
+		}
+		
+		protected boolean readBlock() throws IOException
+		{
+			if (finished)
+			{
+				return false;
+			}
+			
+			int header = readVarInt(in);
+			int length = header >>> 1;
+			if (length == 0)
+			{
+				finished = true;
+				return false;
+			}
+			
+			if (length > window.length - dictionaryLength)
+			{
+				throw new IOException("Compressed block too large: " + length);
+			}
+			
+			if ((header & 1) == 0)
+			{
+				readFully(in, window, dictionaryLength, length);
+			}
+			else
+			{
+				int compressedLength = readVarInt(in);
+				if (compressed == null || compressed.length < compressedLength)
+				{
+					compressed = new byte[compressedLength];
+				}
+				readFully(in, compressed, 0, compressedLength);
+				
+				int uncompressedLength = uncompress(compressedLength);
+				if (uncompressedLength != length)
+				{
+					throw new IOException("Malformed compressed data");
+				}
+			}
+			
+			position = dictionaryLength;
+			limit = dictionaryLength + length;
+			return true;
+		}
+		
+		protected int uncompress(int compressedLength) throws IOException
+		{
+			byte[] src = compressed;
+			byte[] dest = window;
+			int inPos = 0;
+			int outPos = dictionaryLength;
+			try
+			{
+				while (true)
+				{
+					int token = src[inPos++] & 0xFF;
+					
+					int literalLength = token >>> 4;
+					if (literalLength == 15)
+					{
+						int b;
+						do
+						{
+							b = src[inPos++] & 0xFF;
+							literalLength += b;
+						}
+						while (b == 255);
+					}
+					
+					System.arraycopy(src, inPos, dest, outPos, literalLength);
+					inPos += literalLength;
+					outPos += literalLength;
+					
+					if (inPos >= compressedLength)
+					{
+						break;
+					}
+					
+					int offset = (src[inPos] & 0xFF) | ((src[inPos + 1] & 0xFF) << 8);
+					inPos += 2;
+					
+					int matchLength = token & 0x0F;
+					if (matchLength == 15)
+					{
+						int b;
+						do
+						{
+							b = src[inPos++] & 0xFF;
+							matchLength += b;
+						}
+						while (b == 255);
+					}
+					matchLength += MIN_MATCH;
+					
+					int matchStart = outPos - offset;
+					if (offset == 0 || matchStart < 0)
+					{
+						throw new IOException("Malformed compressed data");
+					}
+					
+					if (offset >= matchLength)
+					{
+						System.arraycopy(dest, matchStart, dest, outPos, matchLength);
+						outPos += matchLength;
+					}
+					else
+					{
+						// overlapping match
+						for (int i = 0; i < matchLength; ++i)
+						{
+							dest[outPos++] = dest[matchStart + i];
+						}
+					}
+				}
+			}
+			catch (IndexOutOfBoundsException e)
+			{
+				throw new IOException("Malformed compressed data", e);
+			}
+			return outPos - dictionaryLength;
+		}
+	}
+}
@@ -23,6 +23,7 @@
  */
 package net.sf.jasperreports.engine.util;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -216,6 +217,16 @@ public class LinkedMap<K, V>
 		return entry.value;
 	}
 
+	/**
+	 * Adds the not-null keys of the map entries to a collection.
+	 * 
+	 * @param keys the collection to which the keys are added
+	 */
+	public void collectKeys(Collection<? super K> keys)
+	{
+		keys.addAll(map.keySet());
+	}
+
 	/**
 	 * Adds all entries from the map to this map, preserving the order.
 	 * 
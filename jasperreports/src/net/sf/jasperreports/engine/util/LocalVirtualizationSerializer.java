@@ -27,10 +27,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectStreamClass;
 import java.io.OutputStream;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import net.sf.jasperreports.engine.fill.JRAbstractLRUVirtualizer;
 import net.sf.jasperreports.engine.fill.JRVirtualizationContext;
@@ -40,6 +40,10 @@ import net.sf.jasperreports.engine.virtualization.VirtualizationInput;
 import net.sf.jasperreports.engine.virtualization.VirtualizationOutput;
 
 /**
+ * The class and class loader indexes are kept in thread safe structures,
+ * so that the serializer can be used by virtualizers that store and retrieve
+ * objects on several threads at once.
+ * 
  * @author Lucian Chirita (lucianc@users.sourceforge.net)
  */
 public class LocalVirtualizationSerializer extends VirtualizationSerializer
@@ -62,11 +66,11 @@ public class LocalVirtualizationSerializer extends VirtualizationSerializer
 		return false;
 	}
 
-	protected final Map<ClassLoader,Integer> classLoadersIndexes = new HashMap<ClassLoader,Integer>();
-	protected final List<ClassLoader> classLoadersList = new ArrayList<ClassLoader>();
+	protected final Map<ClassLoader,Integer> classLoadersIndexes = new ConcurrentHashMap<ClassLoader,Integer>();
+	protected final List<ClassLoader> classLoadersList = new CopyOnWriteArrayList<ClassLoader>();
 	
-	protected final Map<Class<?>, Integer> classIndexes = new HashMap<Class<?>, Integer>();
-	protected final List<Class<?>> classes = new ArrayList<Class<?>>();
+	protected final Map<Class<?>, Integer> classIndexes = new ConcurrentHashMap<Class<?>, Integer>();
+	protected final List<Class<?>> classes = new CopyOnWriteArrayList<Class<?>>();
 
 	public LocalVirtualizationSerializer()
 	{
@@ -87,15 +91,26 @@ public class LocalVirtualizationSerializer extends VirtualizationSerializer
 			Integer idx = classLoadersIndexes.get(classLoader);
 			if (idx == null)
 			{
-				idx = classLoadersList.size();
-				classLoadersIndexes.put(classLoader, idx);
-				classLoadersList.add(classLoader);
+				idx = addClassLoader(classLoader);
 			}
 			loaderIdx = idx;
 		}
 		return loaderIdx;
 	}
 	
+	protected synchronized Integer addClassLoader(ClassLoader classLoader)
+	{
+		Integer idx = classLoadersIndexes.get(classLoader);
+		if (idx == null)
+		{
+			// adding to the list first so that the index is valid once published in the map
+			idx = classLoadersList.size();
+			classLoadersList.add(classLoader);
+			classLoadersIndexes.put(classLoader, idx);
+		}
+		return idx;
+	}
+	
 	public Class<?> resolveClass(ObjectStreamClass desc, int loaderIdx) throws ClassNotFoundException
 	{
 		if (loaderIdx == CLASSLOADER_IDX_NOT_SET)
@@ -113,9 +128,20 @@ public class LocalVirtualizationSerializer extends VirtualizationSerializer
 		Integer classIdx = classIndexes.get(clazz);
 		if (classIdx == null)
 		{
-			classIdx = classIndexes.size();
-			classIndexes.put(clazz, classIdx);
+			classIdx = addClass(clazz);
+		}
+		return classIdx;
+	}
+	
+	protected synchronized Integer addClass(Class<?> clazz)
+	{
+		Integer classIdx = classIndexes.get(clazz);
+		if (classIdx == null)
+		{
+			// adding to the list first so that the index is valid once published in the map
+			classIdx = classes.size();
 			classes.add(clazz);
+			classIndexes.put(clazz, classIdx);
 		}
 		return classIdx;
 	}
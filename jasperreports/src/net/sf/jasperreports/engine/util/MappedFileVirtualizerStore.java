@@ -0,0 +1,517 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.engine.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.engine.JRPropertiesUtil;
+import net.sf.jasperreports.engine.JRRuntimeException;
+import net.sf.jasperreports.engine.JRVirtualizable;
+import net.sf.jasperreports.engine.JasperReportsContext;
+import net.sf.jasperreports.engine.fill.VirtualizerStore;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Virtualizer store that keeps serialized data in memory mapped segments of a temporary file.
+ * <p>
+ * The file is mapped in segments of a fixed size, which are added as needed.
+ * Each segment is divided into blocks, and the data of an object is written in
+ * consecutive blocks of a segment, so that it can be deserialized directly from
+ * the mapped segment when the object is retrieved.
+ * <p>
+ * The total size of the mapped segments can be limited.  When the limit is reached
+ * and there is no room left for new data, the store discards the data of objects that
+ * have been retrieved from the store without being removed, that is, objects from 
+ * read-only virtualization contexts that have been paged in while the report was exported.
+ * Such objects are written again to the store when they are paged out.
+ * If no such objects exist, storing fails with an exception.
+ * 
+ * @see MappedFileVirtualizerStoreFactory
+ */
+public class MappedFileVirtualizerStore implements VirtualizerStore
+{
+	private static final Log log = LogFactory.getLog(MappedFileVirtualizerStore.class);
+	
+	public static final String EXCEPTION_MESSAGE_KEY_DISK_LIMIT_EXCEEDED = "util.mapped.file.virtualizer.disk.limit.exceeded";
+	
+	public static final int DEFAULT_BLOCK_SIZE = 1024;
+	public static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+	
+	protected static class Segment
+	{
+		private final long fileOffset;
+		private final MappedByteBuffer buffer;
+		private final int blockCount;
+		private final BitSet usedBlocks;
+		private int freeBlockCount;
+		
+		public Segment(long fileOffset, MappedByteBuffer buffer, int blockCount)
+		{
+			this.fileOffset = fileOffset;
+			this.buffer = buffer;
+			this.blockCount = blockCount;
+			this.usedBlocks = new BitSet(blockCount);
+			this.freeBlockCount = blockCount;
+		}
+		
+		protected int allocate(int count)
+		{
+			if (freeBlockCount < count)
+			{
+				return -1;
+			}
+			
+			// first fit
+			int start = usedBlocks.nextClearBit(0);
+			while (start + count <= blockCount)
+			{
+				int next = usedBlocks.nextSetBit(start);
+				if (next < 0 || next - start >= count)
+				{
+					usedBlocks.set(start, start + count);
+					freeBlockCount -= count;
+					return start;
+				}
+				start = usedBlocks.nextClearBit(next);
+			}
+			return -1;
+		}
+		
+		protected void free(int start, int count)
+		{
+			usedBlocks.clear(start, start + count);
+			freeBlockCount += count;
+		}
+	}
+	
+	protected static class Page
+	{
+		private final Segment segment;
+		private final int firstBlock;
+		private final int blockCount;
+		private final int dataOffset;
+		private final int dataLength;
+		
+		public Page(Segment segment, int firstBlock, int blockCount, int dataOffset, int dataLength)
+		{
+			this.segment = segment;
+			this.firstBlock = firstBlock;
+			this.blockCount = blockCount;
+			this.dataOffset = dataOffset;
+			this.dataLength = dataLength;
+		}
+		
+		protected ByteBuffer data()
+		{
+			ByteBuffer data = segment.buffer.duplicate();
+			data.limit(dataOffset + dataLength);
+			data.position(dataOffset);
+			return data;
+		}
+	}
+
+	private final File file;
+	private final RandomAccessFile randomAccessFile;
+	private final FileChannel channel;
+	private final int blockSize;
+	private final int segmentSize;
+	private final long maxDiskSize;
+	private final StreamCompression compression;
+	
+	// guarded by this
+	private final List<Segment> segments;
+	private long mappedSize;
+	private final Map<String, Page> pages;
+	private final LinkedHashMap<String, Page> exportedPages;
+	private boolean disposed;
+
+	/**
+	 * Creates a store with default block and segment sizes.
+	 * 
+	 * @param directory the directory where the file should be created
+	 * @param maxDiskSize the maximum size of the file, 0 for no limit
+	 */
+	public MappedFileVirtualizerStore(String directory, long maxDiskSize)
+	{
+		this(DefaultJasperReportsContext.getInstance(), directory, 
+				DEFAULT_BLOCK_SIZE, DEFAULT_SEGMENT_SIZE, maxDiskSize, null);
+	}
+
+	/**
+	 * Creates a store.
+	 * 
+	 * @param jasperReportsContext the JasperReportsContext to read configuration from
+	 * @param directory the directory where the file should be created
+	 * @param blockSize the size of the blocks in which the segments are divided
+	 * @param segmentSize the size of the file segments that are mapped in memory
+	 * @param maxDiskSize the maximum size of the file, 0 for no limit
+	 * @param compression stream compression to apply to serialized data
+	 */
+	public MappedFileVirtualizerStore(JasperReportsContext jasperReportsContext, String directory,
+			int blockSize, int segmentSize, long maxDiskSize, StreamCompression compression)
+	{
+		this.blockSize = blockSize;
+		this.segmentSize = (segmentSize - 1) / blockSize * blockSize + blockSize;
+		this.maxDiskSize = maxDiskSize;
+		this.compression = compression;
+		
+		this.segments = new ArrayList<Segment>();
+		this.pages = new HashMap<String, Page>();
+		this.exportedPages = new LinkedHashMap<String, Page>();
+		
+		try
+		{
+			String filename = "virt_" + System.identityHashCode(this) + "_" + System.currentTimeMillis();
+			file = new File(directory, filename);
+			if (log.isDebugEnabled())
+			{
+				log.debug("Creating mapped file " + file.getPath());
+			}
+			
+			boolean deleteOnExit = JRPropertiesUtil.getInstance(jasperReportsContext).getBooleanProperty(
+					JRSwapFile.PROPERTY_DELETE_ON_EXIT);
+			if (deleteOnExit)
+			{
+				file.deleteOnExit();
+			}
+			
+			randomAccessFile = new RandomAccessFile(file, "rw");
+			randomAccessFile.setLength(0);
+			channel = randomAccessFile.getChannel();
+		}
+		catch (IOException e)
+		{
+			throw new JRRuntimeException(e);
+		}
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "MappedFileVirtualizerStore " + file.getAbsolutePath();
+	}
+
+	@Override
+	public boolean store(JRVirtualizable<?> o, VirtualizationSerializer serializer)
+	{
+		String uid = o.getUID();
+		synchronized (this)
+		{
+			if (pages.containsKey(uid))
+			{
+				// the object is paged out again, its data can no longer be discarded
+				exportedPages.remove(uid);
+				
+				if (log.isTraceEnabled())
+				{
+					log.trace("object " + uid + " already stored");
+				}
+				return false;
+			}
+		}
+		
+		try
+		{
+			ByteArrayOutputStream bout = new ByteArrayOutputStream(3000);
+			OutputStream out = compression == null ? bout : compression.compressedOutput(bout);
+			serializer.writeData(o, out);
+			out.close();
+			
+			byte[] data = bout.toByteArray();
+			Page page = allocate(data.length);
+			ByteBuffer pageData = page.data();
+			pageData.put(data);
+			
+			synchronized (this)
+			{
+				if (disposed)
+				{
+					return true;
+				}
+				pages.put(uid, page);
+			}
+			
+			if (log.isTraceEnabled())
+			{
+				log.trace("stored " + data.length + " for object " + uid + " in " + this);
+			}
+			return true;
+		}
+		catch (IOException e)
+		{
+			log.error("Error virtualizing object " + uid + " to " + this, e);
+			throw 
+				new JRRuntimeException(
+					SwapFileVirtualizerStore.EXCEPTION_MESSAGE_KEY_VIRTUALIZING_ERROR,
+					(Object[])null,
+					e);
+		}
+	}
+
+	@Override
+	public void retrieve(JRVirtualizable<?> o, boolean remove, VirtualizationSerializer serializer)
+	{
+		String uid = o.getUID();
+		Page page;
+		synchronized (this)
+		{
+			// removed pages are freed after reading the data
+			page = remove ? pages.remove(uid) : pages.get(uid);
+			if (page != null)
+			{
+				exportedPages.remove(uid);
+			}
+		}
+		
+		if (page == null)
+		{
+			log.error("No data found for " + uid + " in " + this);
+			throw 
+				new JRRuntimeException(
+					SwapFileVirtualizerStore.EXCEPTION_MESSAGE_KEY_UNABLE_TO_READ_DATA,
+					(Object[])null);
+		}
+		
+		try
+		{
+			// reading directly from the mapped segment
+			InputStream rawInput = new ByteBufferInputStream(page.data());
+			InputStream input = compression == null ? rawInput : compression.uncompressedInput(rawInput);
+			serializer.readData(o, input);
+			input.close();
+			
+			if (log.isTraceEnabled())
+			{
+				log.trace("read " + page.dataLength + " for object " + uid + " from " + this);
+			}
+		}
+		catch (IOException e)
+		{
+			log.error("Error reading object data " + uid + " from " + this, e);
+			throw 
+				new JRRuntimeException(
+					SwapFileVirtualizerStore.EXCEPTION_MESSAGE_KEY_DEVIRTUALIZING_ERROR,
+					(Object[])null,
+					e);
+		}
+		finally
+		{
+			synchronized (this)
+			{
+				if (remove)
+				{
+					free(page);
+				}
+				else if (pages.get(uid) == page)
+				{
+					// the object is in memory now, the data can be discarded if we need space
+					exportedPages.put(uid, page);
+				}
+			}
+		}
+	}
+
+	@Override
+	public synchronized void remove(String objectId)
+	{
+		Page page = pages.remove(objectId);
+		if (page == null)
+		{
+			if (log.isTraceEnabled())
+			{
+				log.trace("object " + objectId + " not found for removal");
+			}
+		}
+		else
+		{
+			if (log.isTraceEnabled())
+			{
+				log.trace("removing object " + objectId + " from " + this);
+			}
+			
+			exportedPages.remove(objectId);
+			free(page);
+		}
+	}
+	
+	protected synchronized Page allocate(int dataLength) throws IOException
+	{
+		if (disposed)
+		{
+			throw new IOException(this + " has been disposed");
+		}
+		
+		int blockCount = Math.max(1, (dataLength - 1) / blockSize + 1);
+		while (true)
+		{
+			for (Segment segment : segments)
+			{
+				int firstBlock = segment.allocate(blockCount);
+				if (firstBlock >= 0)
+				{
+					return new Page(segment, firstBlock, blockCount, firstBlock * blockSize, dataLength);
+				}
+			}
+			
+			int newSegmentSize = Math.max(segmentSize, blockCount * blockSize);
+			if (maxDiskSize <= 0 || mappedSize + newSegmentSize <= maxDiskSize)
+			{
+				Segment segment = addSegment(newSegmentSize);
+				int firstBlock = segment.allocate(blockCount);
+				return new Page(segment, firstBlock, blockCount, firstBlock * blockSize, dataLength);
+			}
+			
+			if (!discardExportedPage())
+			{
+				throw 
+					new JRRuntimeException(
+						EXCEPTION_MESSAGE_KEY_DISK_LIMIT_EXCEEDED,
+						new Object[]{maxDiskSize, dataLength});
+			}
+		}
+	}
+	
+	protected Segment addSegment(int size) throws IOException
+	{
+		// mapping extends the file, the unused parts of the file are not written
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, mappedSize, size);
+		Segment segment = new Segment(mappedSize, buffer, size / blockSize);
+		segments.add(segment);
+		mappedSize += size;
+		
+		if (log.isDebugEnabled())
+		{
+			log.debug("mapped segment of size " + size + " at " + segment.fileOffset 
+					+ " in " + this);
+		}
+		
+		return segment;
+	}
+	
+	protected boolean discardExportedPage()
+	{
+		Iterator<Map.Entry<String, Page>> it = exportedPages.entrySet().iterator();
+		if (!it.hasNext())
+		{
+			return false;
+		}
+		
+		Map.Entry<String, Page> entry = it.next();
+		it.remove();
+		
+		String uid = entry.getKey();
+		Page page = entry.getValue();
+		pages.remove(uid);
+		free(page);
+		
+		if (log.isDebugEnabled())
+		{
+			log.debug("discarded data of exported object " + uid + " from " + this);
+		}
+		return true;
+	}
+	
+	protected void free(Page page)
+	{
+		if (!disposed)
+		{
+			page.segment.free(page.firstBlock, page.blockCount);
+		}
+	}
+
+	/**
+	 * Returns the size of the file segments that are currently mapped in memory.
+	 * 
+	 * @return the mapped size in bytes
+	 */
+	public synchronized long getMappedSize()
+	{
+		return mappedSize;
+	}
+
+	/**
+	 * Closes and deletes the mapped file.
+	 * <p>
+	 * Note that the file might not be deleted on some platforms before the
+	 * mapped segments are garbage collected.
+	 */
+	@Override
+	public synchronized void dispose()
+	{
+		if (disposed)
+		{
+			return;
+		}
+		
+		if (log.isDebugEnabled())
+		{
+			log.debug("disposing " + this);
+		}
+		
+		disposed = true;
+		pages.clear();
+		exportedPages.clear();
+		segments.clear();
+		
+		try
+		{
+			channel.close();
+			randomAccessFile.close();
+		}
+		catch (IOException e)
+		{
+			log.warn("Not able to close mapped file " + file.getPath());
+		}
+
+		if (!file.delete())
+		{
+			log.warn("Not able to delete mapped file " + file.getPath());
+		}
+	}
+
+	@Override
+	protected void finalize() throws Throwable //NOSONAR
+	{
+		dispose();
+		super.finalize();
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.engine.util;
+
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.engine.fill.JRVirtualizationContext;
+import net.sf.jasperreports.engine.fill.VirtualizerStore;
+import net.sf.jasperreports.engine.fill.VirtualizerStoreFactory;
+
+/**
+ * @see MappedFileVirtualizerStore
+ */
+public class MappedFileVirtualizerStoreFactory implements VirtualizerStoreFactory
+{
+	private String directory = System.getProperty("java.io.tmpdir");//default value
+	private int blockSize = MappedFileVirtualizerStore.DEFAULT_BLOCK_SIZE;//default value
+	private int segmentSize = MappedFileVirtualizerStore.DEFAULT_SEGMENT_SIZE;//default value
+	private long maxDiskSize;//no limit by default
+	private StreamCompression compression;
+	private boolean templateDictionary;
+	
+	@Override
+	public VirtualizerStore createStore(JRVirtualizationContext virtualizationContext)
+	{
+		return new MappedFileVirtualizerStore(DefaultJasperReportsContext.getInstance(), 
+				directory, blockSize, segmentSize, maxDiskSize, createCompression(virtualizationContext));
+	}
+
+	protected StreamCompression createCompression(JRVirtualizationContext virtualizationContext)
+	{
+		if (templateDictionary && compression instanceof DictionaryStreamCompression)
+		{
+			return new TemplateDictionaryStreamCompression((DictionaryStreamCompression) compression, 
+					virtualizationContext);
+		}
+		return compression;
+	}
+
+	public String getDirectory()
+	{
+		return directory;
+	}
+
+	public void setDirectory(String directory)
+	{
+		this.directory = directory;
+	}
+
+	public int getBlockSize()
+	{
+		return blockSize;
+	}
+
+	public void setBlockSize(int blockSize)
+	{
+		this.blockSize = blockSize;
+	}
+
+	public int getSegmentSize()
+	{
+		return segmentSize;
+	}
+
+	public void setSegmentSize(int segmentSize)
+	{
+		this.segmentSize = segmentSize;
+	}
+
+	public long getMaxDiskSize()
+	{
+		return maxDiskSize;
+	}
+
+	/**
+	 * Sets the maximum size of the file used by a store, 0 for no limit.
+	 * 
+	 * <p>
+	 * A store is created for each report that is filled, the limit applies to each store separately.
+	 * 
+	 * @param maxDiskSize the maximum size of a store file in bytes
+	 */
+	public void setMaxDiskSize(long maxDiskSize)
+	{
+		this.maxDiskSize = maxDiskSize;
+	}
+
+	public StreamCompression getCompression()
+	{
+		return compression;
+	}
+
+	public void setCompression(StreamCompression compression)
+	{
+		this.compression = compression;
+	}
+
+	public boolean isTemplateDictionary()
+	{
+		return templateDictionary;
+	}
+
+	/**
+	 * Specifies whether the compression dictionary should be seeded with the IDs
+	 * of the element templates of the report.
+	 * 
+	 * <p>
+	 * The flag only has effect if the compression is a {@link DictionaryStreamCompression}.
+	 * 
+	 * @param templateDictionary whether to use a template dictionary for compression
+	 * @see TemplateDictionaryStreamCompression
+	 */
+	public void setTemplateDictionary(boolean templateDictionary)
+	{
+		this.templateDictionary = templateDictionary;
+	}
+}
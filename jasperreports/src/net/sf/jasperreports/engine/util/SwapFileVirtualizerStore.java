@@ -78,6 +78,26 @@ public class SwapFileVirtualizerStore implements VirtualizerStore
 		return handles.containsKey(o.getUID());
 	}
 	
+	protected JRSwapFile getSwap()
+	{
+		return swap;
+	}
+	
+	protected JRSwapFile.SwapHandle getHandle(String objectId)
+	{
+		return handles.get(objectId);
+	}
+	
+	protected void putHandle(String objectId, JRSwapFile.SwapHandle handle)
+	{
+		handles.put(objectId, handle);
+	}
+	
+	protected boolean removeHandle(String objectId, JRSwapFile.SwapHandle handle)
+	{
+		return handles.remove(objectId, handle);
+	}
+	
 	@Override
 	public boolean store(JRVirtualizable<?> o, VirtualizationSerializer serializer)
 	{
@@ -92,19 +112,8 @@ public class SwapFileVirtualizerStore implements VirtualizerStore
 		
 		try
 		{
-			ByteArrayOutputStream bout = new ByteArrayOutputStream(3000);
-			OutputStream out = compression == null ? bout : compression.compressedOutput(bout);
-			serializer.writeData(o, out);
-			out.close();
-			
-			byte[] data = bout.toByteArray();
-			if (log.isTraceEnabled())
-			{
-				log.trace("writing " + data.length + " for object " + o.getUID() + " to " + swap);
-			}
-			
-			JRSwapFile.SwapHandle handle = swap.write(data);
-			handles.put(o.getUID(), handle);
+			byte[] data = serialize(o, serializer);
+			writeData(o.getUID(), data);
 			return true;
 		}
 		catch (IOException e)
@@ -117,34 +126,34 @@ public class SwapFileVirtualizerStore implements VirtualizerStore
 					e);
 		}
 	}
-	
-	@Override
-	public void retrieve(JRVirtualizable<?> o, boolean remove, VirtualizationSerializer serializer)
+
+	protected byte[] serialize(JRVirtualizable<?> o, VirtualizationSerializer serializer) throws IOException
 	{
-		JRSwapFile.SwapHandle handle = handles.get(o.getUID());
-		if (handle == null)
+		ByteArrayOutputStream bout = new ByteArrayOutputStream(3000);
+		OutputStream out = compression == null ? bout : compression.compressedOutput(bout);
+		serializer.writeData(o, out);
+		out.close();
+		return bout.toByteArray();
+	}
+
+	protected void writeData(String objectId, byte[] data) throws IOException
+	{
+		if (log.isTraceEnabled())
 		{
-			// should not happen
-			//FIXME lucianc happened once, look into it
-			log.error("No swap handle found for " + o.getUID() + " in " + this);
-			throw 
-				new JRRuntimeException(
-					EXCEPTION_MESSAGE_KEY_UNABLE_TO_READ_DATA,
-					(Object[])null);
+			log.trace("writing " + data.length + " for object " + objectId + " to " + swap);
 		}
 		
+		JRSwapFile.SwapHandle handle = swap.write(data);
+		handles.put(objectId, handle);
+	}
+	
+	@Override
+	public void retrieve(JRVirtualizable<?> o, boolean remove, VirtualizationSerializer serializer)
+	{
 		try
 		{
-			byte[] data = swap.read(handle, remove);
-			if (log.isTraceEnabled())
-			{
-				log.trace("read " + data.length + " for object " + o.getUID() + " from " + swap);
-			}
-			
-			ByteArrayInputStream rawInput = new ByteArrayInputStream(data);
-			InputStream input = compression == null ? rawInput : compression.uncompressedInput(rawInput);
-			serializer.readData(o, input);
-			input.close();
+			byte[] data = readData(o.getUID(), remove);
+			deserialize(o, data, serializer);
 		}
 		catch (IOException e)
 		{
@@ -155,11 +164,41 @@ public class SwapFileVirtualizerStore implements VirtualizerStore
 					(Object[])null,
 					e);
 		}
+	}
+
+	protected byte[] readData(String objectId, boolean remove) throws IOException
+	{
+		JRSwapFile.SwapHandle handle = handles.get(objectId);
+		if (handle == null)
+		{
+			// should not happen
+			//FIXME lucianc happened once, look into it
+			log.error("No swap handle found for " + objectId + " in " + this);
+			throw 
+				new JRRuntimeException(
+					EXCEPTION_MESSAGE_KEY_UNABLE_TO_READ_DATA,
+					(Object[])null);
+		}
+		
+		byte[] data = swap.read(handle, remove);
+		if (log.isTraceEnabled())
+		{
+			log.trace("read " + data.length + " for object " + objectId + " from " + swap);
+		}
 		
 		if (remove)
 		{
-			handles.remove(o.getUID());
+			handles.remove(objectId);
 		}
+		return data;
+	}
+
+	protected void deserialize(JRVirtualizable<?> o, byte[] data, VirtualizationSerializer serializer) throws IOException
+	{
+		ByteArrayInputStream rawInput = new ByteArrayInputStream(data);
+		InputStream input = compression == null ? rawInput : compression.uncompressedInput(rawInput);
+		serializer.readData(o, input);
+		input.close();
 	}
 	
 	@Override
@@ -23,25 +23,77 @@
  */
 package net.sf.jasperreports.engine.util;
 
+import net.sf.jasperreports.annotations.properties.Property;
+import net.sf.jasperreports.annotations.properties.PropertyScope;
+import net.sf.jasperreports.engine.JRPropertiesUtil;
 import net.sf.jasperreports.engine.fill.JRVirtualizationContext;
 import net.sf.jasperreports.engine.fill.VirtualizerStore;
 import net.sf.jasperreports.engine.fill.VirtualizerStoreFactory;
+import net.sf.jasperreports.properties.PropertyConstants;
 
 /**
  * @author Lucian Chirita (lucianc@users.sourceforge.net)
  */
 public class SwapFileVirtualizerStoreFactory implements VirtualizerStoreFactory
 {
+	/**
+	 * Property that determines whether the created stores write data to the swap file
+	 * on a background thread and read data ahead while the report is exported.
+	 * 
+	 * <p>
+	 * The property can be overridden by {@link #setAsync(Boolean)}.
+	 * 
+	 * @see AsyncSwapFileVirtualizerStore
+	 */
+	@Property(
+			category = PropertyConstants.CATEGORY_FILL,
+			defaultValue = PropertyConstants.BOOLEAN_FALSE,
+			scopes = {PropertyScope.CONTEXT},
+			sinceVersion = PropertyConstants.VERSION_6_8_0,
+			valueType = Boolean.class
+			)
+	public static final String PROPERTY_ASYNC = JRPropertiesUtil.PROPERTY_PREFIX + "virtualizer.swap.async";
+	
 	private String directory = System.getProperty("java.io.tmpdir");//default value
 	private int blockSize = 4096;//default value
 	private int minGrowCount = 20;//default value
 	private StreamCompression compression;
+	private boolean templateDictionary;
+	private Boolean async;
 	
 	@Override
 	public VirtualizerStore createStore(JRVirtualizationContext virtualizationContext)
 	{
+		if (isAsync(virtualizationContext))
+		{
+			JRSwapFile swapFile = new JRConcurrentSwapFile(virtualizationContext.getJasperReportsContext(), 
+					directory, blockSize, minGrowCount);
+			return new AsyncSwapFileVirtualizerStore(swapFile, true, createCompression(virtualizationContext));
+		}
+		
 		JRSwapFile swapFile = new JRSwapFile(directory, blockSize, minGrowCount);
-		return new SwapFileVirtualizerStore(swapFile, true, compression);
+		return new SwapFileVirtualizerStore(swapFile, true, createCompression(virtualizationContext));
+	}
+
+	protected boolean isAsync(JRVirtualizationContext virtualizationContext)
+	{
+		if (async != null)
+		{
+			return async;
+		}
+		
+		return JRPropertiesUtil.getInstance(virtualizationContext.getJasperReportsContext())
+				.getBooleanProperty(PROPERTY_ASYNC);
+	}
+
+	protected StreamCompression createCompression(JRVirtualizationContext virtualizationContext)
+	{
+		if (templateDictionary && compression instanceof DictionaryStreamCompression)
+		{
+			return new TemplateDictionaryStreamCompression((DictionaryStreamCompression) compression, 
+					virtualizationContext);
+		}
+		return compression;
 	}
 
 	public String getDirectory()
@@ -83,4 +135,40 @@ public class SwapFileVirtualizerStoreFactory implements VirtualizerStoreFactory
 	{
 		this.compression = compression;
 	}
+
+	public boolean isTemplateDictionary()
+	{
+		return templateDictionary;
+	}
+
+	/**
+	 * Specifies whether the compression dictionary should be seeded with the IDs
+	 * of the element templates of the report.
+	 * 
+	 * <p>
+	 * The flag only has effect if the compression is a {@link DictionaryStreamCompression}.
+	 * 
+	 * @param templateDictionary whether to use a template dictionary for compression
+	 * @see TemplateDictionaryStreamCompression
+	 */
+	public void setTemplateDictionary(boolean templateDictionary)
+	{
+		this.templateDictionary = templateDictionary;
+	}
+
+	public Boolean getAsync()
+	{
+		return async;
+	}
+
+	/**
+	 * Specifies whether the created stores should write data on a background thread.
+	 * 
+	 * @param async whether to use {@link AsyncSwapFileVirtualizerStore}, 
+	 * or <code>null</code> to use the value of {@link #PROPERTY_ASYNC}
+	 */
+	public void setAsync(Boolean async)
+	{
+		this.async = async;
+	}
 }
@@ -0,0 +1,236 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.engine.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.jasperreports.engine.JRRuntimeException;
+import net.sf.jasperreports.engine.fill.JRTemplateElement;
+import net.sf.jasperreports.engine.fill.JRVirtualizationContext;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Stream compression that uses a dictionary built from the element templates
+ * cached in a virtualization context.
+ * <p>
+ * Virtualized pages refer to element templates by their IDs, which results in the IDs
+ * being repeated in the serialized data of each page.  Seeding the compression 
+ * dictionary with the template IDs improves the compression of pages that are
+ * compressed separately.
+ * <p>
+ * Since templates are created during the report fill, the dictionary is rebuilt
+ * when the number of templates in the context grows, and the compressed data is 
+ * prefixed by the index of the dictionary that was used.
+ * An instance of this class is meant to be used for a single master virtualization context,
+ * as done by {@link SwapFileVirtualizerStoreFactory} and {@link MappedFileVirtualizerStoreFactory}.
+ */
+public class TemplateDictionaryStreamCompression implements StreamCompression
+{
+	private static final Log log = LogFactory.getLog(TemplateDictionaryStreamCompression.class);
+	
+	public static final int DEFAULT_DICTIONARY_SIZE = 32 * 1024;
+	
+	protected static final int MAX_DICTIONARIES = 0x7F;
+	
+	private final DictionaryStreamCompression compression;
+	private final JRVirtualizationContext virtualizationContext;
+	private final int dictionarySize;
+	
+	// guarded by itself
+	private final List<byte[]> dictionaries;
+	private int lastTemplateCount;
+
+	public TemplateDictionaryStreamCompression(DictionaryStreamCompression compression, 
+			JRVirtualizationContext virtualizationContext)
+	{
+		this(compression, virtualizationContext, DEFAULT_DICTIONARY_SIZE);
+	}
+
+	/**
+	 * Creates a compression object.
+	 * 
+	 * @param compression the compression to use with the template dictionary
+	 * @param virtualizationContext the virtualization context that holds the templates
+	 * @param dictionarySize the maximum size of the dictionary
+	 */
+	public TemplateDictionaryStreamCompression(DictionaryStreamCompression compression, 
+			JRVirtualizationContext virtualizationContext, int dictionarySize)
+	{
+		this.compression = compression;
+		this.virtualizationContext = virtualizationContext;
+		this.dictionarySize = dictionarySize;
+		
+		this.dictionaries = new ArrayList<byte[]>();
+		// no dictionary at index 0
+		this.dictionaries.add(null);
+	}
+
+	@Override
+	public OutputStream compressedOutput(OutputStream stream)
+	{
+		int dictionaryIndex;
+		byte[] dictionary;
+		synchronized (dictionaries)
+		{
+			dictionaryIndex = currentDictionary();
+			dictionary = dictionaries.get(dictionaryIndex);
+		}
+		
+		try
+		{
+			stream.write(dictionaryIndex);
+		}
+		catch (IOException e)
+		{
+			throw new JRRuntimeException(e);
+		}
+		return compression.compressedOutput(stream, dictionary);
+	}
+	
+	protected int currentDictionary()
+	{
+		int currentIndex = dictionaries.size() - 1;
+		int templateCount = virtualizationContext.getCachedTemplates().size();
+		// rebuilding the dictionary when the number of templates has grown by half
+		if (templateCount > 0 && templateCount >= lastTemplateCount + (lastTemplateCount >> 1) + 1
+				&& currentIndex < MAX_DICTIONARIES)
+		{
+			byte[] dictionary = createDictionary();
+			dictionaries.add(dictionary);
+			lastTemplateCount = templateCount;
+			++currentIndex;
+			
+			if (log.isDebugEnabled())
+			{
+				log.debug("created dictionary " + currentIndex + " of size " + dictionary.length 
+						+ " for " + templateCount + " templates");
+			}
+		}
+		return currentIndex;
+	}
+	
+	protected byte[] createDictionary()
+	{
+		ByteArrayOutputStream dictionary = new ByteArrayOutputStream(dictionarySize);
+		for (JRTemplateElement template : virtualizationContext.getCachedTemplates().values())
+		{
+			if (dictionary.size() >= dictionarySize)
+			{
+				break;
+			}
+			
+			String id = template.getId();
+			if (id != null)
+			{
+				byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+				dictionary.write(idBytes, 0, idBytes.length);
+			}
+		}
+		return dictionary.toByteArray();
+	}
+
+	@Override
+	public InputStream uncompressedInput(InputStream stream)
+	{
+		return new DictionaryInput(stream);
+	}
+	
+	protected byte[] getDictionary(int index) throws IOException
+	{
+		synchronized (dictionaries)
+		{
+			if (index < 0 || index >= dictionaries.size())
+			{
+				throw new IOException("Unknown compression dictionary " + index);
+			}
+			return dictionaries.get(index);
+		}
+	}
+	
+	/**
+	 * Reads the dictionary index when data is first read.
+	 */
+	protected class DictionaryInput extends FilterInputStream
+	{
+		private boolean initialized;
+		
+		public DictionaryInput(InputStream in)
+		{
+			super(in);
+		}
+		
+		protected void init() throws IOException
+		{
+			if (!initialized)
+			{
+				int dictionaryIndex = in.read();
+				in = compression.uncompressedInput(in, getDictionary(dictionaryIndex));
+				initialized = true;
+			}
+		}
+
+		@Override
+		public int read() throws IOException
+		{
+			init();
+			return in.read();
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			init();
+			return in.read(b, off, len);
+		}
+
+		@Override
+		public long skip(long n) throws IOException
+		{
+			init();
+			return in.skip(n);
+		}
+
+		@Override
+		public int available() throws IOException
+		{
+			init();
+			return in.available();
+		}
+
+		@Override
+		public boolean markSupported()
+		{
+			return false;
+		}
+	}
+}
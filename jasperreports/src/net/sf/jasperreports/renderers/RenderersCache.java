@@ -56,7 +56,7 @@ public class RenderersCache
 	/**
 	 * 
 	 */
-	public Renderable getLoadedRenderer(ResourceRenderer resourceRenderer) throws JRException
+	public synchronized Renderable getLoadedRenderer(ResourceRenderer resourceRenderer) throws JRException
 	{
 		Renderable loadedRenderer;
 		String resourceRendererId = resourceRenderer.getId();
@@ -78,7 +78,7 @@ public class RenderersCache
 	/**
 	 * 
 	 */
-	public DimensionRenderable getDimensionRenderable(Renderable renderer) throws JRException
+	public synchronized DimensionRenderable getDimensionRenderable(Renderable renderer) throws JRException
 	{
 		DimensionRenderable dimensionRenderer;
 		
@@ -103,7 +103,7 @@ public class RenderersCache
 	/**
 	 * 
 	 */
-	public Graphics2DRenderable getGraphics2DRenderable(Renderable renderer) throws JRException
+	public synchronized Graphics2DRenderable getGraphics2DRenderable(Renderable renderer) throws JRException
 	{
 		Graphics2DRenderable grxRenderer = null;
 		
@@ -139,7 +139,7 @@ public class RenderersCache
 	/**
 	 * 
 	 */
-	public Renderable getWrappingRenderable(String rendererId, DataRenderable dataRenderer) throws JRException
+	public synchronized Renderable getWrappingRenderable(String rendererId, DataRenderable dataRenderer) throws JRException
 	{
 		Renderable wrappingRenderer = null;
 		
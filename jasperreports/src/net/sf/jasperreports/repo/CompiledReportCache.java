@@ -0,0 +1,500 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.repo;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import net.sf.jasperreports.annotations.properties.Property;
+import net.sf.jasperreports.annotations.properties.PropertyScope;
+import net.sf.jasperreports.engine.JRConstants;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRPropertiesUtil;
+import net.sf.jasperreports.engine.JRPropertiesUtil.PropertySuffix;
+import net.sf.jasperreports.engine.JRRuntimeException;
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.JasperReportsContext;
+import net.sf.jasperreports.engine.design.JasperDesign;
+import net.sf.jasperreports.engine.util.JRLoader;
+import net.sf.jasperreports.engine.util.JRSaver;
+import net.sf.jasperreports.engine.xml.JRXmlLoader;
+import net.sf.jasperreports.properties.PropertyConstants;
+
+/**
+ * Process-wide cache of reports compiled from JRXML sources.
+ * 
+ * <p>
+ * Compiled reports are cached by a digest of the JRXML content and of the compiler settings
+ * (the <code>net.sf.jasperreports.compiler.*</code> and <code>org.eclipse.jdt.core.*</code>
+ * properties) in effect, so that a JRXML is compiled once per content version regardless
+ * of the location or the report context through which it has been resolved.
+ * </p>
+ * <p>
+ * The least recently used reports are evicted from memory when the number of cached reports exceeds
+ * {@link #PROPERTY_MAX_ENTRIES}.
+ * If {@link #PROPERTY_DIRECTORY} is set, compiled reports are also saved as serialized 
+ * <code>.jasper</code> files named after the digest, and are loaded from there after a restart.
+ * </p>
+ * 
+ * @see RepositoryUtil#getReport(net.sf.jasperreports.engine.ReportContext, String)
+ */
+public class CompiledReportCache
+{
+	private static final Log log = LogFactory.getLog(CompiledReportCache.class);
+	
+	public static final String EXCEPTION_MESSAGE_KEY_COMPILE_INTERRUPTED = "repo.compiled.report.cache.compile.interrupted";
+	
+	/**
+	 * Property that enables the process-wide cache of reports compiled from JRXML sources.
+	 * 
+	 * @see CompiledReportCache
+	 */
+	@Property(
+			category = PropertyConstants.CATEGORY_COMPILE,
+			defaultValue = PropertyConstants.BOOLEAN_FALSE,
+			scopes = {PropertyScope.CONTEXT},
+			sinceVersion = PropertyConstants.VERSION_6_8_0,
+			valueType = Boolean.class
+			)
+	public static final String PROPERTY_ENABLED = JRPropertiesUtil.PROPERTY_PREFIX + "compiled.report.cache.enabled";
+	
+	/**
+	 * Property that specifies the maximum number of compiled reports kept in memory by the cache.
+	 * 
+	 * <p>
+	 * The property is read when the cache is first used.
+	 * </p>
+	 * 
+	 * @see CompiledReportCache
+	 */
+	@Property(
+			category = PropertyConstants.CATEGORY_COMPILE,
+			defaultValue = "100",
+			scopes = {PropertyScope.CONTEXT},
+			sinceVersion = PropertyConstants.VERSION_6_8_0,
+			valueType = Integer.class
+			)
+	public static final String PROPERTY_MAX_ENTRIES = JRPropertiesUtil.PROPERTY_PREFIX + "compiled.report.cache.max.entries";
+	
+	/**
+	 * Property that specifies a directory in which the cache saves compiled reports, so that 
+	 * they survive restarts.
+	 * 
+	 * <p>
+	 * If not set, compiled reports are only kept in memory.
+	 * The property is read when the cache is first used.
+	 * </p>
+	 * 
+	 * @see CompiledReportCache
+	 */
+	@Property(
+			category = PropertyConstants.CATEGORY_COMPILE,
+			scopes = {PropertyScope.CONTEXT},
+			sinceVersion = PropertyConstants.VERSION_6_8_0
+			)
+	public static final String PROPERTY_DIRECTORY = JRPropertiesUtil.PROPERTY_PREFIX + "compiled.report.cache.directory";
+	
+	protected static final String COMPILER_PROPERTIES_PREFIX = JRPropertiesUtil.PROPERTY_PREFIX + "compiler.";
+	protected static final String JDT_PROPERTIES_PREFIX = "org.eclipse.jdt.core.";
+	
+	protected static final String DIGEST_ALGORITHM = "SHA-256";
+	protected static final String FILE_EXTENSION = ".jasper";
+	
+	// bumped when the digest input changes
+	private static final int KEY_FORMAT_VERSION = 1;
+	
+	private static volatile CompiledReportCache instance;
+	
+	/**
+	 * Returns the process-wide cache if enabled by {@link #PROPERTY_ENABLED}.
+	 * 
+	 * @param jasperReportsContext the context
+	 * @return the process-wide cache, or <code>null</code> if the cache is not enabled
+	 */
+	public static CompiledReportCache getInstance(JasperReportsContext jasperReportsContext)
+	{
+		JRPropertiesUtil propertiesUtil = JRPropertiesUtil.getInstance(jasperReportsContext);
+		if (!propertiesUtil.getBooleanProperty(PROPERTY_ENABLED))
+		{
+			return null;
+		}
+		
+		CompiledReportCache cache = instance;
+		if (cache == null)
+		{
+			synchronized (CompiledReportCache.class)
+			{
+				cache = instance;
+				if (cache == null)
+				{
+					String directoryName = propertiesUtil.getProperty(PROPERTY_DIRECTORY);
+					File directory = directoryName == null || directoryName.trim().isEmpty() 
+							? null : new File(directoryName.trim());
+					cache = new CompiledReportCache(propertiesUtil.getIntegerProperty(PROPERTY_MAX_ENTRIES, 100), directory);
+					instance = cache;
+				}
+			}
+		}
+		return cache;
+	}
+	
+	private final int maxEntries;
+	private final File directory;
+	private final LinkedHashMap<String, JasperReport> entries;
+	private final Map<String, FutureTask<JasperReport>> pending;
+	
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong diskHitCount = new AtomicLong();
+	private final AtomicLong compileCount = new AtomicLong();
+	
+	/**
+	 * Creates a cache.
+	 * 
+	 * @param maxEntries the maximum number of compiled reports kept in memory
+	 * @param directory the directory where compiled reports are saved, <code>null</code> for memory only caching
+	 */
+	public CompiledReportCache(int maxEntries, File directory)
+	{
+		this.maxEntries = maxEntries;
+		this.directory = directory;
+		// access order for LRU eviction
+		this.entries = new LinkedHashMap<String, JasperReport>(16, 0.75f, true);
+		this.pending = new HashMap<String, FutureTask<JasperReport>>();
+	}
+	
+	/**
+	 * Returns the compiled report for JRXML content, compiling it if not already cached.
+	 * 
+	 * @param jasperReportsContext the context used to load and compile the report
+	 * @param jrxmlData the JRXML content
+	 * @return the compiled report
+	 * @throws JRException
+	 */
+	public JasperReport getReport(final JasperReportsContext jasperReportsContext, final byte[] jrxmlData) throws JRException
+	{
+		String key = createKey(jasperReportsContext, jrxmlData);
+		return getReport(key, new Callable<JasperReport>()
+		{
+			@Override
+			public JasperReport call() throws JRException
+			{
+				JasperDesign design = JRXmlLoader.load(jasperReportsContext, new ByteArrayInputStream(jrxmlData));
+				return JasperCompileManager.getInstance(jasperReportsContext).compile(design);
+			}
+		});
+	}
+	
+	protected JasperReport getReport(final String key, final Callable<JasperReport> compiler) throws JRException
+	{
+		FutureTask<JasperReport> task;
+		boolean owner = false;
+		synchronized (this)
+		{
+			JasperReport report = entries.get(key);
+			if (report != null)
+			{
+				hitCount.incrementAndGet();
+				return report;
+			}
+			
+			task = pending.get(key);
+			if (task == null)
+			{
+				task = new FutureTask<JasperReport>(new Callable<JasperReport>()
+				{
+					@Override
+					public JasperReport call() throws Exception
+					{
+						return loadOrCompile(key, compiler);
+					}
+				});
+				pending.put(key, task);
+				owner = true;
+			}
+		}
+		
+		JasperReport report = null;
+		try
+		{
+			if (owner)
+			{
+				task.run();
+			}
+			
+			report = task.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw 
+				new JRException(
+					EXCEPTION_MESSAGE_KEY_COMPILE_INTERRUPTED,
+					(Object[]) null, e);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof JRException)
+			{
+				throw (JRException) cause;
+			}
+			if (cause instanceof RuntimeException)
+			{
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error)
+			{
+				throw (Error) cause;
+			}
+			throw new JRException(cause);
+		}
+		finally
+		{
+			if (owner)
+			{
+				synchronized (this)
+				{
+					pending.remove(key);
+					if (report != null)
+					{
+						entries.put(key, report);
+						evict();
+					}
+				}
+			}
+		}
+		return report;
+	}
+	
+	protected JasperReport loadOrCompile(String key, Callable<JasperReport> compiler) throws Exception
+	{
+		File file = directory == null ? null : new File(directory, key + FILE_EXTENSION);
+		if (file != null && file.isFile())
+		{
+			try
+			{
+				JasperReport report = (JasperReport) JRLoader.loadObject(file);
+				diskHitCount.incrementAndGet();
+				
+				if (log.isDebugEnabled())
+				{
+					log.debug("loaded compiled report " + key + " from " + file);
+				}
+				return report;
+			}
+			catch (JRException | ClassCastException e)
+			{
+				log.warn("Failed to load compiled report from " + file + ", recompiling", e);
+				file.delete();
+			}
+		}
+		
+		JasperReport report = compiler.call();
+		compileCount.incrementAndGet();
+		
+		if (log.isDebugEnabled())
+		{
+			log.debug("compiled report " + key);
+		}
+		
+		if (file != null)
+		{
+			save(file, report);
+		}
+		return report;
+	}
+	
+	protected void save(File file, JasperReport report)
+	{
+		try
+		{
+			directory.mkdirs();
+			File tempFile = File.createTempFile(file.getName(), ".tmp", directory);
+			JRSaver.saveObject(report, tempFile);
+			if (!tempFile.renameTo(file))
+			{
+				// another process might have saved the same report in the meantime
+				tempFile.delete();
+			}
+		}
+		catch (Exception e)
+		{
+			log.warn("Failed to save compiled report to " + file, e);
+		}
+	}
+	
+	protected void evict()
+	{
+		for (Iterator<String> it = entries.keySet().iterator(); 
+				entries.size() > maxEntries && it.hasNext();)
+		{
+			String key = it.next();
+			it.remove();
+			
+			if (log.isDebugEnabled())
+			{
+				log.debug("evicted compiled report " + key);
+			}
+		}
+	}
+	
+	/**
+	 * Computes the cache key for JRXML content.
+	 * 
+	 * <p>
+	 * The key is a hex encoded digest of the library version, the compiler settings from the context
+	 * and from the system properties, and the JRXML content.
+	 * </p>
+	 * 
+	 * @param jasperReportsContext the context
+	 * @param jrxmlData the JRXML content
+	 * @return the cache key
+	 */
+	public String createKey(JasperReportsContext jasperReportsContext, byte[] jrxmlData)
+	{
+		MessageDigest digest;
+		try
+		{
+			digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new JRRuntimeException(e);
+		}
+		
+		StringBuilder header = new StringBuilder();
+		header.append(KEY_FORMAT_VERSION).append('\n');
+		header.append(JRConstants.SERIAL_VERSION_UID).append('\n');
+		header.append(JasperReport.class.getPackage().getImplementationVersion()).append('\n');
+		for (Map.Entry<String, String> setting : getCompilerSettings(jasperReportsContext).entrySet())
+		{
+			header.append(setting.getKey()).append('=').append(setting.getValue()).append('\n');
+		}
+		header.append('\n');
+		
+		digest.update(header.toString().getBytes(StandardCharsets.UTF_8));
+		digest.update(jrxmlData);
+		
+		byte[] hash = digest.digest();
+		StringBuilder key = new StringBuilder(hash.length * 2);
+		for (byte b : hash)
+		{
+			key.append(Character.forDigit((b >> 4) & 0xF, 16));
+			key.append(Character.forDigit(b & 0xF, 16));
+		}
+		return key.toString();
+	}
+	
+	protected Map<String, String> getCompilerSettings(JasperReportsContext jasperReportsContext)
+	{
+		Map<String, String> settings = new TreeMap<String, String>();
+		JRPropertiesUtil propertiesUtil = JRPropertiesUtil.getInstance(jasperReportsContext);
+		addProperties(settings, propertiesUtil.getProperties(COMPILER_PROPERTIES_PREFIX));
+		addProperties(settings, propertiesUtil.getProperties(JDT_PROPERTIES_PREFIX));
+		
+		// the JDT compiler also picks up system properties
+		Properties systemProps = System.getProperties();
+		for (String propName : systemProps.stringPropertyNames())
+		{
+			if (propName.startsWith(JDT_PROPERTIES_PREFIX))
+			{
+				settings.put("system:" + propName, systemProps.getProperty(propName));
+			}
+		}
+		return settings;
+	}
+	
+	private static void addProperties(Map<String, String> settings, List<PropertySuffix> properties)
+	{
+		for (PropertySuffix property : properties)
+		{
+			settings.put(property.getKey(), property.getValue());
+		}
+	}
+	
+	/**
+	 * Removes all compiled reports from memory.
+	 * 
+	 * <p>
+	 * Reports saved in the cache directory are not removed.
+	 * </p>
+	 */
+	public synchronized void clear()
+	{
+		entries.clear();
+	}
+	
+	/**
+	 * Returns the number of compiled reports kept in memory.
+	 * 
+	 * @return the number of compiled reports kept in memory
+	 */
+	public synchronized int size()
+	{
+		return entries.size();
+	}
+	
+	public int getMaxEntries()
+	{
+		return maxEntries;
+	}
+	
+	public File getDirectory()
+	{
+		return directory;
+	}
+	
+	public long getHitCount()
+	{
+		return hitCount.get();
+	}
+	
+	public long getDiskHitCount()
+	{
+		return diskHitCount.get();
+	}
+	
+	public long getCompileCount()
+	{
+		return compileCount.get();
+	}
+}
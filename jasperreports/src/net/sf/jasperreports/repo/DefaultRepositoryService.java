@@ -222,14 +222,18 @@ public class DefaultRepositoryService implements StreamRepositoryService
 			{
 				//resolving to real path to eliminate .. and .
 				Path path = file.toPath().toRealPath();
-				return StandardResourceInfo.from(path);
+				StandardResourceInfo resourceInfo = StandardResourceInfo.from(path);
+				resourceInfo.setFileVersion(path.toFile());
+				return resourceInfo;
 			}
 			catch (IOException e)
 			{
 				log.warn("Failed to resolve real path for file " + file, e);
 				
 				//using the paths as present in the File object
-				return StandardResourceInfo.from(file);
+				StandardResourceInfo resourceInfo = StandardResourceInfo.from(file);
+				resourceInfo.setFileVersion(file);
+				return resourceInfo;
 			}
 		}
 		
@@ -263,11 +263,15 @@ public class FileRepositoryService implements StreamRepositoryService
 				if (rootRealPath != null && filePath.startsWith(rootRealPath))
 				{
 					Path relativePath = rootRealPath.relativize(filePath);
-					return StandardResourceInfo.from(relativePath);
+					StandardResourceInfo resourceInfo = StandardResourceInfo.from(relativePath);
+					resourceInfo.setFileVersion(filePath.toFile());
+					return resourceInfo;
 				}
 				else if(resolveAbsolutePath)
 				{
-					return StandardResourceInfo.from(filePath);
+					StandardResourceInfo resourceInfo = StandardResourceInfo.from(filePath);
+					resourceInfo.setFileVersion(filePath.toFile());
+					return resourceInfo;
 				}
 			}
 			catch (IOException e)
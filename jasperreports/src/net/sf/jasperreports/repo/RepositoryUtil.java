@@ -46,6 +46,8 @@ public final class RepositoryUtil
 	public static final String EXCEPTION_MESSAGE_KEY_REPORT_NOT_FOUND = "repo.report.not.found";
 	public static final String EXCEPTION_MESSAGE_KEY_RESOURCET_NOT_FOUND = "repo.resource.not.found";
 	
+	private static final String JRXML_EXTENSION = ".jrxml";
+	
 	private AtomicReference<List<RepositoryService>> repositoryServices = new AtomicReference<List<RepositoryService>>();
 	
 
@@ -114,16 +116,25 @@ public final class RepositoryUtil
 
 		if (jasperReport == null)
 		{
-			ReportResource resource = getResourceFromLocation(location, ReportResource.class);
-			if (resource == null)
+			CompiledReportCache compiledReportCache = isJrxmlLocation(location) 
+					? CompiledReportCache.getInstance(context.getJasperReportsContext()) : null;
+			if (compiledReportCache != null)
 			{
-				throw 
-					new JRException(
-						EXCEPTION_MESSAGE_KEY_REPORT_NOT_FOUND,
-						new Object[]{location});
+				jasperReport = compiledReportCache.getReport(context.getJasperReportsContext(), getBytesFromLocation(location));
 			}
+			else
+			{
+				ReportResource resource = getResourceFromLocation(location, ReportResource.class);
+				if (resource == null)
+				{
+					throw 
+						new JRException(
+							EXCEPTION_MESSAGE_KEY_REPORT_NOT_FOUND,
+							new Object[]{location});
+				}
 
-			jasperReport = resource.getReport();
+				jasperReport = resource.getReport();
+			}
 
 			if (cache != null)
 			{
@@ -135,6 +146,12 @@ public final class RepositoryUtil
 	}
 
 
+	private static boolean isJrxmlLocation(String location)
+	{
+		return location != null && location.toLowerCase().endsWith(JRXML_EXTENSION);
+	}
+
+
 	/**
 	 * 
 	 */
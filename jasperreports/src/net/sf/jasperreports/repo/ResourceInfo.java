@@ -33,4 +33,37 @@ public interface ResourceInfo
 
 	String getRepositoryContextLocation();
 	
+	/**
+	 * Returns a token that identifies the current version of the resource.
+	 * 
+	 * <p>
+	 * The token changes when the resource is modified, and is used to determine
+	 * whether cached copies of the resource are still current.
+	 * </p>
+	 * 
+	 * @return the resource version, or <code>null</code> if the repository does not know the version
+	 * of the resource
+	 */
+	default Object getResourceVersion()
+	{
+		return null;
+	}
+	
+	/**
+	 * Returns a location that identifies the resource independently of the repository context
+	 * in which it was resolved, such as the absolute path of a resource file.
+	 * 
+	 * <p>
+	 * The same repository location can refer to different resources when resolved in different 
+	 * repository contexts, while the absolute location identifies the resource that was actually found.
+	 * </p>
+	 * 
+	 * @return the absolute location of the resource, or <code>null</code> if the repository does not know
+	 * an absolute location for the resource
+	 */
+	default String getResourceAbsoluteLocation()
+	{
+		return null;
+	}
+	
 }
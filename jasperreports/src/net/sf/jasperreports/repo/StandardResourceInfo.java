@@ -53,6 +53,10 @@ public class StandardResourceInfo implements ResourceInfo
 
 	private String contextLocation;
 	
+	private Object resourceVersion;
+	
+	private String absoluteLocation;
+	
 	@Override
 	public String getRepositoryResourceLocation()
 	{
@@ -75,4 +79,41 @@ public class StandardResourceInfo implements ResourceInfo
 		this.contextLocation = contextLocation;
 	}
 
+	@Override
+	public Object getResourceVersion()
+	{
+		return resourceVersion;
+	}
+
+	public void setResourceVersion(Object resourceVersion)
+	{
+		this.resourceVersion = resourceVersion;
+	}
+
+	@Override
+	public String getResourceAbsoluteLocation()
+	{
+		return absoluteLocation;
+	}
+
+	public void setResourceAbsoluteLocation(String absoluteLocation)
+	{
+		this.absoluteLocation = absoluteLocation;
+	}
+	
+	/**
+	 * Sets the absolute location of the resource to the absolute path of a file,
+	 * and the resource version based on the modification time and the length of the file.
+	 * 
+	 * @param file the resource file
+	 */
+	public void setFileVersion(File file)
+	{
+		this.absoluteLocation = file.getAbsolutePath();
+		
+		long lastModified = file.lastModified();
+		// the modification time is 0 when the file does not exist or if an I/O error occurs
+		this.resourceVersion = lastModified == 0 ? null : lastModified + ":" + file.length();
+	}
+
 }
@@ -162,9 +162,9 @@ public class Report
 			throws NoSuchAlgorithmException, FileNotFoundException, JRException, IOException
 	{
 		JRVirtualizer virtualizer = (JRVirtualizer) params.get(JRParameter.REPORT_VIRTUALIZER);
-		if (virtualizer instanceof JRAbstractLRUVirtualizer)
+		if (virtualizer != null)
 		{
-			((JRAbstractLRUVirtualizer) virtualizer).setReadOnly(true);
+			beforeExport(virtualizer, print);
 		}
 		
 		assert !print.getPages().isEmpty();
@@ -175,10 +175,23 @@ public class Report
 		
 		if (virtualizer != null)
 		{
-			virtualizer.cleanup();
+			afterExport(virtualizer, print);
 		}
 	}
 
+	protected void beforeExport(JRVirtualizer virtualizer, JasperPrint print)
+	{
+		if (virtualizer instanceof JRAbstractLRUVirtualizer)
+		{
+			((JRAbstractLRUVirtualizer) virtualizer).setReadOnly(true);
+		}
+	}
+
+	protected void afterExport(JRVirtualizer virtualizer, JasperPrint print)
+	{
+		virtualizer.cleanup();
+	}
+
 	protected String xmlDigest(JasperPrint print) 
 			throws NoSuchAlgorithmException, FileNotFoundException, JRException, IOException
 	{
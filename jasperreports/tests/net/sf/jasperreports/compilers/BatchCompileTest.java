@@ -0,0 +1,104 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.compilers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.design.JRDesignExpression;
+import net.sf.jasperreports.engine.design.JRDesignVariable;
+import net.sf.jasperreports.engine.design.JasperDesign;
+import net.sf.jasperreports.engine.design.ReportCompileResult;
+import net.sf.jasperreports.engine.fill.JREvaluator;
+import net.sf.jasperreports.engine.xml.JRXmlLoader;
+
+public class BatchCompileTest
+{
+
+	@Test
+	public void batchResults() throws JRException, IOException
+	{
+		JasperCompileManager compileManager = JasperCompileManager.getInstance(DefaultJasperReportsContext.getInstance());
+		
+		List<JasperDesign> designs = new ArrayList<JasperDesign>();
+		designs.add(loadDesign("net/sf/jasperreports/components/repo/SubreportForReturn.jrxml"));
+		designs.add(loadDesign("net/sf/jasperreports/crosstabs/repo/CrosstabReport.1.jrxml"));
+		
+		JasperDesign broken = loadDesign("net/sf/jasperreports/components/repo/SubreportForReturn.jrxml");
+		JRDesignVariable variable = (JRDesignVariable) broken.getVariablesMap().get("VariableForReturn");
+		variable.setExpression(new JRDesignExpression("\"foo\".noSuchMethod()"));
+		designs.add(broken);
+		
+		designs.add(loadDesign("net/sf/jasperreports/breaks/repo/BreaksReport.1.jrxml"));
+		
+		List<ReportCompileResult> results = compileManager.compile(designs);
+		assert results.size() == designs.size();
+		for (int i = 0; i < designs.size(); i++)
+		{
+			ReportCompileResult result = results.get(i);
+			assert result.getDesign() == designs.get(i);
+			if (i == 2)
+			{
+				assert !result.isSuccessful();
+				assert result.getReport() == null;
+				assert result.getError().getMessage().contains("noSuchMethod");
+			}
+			else
+			{
+				assert result.isSuccessful();
+				JasperReport report = result.getReport();
+				assert report.getName().equals(designs.get(i).getName());
+				JREvaluator evaluator = compileManager.getEvaluator(report);
+				assert evaluator != null;
+			}
+		}
+		
+		// the errors reported for a batch are those of the individual report
+		try
+		{
+			compileManager.compile(broken);
+			assert false;
+		}
+		catch (JRException e)
+		{
+			assert e.getMessage().equals(results.get(2).getError().getMessage());
+		}
+	}
+	
+	protected JasperDesign loadDesign(String resource) throws JRException, IOException
+	{
+		try (InputStream input = BatchCompileTest.class.getClassLoader().getResourceAsStream(resource))
+		{
+			return JRXmlLoader.load(input);
+		}
+	}
+}
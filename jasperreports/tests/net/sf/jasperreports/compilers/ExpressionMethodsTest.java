@@ -0,0 +1,89 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.compilers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import net.sf.jasperreports.AbstractTest;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.design.JRClassGenerator;
+import net.sf.jasperreports.engine.design.JasperDesign;
+import net.sf.jasperreports.engine.util.JRLoader;
+import net.sf.jasperreports.engine.xml.JRXmlLoader;
+
+/**
+ * Runs reference reports with evaluators that have a method for each expression.
+ */
+public class ExpressionMethodsTest extends AbstractTest
+{
+	@Test(dataProvider = "testArgs")
+	public void testReport(String jrxmlFileName, String referenceFileNamePrefix) 
+			throws JRException, NoSuchAlgorithmException, IOException
+	{
+		runReport(jrxmlFileName, referenceFileNamePrefix);
+	}
+	
+	@DataProvider
+	public Object[][] testArgs()
+	{
+		List<Object[]> args = new ArrayList<Object[]>();
+		args.addAll(Arrays.asList(runReportArgs("net/sf/jasperreports/crosstabs/repo", "CrosstabReport", 3)));
+		args.addAll(Arrays.asList(runReportArgs("net/sf/jasperreports/summary/repo", "SummaryReport", 21)));
+		return args.toArray(new Object[args.size()][]);
+	}
+
+	@Override
+	public JasperReport compileReport(String jrxmlFileName) throws JRException, IOException
+	{
+		JasperReport jasperReport = null;
+		
+		InputStream jrxmlInput = JRLoader.getResourceInputStream(jrxmlFileName);
+		if (jrxmlInput != null)
+		{
+			JasperDesign design;
+			try
+			{
+				design = JRXmlLoader.load(jrxmlInput);
+			}
+			finally
+			{
+				jrxmlInput.close();
+			}
+			design.setProperty(JRClassGenerator.PROPERTY_EXPRESSION_METHODS, Boolean.TRUE.toString());
+			jasperReport = JasperCompileManager.compileReport(design);
+		}
+		
+		return jasperReport;
+	}
+}
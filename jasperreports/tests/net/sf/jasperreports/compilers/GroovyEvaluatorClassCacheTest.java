@@ -0,0 +1,148 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.compilers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRReport;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.design.EvaluatorClassCache;
+import net.sf.jasperreports.engine.design.JRDesignBand;
+import net.sf.jasperreports.engine.design.JRDesignExpression;
+import net.sf.jasperreports.engine.design.JRDesignSection;
+import net.sf.jasperreports.engine.design.JRDesignTextField;
+import net.sf.jasperreports.engine.design.JasperDesign;
+import net.sf.jasperreports.engine.fill.JREvaluator;
+import net.sf.jasperreports.engine.util.JRLoader;
+import net.sf.jasperreports.engine.util.JRSaver;
+
+public class GroovyEvaluatorClassCacheTest
+{
+
+	@Test
+	public void reuseEvaluatorClass() throws JRException
+	{
+		JRGroovyCompiler compiler = new JRGroovyCompiler(DefaultJasperReportsContext.getInstance());
+		JasperReport report = compiler.compileReport(createDesign());
+		
+		JREvaluator evaluator = compiler.loadEvaluator(report);
+		assert evaluator.getClass().getName().startsWith(report.getName());
+		assert compiler.loadEvaluator(report).getClass() == evaluator.getClass();
+		assert compiler.loadEvaluator(report) != evaluator;
+		
+		// a copy of the compiled report uses the same class
+		JasperReport copy = (JasperReport) JRLoader.loadObject(
+				new ByteArrayInputStream(serialize(report)));
+		assert compiler.loadEvaluator(copy).getClass() == evaluator.getClass();
+	}
+
+	@Test
+	public void boundedCache()
+	{
+		EvaluatorClassCache cache = new EvaluatorClassCache(2);
+		ClassLoader classLoader = getClass().getClassLoader();
+		Object data1 = new byte[0];
+		Object data2 = new byte[0];
+		Object data3 = new byte[0];
+		cache.putClass(data1, String.class, classLoader);
+		cache.putClass(data2, Integer.class, classLoader);
+		
+		assert cache.getClass(data1, String.class.getName(), classLoader) == String.class;
+		assert cache.getClass(data2, String.class.getName(), classLoader) == null;
+		assert cache.getClass(data1, String.class.getName(), null) == null;
+		
+		// data2 is the least recently used
+		cache.putClass(data3, Long.class, classLoader);
+		assert cache.size() == 2;
+		assert cache.getClass(data2, Integer.class.getName(), classLoader) == null;
+		assert cache.getClass(data1, String.class.getName(), classLoader) == String.class;
+		assert cache.getClass(data3, Long.class.getName(), classLoader) == Long.class;
+	}
+
+	@Test
+	public void weakKeys()
+	{
+		final List<Reference<Object>> keys = new ArrayList<Reference<Object>>();
+		EvaluatorClassCache cache = new EvaluatorClassCache(10)
+		{
+			@Override
+			protected DataKey createDataKey(Object compileData, ReferenceQueue<Object> queue)
+			{
+				DataKey key = super.createDataKey(compileData, queue);
+				keys.add(key);
+				return key;
+			}
+		};
+		ClassLoader classLoader = getClass().getClassLoader();
+		Object data1 = new byte[0];
+		Object data2 = new byte[0];
+		cache.putClass(data1, String.class, classLoader);
+		cache.putClass(data2, Integer.class, classLoader);
+		assert cache.size() == 2;
+		assert keys.size() == 2;
+		
+		// simulating the collection of the first compile data object
+		Reference<Object> key1 = keys.get(0);
+		key1.clear();
+		key1.enqueue();
+		
+		assert cache.size() == 1;
+		assert cache.getClass(data1, String.class.getName(), classLoader) == null;
+		assert cache.getClass(data2, Integer.class.getName(), classLoader) == Integer.class;
+	}
+	
+	protected byte[] serialize(JasperReport report) throws JRException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		JRSaver.saveObject(report, out);
+		return out.toByteArray();
+	}
+	
+	protected JasperDesign createDesign() throws JRException
+	{
+		JasperDesign design = new JasperDesign();
+		design.setName("GroovyEvaluatorClassCacheReport");
+		design.setLanguage(JRReport.LANGUAGE_GROOVY);
+		
+		JRDesignBand band = new JRDesignBand();
+		band.setHeight(20);
+		JRDesignTextField textField = new JRDesignTextField();
+		textField.setWidth(200);
+		textField.setHeight(20);
+		textField.setExpression(new JRDesignExpression("\"row \" + $V{REPORT_COUNT}"));
+		band.addElement(textField);
+		((JRDesignSection) design.getDetailSection()).addBand(band);
+		
+		return design;
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.compilers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.testng.annotations.Test;
+
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.engine.JREmptyDataSource;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRPrintElement;
+import net.sf.jasperreports.engine.JRPrintText;
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperFillManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.SimpleJasperReportsContext;
+import net.sf.jasperreports.engine.design.JRCompiler;
+import net.sf.jasperreports.engine.design.JRDesignBand;
+import net.sf.jasperreports.engine.design.JRDesignExpression;
+import net.sf.jasperreports.engine.design.JRDesignParameter;
+import net.sf.jasperreports.engine.design.JRDesignSection;
+import net.sf.jasperreports.engine.design.JRDesignTextField;
+import net.sf.jasperreports.engine.design.JasperDesign;
+
+public class JavaScriptSharedScopeTest
+{
+	
+	private static final Log log = LogFactory.getLog(JavaScriptSharedScopeTest.class);
+	
+	private static final int ROWS = 3;
+	private static final int FILLS = 40;
+	private static final int THREADS = 8;
+	
+	private static final int BENCHMARK_FILLS = 2000;
+	private static final int BENCHMARK_THREADS = 32;
+
+	@Test
+	public void interpretedEvaluator() throws Exception
+	{
+		fillConcurrently(JavaScriptCompiler.class, true, THREADS, FILLS);
+	}
+
+	@Test
+	public void compiledEvaluator() throws Exception
+	{
+		fillConcurrently(JavaScriptClassCompiler.class, true, THREADS, FILLS);
+	}
+
+	@Test
+	public void unsharedScope() throws Exception
+	{
+		fillConcurrently(JavaScriptCompiler.class, false, THREADS, FILLS);
+		fillConcurrently(JavaScriptClassCompiler.class, false, THREADS, FILLS);
+	}
+
+	@Test
+	public void fillThroughput() throws Exception
+	{
+		measureThroughput(JavaScriptCompiler.class);
+		measureThroughput(JavaScriptClassCompiler.class);
+	}
+	
+	protected void measureThroughput(Class<? extends JRCompiler> compilerClass) throws Exception
+	{
+		// warming up before timing the fills
+		fillConcurrently(compilerClass, false, BENCHMARK_THREADS, BENCHMARK_FILLS);
+		fillConcurrently(compilerClass, true, BENCHMARK_THREADS, BENCHMARK_FILLS);
+		
+		long unsharedTime = fillConcurrently(compilerClass, false, BENCHMARK_THREADS, BENCHMARK_FILLS);
+		long sharedTime = fillConcurrently(compilerClass, true, BENCHMARK_THREADS, BENCHMARK_FILLS);
+		
+		// not asserting on the throughput as it depends on the machine
+		log.info(compilerClass.getSimpleName() + ": " + BENCHMARK_FILLS + " fills of a 1 page report on " 
+				+ BENCHMARK_THREADS + " threads, " + fillsPerSecond(unsharedTime) + " fills/s with separate scopes, " 
+				+ fillsPerSecond(sharedTime) + " fills/s with the shared scope");
+	}
+	
+	protected long fillsPerSecond(long time)
+	{
+		return BENCHMARK_FILLS * 1000000000L / time;
+	}
+	
+	protected long fillConcurrently(Class<? extends JRCompiler> compilerClass, boolean sharedScope, 
+			int threads, int fills) throws Exception
+	{
+		final SimpleJasperReportsContext context = new SimpleJasperReportsContext(DefaultJasperReportsContext.getInstance());
+		context.setProperty(JRCompiler.COMPILER_PREFIX + "javascript", compilerClass.getName());
+		context.setProperty(JavaScriptEvaluator.PROPERTY_SHARED_SCOPE, String.valueOf(sharedScope));
+		
+		final JasperReport report = JasperCompileManager.getInstance(context).compile(createDesign());
+		
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try
+		{
+			long start = System.nanoTime();
+			List<Future<Void>> results = new ArrayList<Future<Void>>();
+			for (int i = 0; i < fills; i++)
+			{
+				final String name = "fill" + i;
+				results.add(executor.submit(new Callable<Void>()
+				{
+					@Override
+					public Void call() throws Exception
+					{
+						Map<String, Object> params = new HashMap<String, Object>();
+						params.put("Name", name);
+						JasperPrint print = JasperFillManager.getInstance(context).fill(report, params, new JREmptyDataSource(ROWS));
+						
+						assert print.getPages().size() == 1;
+						List<JRPrintElement> elements = print.getPages().get(0).getElements();
+						assert elements.size() == ROWS;
+						for (int row = 0; row < ROWS; row++)
+						{
+							String text = ((JRPrintText) elements.get(row)).getFullText();
+							assert text.equals(name + " " + (row + 1) + " " + (row + 1) * 2 + " abc") : text;
+						}
+						return null;
+					}
+				}));
+			}
+			
+			for (Future<Void> result : results)
+			{
+				result.get();
+			}
+			return System.nanoTime() - start;
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+	
+	protected JasperDesign createDesign() throws JRException
+	{
+		JasperDesign design = new JasperDesign();
+		design.setName("JavaScriptSharedScopeReport");
+		design.setLanguage("javascript");
+		design.setPageWidth(200);
+		design.setPageHeight(400);
+		design.setColumnWidth(200);
+		design.setTopMargin(0);
+		design.setBottomMargin(0);
+		design.setLeftMargin(0);
+		design.setRightMargin(0);
+		
+		JRDesignParameter parameter = new JRDesignParameter();
+		parameter.setName("Name");
+		parameter.setValueClass(String.class);
+		design.addParameter(parameter);
+		
+		JRDesignBand band = new JRDesignBand();
+		band.setHeight(20);
+		JRDesignTextField textField = new JRDesignTextField();
+		textField.setWidth(200);
+		textField.setHeight(20);
+		textField.setExpression(new JRDesignExpression(
+				"$P{Name} + \" \" + $V{REPORT_COUNT} + \" \" + Math.max($V{REPORT_COUNT} * 2, 1)"
+				+ " + \" \" + [\"a\", \"b\", \"c\"].join(\"\")"));
+		band.addElement(textField);
+		((JRDesignSection) design.getDetailSection()).addBand(band);
+		
+		return design;
+	}
+}
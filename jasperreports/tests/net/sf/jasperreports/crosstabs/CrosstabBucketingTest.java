@@ -0,0 +1,284 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.crosstabs;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import net.sf.jasperreports.crosstabs.fill.calculation.BucketDefinition;
+import net.sf.jasperreports.crosstabs.fill.calculation.BucketDefinition.Bucket;
+import net.sf.jasperreports.crosstabs.fill.calculation.BucketingServiceContext;
+import net.sf.jasperreports.crosstabs.fill.calculation.CrosstabBucketingService;
+import net.sf.jasperreports.crosstabs.fill.calculation.CrosstabCell;
+import net.sf.jasperreports.crosstabs.fill.calculation.HeaderCell;
+import net.sf.jasperreports.crosstabs.fill.calculation.MeasureDefinition;
+import net.sf.jasperreports.crosstabs.fill.calculation.MeasureDefinition.MeasureValue;
+import net.sf.jasperreports.crosstabs.type.CrosstabTotalPositionEnum;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRExpression;
+import net.sf.jasperreports.engine.JasperReportsContext;
+import net.sf.jasperreports.engine.SimpleJasperReportsContext;
+import net.sf.jasperreports.engine.analytics.dataset.BucketOrder;
+import net.sf.jasperreports.engine.fill.JRDefaultIncrementerFactory;
+import net.sf.jasperreports.engine.fill.JRFillExpressionEvaluator;
+import net.sf.jasperreports.engine.type.CalculationEnum;
+
+public class CrosstabBucketingTest
+{
+	
+	@Test
+	public void columnarStore() throws JRException
+	{
+		List<Object[]> rows = createRows(20000);
+		String expected = calculate(rows, false, false, 0);
+		String result = calculate(rows, false, true, 0);
+		assert result.equals(expected);
+	}
+	
+	@Test
+	public void columnarStoreSortedCells() throws JRException
+	{
+		// enough buckets on the last level to have the cells of a map merge sorted
+		List<Object[]> rows = createRows(20000, 60);
+		String expected = calculate(rows, false, false, 0);
+		String result = calculate(rows, false, true, 0);
+		assert result.equals(expected);
+	}
+	
+	@Test
+	public void columnarStorePresorted() throws JRException
+	{
+		List<Object[]> rows = createRows(20000);
+		sortRows(rows);
+		String expected = calculate(rows, true, false, 0);
+		String result = calculate(rows, true, true, 0);
+		assert result.equals(expected);
+	}
+	
+	@Test
+	public void parallelBucketing() throws JRException
+	{
+		List<Object[]> rows = createRows(20000);
+		String expected = calculate(rows, false, false, 0);
+		String result = calculate(rows, false, false, 1000);
+		String columnarResult = calculate(rows, false, true, 1000);
+		assert result.equals(expected);
+		assert columnarResult.equals(expected);
+	}
+	
+	@Test
+	public void parallelBucketingPresorted() throws JRException
+	{
+		List<Object[]> rows = createRows(20000);
+		sortRows(rows);
+		String expected = calculate(rows, true, false, 0);
+		String result = calculate(rows, true, false, 1000);
+		String columnarResult = calculate(rows, true, true, 1000);
+		assert result.equals(expected);
+		assert columnarResult.equals(expected);
+	}
+	
+	protected void sortRows(List<Object[]> rows)
+	{
+		Collections.sort(rows, new Comparator<Object[]>()
+		{
+			@Override
+			public int compare(Object[] row1, Object[] row2)
+			{
+				for (int i = 0; i < 4; i++)
+				{
+					@SuppressWarnings("unchecked")
+					int order = ((Comparable<Object>) row1[i]).compareTo(row2[i]);
+					if (order != 0)
+					{
+						return order;
+					}
+				}
+				return 0;
+			}
+		});
+	}
+	
+	protected List<Object[]> createRows(int count)
+	{
+		return createRows(count, 3);
+	}
+	
+	protected List<Object[]> createRows(int count, int lastBucketCount)
+	{
+		Random random = new Random(0);
+		List<Object[]> rows = new ArrayList<Object[]>(count);
+		for (int i = 0; i < count; i++)
+		{
+			Object[] row = new Object[]{
+					"r" + random.nextInt(30), 
+					random.nextInt(5),
+					"c" + random.nextInt(40), 
+					"d" + random.nextInt(lastBucketCount),
+					random.nextInt(10) == 0 ? null : random.nextInt(1000),
+					random.nextDouble() * 100,
+					BigDecimal.valueOf(random.nextInt(100000), 2),
+					random.nextInt(10) == 0 ? null : random.nextInt(20),
+					random.nextGaussian(),
+					};
+			rows.add(row);
+		}
+		return rows;
+	}
+	
+	protected String calculate(List<Object[]> rows, boolean sorted, boolean columnar, int parallelThreshold) throws JRException
+	{
+		List<BucketDefinition> rowBuckets = Arrays.asList(
+				bucket(String.class, BucketOrder.ASCENDING), 
+				bucket(Integer.class, BucketOrder.DESCENDING));
+		List<BucketDefinition> columnBuckets = Arrays.asList(
+				bucket(String.class, sorted ? BucketOrder.ASCENDING : BucketOrder.NONE), 
+				bucket(String.class, BucketOrder.ASCENDING));
+		List<MeasureDefinition> measures = Arrays.asList(
+				measure(Integer.class, CalculationEnum.SUM),
+				measure(Double.class, CalculationEnum.AVERAGE),
+				measure(BigDecimal.class, CalculationEnum.SUM),
+				measure(Integer.class, CalculationEnum.COUNT),
+				measure(Integer.class, CalculationEnum.DISTINCT_COUNT),
+				measure(Double.class, CalculationEnum.STANDARD_DEVIATION),
+				measure(Integer.class, CalculationEnum.AVERAGE));
+		
+		boolean[][] retrieveTotal = new boolean[3][3];
+		for (boolean[] rowTotals : retrieveTotal)
+		{
+			Arrays.fill(rowTotals, true);
+		}
+		
+		SimpleJasperReportsContext jasperReportsContext = new SimpleJasperReportsContext();
+		jasperReportsContext.setProperty(CrosstabBucketingService.PROPERTY_COLUMNAR_STORE, String.valueOf(columnar));
+		jasperReportsContext.setProperty(CrosstabBucketingService.PROPERTY_PARALLEL_THRESHOLD, String.valueOf(parallelThreshold));
+		CrosstabBucketingService service = new CrosstabBucketingService(new TestServiceContext(jasperReportsContext), 
+				rowBuckets, columnBuckets, measures, sorted, retrieveTotal);
+		for (Object[] row : rows)
+		{
+			service.addData(
+					new Object[]{row[0], row[1], row[2], row[3]}, 
+					new Object[]{row[4], row[5], row[6], row[7], row[7], row[8], row[4]});
+		}
+		service.processData();
+		service.createCrosstab();
+		
+		StringBuilder dump = new StringBuilder();
+		dumpHeaders(dump, service.getRowHeaders());
+		dumpHeaders(dump, service.getColumnHeaders());
+		for (CrosstabCell[] cellRow : service.getCrosstabCells())
+		{
+			for (CrosstabCell cell : cellRow)
+			{
+				dumpBuckets(dump, cell.getRowBucketValues());
+				dumpBuckets(dump, cell.getColumnBucketValues());
+				dumpValues(dump, cell.getMesureValues());
+				for (MeasureValue[][] rowTotals : cell.getTotals())
+				{
+					for (MeasureValue[] totals : rowTotals)
+					{
+						dumpValues(dump, totals);
+					}
+				}
+				dump.append('\n');
+			}
+		}
+		return dump.toString();
+	}
+	
+	protected BucketDefinition bucket(Class<?> valueClass, BucketOrder order) throws JRException
+	{
+		return new BucketDefinition(valueClass, null, null, order, CrosstabTotalPositionEnum.END);
+	}
+	
+	protected MeasureDefinition measure(Class<?> valueClass, CalculationEnum calculation)
+	{
+		return new MeasureDefinition(valueClass, calculation, JRDefaultIncrementerFactory.getFactory(valueClass));
+	}
+	
+	protected void dumpHeaders(StringBuilder dump, HeaderCell[][] headers)
+	{
+		for (HeaderCell[] levelHeaders : headers)
+		{
+			for (HeaderCell header : levelHeaders)
+			{
+				if (header != null)
+				{
+					dumpBuckets(dump, header.getBucketValues());
+					dump.append(header.getLevelSpan()).append('/').append(header.getDepthSpan());
+					for (MeasureValue[] totals : header.getTotals())
+					{
+						dumpValues(dump, totals);
+					}
+				}
+				dump.append('\n');
+			}
+		}
+	}
+	
+	protected void dumpBuckets(StringBuilder dump, Bucket[] buckets)
+	{
+		dump.append(Arrays.toString(buckets));
+	}
+	
+	protected void dumpValues(StringBuilder dump, MeasureValue[] values)
+	{
+		dump.append(values == null ? "-" : Arrays.toString(values));
+	}
+	
+	protected static class TestServiceContext implements BucketingServiceContext
+	{
+		private final JasperReportsContext jasperReportsContext;
+		
+		public TestServiceContext(JasperReportsContext jasperReportsContext)
+		{
+			this.jasperReportsContext = jasperReportsContext;
+		}
+		
+		@Override
+		public JasperReportsContext getJasperReportsContext()
+		{
+			return jasperReportsContext;
+		}
+
+		@Override
+		public JRFillExpressionEvaluator getExpressionEvaluator()
+		{
+			return null;
+		}
+
+		@Override
+		public Object evaluateMeasuresExpression(JRExpression expression, MeasureValue[] measureValues) throws JRException
+		{
+			return null;
+		}
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
+import net.sf.jasperreports.engine.design.JRDesignField;
+
+public class BeanDataSourceTest
+{
+	
+	@Test
+	public void beanProperties() throws JRException
+	{
+		List<Object> beans = new ArrayList<Object>();
+		beans.add(new Person("Ann", new Address("Bern"), true));
+		beans.add(new Person("Bob", null, false));
+		beans.add(new Employee("Cid", new Address("Oslo"), 7));
+		
+		JRBeanCollectionDataSource dataSource = new JRBeanCollectionDataSource(beans);
+		JRDesignField name = field("name");
+		JRDesignField city = field("address.city");
+		JRDesignField active = field("active");
+		
+		assert dataSource.next();
+		assert "Ann".equals(dataSource.getFieldValue(name));
+		assert "Bern".equals(dataSource.getFieldValue(city));
+		assert Boolean.TRUE.equals(dataSource.getFieldValue(active));
+		
+		assert dataSource.next();
+		assert "Bob".equals(dataSource.getFieldValue(name));
+		// null intermediate values produce null
+		assert dataSource.getFieldValue(city) == null;
+		assert Boolean.FALSE.equals(dataSource.getFieldValue(active));
+		
+		// different bean class for the same fields
+		assert dataSource.next();
+		assert "Cid".equals(dataSource.getFieldValue(name));
+		assert "Oslo".equals(dataSource.getFieldValue(city));
+		assert Integer.valueOf(7).equals(dataSource.getFieldValue(field("level")));
+		assert !dataSource.next();
+	}
+	
+	@Test
+	public void propertyUtilsFallback() throws JRException
+	{
+		Map<String, Object> map = new HashMap<String, Object>();
+		map.put("name", "Map");
+		map.put("address", new Address("Rome"));
+		Holder holder = new Holder();
+		
+		JRBeanCollectionDataSource dataSource = new JRBeanCollectionDataSource(Arrays.asList(map, holder));
+		
+		assert dataSource.next();
+		assert "Map".equals(dataSource.getFieldValue(field("name")));
+		assert "Rome".equals(dataSource.getFieldValue(field("address.city")));
+		
+		assert dataSource.next();
+		assert "Zurich".equals(dataSource.getFieldValue(field("addresses[1].city")));
+		// non public class accessed via public interface
+		assert "hidden".equals(dataSource.getFieldValue(field("named.name")));
+	}
+	
+	@Test(expectedExceptions = JRException.class)
+	public void missingProperty() throws JRException
+	{
+		JRBeanCollectionDataSource dataSource = new JRBeanCollectionDataSource(
+				Arrays.asList(new Person("Ann", null, true)));
+		assert dataSource.next();
+		dataSource.getFieldValue(field("missing"));
+	}
+	
+	protected JRDesignField field(String name)
+	{
+		JRDesignField field = new JRDesignField();
+		field.setName(name);
+		field.setValueClass(Object.class);
+		return field;
+	}
+	
+	public static interface Named
+	{
+		String getName();
+	}
+	
+	public static class Address
+	{
+		private final String city;
+		
+		public Address(String city)
+		{
+			this.city = city;
+		}
+		
+		public String getCity()
+		{
+			return city;
+		}
+	}
+	
+	public static class Person implements Named
+	{
+		private final String name;
+		private final Address address;
+		private final boolean active;
+		
+		public Person(String name, Address address, boolean active)
+		{
+			this.name = name;
+			this.address = address;
+			this.active = active;
+		}
+
+		@Override
+		public String getName()
+		{
+			return name;
+		}
+		
+		public Address getAddress()
+		{
+			return address;
+		}
+		
+		public boolean isActive()
+		{
+			return active;
+		}
+	}
+	
+	public static class Employee extends Person
+	{
+		private final int level;
+		
+		public Employee(String name, Address address, int level)
+		{
+			super(name, address, true);
+			this.level = level;
+		}
+		
+		public int getLevel()
+		{
+			return level;
+		}
+	}
+	
+	private static class HiddenNamed implements Named
+	{
+		@Override
+		public String getName()
+		{
+			return "hidden";
+		}
+	}
+	
+	public static class Holder
+	{
+		public Address[] getAddresses()
+		{
+			return new Address[]{new Address("Bern"), new Address("Zurich")};
+		}
+		
+		public Named getNamed()
+		{
+			return new HiddenNamed();
+		}
+	}
+}
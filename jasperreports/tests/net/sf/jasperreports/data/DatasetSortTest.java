@@ -0,0 +1,222 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.data;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRParameter;
+import net.sf.jasperreports.engine.JRPrintElement;
+import net.sf.jasperreports.engine.JRPrintPage;
+import net.sf.jasperreports.engine.JRPrintText;
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperFillManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.data.JRMapCollectionDataSource;
+import net.sf.jasperreports.engine.design.JRDesignBand;
+import net.sf.jasperreports.engine.design.JRDesignExpression;
+import net.sf.jasperreports.engine.design.JRDesignField;
+import net.sf.jasperreports.engine.design.JRDesignSection;
+import net.sf.jasperreports.engine.design.JRDesignSortField;
+import net.sf.jasperreports.engine.design.JRDesignTextField;
+import net.sf.jasperreports.engine.design.JasperDesign;
+import net.sf.jasperreports.engine.fill.DatasetSortUtil;
+import net.sf.jasperreports.engine.type.SortOrderEnum;
+
+public class DatasetSortTest
+{
+	
+	@Test
+	public void sequentialSort() throws JRException
+	{
+		sortedReport("0");
+	}
+	
+	@Test
+	public void parallelSort() throws JRException
+	{
+		sortedReport("1");
+	}
+	
+	@Test
+	public void spilledSort() throws JRException
+	{
+		sortedReport("0", "300");
+	}
+	
+	@Test
+	public void spilledParallelSort() throws JRException
+	{
+		sortedReport("1", "1000");
+	}
+	
+	@Test
+	public void spilledMultiPassSort() throws JRException
+	{
+		// 50 runs merged in groups of 4
+		sortedReport("0", "100", "4");
+	}
+
+	protected void sortedReport(String parallelThreshold) throws JRException
+	{
+		sortedReport(parallelThreshold, "0");
+	}
+
+	protected void sortedReport(String parallelThreshold, String spillThreshold) throws JRException
+	{
+		sortedReport(parallelThreshold, spillThreshold, null);
+	}
+
+	protected void sortedReport(String parallelThreshold, String spillThreshold, String mergeFanIn) throws JRException
+	{
+		List<Map<String, ?>> records = createRecords(5000);
+		
+		final Collator collator = Collator.getInstance(Locale.US);
+		Collections.sort(records, new Comparator<Map<String, ?>>()
+		{
+			@Override
+			public int compare(Map<String, ?> record1, Map<String, ?> record2)
+			{
+				int ret = collator.compare(record1.get("name"), record2.get("name"));
+				if (ret == 0)
+				{
+					// descending
+					ret = ((Integer) record2.get("value")).compareTo((Integer) record1.get("value"));
+				}
+				return ret;
+			}
+		});
+		List<String> expected = new ArrayList<String>();
+		for (Map<String, ?> record : records)
+		{
+			expected.add(recordText(record.get("name"), record.get("value")));
+		}
+		
+		JasperDesign design = createDesign();
+		design.setProperty(DatasetSortUtil.PROPERTY_PARALLEL_SORT_THRESHOLD, parallelThreshold);
+		design.setProperty(DatasetSortUtil.PROPERTY_SPILL_THRESHOLD, spillThreshold);
+		if (mergeFanIn != null)
+		{
+			design.setProperty(DatasetSortUtil.PROPERTY_SPILL_MERGE_FAN_IN, mergeFanIn);
+		}
+		JasperReport report = JasperCompileManager.compileReport(design);
+		
+		Map<String, Object> params = new HashMap<String, Object>();
+		params.put(JRParameter.REPORT_LOCALE, Locale.US);
+		// shuffling the records as given to the report
+		Collections.shuffle(records, new Random(1));
+		JasperPrint print = JasperFillManager.fillReport(report, params, new JRMapCollectionDataSource(records));
+		
+		List<String> texts = new ArrayList<String>();
+		for (JRPrintPage page : print.getPages())
+		{
+			for (JRPrintElement element : page.getElements())
+			{
+				texts.add(((JRPrintText) element).getFullText());
+			}
+		}
+		assert texts.size() == expected.size();
+		for (int i = 0; i < texts.size(); i++)
+		{
+			String text = texts.get(i);
+			String expectedText = expected.get(i);
+			assert text.equals(expectedText) : "record " + i + ": " + text + " instead of " + expectedText;
+		}
+	}
+	
+	protected List<Map<String, ?>> createRecords(int count)
+	{
+		String[] names = new String[]{"apple", "Apple", "éclair", "eclair", "Zebra", "zoo", "banana"};
+		Random random = new Random(0);
+		List<Map<String, ?>> records = new ArrayList<Map<String, ?>>(count);
+		for (int i = 0; i < count; i++)
+		{
+			Map<String, Object> record = new HashMap<String, Object>();
+			record.put("name", names[random.nextInt(names.length)] + random.nextInt(10));
+			record.put("value", random.nextInt(100));
+			records.add(record);
+		}
+		return records;
+	}
+	
+	protected String recordText(Object name, Object value)
+	{
+		return name + "|" + value;
+	}
+	
+	protected JasperDesign createDesign() throws JRException
+	{
+		JasperDesign design = new JasperDesign();
+		design.setName("DatasetSortReport");
+		design.setPageWidth(200);
+		design.setColumnWidth(200);
+		design.setPageHeight(2000);
+		design.setTopMargin(0);
+		design.setBottomMargin(0);
+		design.setLeftMargin(0);
+		design.setRightMargin(0);
+		
+		JRDesignField nameField = new JRDesignField();
+		nameField.setName("name");
+		nameField.setValueClass(String.class);
+		design.addField(nameField);
+		
+		JRDesignField valueField = new JRDesignField();
+		valueField.setName("value");
+		valueField.setValueClass(Integer.class);
+		design.addField(valueField);
+		
+		JRDesignSortField nameSort = new JRDesignSortField();
+		nameSort.setName("name");
+		design.addSortField(nameSort);
+		
+		JRDesignSortField valueSort = new JRDesignSortField();
+		valueSort.setName("value");
+		valueSort.setOrder(SortOrderEnum.DESCENDING);
+		design.addSortField(valueSort);
+		
+		JRDesignTextField textField = new JRDesignTextField();
+		textField.setWidth(200);
+		textField.setHeight(20);
+		textField.setExpression(new JRDesignExpression("$F{name} + \"|\" + $F{value}"));
+		
+		JRDesignBand detail = new JRDesignBand();
+		detail.setHeight(20);
+		detail.addElement(textField);
+		((JRDesignSection) design.getDetailSection()).addBand(detail);
+		
+		return design;
+	}
+}
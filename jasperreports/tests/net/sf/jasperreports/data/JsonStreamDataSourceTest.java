@@ -0,0 +1,141 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+import net.sf.jasperreports.engine.data.JsonDataSource;
+import net.sf.jasperreports.engine.data.JsonStreamDataSource;
+import net.sf.jasperreports.engine.design.JRDesignField;
+
+public class JsonStreamDataSourceTest
+{
+	
+	private static final String JSON = "{"
+			+ "\"customers\": ["
+			+ "{\"id\": 1, \"name\": \"A\", \"orders\": [{\"id\": 10, \"items\": [{\"id\": 100}, {\"id\": 101}]}, {\"id\": 11, \"items\": {\"id\": 110}}]},"
+			+ "{\"id\": 2, \"name\": \"B\", \"orders\": {\"id\": 20, \"items\": []}, \"extra\": {\"orders\": [{\"id\": 99}]}},"
+			+ "{\"id\": 3, \"name\": \"C\"},"
+			+ "\"scalar\","
+			+ "[{\"id\": 4}],"
+			+ "{\"id\": 5, \"orders\": [[{\"id\": 50}], 7, null, {\"id\": 51}]}"
+			+ "],"
+			+ "\"single\": {\"id\": 1000, \"name\": \"S\", \"tags\": [\"x\", \"y\"]},"
+			+ "\"count\": 3"
+			+ "}";
+	
+	private static final String[] EXPRESSIONS = {
+			null, "customers", "customers.orders", "customers.orders.items", "customers.name",
+			"single", "single.tags", "count", "missing", "customers.orders.id"};
+	
+	@Test
+	public void sameRecords() throws JRException
+	{
+		for (String expression : EXPRESSIONS)
+		{
+			JsonDataSource treeDataSource = new JsonDataSource(input(), expression);
+			JsonDataSource streamDataSource = new JsonStreamDataSource(input(), expression);
+			
+			List<String> treeRecords = records(treeDataSource);
+			List<String> streamRecords = records(streamDataSource);
+			assert treeRecords.equals(streamRecords) : expression + ": " + treeRecords + " vs " + streamRecords;
+		}
+	}
+	
+	@Test
+	public void streamableExpressions()
+	{
+		assert JsonStreamDataSource.isStreamable(null);
+		assert JsonStreamDataSource.isStreamable("customers.orders");
+		assert !JsonStreamDataSource.isStreamable("customers[0].orders");
+		assert !JsonStreamDataSource.isStreamable("customers(name == A)");
+	}
+	
+	@Test
+	public void rewindFile() throws JRException, IOException
+	{
+		File file = File.createTempFile("jr_json_stream", ".json");
+		try
+		{
+			Files.write(file.toPath(), JSON.getBytes(StandardCharsets.UTF_8));
+			
+			JsonStreamDataSource dataSource = new JsonStreamDataSource(file, "customers.orders");
+			List<String> records = records(dataSource);
+			assert records.size() == 7;
+			
+			dataSource.moveFirst();
+			assert records(dataSource).equals(records);
+			dataSource.dispose();
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+	
+	@Test(expectedExceptions = JRException.class)
+	public void rewindStream() throws JRException
+	{
+		JsonStreamDataSource dataSource = new JsonStreamDataSource(input(), "customers");
+		assert dataSource.next();
+		dataSource.moveFirst();
+	}
+	
+	protected InputStream input()
+	{
+		return new ByteArrayInputStream(JSON.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	protected List<String> records(JsonDataSource dataSource) throws JRException
+	{
+		JRField id = field("id", Object.class);
+		JRField name = field("name", String.class);
+		
+		List<String> records = new ArrayList<String>();
+		while (dataSource.next())
+		{
+			records.add(dataSource.getFieldValue(id) + "/" + dataSource.getFieldValue(name));
+		}
+		return records;
+	}
+	
+	protected JRDesignField field(String name, Class<?> valueClass)
+	{
+		JRDesignField field = new JRDesignField();
+		field.setName(name);
+		field.setValueClass(valueClass);
+		return field;
+	}
+}
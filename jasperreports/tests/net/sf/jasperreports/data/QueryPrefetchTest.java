@@ -0,0 +1,393 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.data;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.testng.annotations.Test;
+
+import net.sf.jasperreports.components.ComponentsExtensionsRegistryFactory;
+import net.sf.jasperreports.components.list.DesignListContents;
+import net.sf.jasperreports.components.list.StandardListComponent;
+import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JRDataset;
+import net.sf.jasperreports.engine.JREmptyDataSource;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRValueParameter;
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperExportManager;
+import net.sf.jasperreports.engine.JasperFillManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.JasperReportsContext;
+import net.sf.jasperreports.engine.SimpleJasperReportsContext;
+import net.sf.jasperreports.engine.component.ComponentKey;
+import net.sf.jasperreports.engine.design.JRDesignBand;
+import net.sf.jasperreports.engine.design.JRDesignComponentElement;
+import net.sf.jasperreports.engine.design.JRDesignDataset;
+import net.sf.jasperreports.engine.design.JRDesignDatasetParameter;
+import net.sf.jasperreports.engine.design.JRDesignDatasetRun;
+import net.sf.jasperreports.engine.design.JRDesignExpression;
+import net.sf.jasperreports.engine.design.JRDesignField;
+import net.sf.jasperreports.engine.design.JRDesignParameter;
+import net.sf.jasperreports.engine.design.JRDesignQuery;
+import net.sf.jasperreports.engine.design.JRDesignSection;
+import net.sf.jasperreports.engine.design.JRDesignSubreport;
+import net.sf.jasperreports.engine.design.JRDesignSubreportParameter;
+import net.sf.jasperreports.engine.design.JRDesignTextField;
+import net.sf.jasperreports.engine.design.JasperDesign;
+import net.sf.jasperreports.engine.fill.AsynchronousFillHandle;
+import net.sf.jasperreports.engine.fill.AsynchronousFilllListener;
+import net.sf.jasperreports.engine.fill.JRFillDataset;
+import net.sf.jasperreports.engine.query.AbstractQueryExecuterFactory;
+import net.sf.jasperreports.engine.query.JRCsvQueryExecuterFactory;
+import net.sf.jasperreports.engine.query.JRQueryExecuter;
+import net.sf.jasperreports.engine.query.JRQueryExecuterFactory;
+import net.sf.jasperreports.engine.query.QueryExecuterFactoryBundle;
+
+public class QueryPrefetchTest
+{
+	
+	private static final int[] QUERY_ROWS = {0, 3, 12, 45};
+	
+	public static String csv(int rows)
+	{
+		StringBuilder csv = new StringBuilder();
+		for (int i = 1; i <= rows; i++)
+		{
+			csv.append(i).append(",Row ").append(i).append('\n');
+		}
+		return csv.toString();
+	}
+	
+	@Test
+	public void subreportQueries() throws JRException
+	{
+		JasperReport subreport = JasperCompileManager.compileReport(createSubreportDesign());
+		JasperReport report = JasperCompileManager.compileReport(createSubreportsMasterDesign());
+		
+		Map<String, Object> params = new HashMap<String, Object>();
+		params.put("Subreport", subreport);
+		assertSameOutput(report, params);
+	}
+	
+	@Test
+	public void listQueries() throws JRException
+	{
+		JasperReport report = JasperCompileManager.compileReport(createListsMasterDesign(true));
+		assertSameOutput(report, new HashMap<String, Object>());
+	}
+	
+	@Test
+	public void fieldlessListQueries() throws JRException
+	{
+		JasperReport report = JasperCompileManager.compileReport(createListsMasterDesign(false));
+		assertSameOutput(report, new HashMap<String, Object>());
+	}
+	
+	@Test(timeOut = 60000)
+	public void cancelPrefetchedQuery() throws JRException, InterruptedException
+	{
+		final CountDownLatch queryStarted = new CountDownLatch(1);
+		final CountDownLatch queryCancelled = new CountDownLatch(1);
+		SimpleJasperReportsContext context = new SimpleJasperReportsContext();
+		context.setProperty(JRFillDataset.PROPERTY_QUERY_PREFETCH, Boolean.TRUE.toString());
+		// overriding the CSV query executer in the fill context
+		context.setExtensions(QueryExecuterFactoryBundle.class, Collections.singletonList(new QueryExecuterFactoryBundle()
+		{
+			@Override
+			public String[] getLanguages()
+			{
+				return new String[]{"csv"};
+			}
+
+			@Override
+			public JRQueryExecuterFactory getQueryExecuterFactory(String language)
+			{
+				if (!"csv".equals(language))
+				{
+					return null;
+				}
+				
+				return new AbstractQueryExecuterFactory()
+				{
+					@Override
+					public Object[] getBuiltinParameters()
+					{
+						return new Object[0];
+					}
+
+					@Override
+					public JRQueryExecuter createQueryExecuter(JasperReportsContext jasperReportsContext, 
+							JRDataset dataset, Map<String, ? extends JRValueParameter> parameters)
+					{
+						return new JRQueryExecuter()
+						{
+							@Override
+							public JRDataSource createDatasource() throws JRException
+							{
+								queryStarted.countDown();
+								try
+								{
+									queryCancelled.await();
+								}
+								catch (InterruptedException e)
+								{
+									Thread.currentThread().interrupt();
+								}
+								throw new JRException("query cancelled");
+							}
+
+							@Override
+							public void close()
+							{
+								//NOP
+							}
+
+							@Override
+							public boolean cancelQuery()
+							{
+								queryCancelled.countDown();
+								return true;
+							}
+						};
+					}
+
+					@Override
+					public boolean supportsQueryParameterType(String className)
+					{
+						return true;
+					}
+				};
+			}
+		}));
+		
+		Map<String, Object> params = new HashMap<String, Object>();
+		params.put("Subreport", JasperCompileManager.compileReport(createSubreportDesign()));
+		JasperReport report = JasperCompileManager.compileReport(createSubreportsMasterDesign());
+		
+		final CountDownLatch fillEnded = new CountDownLatch(1);
+		final boolean[] cancelled = new boolean[1];
+		AsynchronousFillHandle fillHandle = AsynchronousFillHandle.createHandle(context, report, params, 
+				new JREmptyDataSource(1));
+		fillHandle.addListener(new AsynchronousFilllListener()
+		{
+			@Override
+			public void reportFinished(JasperPrint jasperPrint)
+			{
+				fillEnded.countDown();
+			}
+
+			@Override
+			public void reportCancelled()
+			{
+				cancelled[0] = true;
+				fillEnded.countDown();
+			}
+
+			@Override
+			public void reportFillError(Throwable t)
+			{
+				fillEnded.countDown();
+			}
+		});
+		fillHandle.startFill();
+		
+		queryStarted.await();
+		fillHandle.cancellFill();
+		// the prefetched query runs on a prefetch thread, it is cancelled along with the fill
+		assert queryCancelled.getCount() == 0;
+		
+		fillEnded.await();
+		assert cancelled[0];
+	}
+	
+	protected void assertSameOutput(JasperReport report, Map<String, Object> params) throws JRException
+	{
+		String sequentialXml = fillXml(new SimpleJasperReportsContext(), report, params);
+		
+		SimpleJasperReportsContext prefetchContext = new SimpleJasperReportsContext();
+		prefetchContext.setProperty(JRFillDataset.PROPERTY_QUERY_PREFETCH, Boolean.TRUE.toString());
+		// buffering fewer rows than some of the queries return
+		prefetchContext.setProperty(JRFillDataset.PROPERTY_QUERY_PREFETCH_ROWS, "5");
+		String prefetchXml = fillXml(prefetchContext, report, params);
+		
+		assert prefetchXml.equals(sequentialXml);
+	}
+	
+	protected String fillXml(JasperReportsContext context, JasperReport report, 
+			Map<String, Object> params) throws JRException
+	{
+		JasperPrint print = JasperFillManager.getInstance(context).fill(report, 
+				new HashMap<String, Object>(params), new JREmptyDataSource(2));
+		assert print.getPages().size() > 1;
+		return JasperExportManager.exportReportToXml(print);
+	}
+	
+	protected JasperDesign createSubreportsMasterDesign() throws JRException
+	{
+		JasperDesign design = createDesign("QueryPrefetchSubreports");
+		
+		JRDesignParameter parameter = new JRDesignParameter();
+		parameter.setName("Subreport");
+		parameter.setValueClass(JasperReport.class);
+		design.addParameter(parameter);
+		
+		JRDesignBand band = new JRDesignBand();
+		band.setHeight(20 * QUERY_ROWS.length);
+		for (int i = 0; i < QUERY_ROWS.length; i++)
+		{
+			JRDesignSubreport subreport = new JRDesignSubreport(design);
+			subreport.setY(20 * i);
+			subreport.setWidth(design.getColumnWidth());
+			subreport.setHeight(20);
+			subreport.setExpression(new JRDesignExpression("$P{Subreport}"));
+			
+			JRDesignSubreportParameter subreportParameter = new JRDesignSubreportParameter();
+			subreportParameter.setName(JRCsvQueryExecuterFactory.CSV_READER);
+			subreportParameter.setExpression(csvReaderExpression(QUERY_ROWS[i]));
+			subreport.addParameter(subreportParameter);
+			
+			band.addElement(subreport);
+		}
+		((JRDesignSection) design.getDetailSection()).addBand(band);
+		return design;
+	}
+	
+	protected JasperDesign createSubreportDesign() throws JRException
+	{
+		JasperDesign design = createDesign("QueryPrefetchSubreport");
+		design.setTopMargin(0);
+		design.setBottomMargin(0);
+		
+		JRDesignDataset dataset = (JRDesignDataset) design.getMainDataset();
+		initCsvDataset(dataset);
+		
+		JRDesignBand band = new JRDesignBand();
+		band.setHeight(15);
+		band.addElement(createRowTextField(design.getColumnWidth()));
+		((JRDesignSection) design.getDetailSection()).addBand(band);
+		return design;
+	}
+	
+	protected JasperDesign createListsMasterDesign(boolean fields) throws JRException
+	{
+		JasperDesign design = createDesign("QueryPrefetchLists");
+		
+		JRDesignDataset dataset = new JRDesignDataset(false);
+		dataset.setName("Rows");
+		initCsvDataset(dataset);
+		if (!fields)
+		{
+			dataset.removeField("id");
+			dataset.removeField("label");
+		}
+		design.addDataset(dataset);
+		
+		JRDesignBand band = new JRDesignBand();
+		band.setHeight(20 * QUERY_ROWS.length);
+		for (int i = 0; i < QUERY_ROWS.length; i++)
+		{
+			JRDesignDatasetRun datasetRun = new JRDesignDatasetRun();
+			datasetRun.setDatasetName("Rows");
+			JRDesignDatasetParameter datasetParameter = new JRDesignDatasetParameter();
+			datasetParameter.setName(JRCsvQueryExecuterFactory.CSV_READER);
+			datasetParameter.setExpression(csvReaderExpression(QUERY_ROWS[i]));
+			datasetRun.addParameter(datasetParameter);
+			
+			DesignListContents contents = new DesignListContents();
+			contents.setHeight(15);
+			JRDesignTextField textField = createRowTextField(design.getColumnWidth());
+			if (!fields)
+			{
+				textField.setExpression(new JRDesignExpression("\"Row \" + $V{REPORT_COUNT}"));
+			}
+			contents.addElement(textField);
+			
+			StandardListComponent list = new StandardListComponent();
+			list.setDatasetRun(datasetRun);
+			list.setContents(contents);
+			
+			JRDesignComponentElement listElement = new JRDesignComponentElement(design);
+			listElement.setY(20 * i);
+			listElement.setWidth(design.getColumnWidth());
+			listElement.setHeight(15);
+			listElement.setComponentKey(new ComponentKey(ComponentsExtensionsRegistryFactory.NAMESPACE, "jr", 
+					ComponentsExtensionsRegistryFactory.LIST_COMPONENT_NAME));
+			listElement.setComponent(list);
+			band.addElement(listElement);
+		}
+		((JRDesignSection) design.getDetailSection()).addBand(band);
+		return design;
+	}
+	
+	protected void initCsvDataset(JRDesignDataset dataset) throws JRException
+	{
+		JRDesignQuery query = new JRDesignQuery();
+		query.setLanguage("csv");
+		query.setText("");
+		dataset.setQuery(query);
+		dataset.setProperty(JRCsvQueryExecuterFactory.CSV_COLUMN_NAMES, "id,label");
+		
+		JRDesignField idField = new JRDesignField();
+		idField.setName("id");
+		idField.setValueClass(Integer.class);
+		dataset.addField(idField);
+		
+		JRDesignField labelField = new JRDesignField();
+		labelField.setName("label");
+		labelField.setValueClass(String.class);
+		dataset.addField(labelField);
+	}
+	
+	protected JRDesignExpression csvReaderExpression(int rows)
+	{
+		return new JRDesignExpression("new java.io.StringReader(" 
+				+ QueryPrefetchTest.class.getName() + ".csv(" + rows + "))");
+	}
+	
+	protected JRDesignTextField createRowTextField(int width)
+	{
+		JRDesignTextField textField = new JRDesignTextField();
+		textField.setWidth(width);
+		textField.setHeight(15);
+		textField.setExpression(new JRDesignExpression("$F{id} + \" \" + $F{label}"));
+		return textField;
+	}
+	
+	protected JasperDesign createDesign(String name)
+	{
+		JasperDesign design = new JasperDesign();
+		design.setName(name);
+		design.setPageWidth(300);
+		design.setPageHeight(500);
+		design.setColumnWidth(260);
+		design.setLeftMargin(20);
+		design.setRightMargin(20);
+		return design;
+	}
+}
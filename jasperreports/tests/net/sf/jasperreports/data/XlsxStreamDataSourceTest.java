@@ -0,0 +1,280 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.testng.annotations.Test;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+import net.sf.jasperreports.engine.SimpleJasperReportsContext;
+import net.sf.jasperreports.engine.data.AbstractXlsDataSource;
+import net.sf.jasperreports.engine.data.JRXlsxDataSource;
+import net.sf.jasperreports.engine.data.XlsxStreamDataSource;
+import net.sf.jasperreports.engine.design.JRDesignField;
+import net.sf.jasperreports.repo.InputStreamResource;
+import net.sf.jasperreports.repo.RepositoryService;
+import net.sf.jasperreports.repo.Resource;
+
+public class XlsxStreamDataSourceTest
+{
+	
+	@Test
+	public void sameRecords() throws JRException, IOException
+	{
+		byte[] data = createWorkbook();
+		String[] sheetSelections = {null, "0", "1", "second"};
+		for (String sheetSelection : sheetSelections)
+		{
+			for (int header = 0; header < 2; header++)
+			{
+				AbstractXlsDataSource workbookDataSource = new JRXlsxDataSource(new ByteArrayInputStream(data));
+				AbstractXlsDataSource streamDataSource = new XlsxStreamDataSource(new ByteArrayInputStream(data));
+				
+				List<String> workbookRecords = records(workbookDataSource, sheetSelection, header == 1);
+				List<String> streamRecords = records(streamDataSource, sheetSelection, header == 1);
+				assert !streamRecords.isEmpty();
+				assert workbookRecords.equals(streamRecords) 
+					: sheetSelection + "/" + header + ": " + workbookRecords + " vs " + streamRecords;
+				assert workbookDataSource.getColumnNames().equals(streamDataSource.getColumnNames())
+					: workbookDataSource.getColumnNames() + " vs " + streamDataSource.getColumnNames();
+				
+				streamDataSource.moveFirst();
+				assert records(streamDataSource, sheetSelection, header == 1).equals(streamRecords);
+				streamDataSource.close();
+			}
+		}
+	}
+	
+	@Test(expectedExceptions = JRException.class)
+	public void unknownColumn() throws JRException, IOException
+	{
+		XlsxStreamDataSource dataSource = new XlsxStreamDataSource(new ByteArrayInputStream(createWorkbook()));
+		dataSource.setUseFirstRowAsHeader(true);
+		assert dataSource.next();
+		dataSource.getFieldValue(field("missing", String.class));
+	}
+	
+	@Test
+	public void invalidLocation() throws IOException
+	{
+		final boolean[] closed = new boolean[1];
+		final InputStream stream = new ByteArrayInputStream("not a workbook".getBytes("UTF-8"))
+		{
+			@Override
+			public void close() throws IOException
+			{
+				closed[0] = true;
+				super.close();
+			}
+		};
+		
+		SimpleJasperReportsContext context = new SimpleJasperReportsContext();
+		context.setExtensions(RepositoryService.class, Collections.singletonList(new RepositoryService()
+		{
+			@Override
+			public Resource getResource(String uri)
+			{
+				return null;
+			}
+
+			@Override
+			public void saveResource(String uri, Resource resource)
+			{
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public <K extends Resource> K getResource(String uri, Class<K> resourceType)
+			{
+				if (!"invalid.xlsx".equals(uri) || !resourceType.equals(InputStreamResource.class))
+				{
+					return null;
+				}
+				
+				InputStreamResource resource = new InputStreamResource();
+				resource.setInputStream(stream);
+				return resourceType.cast(resource);
+			}
+		}));
+		
+		int spoolFiles = spoolFileCount();
+		try
+		{
+			new XlsxStreamDataSource(context, "invalid.xlsx");
+			assert false;
+		}
+		catch (JRException | RuntimeException e)
+		{
+			// expected
+		}
+		assert closed[0];
+		assert spoolFileCount() == spoolFiles;
+	}
+	
+	@Test
+	public void spoolFileDeleted() throws JRException, IOException
+	{
+		int spoolFiles = spoolFileCount();
+		XlsxStreamDataSource dataSource = new XlsxStreamDataSource(new ByteArrayInputStream(createWorkbook()));
+		assert spoolFileCount() == spoolFiles + 1;
+		assert dataSource.next();
+		dataSource.close();
+		assert spoolFileCount() == spoolFiles;
+	}
+	
+	protected int spoolFileCount()
+	{
+		String[] names = new File(System.getProperty("java.io.tmpdir")).list(new FilenameFilter()
+		{
+			@Override
+			public boolean accept(File dir, String name)
+			{
+				return name.startsWith("xlsx_") && name.endsWith(".tmp");
+			}
+		});
+		return names == null ? 0 : names.length;
+	}
+	
+	protected byte[] createWorkbook() throws IOException
+	{
+		XSSFWorkbook workbook = new XSSFWorkbook();
+		try
+		{
+			CellStyle dateStyle = workbook.createCellStyle();
+			dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd"));
+			
+			Sheet first = workbook.createSheet("First");
+			Row header = first.createRow(0);
+			header.createCell(0).setCellValue("name");
+			header.createCell(1).setCellValue("amount");
+			header.createCell(2).setCellValue("date");
+			header.createCell(3).setCellValue("flag");
+			header.createCell(4).setCellValue("total");
+			header.createCell(5).setCellValue(7);
+			
+			Calendar calendar = Calendar.getInstance();
+			calendar.clear();
+			calendar.set(2018, Calendar.MARCH, 14);
+			for (int i = 1; i <= 5; i++)
+			{
+				Row row = first.createRow(i);
+				row.createCell(0).setCellValue("name " + i);
+				row.createCell(1).setCellValue(i * 1.5);
+				if (i != 3)
+				{
+					row.createCell(2).setCellValue(calendar.getTime());
+					row.getCell(2).setCellStyle(dateStyle);
+				}
+				row.createCell(3).setCellValue(i % 2 == 0);
+				row.createCell(4).setCellFormula("B" + (i + 1) + "*2");
+				calendar.add(Calendar.DAY_OF_MONTH, 40);
+			}
+			
+			Sheet second = workbook.createSheet("Second");
+			for (int i = 0; i < 3; i++)
+			{
+				Row row = second.createRow(i);
+				row.createCell(0).setCellValue("second " + i);
+				row.createCell(1).setCellValue("" + (i * 100));
+				row.createCell(2).setCellValue("2018-0" + (i + 1) + "-01");
+				row.createCell(3).setCellValue(i == 1 ? "true" : "false");
+				row.createCell(4).setCellValue(i);
+				row.createCell(5).setCellValue("");
+			}
+			
+			workbook.getCreationHelper().createFormulaEvaluator().evaluateAll();
+			
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			workbook.write(out);
+			return out.toByteArray();
+		}
+		finally
+		{
+			workbook.close();
+		}
+	}
+	
+	protected List<String> records(AbstractXlsDataSource dataSource, String sheetSelection, boolean header) throws JRException
+	{
+		if (sheetSelection != null)
+		{
+			dataSource.setSheetSelection(sheetSelection);
+		}
+		dataSource.setUseFirstRowAsHeader(header);
+		
+		JRField[] fields = new JRField[]{
+			field("COLUMN_0", String.class),
+			field("COLUMN_1", Double.class),
+			field("COLUMN_2", Date.class),
+			field("COLUMN_3", Boolean.class),
+			field("COLUMN_4", Double.class),
+		};
+		
+		List<String> records = new ArrayList<String>();
+		while (dataSource.next())
+		{
+			StringBuilder record = new StringBuilder();
+			for (JRField field : fields)
+			{
+				Object value;
+				try
+				{
+					value = dataSource.getFieldValue(field);
+				}
+				catch (JRException e)
+				{
+					// the header row when not used as header
+					value = "error";
+				}
+				record.append(value).append('|');
+			}
+			records.add(record.toString());
+		}
+		return records;
+	}
+	
+	protected JRDesignField field(String name, Class<?> valueClass)
+	{
+		JRDesignField field = new JRDesignField();
+		field.setName(name);
+		field.setValueClass(valueClass);
+		return field;
+	}
+}
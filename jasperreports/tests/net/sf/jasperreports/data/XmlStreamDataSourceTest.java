@@ -0,0 +1,172 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+import net.sf.jasperreports.engine.JRRewindableDataSource;
+import net.sf.jasperreports.engine.data.JRXmlDataSource;
+import net.sf.jasperreports.engine.data.XmlStreamDataSource;
+import net.sf.jasperreports.engine.design.JRDesignField;
+
+public class XmlStreamDataSourceTest
+{
+	
+	private static final String XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+			+ "<shop>"
+			+ "<customer id=\"1\" type=\"retail\"><name>A</name><city>X</city>"
+			+ "<order id=\"10\"><total>5.5</total><item id=\"100\">a</item><item id=\"101\">b</item></order>"
+			+ "<order id=\"11\"><total>20</total><item id=\"110\"><![CDATA[c&d]]></item></order>"
+			+ "</customer>"
+			+ "<!-- comment -->"
+			+ "<customer id=\"2\" type=\"wholesale\"><name>B &amp; C</name><city>Y</city>"
+			+ "<order id=\"20\"><total>100</total></order>"
+			+ "<archive><order id=\"21\"><total>1</total><item id=\"210\">e</item></order></archive>"
+			+ "</customer>"
+			+ "<customer id=\"3\"><name/><city>X</city></customer>"
+			+ "<supplier id=\"4\"><name>S</name></supplier>"
+			+ "</shop>";
+	
+	private static final String[] SELECT_EXPRESSIONS = {
+			"/shop/customer", "shop/customer", "//customer", "/shop/*", "//order", "/shop/customer/order", 
+			"/shop//item", "/shop/customer[@type]", "/shop/customer[@type='retail']", "/shop/customer[@id > 1]",
+			"/shop/customer[2]", "/shop/customer[city='X']", "/shop/customer[city='X'][2]", "//order[total >= 20]",
+			"//order[1]", "/shop/customer[@id != 1]/order", "//item[.='b']", "/missing", "/shop/customer/name[text()]"};
+	
+	private static final String[] FIELD_EXPRESSIONS = {
+			"@id", "name", "city", "order/@id", "order[2]/@id", "order/total", ".//item", ".//item/@id", 
+			"order[total > 10]/@id", "item[@id='101']", "missing", "text()", ".", "*/@id", "@*"};
+	
+	@Test
+	public void sameRecords() throws JRException
+	{
+		for (String selectExpression : SELECT_EXPRESSIONS)
+		{
+			assert XmlStreamDataSource.isStreamable(selectExpression, null) : selectExpression;
+			
+			JRXmlDataSource documentDataSource = new JRXmlDataSource(input(), selectExpression);
+			XmlStreamDataSource streamDataSource = new XmlStreamDataSource(
+					DefaultJasperReportsContext.getInstance(), input(), selectExpression);
+			
+			List<String> documentRecords = records(documentDataSource);
+			List<String> streamRecords = records(streamDataSource);
+			assert documentRecords.equals(streamRecords) 
+				: selectExpression + ": " + documentRecords + " vs " + streamRecords;
+		}
+	}
+	
+	@Test
+	public void streamableExpressions()
+	{
+		assert XmlStreamDataSource.isStreamable("/a/b[@id = 1]", new JRField[]{field("@id", String.class)});
+		assert !XmlStreamDataSource.isStreamable("/a/b/@id", null);
+		assert !XmlStreamDataSource.isStreamable("/a[b = 1]/b", null);
+		assert !XmlStreamDataSource.isStreamable("/a/b[@id = 1 and @x]", null);
+		assert !XmlStreamDataSource.isStreamable("/a/b[last()]", null);
+		assert !XmlStreamDataSource.isStreamable("/", null);
+		assert !XmlStreamDataSource.isStreamable("/a/b", new JRField[]{field("../@id", String.class)});
+		assert !XmlStreamDataSource.isStreamable("/a/b", new JRField[]{field("/a/@id", String.class)});
+		assert !XmlStreamDataSource.isStreamable("/a/b", new JRField[]{field("count(c)", String.class)});
+		assert !XmlStreamDataSource.isStreamable("/a/b", new JRField[]{field("ancestor::a/@id", String.class)});
+	}
+	
+	@Test
+	public void rewindFile() throws JRException, IOException
+	{
+		File file = File.createTempFile("jr_xml_stream", ".xml");
+		try
+		{
+			Files.write(file.toPath(), XML.getBytes(StandardCharsets.UTF_8));
+			
+			XmlStreamDataSource dataSource = new XmlStreamDataSource(
+					DefaultJasperReportsContext.getInstance(), file, "//order");
+			List<String> records = records(dataSource);
+			assert records.size() == 4;
+			
+			dataSource.moveFirst();
+			assert records(dataSource).equals(records);
+			dataSource.close();
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+	
+	@Test(expectedExceptions = JRException.class)
+	public void rewindStream() throws JRException
+	{
+		XmlStreamDataSource dataSource = new XmlStreamDataSource(
+				DefaultJasperReportsContext.getInstance(), input(), "/shop/customer");
+		assert dataSource.next();
+		dataSource.moveFirst();
+	}
+	
+	protected InputStream input()
+	{
+		return new ByteArrayInputStream(XML.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	protected List<String> records(JRRewindableDataSource dataSource) throws JRException
+	{
+		JRField[] fields = new JRField[FIELD_EXPRESSIONS.length];
+		for (int i = 0; i < fields.length; i++)
+		{
+			fields[i] = field(FIELD_EXPRESSIONS[i], String.class);
+		}
+		
+		List<String> records = new ArrayList<String>();
+		while (dataSource.next())
+		{
+			StringBuilder record = new StringBuilder();
+			for (JRField field : fields)
+			{
+				record.append(dataSource.getFieldValue(field)).append('|');
+			}
+			records.add(record.toString());
+		}
+		return records;
+	}
+	
+	protected JRDesignField field(String expression, Class<?> valueClass)
+	{
+		JRDesignField field = new JRDesignField();
+		field.setName(expression);
+		field.setDescription(expression);
+		field.setValueClass(valueClass);
+		return field;
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.data.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+public class ColumnStoreEncodingTest
+{
+	
+	private static final String[] STATUSES = {"OPEN", "CLOSED", "PENDING", "CANCELLED", "SHIPPED"};
+	
+	@Test
+	public void bitPacking()
+	{
+		Random random = new Random(17);
+		for (int bitWidth = 1; bitWidth < Long.SIZE; bitWidth++)
+		{
+			int count = 100 + random.nextInt(100);
+			long[] values = new long[count];
+			for (int i = 0; i < count; i++)
+			{
+				values[i] = random.nextLong() >>> (Long.SIZE - bitWidth);
+			}
+			
+			BitPackedValues packed = new BitPackedValues(count, values, bitWidth, 3, -5);
+			assert packed.size() == count;
+			ColumnValuesIterator iterator = packed.iterator();
+			for (int i = 0; i < count; i++)
+			{
+				assert iterator.next();
+				assert (Long) iterator.get() == values[i] * 3 - 5 : bitWidth + " at " + i;
+			}
+			assert !iterator.next();
+		}
+	}
+	
+	@Test
+	public void packedLongs()
+	{
+		LongArrayStore store = new LongArrayStore(1000, NumberToIntegerTransformer.instance());
+		for (int i = 0; i < 1000; i++)
+		{
+			store.addValue(1000000 + (i * 7919) % 50);
+		}
+		
+		ColumnValues values = store.createValues();
+		assert values instanceof TransformedColumnValues;
+		ColumnValuesIterator iterator = values.iterator();
+		for (int i = 0; i < 1000; i++)
+		{
+			assert iterator.next();
+			assert Integer.valueOf(1000000 + (i * 7919) % 50).equals(iterator.get());
+		}
+		assert !iterator.next();
+	}
+	
+	@Test
+	public void dictionaryBlocks() throws IOException, ClassNotFoundException
+	{
+		BlockColumnStore store = new BlockColumnStore(new DictionaryStore<String>(String.class, 100, 1000));
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < 1050; i++)
+		{
+			// new string instances for each value
+			String value = new String(STATUSES[(i * 31 + i / 3) % STATUSES.length]);
+			store.addValue(value);
+			expected.add(value);
+		}
+		
+		ColumnValues values = store.createValues();
+		assert values instanceof BlockColumnValues;
+		assertValues(values, expected, true);
+		
+		ColumnValues deserialized = deserialize(serialize(values));
+		assertValues(deserialized, expected, true);
+	}
+	
+	@Test
+	public void dictionaryOverflow()
+	{
+		final List<Class<?>> blockTypes = new ArrayList<Class<?>>();
+		BlockColumnStore store = new BlockColumnStore(new DictionaryStore<String>(String.class, 100, 150)
+		{
+			@Override
+			public ColumnValues createValues()
+			{
+				ColumnValues values = super.createValues();
+				blockTypes.add(values.getClass());
+				return values;
+			}
+		});
+		
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < 300; i++)
+		{
+			String value = "value" + i;
+			store.addValue(value);
+			expected.add(value);
+		}
+		
+		assertValues(store.createValues(), expected, false);
+		
+		// the second block overflows the dictionary
+		assert blockTypes.size() == 3;
+		assert blockTypes.get(0) == DictionaryValues.class;
+		assert blockTypes.get(1) == ObjectArrayValues.class;
+		assert blockTypes.get(2) == ObjectArrayValues.class;
+	}
+	
+	protected void assertValues(ColumnValues values, List<String> expected, boolean shared)
+	{
+		assert values.size() == expected.size();
+		
+		List<String> first = new ArrayList<String>();
+		ColumnValuesIterator iterator = values.iterator();
+		for (int i = 0; i < expected.size(); i++)
+		{
+			assert iterator.next();
+			String value = (String) iterator.get();
+			assert expected.get(i).equals(value) : i + ": " + value;
+			
+			if (shared)
+			{
+				// equal values are the same instance
+				for (String firstValue : first)
+				{
+					assert !firstValue.equals(value) || firstValue == value;
+				}
+				if (!first.contains(value))
+				{
+					first.add(value);
+				}
+			}
+		}
+		assert !iterator.next();
+	}
+	
+	protected byte[] serialize(Object object) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(object);
+		out.close();
+		return bytes.toByteArray();
+	}
+	
+	protected ColumnValues deserialize(byte[] bytes) throws IOException, ClassNotFoundException
+	{
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+		return (ColumnValues) in.readObject();
+	}
+	
+}
@@ -0,0 +1,324 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.data.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+import net.sf.jasperreports.engine.JRParameter;
+import net.sf.jasperreports.engine.JRRewindableDataSource;
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperExportManager;
+import net.sf.jasperreports.engine.JasperFillManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.JasperReportsContext;
+import net.sf.jasperreports.engine.SimpleReportContext;
+import net.sf.jasperreports.engine.data.JRMapCollectionDataSource;
+import net.sf.jasperreports.engine.design.JRDesignBand;
+import net.sf.jasperreports.engine.design.JRDesignExpression;
+import net.sf.jasperreports.engine.design.JRDesignField;
+import net.sf.jasperreports.engine.design.JRDesignSection;
+import net.sf.jasperreports.engine.design.JRDesignTextField;
+import net.sf.jasperreports.engine.design.JasperDesign;
+
+public class DataSnapshotFileTest
+{
+	
+	private static final int RECORDS = 300;
+	
+	private static final Object[][] FIELDS = {
+		{"int", Integer.class},
+		{"long", Long.class},
+		{"short", Short.class},
+		{"double", Double.class},
+		{"float", Float.class},
+		{"bool", Boolean.class},
+		{"string", String.class},
+		{"date", Date.class},
+		{"sqlDate", java.sql.Date.class},
+		{"timestamp", Timestamp.class},
+		{"bigInteger", BigInteger.class},
+		{"bigDecimal", BigDecimal.class},
+		{"empty", String.class},
+	};
+	
+	protected static Object[] record(int index)
+	{
+		boolean nulls = index % 7 == 3;
+		Timestamp timestamp = new Timestamp(1500000000000L + index * 1000L);
+		timestamp.setNanos(index * 1001);
+		return new Object[]{
+			nulls ? null : index * 1000 - 50000,
+			nulls ? null : (index % 2 == 0 ? Long.MAX_VALUE - index : Long.MIN_VALUE + index),
+			(short) (index % 100),
+			nulls ? null : index / 3d,
+			index / 7f,
+			nulls ? null : index % 3 == 0,
+			nulls ? null : "value é " + index,
+			new Date(1500000000000L - index * 86400000L),
+			nulls ? null : new java.sql.Date(1500000000000L + index * 86400000L),
+			timestamp,
+			BigInteger.valueOf(index).pow(5).negate(),
+			nulls ? null : new BigDecimal(BigInteger.valueOf(index * 12345L), index % 5),
+			null,
+		};
+	}
+	
+	protected static JRField[] fields()
+	{
+		JRField[] fields = new JRField[FIELDS.length];
+		for (int i = 0; i < FIELDS.length; i++)
+		{
+			JRDesignField field = new JRDesignField();
+			field.setName((String) FIELDS[i][0]);
+			field.setValueClass((Class<?>) FIELDS[i][1]);
+			fields[i] = field;
+		}
+		return fields;
+	}
+	
+	@Test
+	public void mappedValues() throws IOException, JRException
+	{
+		ColumnDataCacheHandler handler = new ColumnDataCacheHandler();
+		DataRecorder recorder = handler.createDataRecorder();
+		DatasetRecorder datasetRecorder = recorder.createRecorder();
+		JRField[] fields = fields();
+		datasetRecorder.start(fields);
+		datasetRecorder.addParameter("param", "paramValue");
+		for (int i = 0; i < RECORDS; i++)
+		{
+			datasetRecorder.addRecord(record(i));
+		}
+		recorder.addRecordResult("key", datasetRecorder.end());
+		recorder.setSnapshotPopulated();
+		
+		File file = File.createTempFile("snapshot", ".jrds");
+		try
+		{
+			new DataSnapshotFileWriter().write((ColumnDataSnapshot) handler.getDataSnapshot(), file);
+			DataSnapshot snapshot = MappedDataSnapshot.load(DefaultJasperReportsContext.getInstance(), file);
+			
+			assert snapshot.hasCachedData("key");
+			assert !snapshot.hasCachedData("other");
+			
+			CachedDataset dataset = snapshot.getCachedData("key");
+			assert "paramValue".equals(dataset.getParameterValue("param"));
+			
+			for (int pass = 0; pass < 2; pass++)
+			{
+				JRDataSource dataSource = dataset.getDataSource();
+				for (int i = 0; i < RECORDS; i++)
+				{
+					assert dataSource.next();
+					Object[] expected = record(i);
+					for (int j = 0; j < fields.length; j++)
+					{
+						Object value = dataSource.getFieldValue(fields[j]);
+						assert expected[j] == null ? value == null : expected[j].equals(value) 
+								: fields[j].getName() + " at " + i + ": " + value;
+						assert value == null || value.getClass() == expected[j].getClass();
+					}
+				}
+				assert !dataSource.next();
+				
+				((JRRewindableDataSource) dataSource).moveFirst();
+			}
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+	
+	protected JasperReport compileReport() throws JRException
+	{
+		JasperDesign design = new JasperDesign();
+		design.setName("DataSnapshotFileTest");
+		
+		JRDesignBand detail = new JRDesignBand();
+		detail.setHeight(20);
+		
+		JRField[] fields = fields();
+		for (int i = 0; i < fields.length; i++)
+		{
+			design.addField(fields[i]);
+			
+			JRDesignTextField text = new JRDesignTextField();
+			text.setX(i * 30);
+			text.setWidth(30);
+			text.setHeight(20);
+			text.setExpression(new JRDesignExpression("String.valueOf($F{" + fields[i].getName() + "})"));
+			detail.addElement(text);
+		}
+		design.setPageWidth(fields.length * 30);
+		design.setColumnWidth(fields.length * 30);
+		design.setLeftMargin(0);
+		design.setRightMargin(0);
+		((JRDesignSection) design.getDetailSection()).addBand(detail);
+		
+		return JasperCompileManager.compileReport(design);
+	}
+	
+	protected String fill(JasperReport report, JRDataSource dataSource, DataCacheHandler cacheHandler) throws JRException
+	{
+		SimpleReportContext reportContext = new SimpleReportContext();
+		reportContext.setParameterValue(DataCacheHandler.PARAMETER_DATA_CACHE_HANDLER, cacheHandler);
+		
+		Map<String, Object> params = new HashMap<String, Object>();
+		params.put(JRParameter.REPORT_CONTEXT, reportContext);
+		params.put(JRParameter.REPORT_LOCALE, Locale.US);
+		JasperPrint print = JasperFillManager.fillReport(report, params, dataSource);
+		return JasperExportManager.exportReportToXml(print);
+	}
+	
+	protected JRDataSource dataSource()
+	{
+		List<Map<String, ?>> records = new ArrayList<Map<String, ?>>();
+		for (int i = 0; i < RECORDS; i++)
+		{
+			Object[] values = record(i);
+			Map<String, Object> record = new HashMap<String, Object>();
+			for (int j = 0; j < FIELDS.length; j++)
+			{
+				record.put((String) FIELDS[j][0], values[j]);
+			}
+			records.add(record);
+		}
+		return new JRMapCollectionDataSource(records);
+	}
+	
+	@Test
+	public void storedSnapshotFill() throws IOException, JRException
+	{
+		JasperReportsContext context = DefaultJasperReportsContext.getInstance();
+		File directory = Files.createTempDirectory("snapshots").toFile();
+		try
+		{
+			JasperReport report = compileReport();
+			FileDataSnapshotStore store = new FileDataSnapshotStore(context, directory);
+			
+			StoredDataSnapshotCacheHandler recording = new StoredDataSnapshotCacheHandler(store, "report");
+			String recorded = fill(report, dataSource(), recording);
+			assert store.size() == 1;
+			
+			// a new store instance picks up the existing file
+			store = new FileDataSnapshotStore(context, directory);
+			assert store.size() == 1;
+			
+			StoredDataSnapshotCacheHandler replaying = new StoredDataSnapshotCacheHandler(store, "report");
+			assert replaying.isSnapshotPopulated();
+			assert replaying.getDataSnapshot() instanceof MappedDataSnapshot;
+			// no data source, the records come from the stored snapshot
+			String replayed = fill(report, null, replaying);
+			assert recorded.equals(replayed);
+		}
+		finally
+		{
+			deleteDirectory(directory);
+		}
+	}
+	
+	@Test
+	public void storeEviction() throws IOException, JRException
+	{
+		JasperReportsContext context = DefaultJasperReportsContext.getInstance();
+		File directory = Files.createTempDirectory("snapshots").toFile();
+		try
+		{
+			ColumnDataCacheHandler handler = new ColumnDataCacheHandler();
+			DataRecorder recorder = handler.createDataRecorder();
+			DatasetRecorder datasetRecorder = recorder.createRecorder();
+			datasetRecorder.start(fields());
+			datasetRecorder.addRecord(record(1));
+			recorder.addRecordResult("key", datasetRecorder.end());
+			recorder.setSnapshotPopulated();
+			ColumnDataSnapshot snapshot = (ColumnDataSnapshot) handler.getDataSnapshot();
+			
+			FileDataSnapshotStore store = new FileDataSnapshotStore(context, directory, 3, 0);
+			for (int i = 0; i < 5; i++)
+			{
+				store.putSnapshot("key" + i, snapshot);
+				if (i == 2)
+				{
+					// accessing the oldest entry
+					assert store.getSnapshot("key0") != null;
+				}
+			}
+			
+			assert store.size() == 3;
+			assert store.getSnapshot("key0") != null;
+			assert store.getSnapshot("key1") == null;
+			assert store.getSnapshot("key2") == null;
+			assert store.getSnapshot("key3") != null;
+			assert store.getSnapshot("key4") != null;
+			assert directory.list().length == 3;
+			
+			long entrySize = store.getTotalSize() / 3;
+			store = new FileDataSnapshotStore(context, directory, 10, entrySize * 2);
+			assert store.size() == 2;
+			
+			store.removeSnapshot("key4");
+			assert store.size() == 1;
+			assert store.getSnapshot("key4") == null;
+			assert store.getSnapshot("key3") != null;
+			assert store.getSnapshot("key0") == null;
+		}
+		finally
+		{
+			deleteDirectory(directory);
+		}
+	}
+	
+	protected void deleteDirectory(File directory)
+	{
+		File[] files = directory.listFiles();
+		if (files != null)
+		{
+			for (File file : files)
+			{
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+	
+}
@@ -0,0 +1,114 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.fill;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import net.sf.jasperreports.Report;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRPrintPage;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.fill.CompactElementList;
+import net.sf.jasperreports.engine.fill.CompactElementStore;
+import net.sf.jasperreports.engine.util.JRLoader;
+import net.sf.jasperreports.engine.util.JRSaver;
+
+public class CompactPageElementsTest
+{
+	
+	@Test
+	public void firstJasper()
+	{
+		// the report contains page totals evaluated at report level
+		runReport("net/sf/jasperreports/virtualization/repo/FirstJasper.jrxml", 
+				"net/sf/jasperreports/virtualization/FirstJasper.reference.jrpxml");
+	}
+	
+	@Test
+	public void groupKeepTogether()
+	{
+		// elements are moved across pages to keep groups together
+		runReport("net/sf/jasperreports/virtualization/repo/GroupKeepTogether.jrxml", 
+				"net/sf/jasperreports/virtualization/GroupKeepTogether.reference.jrpxml");
+	}
+	
+	protected void runReport(String jrxml, String jrpxml)
+	{
+		Report report = new CompactReport(jrxml, jrpxml);
+		report.init();
+		report.runReport(null);
+	}
+	
+	protected static class CompactReport extends Report
+	{
+		public CompactReport(String jrxml, String jrpxml)
+		{
+			super(jrxml, jrpxml);
+		}
+
+		@Override
+		public void init()
+		{
+			super.init();
+			jasperReportsContext.setProperty(CompactElementList.PROPERTY_COMPACT_PAGE_ELEMENTS, Boolean.TRUE.toString());
+		}
+
+		@Override
+		protected void reportComplete(Map<String, Object> params, JasperPrint print)
+				throws NoSuchAlgorithmException, FileNotFoundException, JRException, IOException
+		{
+			int compactCount = 0;
+			for (JRPrintPage page : print.getPages())
+			{
+				assert page.getElements() instanceof CompactElementList;
+				CompactElementStore store = ((CompactElementList) page.getElements()).getStore();
+				for (int i = 0; i < store.size(); i++)
+				{
+					if (store.isCompact(i))
+					{
+						++compactCount;
+					}
+				}
+			}
+			assert compactCount > 0;
+			
+			super.reportComplete(params, print);
+			
+			// the document is serialized with regular element lists
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			JRSaver.saveObject(print, out);
+			JasperPrint readPrint = (JasperPrint) JRLoader.loadObject(new ByteArrayInputStream(out.toByteArray()));
+			assert !(readPrint.getPages().get(0).getElements() instanceof CompactElementList);
+			
+			super.reportComplete(params, readPrint);
+		}
+	}
+}
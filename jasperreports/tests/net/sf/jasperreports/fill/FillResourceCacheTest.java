@@ -0,0 +1,226 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.fill;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+
+import org.testng.annotations.Test;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperFillManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.SimpleJasperReportsContext;
+import net.sf.jasperreports.engine.fill.FillResourceCache;
+import net.sf.jasperreports.engine.fill.FillResourceCache.ResourceType;
+import net.sf.jasperreports.engine.util.JRLoader;
+import net.sf.jasperreports.repo.FileRepositoryPersistenceServiceFactory;
+import net.sf.jasperreports.repo.FileRepositoryService;
+import net.sf.jasperreports.repo.PersistenceServiceFactory;
+import net.sf.jasperreports.repo.RepositoryService;
+import net.sf.jasperreports.repo.StandardResourceInfo;
+
+public class FillResourceCacheTest
+{
+	
+	private static final String REPO = "net/sf/jasperreports/fill/repo/";
+
+	@Test
+	public void versions()
+	{
+		FillResourceCache cache = new FillResourceCache(1000);
+		
+		StandardResourceInfo unversioned = resourceInfo("a.png", null);
+		cache.put(ResourceType.IMAGE, unversioned, "a", 10);
+		Object unversionedResource = cache.get(ResourceType.IMAGE, unversioned);
+		assert unversionedResource == null;
+		assert cache.size() == 0;
+		
+		cache.put(ResourceType.IMAGE, resourceInfo("a.png", "1"), "a1", 10);
+		Object resource = cache.get(ResourceType.IMAGE, resourceInfo("a.png", "1"));
+		assert "a1".equals(resource);
+		Object otherType = cache.get(ResourceType.TEMPLATE, resourceInfo("a.png", "1"));
+		assert otherType == null;
+		
+		Object modified = cache.get(ResourceType.IMAGE, resourceInfo("a.png", "2"));
+		assert modified == null;
+		assert cache.size() == 0;
+		assert cache.getWeight() == 0;
+		
+		assert cache.getHitCount() == 1;
+		assert cache.getMissCount() == 2;
+	}
+
+	@Test
+	public void eviction()
+	{
+		FillResourceCache cache = new FillResourceCache(100);
+		cache.put(ResourceType.IMAGE, resourceInfo("a", "1"), "a", 40);
+		cache.put(ResourceType.IMAGE, resourceInfo("b", "1"), "b", 40);
+		// a becomes the most recently used
+		cache.get(ResourceType.IMAGE, resourceInfo("a", "1"));
+		cache.put(ResourceType.IMAGE, resourceInfo("c", "1"), "c", 40);
+		
+		Object a = cache.get(ResourceType.IMAGE, resourceInfo("a", "1"));
+		Object b = cache.get(ResourceType.IMAGE, resourceInfo("b", "1"));
+		Object c = cache.get(ResourceType.IMAGE, resourceInfo("c", "1"));
+		assert "a".equals(a);
+		assert b == null;
+		assert "c".equals(c);
+		assert cache.getWeight() == 80;
+		assert cache.getEvictionCount() == 1;
+		
+		cache.put(ResourceType.IMAGE, resourceInfo("d", "1"), "d", 200);
+		assert cache.size() == 2;
+	}
+	
+	@Test
+	public void repositoryContexts()
+	{
+		FillResourceCache cache = new FillResourceCache(1000);
+		cache.put(ResourceType.IMAGE, resourceInfo("a.png", "/repo1/a.png", "1"), "a1", 10);
+		
+		// the same repository location resolved to a different file
+		Object other = cache.get(ResourceType.IMAGE, resourceInfo("a.png", "/repo2/a.png", "1"));
+		assert other == null;
+		
+		cache.put(ResourceType.IMAGE, resourceInfo("a.png", "/repo2/a.png", "1"), "a2", 10);
+		assert cache.size() == 2;
+		assert "a1".equals(cache.get(ResourceType.IMAGE, resourceInfo("a.png", "/repo1/a.png", "1")));
+		assert "a2".equals(cache.get(ResourceType.IMAGE, resourceInfo("a.png", "/repo2/a.png", "1")));
+		
+		StandardResourceInfo noAbsoluteLocation = resourceInfo("b.png", null, "1");
+		cache.put(ResourceType.IMAGE, noAbsoluteLocation, "b", 10);
+		assert cache.size() == 2;
+	}
+	
+	@Test
+	public void fillHits() throws JRException, IOException
+	{
+		File directory = Files.createTempDirectory("jr-fill-resource-cache").toFile();
+		try
+		{
+			copyResource("net/sf/jasperreports/images/jasperreports.png", new File(directory, "image.png"));
+			copyResource(REPO + "FillResourceCacheStyles.jrtx", new File(directory, "styles.jrtx"));
+			InputStream subreportInput = JRLoader.getResourceInputStream(REPO + "FillResourceCacheSubreport.jrxml");
+			OutputStream subreportOutput = new FileOutputStream(new File(directory, "subreport.jasper"));
+			try
+			{
+				JasperCompileManager.compileReportToStream(subreportInput, subreportOutput);
+			}
+			finally
+			{
+				subreportOutput.close();
+				subreportInput.close();
+			}
+			
+			SimpleJasperReportsContext jasperReportsContext = new SimpleJasperReportsContext();
+			jasperReportsContext.setProperty(FillResourceCache.PROPERTY_ENABLED, "true");
+			jasperReportsContext.setExtensions(RepositoryService.class, Collections.singletonList(
+					new FileRepositoryService(jasperReportsContext, directory.getPath(), false)));
+			jasperReportsContext.setExtensions(PersistenceServiceFactory.class, Collections.singletonList(
+					FileRepositoryPersistenceServiceFactory.getInstance()));
+			
+			JasperReport report;
+			InputStream reportInput = JRLoader.getResourceInputStream(REPO + "FillResourceCacheReport.jrxml");
+			try
+			{
+				report = JasperCompileManager.compileReport(reportInput);
+			}
+			finally
+			{
+				reportInput.close();
+			}
+			
+			FillResourceCache cache = FillResourceCache.getInstance(jasperReportsContext);
+			cache.clear();
+			
+			fill(jasperReportsContext, report);
+			// the image, the template and the subreport
+			assert cache.size() == 3;
+			long hitCount = cache.getHitCount();
+			long missCount = cache.getMissCount();
+			
+			fill(jasperReportsContext, report);
+			assert cache.getHitCount() - hitCount == 3;
+			assert cache.getMissCount() == missCount;
+			
+			cache.clear();
+		}
+		finally
+		{
+			File[] files = directory.listFiles();
+			if (files != null)
+			{
+				for (File file : files)
+				{
+					file.delete();
+				}
+			}
+			directory.delete();
+		}
+	}
+	
+	protected void fill(SimpleJasperReportsContext jasperReportsContext, JasperReport report) throws JRException
+	{
+		JasperPrint print = JasperFillManager.getInstance(jasperReportsContext).fill(report, 
+				new HashMap<String, Object>());
+		assert !print.getPages().isEmpty();
+	}
+	
+	protected void copyResource(String resource, File file) throws JRException, IOException
+	{
+		InputStream input = JRLoader.getResourceInputStream(resource);
+		try
+		{
+			Files.copy(input, file.toPath());
+		}
+		finally
+		{
+			input.close();
+		}
+	}
+	
+	protected StandardResourceInfo resourceInfo(String location, Object version)
+	{
+		return resourceInfo(location, "/repo/" + location, version);
+	}
+	
+	protected StandardResourceInfo resourceInfo(String location, String absoluteLocation, Object version)
+	{
+		StandardResourceInfo info = new StandardResourceInfo();
+		info.setRepositoryResourceLocation(location);
+		info.setResourceAbsoluteLocation(absoluteLocation);
+		info.setResourceVersion(version);
+		return info;
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.repo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+import org.testng.annotations.Test;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.SimpleJasperReportsContext;
+import net.sf.jasperreports.engine.util.JRLoader;
+
+public class CompiledReportCacheTest
+{
+
+	@Test
+	public void contentKeys() throws JRException, IOException
+	{
+		SimpleJasperReportsContext context = new SimpleJasperReportsContext();
+		byte[] jrxml = loadJrxml();
+		
+		CompiledReportCache cache = new CompiledReportCache(10, null);
+		JasperReport report = cache.getReport(context, jrxml);
+		assert report != null;
+		assert "SubreportForReturn".equals(report.getName());
+		
+		JasperReport cached = cache.getReport(context, jrxml.clone());
+		assert cached == report;
+		assert cache.getCompileCount() == 1;
+		assert cache.getHitCount() == 1;
+		
+		SimpleJasperReportsContext otherSettings = new SimpleJasperReportsContext();
+		otherSettings.setProperty("org.eclipse.jdt.core.compiler.debug.lineNumber", "do not generate");
+		assert !cache.createKey(context, jrxml).equals(cache.createKey(otherSettings, jrxml));
+		JasperReport recompiled = cache.getReport(otherSettings, jrxml);
+		assert recompiled != report;
+		assert cache.getCompileCount() == 2;
+		assert cache.size() == 2;
+	}
+
+	@Test
+	public void directory() throws JRException, IOException
+	{
+		SimpleJasperReportsContext context = new SimpleJasperReportsContext();
+		byte[] jrxml = loadJrxml();
+		
+		File directory = Files.createTempDirectory("jrcache").toFile();
+		try
+		{
+			CompiledReportCache cache = new CompiledReportCache(10, directory);
+			cache.getReport(context, jrxml);
+			assert cache.getCompileCount() == 1;
+			
+			File saved = new File(directory, cache.createKey(context, jrxml) + ".jasper");
+			assert saved.isFile();
+			
+			CompiledReportCache restarted = new CompiledReportCache(10, directory);
+			JasperReport report = restarted.getReport(context, jrxml);
+			assert "SubreportForReturn".equals(report.getName());
+			assert restarted.getCompileCount() == 0;
+			assert restarted.getDiskHitCount() == 1;
+		}
+		finally
+		{
+			for (File file : directory.listFiles())
+			{
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+	
+	protected byte[] loadJrxml() throws JRException, IOException
+	{
+		try (InputStream input = CompiledReportCacheTest.class.getResourceAsStream(
+				"/net/sf/jasperreports/components/repo/SubreportForReturn.jrxml"))
+		{
+			return JRLoader.loadBytes(input);
+		}
+	}
+}
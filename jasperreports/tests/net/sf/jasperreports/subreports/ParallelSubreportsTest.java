@@ -0,0 +1,236 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.subreports;
+
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import net.sf.jasperreports.AbstractTest;
+import net.sf.jasperreports.components.ComponentsExtensionsRegistryFactory;
+import net.sf.jasperreports.components.list.DesignListContents;
+import net.sf.jasperreports.components.list.StandardListComponent;
+import net.sf.jasperreports.engine.JREmptyDataSource;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRParameter;
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperFillManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.JasperReportsContext;
+import net.sf.jasperreports.engine.SimpleJasperReportsContext;
+import net.sf.jasperreports.engine.component.ComponentKey;
+import net.sf.jasperreports.engine.design.JRDesignBand;
+import net.sf.jasperreports.engine.design.JRDesignComponentElement;
+import net.sf.jasperreports.engine.design.JRDesignDataset;
+import net.sf.jasperreports.engine.design.JRDesignDatasetRun;
+import net.sf.jasperreports.engine.design.JRDesignExpression;
+import net.sf.jasperreports.engine.design.JRDesignParameter;
+import net.sf.jasperreports.engine.design.JRDesignSection;
+import net.sf.jasperreports.engine.design.JRDesignSubreport;
+import net.sf.jasperreports.engine.design.JRDesignSubreportParameter;
+import net.sf.jasperreports.engine.design.JRDesignTextField;
+import net.sf.jasperreports.engine.design.JasperDesign;
+import net.sf.jasperreports.engine.fill.JRFillSubreport;
+
+/**
+ * Runs reports with parallel subreport prefill enabled.
+ */
+public class ParallelSubreportsTest extends AbstractTest
+{
+	
+	private static final int[] SUBREPORT_ROWS = {2, 5, 1, 60, 3, 8};
+	
+	@BeforeClass
+	@Override
+	public void init() throws JRException, IOException
+	{
+		SimpleJasperReportsContext context = new SimpleJasperReportsContext();
+		context.setProperty(JRFillSubreport.PROPERTY_PARALLEL_PREFILL, Boolean.TRUE.toString());
+		setJasperReportsContext(context);
+	}
+	
+	@Test(dataProvider = "testArgs")
+	public void testReport(String jrxmlFileName, String referenceFileNamePrefix) 
+			throws JRException, NoSuchAlgorithmException, IOException
+	{
+		runReport(jrxmlFileName, referenceFileNamePrefix);
+	}
+	
+	@DataProvider
+	public Object[][] testArgs()
+	{
+		return runReportArgs("net/sf/jasperreports/subreports/columns/repo", "SubreportColumnsReport", 3);
+	}
+	
+	@Test
+	public void independentSubreports() throws JRException, NoSuchAlgorithmException, IOException
+	{
+		JasperReport subreport = JasperCompileManager.compileReport(createSubreportDesign(false));
+		JasperReport report = JasperCompileManager.compileReport(createMasterDesign());
+		
+		SimpleJasperReportsContext sequentialContext = new SimpleJasperReportsContext();
+		String sequentialDigest = xmlExportDigest(fill(sequentialContext, report, subreport));
+		String parallelDigest = xmlExportDigest(fill(getJasperReportsContext(), report, subreport));
+		assert parallelDigest.equals(sequentialDigest);
+	}
+	
+	@Test
+	public void listSubreports() throws JRException, NoSuchAlgorithmException, IOException
+	{
+		JasperReport subreport = JasperCompileManager.compileReport(createSubreportDesign(true));
+		JasperReport report = JasperCompileManager.compileReport(createMasterDesign());
+		
+		SimpleJasperReportsContext sequentialContext = new SimpleJasperReportsContext();
+		String sequentialDigest = xmlExportDigest(fill(sequentialContext, report, subreport));
+		String parallelDigest = xmlExportDigest(fill(getJasperReportsContext(), report, subreport));
+		assert parallelDigest.equals(sequentialDigest);
+	}
+	
+	protected JasperPrint fill(JasperReportsContext context, 
+			JasperReport report, JasperReport subreport) throws JRException
+	{
+		Map<String, Object> params = new HashMap<String, Object>();
+		params.put(JRParameter.REPORT_LOCALE, Locale.US);
+		params.put(JRParameter.REPORT_TIME_ZONE, TimeZone.getTimeZone("GMT"));
+		params.put("Subreport", subreport);
+		JasperPrint print = JasperFillManager.getInstance(context).fill(report, params, new JREmptyDataSource(3));
+		assert print.getPages().size() > 1;
+		return print;
+	}
+	
+	protected JasperDesign createMasterDesign() throws JRException
+	{
+		JasperDesign design = createDesign("ParallelSubreportsReport");
+		
+		JRDesignParameter parameter = new JRDesignParameter();
+		parameter.setName("Subreport");
+		parameter.setValueClass(JasperReport.class);
+		design.addParameter(parameter);
+		
+		JRDesignBand band = new JRDesignBand();
+		band.setHeight(20 * SUBREPORT_ROWS.length);
+		for (int i = 0; i < SUBREPORT_ROWS.length; i++)
+		{
+			JRDesignSubreport subreport = new JRDesignSubreport(design);
+			subreport.setY(20 * i);
+			subreport.setWidth(design.getColumnWidth());
+			subreport.setHeight(20);
+			subreport.setExpression(new JRDesignExpression("$P{Subreport}"));
+			subreport.setDataSourceExpression(new JRDesignExpression(
+					"new net.sf.jasperreports.engine.JREmptyDataSource(" + SUBREPORT_ROWS[i] + ")"));
+			
+			JRDesignSubreportParameter subreportParameter = new JRDesignSubreportParameter();
+			subreportParameter.setName("Name");
+			subreportParameter.setExpression(new JRDesignExpression("\"" + i + "/\" + $V{REPORT_COUNT}"));
+			subreport.addParameter(subreportParameter);
+			
+			band.addElement(subreport);
+		}
+		((JRDesignSection) design.getDetailSection()).addBand(band);
+		return design;
+	}
+	
+	protected JasperDesign createSubreportDesign(boolean list) throws JRException
+	{
+		JasperDesign design = createDesign("ParallelSubreportsSubreport");
+		design.setTopMargin(0);
+		design.setBottomMargin(0);
+		
+		JRDesignParameter parameter = new JRDesignParameter();
+		parameter.setName("Name");
+		parameter.setValueClass(String.class);
+		design.addParameter(parameter);
+		
+		JRDesignBand band = new JRDesignBand();
+		band.setHeight(15);
+		JRDesignTextField textField = new JRDesignTextField();
+		textField.setWidth(design.getColumnWidth());
+		textField.setHeight(15);
+		textField.setExpression(new JRDesignExpression("$P{Name} + \" row \" + $V{REPORT_COUNT}"));
+		band.addElement(textField);
+		
+		if (list)
+		{
+			band.setHeight(30);
+			band.addElement(createListElement(design));
+		}
+		
+		((JRDesignSection) design.getDetailSection()).addBand(band);
+		return design;
+	}
+	
+	protected JRDesignComponentElement createListElement(JasperDesign design) throws JRException
+	{
+		JRDesignDataset dataset = new JRDesignDataset(false);
+		dataset.setName("Items");
+		design.addDataset(dataset);
+		
+		JRDesignDatasetRun datasetRun = new JRDesignDatasetRun();
+		datasetRun.setDatasetName("Items");
+		datasetRun.setDataSourceExpression(new JRDesignExpression(
+				"new net.sf.jasperreports.engine.JREmptyDataSource(2)"));
+		
+		JRDesignTextField textField = new JRDesignTextField();
+		textField.setWidth(design.getColumnWidth());
+		textField.setHeight(15);
+		textField.setExpression(new JRDesignExpression("\"item \" + $V{REPORT_COUNT}"));
+		
+		DesignListContents contents = new DesignListContents();
+		contents.setHeight(15);
+		contents.addElement(textField);
+		
+		StandardListComponent list = new StandardListComponent();
+		list.setDatasetRun(datasetRun);
+		list.setContents(contents);
+		
+		JRDesignComponentElement listElement = new JRDesignComponentElement(design);
+		listElement.setY(15);
+		listElement.setWidth(design.getColumnWidth());
+		listElement.setHeight(15);
+		listElement.setComponentKey(new ComponentKey(ComponentsExtensionsRegistryFactory.NAMESPACE, "jr", 
+				ComponentsExtensionsRegistryFactory.LIST_COMPONENT_NAME));
+		listElement.setComponent(list);
+		return listElement;
+	}
+	
+	protected JasperDesign createDesign(String name)
+	{
+		JasperDesign design = new JasperDesign();
+		design.setName(name);
+		design.setPageWidth(300);
+		design.setPageHeight(500);
+		design.setColumnWidth(260);
+		design.setLeftMargin(20);
+		design.setRightMargin(20);
+		return design;
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.util;
+
+import java.awt.font.TextAttribute;
+import java.text.AttributedCharacterIterator.Attribute;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import net.sf.jasperreports.engine.JRPrintHyperlink;
+import net.sf.jasperreports.engine.util.JRStyledText;
+import net.sf.jasperreports.engine.util.JRStyledTextParser;
+import net.sf.jasperreports.engine.util.JRTextAttribute;
+
+public class StyledTextParserTest
+{
+
+	@Test(dataProvider = "styledTexts")
+	public void parse(String markup, String text, String runs)
+	{
+		JRStyledText styledText = JRStyledTextParser.getInstance().getStyledText(
+				parentAttributes(), markup, true, Locale.US);
+		assert text.equals(styledText.getText()) : styledText.getText();
+		assert runs.equals(runs(styledText)) : runs(styledText);
+	}
+	
+	@DataProvider
+	public Object[][] styledTexts()
+	{
+		return new Object[][] {
+			{"plain", "plain", "0-5:size"},
+			{"a <b>bold</b> and <i>italic</i>", "a bold and italic", "2-6:weight 11-17:posture 0-17:size"},
+			{"<style isBold=\"true\" forecolor=\"#FF0000\" size='12'>x<u>y</u></style>", "xy", "1-2:underline 0-2:foreground,size,weight 0-2:size"},
+			{"&lt;&amp;&gt; &#65;&#x42;", "<&> AB", "0-6:size"},
+			{"a\r\nb\rc", "a\nb\nc", "0-5:size"},
+			{"x<br/>y", "x\ny", "2-2: 0-3:size"},
+			{"<li>one</li><li>two</li>three", " \u2022 one\n \u2022 two\nthree", "3-6: 10-14: 0-19:size"},
+			{"<li>one</li>\ntwo", " \u2022 one\ntwo", "3-6: 0-10:size"},
+			{"<a href=\"http://x\"><param name=\"p\" valueClass=\"java.lang.Integer\">5</param>link</a>", "link", "0-4:hyperlink 0-4:size"},
+			{"a<!-- comment -->b<![CDATA[ignored]]>c", "abc", "0-3:size"},
+			{"<b>unclosed", "<b>unclosed", "0-11:size"},
+			{"<b>bad</B>", "<b>bad</B>", "0-10:size"},
+			{"<unknown>x</unknown>", "<unknown>x</unknown>", "0-20:size"},
+			{"<a><a>nested</a></a>", "<a><a>nested</a></a>", "0-20:size"},
+			{"&bogus;", "&bogus;", "0-7:size"},
+		};
+	}
+	
+	@Test
+	public void cachedCopies() throws Exception
+	{
+		JRStyledTextParser parser = JRStyledTextParser.getInstance();
+		String markup = "cached <b>text</b>";
+		JRStyledText styledText = parser.parse(parentAttributes(), markup, Locale.US);
+		styledText.append(" changed");
+		styledText.getRuns().get(0).endIndex = 1;
+		
+		JRStyledText cachedText = parser.parse(parentAttributes(), markup, Locale.US);
+		assert cachedText != styledText;
+		assert "cached text".equals(cachedText.getText());
+		assert "7-11:weight 0-11:size".equals(runs(cachedText)) : runs(cachedText);
+	}
+	
+	@Test
+	public void hyperlinksNotShared() throws Exception
+	{
+		JRStyledTextParser parser = JRStyledTextParser.getInstance();
+		String markup = "<a href=\"http://x\">link</a>";
+		JRStyledText styledText1 = parser.parse(parentAttributes(), markup, Locale.US);
+		JRStyledText styledText2 = parser.parse(parentAttributes(), markup, Locale.US);
+		
+		JRPrintHyperlink hyperlink1 = (JRPrintHyperlink) styledText1.getRuns().get(0).attributes.get(JRTextAttribute.HYPERLINK);
+		JRPrintHyperlink hyperlink2 = (JRPrintHyperlink) styledText2.getRuns().get(0).attributes.get(JRTextAttribute.HYPERLINK);
+		assert "http://x".equals(hyperlink2.getHyperlinkReference());
+		assert hyperlink1 != hyperlink2;
+	}
+	
+	protected Map<Attribute, Object> parentAttributes()
+	{
+		Map<Attribute, Object> attributes = new HashMap<Attribute, Object>();
+		attributes.put(TextAttribute.SIZE, 10f);
+		return attributes;
+	}
+	
+	protected String runs(JRStyledText styledText)
+	{
+		StringBuilder runs = new StringBuilder();
+		for (JRStyledText.Run run : styledText.getRuns())
+		{
+			if (runs.length() > 0)
+			{
+				runs.append(' ');
+			}
+			runs.append(run.startIndex).append('-').append(run.endIndex).append(':');
+			
+			StringBuilder names = new StringBuilder();
+			for (String name : new String[]{"foreground", "hyperlink", "posture", "size", "underline", "weight"})
+			{
+				for (Attribute attribute : run.attributes.keySet())
+				{
+					if (attribute.toString().toLowerCase(Locale.US).endsWith("(" + name + ")"))
+					{
+						names.append(names.length() > 0 ? "," : "").append(name);
+					}
+				}
+			}
+			runs.append(names);
+		}
+		return runs.toString();
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.virtualization;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import net.sf.jasperreports.engine.JRParameter;
+import net.sf.jasperreports.engine.JRVirtualizer;
+import net.sf.jasperreports.engine.fill.ConcurrentStoreVirtualizer;
+import net.sf.jasperreports.engine.fill.JRSwapFileVirtualizer;
+import net.sf.jasperreports.engine.util.AsyncSwapFileVirtualizerStore;
+import net.sf.jasperreports.engine.util.JRConcurrentSwapFile;
+import net.sf.jasperreports.engine.util.JRSwapFile;
+import net.sf.jasperreports.engine.util.SwapFileVirtualizerStore;
+
+/**
+ * Fills a report on several threads sharing a single virtualizer, checks
+ * that the concurrent fills produce the same output as a serial fill, and compares
+ * the fill times of the synchronized and concurrent virtualizers.
+ */
+public class ConcurrentVirtualizerTest
+{
+	
+	private static final Log log = LogFactory.getLog(ConcurrentVirtualizerTest.class);
+	
+	private static final int THREAD_COUNT = 4;
+	private static final int FILL_COUNT = 8;
+	private static final int CACHE_SIZE = 8;
+	
+	private SharedVirtualizerReport report;
+	private String serialDigest;
+
+	@BeforeClass
+	public void initReport()
+	{
+		report = new SharedVirtualizerReport("net/sf/jasperreports/virtualization/repo/FirstJasper.jrxml", 
+				"net/sf/jasperreports/virtualization/FirstJasper.reference.jrpxml");
+		report.init();
+		
+		report.runReport(null);
+		List<String> digests = report.takeDigests();
+		assert digests.size() == 1;
+		serialDigest = digests.get(0);
+	}
+	
+	protected JRSwapFile createSwapFile()
+	{
+		return new JRSwapFile(System.getProperty("java.io.tmpdir"), 4096, 100);
+	}
+	
+	@Test
+	public void swapFileVirtualizer() throws Exception
+	{
+		runConcurrently("JRSwapFileVirtualizer", 
+				new JRSwapFileVirtualizer(CACHE_SIZE, createSwapFile(), true));
+	}
+	
+	@Test
+	public void concurrentVirtualizer() throws Exception
+	{
+		runConcurrently("ConcurrentStoreVirtualizer", 
+				new ConcurrentStoreVirtualizer(CACHE_SIZE, 
+						new SwapFileVirtualizerStore(createSwapFile(), true)));
+	}
+	
+	@Test
+	public void concurrentVirtualizerBackgroundPageOut() throws Exception
+	{
+		runConcurrently("ConcurrentStoreVirtualizer with background page-out", 
+				new ConcurrentStoreVirtualizer(CACHE_SIZE, 
+						new SwapFileVirtualizerStore(createSwapFile(), true), true));
+	}
+	
+	@Test
+	public void concurrentVirtualizerAsyncStore() throws Exception
+	{
+		runConcurrently("ConcurrentStoreVirtualizer with async swap file store", 
+				new ConcurrentStoreVirtualizer(CACHE_SIZE, 
+						new AsyncSwapFileVirtualizerStore(
+								new JRConcurrentSwapFile(System.getProperty("java.io.tmpdir"), 4096, 100), true)));
+	}
+	
+	@Test
+	public void compareFillTimes() throws Exception
+	{
+		// warming up both virtualizers before timing them
+		runConcurrently("JRSwapFileVirtualizer warm-up", 
+				new JRSwapFileVirtualizer(CACHE_SIZE, createSwapFile(), true));
+		runConcurrently("ConcurrentStoreVirtualizer warm-up", 
+				new ConcurrentStoreVirtualizer(CACHE_SIZE, 
+						new SwapFileVirtualizerStore(createSwapFile(), true)));
+		
+		long swapFileTime = runConcurrently("JRSwapFileVirtualizer", 
+				new JRSwapFileVirtualizer(CACHE_SIZE, createSwapFile(), true));
+		long concurrentTime = runConcurrently("ConcurrentStoreVirtualizer", 
+				new ConcurrentStoreVirtualizer(CACHE_SIZE, 
+						new SwapFileVirtualizerStore(createSwapFile(), true)));
+		
+		// not asserting on the times as they depend on the machine
+		log.info("ConcurrentStoreVirtualizer/JRSwapFileVirtualizer fill time ratio: " 
+				+ String.format("%.2f", (double) concurrentTime / swapFileTime));
+	}
+	
+	protected long runConcurrently(String name, final JRVirtualizer virtualizer) 
+			throws InterruptedException, ExecutionException
+	{
+		long time;
+		ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+		try
+		{
+			long start = System.nanoTime();
+			
+			List<Future<?>> fills = new ArrayList<Future<?>>(FILL_COUNT);
+			for (int i = 0; i < FILL_COUNT; i++)
+			{
+				fills.add(executor.submit(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						HashMap<String, Object> params = new HashMap<String, Object>();
+						params.put(JRParameter.REPORT_VIRTUALIZER, virtualizer);
+						report.runReport(params);
+					}
+				}));
+			}
+			
+			for (Future<?> fill : fills)
+			{
+				fill.get();
+			}
+			
+			time = System.nanoTime() - start;
+			log.info(name + ": " + FILL_COUNT + " fills on " + THREAD_COUNT + " threads took " 
+					+ (time / 1000000) + " ms");
+		}
+		finally
+		{
+			executor.shutdown();
+			virtualizer.cleanup();
+		}
+		
+		List<String> digests = report.takeDigests();
+		assert digests.size() == FILL_COUNT;
+		for (String digest : digests)
+		{
+			assert digest.equals(serialDigest);
+		}
+		return time;
+	}
+}
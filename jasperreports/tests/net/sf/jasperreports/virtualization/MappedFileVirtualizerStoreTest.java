@@ -0,0 +1,237 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.virtualization;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.engine.JRRuntimeException;
+import net.sf.jasperreports.engine.JRVirtualizable;
+import net.sf.jasperreports.engine.fill.JRVirtualizationContext;
+import net.sf.jasperreports.engine.util.LocalVirtualizationSerializer;
+import net.sf.jasperreports.engine.util.MappedFileVirtualizerStore;
+import net.sf.jasperreports.engine.util.VirtualizationSerializer;
+
+public class MappedFileVirtualizerStoreTest
+{
+	
+	private static final int BLOCK_SIZE = 1024;
+	private static final int SEGMENT_SIZE = 4 * BLOCK_SIZE;
+	private static final int MAX_DISK_SIZE = 2 * SEGMENT_SIZE;
+	// the serialized data fits in a single block
+	private static final int DATA_SIZE = 800;
+	private static final int OBJECT_COUNT = MAX_DISK_SIZE / BLOCK_SIZE;
+	
+	private File directory;
+	private JRVirtualizationContext context;
+	private VirtualizationSerializer serializer;
+	private MappedFileVirtualizerStore store;
+	
+	@BeforeMethod
+	public void createStore() throws IOException
+	{
+		directory = Files.createTempDirectory("mapped_store_test").toFile();
+		context = new JRVirtualizationContext(DefaultJasperReportsContext.getInstance());
+		serializer = new LocalVirtualizationSerializer();
+		store = new MappedFileVirtualizerStore(DefaultJasperReportsContext.getInstance(), 
+				directory.getPath(), BLOCK_SIZE, SEGMENT_SIZE, MAX_DISK_SIZE, null);
+		assert directory.list().length == 1;
+	}
+	
+	@AfterMethod
+	public void disposeStore()
+	{
+		store.dispose();
+		// the mapped file is deleted on dispose
+		assert directory.list().length == 0;
+		assert directory.delete();
+	}
+	
+	@Test
+	public void overflowDiscardsExportedData()
+	{
+		DataObject[] objects = fillStore();
+		
+		// retrieving without removing the data, as done for read-only contexts
+		store.retrieve(objects[1], false, serializer);
+		assert Arrays.equals(objects[1].getVirtualData(), objects[1].data);
+		store.retrieve(objects[3], false, serializer);
+		
+		// the new objects take the blocks of the retrieved objects
+		DataObject extra1 = storeObject(OBJECT_COUNT);
+		DataObject extra2 = storeObject(OBJECT_COUNT + 1);
+		assert store.getMappedSize() == MAX_DISK_SIZE;
+		
+		assertRetrieve(extra1);
+		assertRetrieve(extra2);
+		assertRetrieve(objects[0]);
+		assertRetrieve(objects[2]);
+		
+		// the retrieved objects can be stored again once they are paged out
+		objects[1].setVirtualData(objects[1].data);
+		assert store.store(objects[1], serializer);
+		assertRetrieve(objects[1]);
+		
+		try
+		{
+			store.retrieve(objects[3], false, serializer);
+			assert false : "discarded data should not be found";
+		}
+		catch (JRRuntimeException e)
+		{
+			// expected
+		}
+	}
+	
+	@Test
+	public void overflowFails()
+	{
+		DataObject[] objects = fillStore();
+		
+		try
+		{
+			storeObject(OBJECT_COUNT);
+			assert false : "storing past the size limit should fail";
+		}
+		catch (JRRuntimeException e)
+		{
+			assert MappedFileVirtualizerStore.EXCEPTION_MESSAGE_KEY_DISK_LIMIT_EXCEEDED.equals(e.getMessageKey()) 
+				: e.getMessageKey();
+		}
+		assert store.getMappedSize() == MAX_DISK_SIZE;
+		
+		// the stored data is not affected
+		for (DataObject object : objects)
+		{
+			assertRetrieve(object);
+		}
+		
+		// the removed data makes room for new objects
+		assertRetrieve(storeObject(OBJECT_COUNT));
+	}
+	
+	protected DataObject[] fillStore()
+	{
+		DataObject[] objects = new DataObject[OBJECT_COUNT];
+		for (int i = 0; i < OBJECT_COUNT; i++)
+		{
+			objects[i] = storeObject(i);
+		}
+		assert store.getMappedSize() == MAX_DISK_SIZE;
+		return objects;
+	}
+	
+	protected DataObject storeObject(int idx)
+	{
+		DataObject object = new DataObject(context, "object" + idx, idx);
+		assert store.store(object, serializer);
+		object.removeVirtualData();
+		return object;
+	}
+	
+	protected void assertRetrieve(DataObject object)
+	{
+		store.retrieve(object, true, serializer);
+		assert Arrays.equals(object.getVirtualData(), object.data);
+	}
+	
+	protected static class DataObject implements JRVirtualizable<byte[]>
+	{
+		private final JRVirtualizationContext context;
+		private final String uid;
+		private final byte[] data;
+		private byte[] virtualData;
+		
+		public DataObject(JRVirtualizationContext context, String uid, long seed)
+		{
+			this.context = context;
+			this.uid = uid;
+			this.data = new byte[DATA_SIZE];
+			new Random(seed).nextBytes(data);
+			this.virtualData = data;
+		}
+
+		@Override
+		public String getUID()
+		{
+			return uid;
+		}
+
+		@Override
+		public void ensureVirtualData()
+		{
+			//NOP
+		}
+
+		@Override
+		public void setVirtualData(byte[] o)
+		{
+			virtualData = o;
+		}
+
+		@Override
+		public byte[] getVirtualData()
+		{
+			return virtualData;
+		}
+
+		@Override
+		public void removeVirtualData()
+		{
+			virtualData = null;
+		}
+
+		@Override
+		public void beforeExternalization()
+		{
+			//NOP
+		}
+
+		@Override
+		public void afterExternalization()
+		{
+			//NOP
+		}
+
+		@Override
+		public void afterInternalization()
+		{
+			//NOP
+		}
+
+		@Override
+		public JRVirtualizationContext getContext()
+		{
+			return context;
+		}
+	}
+}
@@ -0,0 +1,199 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.virtualization;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import net.sf.jasperreports.Report;
+import net.sf.jasperreports.engine.JRParameter;
+import net.sf.jasperreports.engine.JRPrintElement;
+import net.sf.jasperreports.engine.JRPrintPage;
+import net.sf.jasperreports.engine.JRVirtualizable;
+import net.sf.jasperreports.engine.JRVirtualizer;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.base.ElementStore;
+import net.sf.jasperreports.engine.base.ElementsBlock;
+import net.sf.jasperreports.engine.base.ElementsBlockList;
+import net.sf.jasperreports.engine.base.VirtualizableElementList;
+import net.sf.jasperreports.engine.fill.JRSwapFileVirtualizer;
+import net.sf.jasperreports.engine.fill.JRVirtualizationContext;
+import net.sf.jasperreports.engine.fill.PagePrefetcher;
+import net.sf.jasperreports.engine.util.JRSwapFile;
+
+/**
+ * Checks that {@link PagePrefetcher} loads the pages that follow the accessed page.
+ */
+public class PagePrefetcherTest
+{
+	
+	private static final int PREFETCH_COUNT = 2;
+	
+	private PrefetchReport report;
+
+	@BeforeClass
+	public void initReport()
+	{
+		report = new PrefetchReport("net/sf/jasperreports/virtualization/repo/FirstJasper.jrxml", 
+				"net/sf/jasperreports/virtualization/FirstJasper.reference.jrpxml");
+		report.init();
+	}
+	
+	@Test
+	public void prefetchNextPages()
+	{
+		HashMap<String, Object> params = new HashMap<String, Object>();
+		RecordingVirtualizer virtualizer = new RecordingVirtualizer(4, 
+				new JRSwapFile(System.getProperty("java.io.tmpdir"), 4096, 100));
+		params.put(JRParameter.REPORT_VIRTUALIZER, virtualizer);
+		
+		report.runReport(params);
+		assert report.checked;
+	}
+	
+	protected static Set<String> objectIds(JRPrintPage page)
+	{
+		Set<String> ids = new HashSet<String>();
+		List<JRPrintElement> elements = page.getElements();
+		assert elements instanceof VirtualizableElementList;
+		
+		ElementStore store = ((VirtualizableElementList) elements).getElementStore();
+		if (store instanceof ElementsBlockList)
+		{
+			ElementsBlock[] blocks = ((ElementsBlockList) store).getBlocks();
+			for (int i = 0; i < blocks.length && blocks[i] != null; i++)
+			{
+				ids.add(blocks[i].getUID());
+			}
+		}
+		else
+		{
+			ids.add(((JRVirtualizable<?>) store).getUID());
+		}
+		return ids;
+	}
+	
+	private static class PrefetchReport extends Report
+	{
+		private boolean checked;
+		
+		public PrefetchReport(String jrxml, String jrpxml)
+		{
+			super(jrxml, jrpxml);
+		}
+
+		@Override
+		protected void beforeExport(JRVirtualizer virtualizer, JasperPrint print)
+		{
+			super.beforeExport(virtualizer, print);
+			
+			List<JRPrintPage> pages = print.getPages();
+			assert pages.size() > PREFETCH_COUNT + 1;
+			
+			Set<String> expectedIds = new HashSet<String>();
+			for (int pageIndex = 1; pageIndex <= PREFETCH_COUNT; pageIndex++)
+			{
+				expectedIds.addAll(objectIds(pages.get(pageIndex)));
+			}
+			
+			RecordingVirtualizer recordingVirtualizer = (RecordingVirtualizer) virtualizer;
+			recordingVirtualizer.expect(expectedIds.size());
+			
+			PagePrefetcher prefetcher = JRVirtualizationContext.getRegistered(print).sequentialPageAccess(
+					pages, pages.size() - 1, PREFETCH_COUNT);
+			try
+			{
+				prefetcher.pageAccessed(0);
+				assert recordingVirtualizer.awaitPrefetched();
+			}
+			finally
+			{
+				prefetcher.close();
+			}
+			
+			assert recordingVirtualizer.prefetchedIds().equals(expectedIds);
+			checked = true;
+		}
+	}
+	
+	private static class RecordingVirtualizer extends JRSwapFileVirtualizer
+	{
+		private final Set<String> prefetchedIds = Collections.synchronizedSet(new HashSet<String>());
+		private volatile CountDownLatch prefetched = new CountDownLatch(0);
+		
+		public RecordingVirtualizer(int maxSize, JRSwapFile swap)
+		{
+			super(maxSize, swap, true);
+		}
+		
+		public void expect(int count)
+		{
+			prefetchedIds.clear();
+			prefetched = new CountDownLatch(count);
+		}
+		
+		public boolean awaitPrefetched()
+		{
+			try
+			{
+				return prefetched.await(10, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		
+		public Set<String> prefetchedIds()
+		{
+			synchronized (prefetchedIds)
+			{
+				return new HashSet<String>(prefetchedIds);
+			}
+		}
+		
+		@Override
+		public void prefetchData(JRVirtualizable o)
+		{
+			try
+			{
+				super.prefetchData(o);
+			}
+			finally
+			{
+				prefetchedIds.add(o.getUID());
+				prefetched.countDown();
+			}
+		}
+	}
+}
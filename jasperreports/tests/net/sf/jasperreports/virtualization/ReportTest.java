@@ -34,6 +34,12 @@ import net.sf.jasperreports.Report;
 import net.sf.jasperreports.engine.JRException;
 import net.sf.jasperreports.engine.JRParameter;
 import net.sf.jasperreports.engine.fill.JRGzipVirtualizer;
+import net.sf.jasperreports.engine.fill.JRSwapFileVirtualizer;
+import net.sf.jasperreports.engine.fill.StoreFactoryVirtualizer;
+import net.sf.jasperreports.engine.util.JRSwapFile;
+import net.sf.jasperreports.engine.util.LZStreamCompression;
+import net.sf.jasperreports.engine.util.MappedFileVirtualizerStoreFactory;
+import net.sf.jasperreports.engine.util.SwapFileVirtualizerStoreFactory;
 
 /**
  * @author Lucian Chirita (lucianc@users.sourceforge.net)
@@ -66,4 +72,45 @@ public class ReportTest
 		
 		report.runReport(params);
 	}
+	
+	@Test
+	public void mappedFileVirtualizedReport() throws JRException, NoSuchAlgorithmException, IOException
+	{
+		MappedFileVirtualizerStoreFactory storeFactory = new MappedFileVirtualizerStoreFactory();
+		storeFactory.setSegmentSize(64 * 1024);
+		storeFactory.setMaxDiskSize(4 * 1024 * 1024);
+		
+		HashMap<String, Object> params = new HashMap<String, Object>();
+		StoreFactoryVirtualizer virtualizer = new StoreFactoryVirtualizer(3, storeFactory);
+		params.put(JRParameter.REPORT_VIRTUALIZER, virtualizer);
+		
+		report.runReport(params);
+	}
+	
+	@Test
+	public void compressedVirtualizedReport() throws JRException, NoSuchAlgorithmException, IOException
+	{
+		SwapFileVirtualizerStoreFactory storeFactory = new SwapFileVirtualizerStoreFactory();
+		storeFactory.setCompression(new LZStreamCompression());
+		storeFactory.setTemplateDictionary(true);
+		
+		HashMap<String, Object> params = new HashMap<String, Object>();
+		StoreFactoryVirtualizer virtualizer = new StoreFactoryVirtualizer(3, storeFactory);
+		params.put(JRParameter.REPORT_VIRTUALIZER, virtualizer);
+		
+		report.runReport(params);
+	}
+	
+	@Test
+	public void asyncVirtualizedReport() throws JRException, NoSuchAlgorithmException, IOException
+	{
+		SwapFileVirtualizerStoreFactory storeFactory = new SwapFileVirtualizerStoreFactory();
+		storeFactory.setAsync(true);
+		
+		HashMap<String, Object> params = new HashMap<String, Object>();
+		StoreFactoryVirtualizer virtualizer = new StoreFactoryVirtualizer(3, storeFactory);
+		params.put(JRParameter.REPORT_VIRTUALIZER, virtualizer);
+		
+		report.runReport(params);
+	}
 }
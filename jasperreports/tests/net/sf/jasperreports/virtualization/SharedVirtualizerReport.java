@@ -0,0 +1,87 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.virtualization;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.sf.jasperreports.Report;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRVirtualizer;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.fill.JRVirtualizationContext;
+
+/**
+ * Report that uses a virtualizer shared with other fills running in parallel.
+ */
+public class SharedVirtualizerReport extends Report
+{
+
+	private final List<String> digests = Collections.synchronizedList(new ArrayList<String>());
+
+	public SharedVirtualizerReport(String jrxml, String jrpxml)
+	{
+		super(jrxml, jrpxml);
+	}
+
+	/**
+	 * Returns the digests of the XML exports of the reports filled so far, and clears them.
+	 */
+	public List<String> takeDigests()
+	{
+		synchronized (digests)
+		{
+			List<String> taken = new ArrayList<String>(digests);
+			digests.clear();
+			return taken;
+		}
+	}
+
+	@Override
+	protected String xmlDigest(JasperPrint print)
+			throws NoSuchAlgorithmException, FileNotFoundException, JRException, IOException
+	{
+		String digest = super.xmlDigest(print);
+		digests.add(digest);
+		return digest;
+	}
+
+	@Override
+	protected void beforeExport(JRVirtualizer virtualizer, JasperPrint print)
+	{
+		// only this print is final, other fills are still using the virtualizer
+		JRVirtualizationContext.getRegistered(print).setReadOnly(true);
+	}
+
+	@Override
+	protected void afterExport(JRVirtualizer virtualizer, JasperPrint print)
+	{
+		// the virtualizer is disposed after all fills are done
+	}
+
+}
@@ -0,0 +1,117 @@
+/*
+ * JasperReports - Free Java Reporting Library.
+ * Copyright (C) 2001 - 2018 TIBCO Software Inc. All rights reserved.
+ * http://www.jaspersoft.com
+ *
+ * Unless you have purchased a commercial license agreement from Jaspersoft,
+ * the following license terms apply:
+ *
+ * This program is part of JasperReports.
+ *
+ * JasperReports is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JasperReports is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JasperReports. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jasperreports.virtualization;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import net.sf.jasperreports.engine.util.DeflateStreamCompression;
+import net.sf.jasperreports.engine.util.DictionaryStreamCompression;
+import net.sf.jasperreports.engine.util.LZStreamCompression;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class StreamCompressionTest
+{
+	
+	private static final byte[] DICTIONARY = "12345_1546300800000_-42 67890_1546300800001_17 element text"
+			.getBytes(StandardCharsets.UTF_8);
+
+	@Test(dataProvider = "data")
+	public void lzCompression(String name, byte[] data) throws IOException
+	{
+		LZStreamCompression compression = new LZStreamCompression(1024);
+		assert Arrays.equals(data, roundTrip(compression, data, null)) : name;
+		assert Arrays.equals(data, roundTrip(compression, data, DICTIONARY)) : name;
+	}
+
+	@Test(dataProvider = "data")
+	public void deflateCompression(String name, byte[] data) throws IOException
+	{
+		DeflateStreamCompression compression = new DeflateStreamCompression(1);
+		assert Arrays.equals(data, roundTrip(compression, data, null)) : name;
+		assert Arrays.equals(data, roundTrip(compression, data, DICTIONARY)) : name;
+	}
+	
+	protected byte[] roundTrip(DictionaryStreamCompression compression, byte[] data, byte[] dictionary) 
+			throws IOException
+	{
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		OutputStream out = compression.compressedOutput(bout, dictionary);
+		// writing in pieces to cross block boundaries
+		for (int offset = 0; offset < data.length; offset += 700)
+		{
+			out.write(data, offset, Math.min(700, data.length - offset));
+		}
+		out.close();
+		
+		InputStream in = compression.uncompressedInput(new ByteArrayInputStream(bout.toByteArray()), dictionary);
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		byte[] buffer = new byte[333];
+		int read;
+		while ((read = in.read(buffer)) > 0)
+		{
+			result.write(buffer, 0, read);
+		}
+		in.close();
+		return result.toByteArray();
+	}
+
+	@DataProvider
+	public Object[][] data()
+	{
+		Random random = new Random(17);
+		
+		byte[] randomData = new byte[5000];
+		random.nextBytes(randomData);
+		
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 500; ++i)
+		{
+			text.append("12345_1546300800000_-42 ").append(random.nextInt(100)).append(" element text ");
+		}
+		
+		byte[] runs = new byte[10000];
+		for (int i = 0; i < runs.length; ++i)
+		{
+			runs[i] = (byte) (i / 300);
+		}
+		
+		return new Object[][]{
+				{"empty", new byte[0]},
+				{"single", new byte[]{42}},
+				{"short", "abcabcab".getBytes(StandardCharsets.UTF_8)},
+				{"random", randomData},
+				{"text", text.toString().getBytes(StandardCharsets.UTF_8)},
+				{"runs", runs},
+		};
+	}
+}